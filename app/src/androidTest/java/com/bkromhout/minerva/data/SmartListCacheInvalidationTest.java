@@ -0,0 +1,241 @@
+package com.bkromhout.minerva.data;
+
+import android.app.Instrumentation;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.bkromhout.minerva.enums.MarkType;
+import com.bkromhout.minerva.realm.RBook;
+import com.bkromhout.minerva.realm.RBookList;
+import com.bkromhout.minerva.realm.RBookListItem;
+import com.bkromhout.minerva.realm.RTag;
+import com.bkromhout.minerva.test.TestBookFactory;
+import com.bkromhout.minerva.test.TestRealmConfigurationFactory;
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests that the code paths which write data tell the {@link SmartListCache} about it, by caching entries for smart
+ * lists whose queries would be affected, running the write, and checking that the entries were thrown away.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SmartListCacheInvalidationTest {
+    private static final int NUM_TEST_BOOKS = 3;
+    private static final long AFFECTED_LIST_ID = 1L;
+    private static final long UNAFFECTED_LIST_ID = 2L;
+    private static final long ASYNC_TIMEOUT_MS = 5000L;
+
+    @Rule
+    public final TestRealmConfigurationFactory configFactory = new TestRealmConfigurationFactory(
+            InstrumentationRegistry.getContext());
+
+    private Realm realm;
+    private List<RBook> testBooks;
+    private RBookList list;
+    private RTag tag;
+
+    @Before
+    public void setUp() {
+        RealmConfiguration realmConfig = configFactory.createConfiguration();
+        realm = Realm.getInstance(realmConfig);
+        UniqueIdFactory.getInstance().setUpTempIds(realm);
+        // Create books, a normal list with all of them in it, and a tag which is on all of them.
+        List<RBook> books = TestBookFactory.toRBooks(new TestBookFactory().generateMultiple(NUM_TEST_BOOKS));
+        realm.beginTransaction();
+        testBooks = realm.copyToRealm(books);
+        list = realm.copyToRealm(new RBookList("list"));
+        tag = realm.copyToRealm(new RTag("tag"));
+        realm.commitTransaction();
+        list.addBooks(realm, testBooks);
+        ActionHelper.addTagsToBooks(realm, testBooks, Collections.singletonList(tag));
+        SmartListCache.get().invalidateAll();
+    }
+
+    @After
+    public void tearDown() {
+        SmartListCache.get().invalidateAll();
+        testBooks = null;
+        list = null;
+        tag = null;
+        UniqueIdFactory.getInstance().tearDownTempIds();
+        if (realm != null) realm.close();
+    }
+
+    @Test
+    public void rateBooksInvalidates() {
+        cacheEntries(RBook.class, "rating", "title");
+        ActionHelper.rateBooks(realm, testBooks, 5);
+        assertOnlyAffectedEntryDropped();
+    }
+
+    @Test
+    public void addTagsToBooksInvalidates() {
+        realm.beginTransaction();
+        RTag newTag = realm.copyToRealm(new RTag("new tag"));
+        realm.commitTransaction();
+        cacheEntries(RBook.class, "tags.name", "title");
+        ActionHelper.addTagsToBooks(realm, testBooks, Collections.singletonList(newTag));
+        assertOnlyAffectedEntryDropped();
+    }
+
+    @Test
+    public void removeTagsFromBooksInvalidates() {
+        cacheEntries(RBook.class, "tags.name", "title");
+        ActionHelper.removeTagsFromBooks(realm, testBooks, Collections.singletonList(tag));
+        assertOnlyAffectedEntryDropped();
+    }
+
+    @Test
+    public void markBooksInvalidates() {
+        cacheEntries(RBook.class, "isNew", "title");
+        ActionHelper.markBooks(realm, testBooks, MarkType.NEW, true);
+        assertOnlyAffectedEntryDropped();
+    }
+
+    @Test
+    public void deleteBooksInvalidates() {
+        cacheEntries(RBook.class, "title", null);
+        ActionHelper.deleteBooks(realm, Collections.singletonList(testBooks.get(0)), false);
+        assertThat(SmartListCache.get().getCachedEntry(AFFECTED_LIST_ID), is(nullValue()));
+    }
+
+    @Test
+    public void convertToNormalListEvicts() {
+        RBookList smartList = ActionHelper.createNewSmartList(realm, "smart list", null);
+        SmartListCache.get().putEntry(smartList.uniqueId, entry(RBook.class, "title"));
+        smartList.convertToNormalList(realm);
+        assertThat(SmartListCache.get().getCachedEntry(smartList.uniqueId), is(nullValue()));
+    }
+
+    @Test
+    public void updateSmartListEvicts() {
+        RBookList smartList = ActionHelper.createNewSmartList(realm, "smart list", null);
+        SmartListCache.get().putEntry(smartList.uniqueId, entry(RBook.class, "title"));
+        ActionHelper.updateSmartList(realm, smartList, null);
+        assertThat(SmartListCache.get().getCachedEntry(smartList.uniqueId), is(nullValue()));
+    }
+
+    @Test
+    public void deleteListsEvicts() {
+        RBookList smartList = ActionHelper.createNewSmartList(realm, "smart list", null);
+        long smartListId = smartList.uniqueId;
+        SmartListCache.get().putEntry(smartListId, entry(RBook.class, "title"));
+        ActionHelper.deleteLists(realm, Collections.singletonList(smartList));
+        assertThat(SmartListCache.get().getCachedEntry(smartListId), is(nullValue()));
+    }
+
+    @Test
+    public void asyncTransactionInvalidatesOnceCommitted() throws InterruptedException {
+        cacheEntries(RBook.class, "isInRecents", "title");
+        RealmConfiguration realmConfig = realm.getConfiguration();
+        long bookId = testBooks.get(0).uniqueId;
+        AtomicBoolean keptUntilCommitted = new AtomicBoolean();
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        // Async transactions need a Looper. Their callbacks can't run on the main thread until this has returned.
+        instrumentation.runOnMainSync(() -> {
+            try (Realm mainRealm = Realm.getInstance(realmConfig)) {
+                ActionHelper.executeTransactionAsync(mainRealm, bgRealm ->
+                                bgRealm.where(RBook.class).equalTo("uniqueId", bookId).findFirst().isInRecents = true,
+                        SmartListCache.Change.BOOK_RECENTS);
+                keptUntilCommitted.set(SmartListCache.get().getCachedEntry(AFFECTED_LIST_ID) != null);
+            }
+        });
+        assertThat(keptUntilCommitted.get(), is(true));
+
+        long deadline = SystemClock.uptimeMillis() + ASYNC_TIMEOUT_MS;
+        while (SmartListCache.get().getCachedEntry(AFFECTED_LIST_ID) != null && SystemClock.uptimeMillis() < deadline) {
+            instrumentation.waitForIdleSync();
+            Thread.sleep(10);
+        }
+        assertOnlyAffectedEntryDropped();
+    }
+
+    @Test
+    public void renameListInvalidates() {
+        cacheEntries(RBookListItem.class, "owningList.name", "book.title");
+        ActionHelper.renameList(realm, list, "renamed list");
+        assertOnlyAffectedEntryDropped();
+    }
+
+    @Test
+    public void moveItemsInvalidates() {
+        List<RBookListItem> items = new ArrayList<>(list.listItems.where().findAllSorted("pos"));
+        cacheEntries(RBookListItem.class, "pos", "book.title");
+        ActionHelper.moveItemsToEnd(realm, list, Collections.singletonList(items.get(0)));
+        assertOnlyAffectedEntryDropped();
+
+        cacheEntries(RBookListItem.class, "pos", "book.title");
+        ActionHelper.moveItemsToStart(realm, list, Collections.singletonList(items.get(items.size() - 1)));
+        assertOnlyAffectedEntryDropped();
+    }
+
+    @Test
+    public void addAndRemoveBooksInvalidates() {
+        cacheEntries(RBookListItem.class, "owningList.name", null);
+        list.removeBooks(realm, Collections.singletonList(testBooks.get(0)));
+        assertThat(SmartListCache.get().getCachedEntry(AFFECTED_LIST_ID), is(nullValue()));
+
+        cacheEntries(RBookListItem.class, "owningList.name", null);
+        list.addBooks(realm, Collections.singletonList(testBooks.get(0)));
+        assertThat(SmartListCache.get().getCachedEntry(AFFECTED_LIST_ID), is(nullValue()));
+    }
+
+    @Test
+    public void renameTagInvalidates() {
+        cacheEntries(RBook.class, "tags.name", "title");
+        ActionHelper.renameTag(realm, tag, "renamed tag");
+        assertOnlyAffectedEntryDropped();
+    }
+
+    @Test
+    public void recolorTagInvalidates() {
+        cacheEntries(RBook.class, "tags.textColor", "title");
+        ActionHelper.setTagTextColor(realm, tag, 0xFF000000);
+        assertOnlyAffectedEntryDropped();
+
+        cacheEntries(RBook.class, "tags.bgColor", "title");
+        ActionHelper.setTagBgColor(realm, tag, 0xFFFFFFFF);
+        assertOnlyAffectedEntryDropped();
+    }
+
+    /**
+     * Cache entries for a smart list whose query should be affected by a write, and optionally for one whose query
+     * shouldn't be.
+     * @param queryClass      Class the queries return objects of.
+     * @param affectedField   Field which the affected query checks.
+     * @param unaffectedField Field which the unaffected query checks, or null to skip caching it.
+     */
+    private static void cacheEntries(Class<?> queryClass, String affectedField, String unaffectedField) {
+        SmartListCache cache = SmartListCache.get();
+        cache.invalidateAll();
+        cache.putEntry(AFFECTED_LIST_ID, entry(queryClass, affectedField));
+        if (unaffectedField != null) cache.putEntry(UNAFFECTED_LIST_ID, entry(queryClass, unaffectedField));
+    }
+
+    private static void assertOnlyAffectedEntryDropped() {
+        assertThat(SmartListCache.get().getCachedEntry(AFFECTED_LIST_ID), is(nullValue()));
+        assertThat(SmartListCache.get().getCachedEntry(UNAFFECTED_LIST_ID), is(notNullValue()));
+    }
+
+    private static SmartListCache.Entry entry(Class<?> queryClass, String field) {
+        String ruqString = queryClass.getSimpleName() + "#$_Ruqus_RUQ_$#NORMAL|||" + queryClass.getSimpleName() +
+                "|||" + field + "|||x::STRING|||com.bkromhout.ruqus.transformers.EqualTo#$_Ruqus_RUQ_$#";
+        return new SmartListCache.Entry(ruqString, SmartListCache.dependenciesOf(ruqString, queryClass), new long[0],
+                new long[0]);
+    }
+}
@@ -97,6 +97,30 @@ public class RBookListTest {
         assertItemsCorrect(list.getListItems(), 2, 4, 5, 1, 3);
     }
 
+    @Test
+    public void testAddBooksInBulk() {
+        realm.beginTransaction();
+        RBookList list = realm.copyToRealm(new RBookList("list"));
+        realm.commitTransaction();
+
+        // Books which are passed more than once should only be added once.
+        List<RBook> toAdd = new ArrayList<>(testBooks);
+        toAdd.add(testBooks.get(1));
+        toAdd.add(0, testBooks.get(3));
+        list.addBooks(realm, toAdd);
+
+        assertThat(list.getNextPos(), is(C.LIST_ITEM_GAP * NUM_TEST_BOOKS));
+        assertItemsCorrect(list.getListItems(), 4, 1, 2, 3, 5);
+
+        // Positions and unique IDs should be contiguous.
+        long firstUniqueId = (long) list.getListItems().get(0).getUID();
+        for (int i = 0; i < NUM_TEST_BOOKS; i++) {
+            RBookListItem item = list.getListItems().get(i);
+            assertThat(item.getPos(), is(C.LIST_ITEM_GAP * i));
+            assertThat((long) item.getUID(), is(firstUniqueId + i));
+        }
+    }
+
     @Test
     public void testSmartList() {
         // Create RUQs and do sanity checks.
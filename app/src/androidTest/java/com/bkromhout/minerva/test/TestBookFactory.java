@@ -3,10 +3,8 @@ package com.bkromhout.minerva.test;
 import com.bkromhout.minerva.data.SuperBook;
 import com.bkromhout.minerva.data.UniqueIdFactory;
 import com.bkromhout.minerva.realm.RBook;
-import nl.siegmann.epublib.domain.*;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -29,20 +27,8 @@ public class TestBookFactory {
      */
     public final TestSuperBook generate() {
         genNum += 1L;
-        String title = "Test Book " + genNum;
-        Book book = new Book();
-        Metadata metadata = book.getMetadata();
-        metadata.addTitle(new DcmesElement(title));
-        metadata.addAuthor(new Author("Author " + genNum));
-        metadata.addDescription(new DcmesElement("Description " + genNum));
-        metadata.setSubjects(Collections.singletonList(new DcmesElement("Subject " + genNum)));
-        metadata.addType(new DcmesElement("Type " + genNum));
-        metadata.setFormat("application/epub+zip");
-        metadata.addPublisher(new DcmesElement("Publisher " + genNum));
-        metadata.addDate(new Date("Create Date " + genNum, Date.Event.CREATION));
-        metadata.addDate(new Date("Publish Date " + genNum, Date.Event.PUBLICATION));
-        metadata.addDate(new Date("Modified Date " + genNum, Date.Event.MODIFICATION));
-        return new TestSuperBook(book, BASE_TEST_PATH + genNum, title.getBytes(), genNum);
+        TestBookMetadata metadata = new TestBookMetadata(genNum);
+        return new TestSuperBook(metadata, BASE_TEST_PATH + genNum, metadata.getTitle().getBytes(), genNum);
     }
 
     /**
@@ -69,7 +55,11 @@ public class TestBookFactory {
             throw new IllegalStateException("Must set up temporary unique IDs prior to creating RBooks for testing.");
 
         ArrayList<RBook> books = new ArrayList<>(tsbList.size());
-        for (TestSuperBook tsb : tsbList) books.add(new RBook(tsb));
+        for (TestSuperBook tsb : tsbList) {
+            RBook book = new RBook(tsb);
+            book.uniqueId = UniqueIdFactory.getInstance().nextId(RBook.class);
+            books.add(book);
+        }
         return books;
     }
 }
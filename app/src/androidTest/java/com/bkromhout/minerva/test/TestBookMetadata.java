@@ -0,0 +1,97 @@
+package com.bkromhout.minerva.test;
+
+import com.bkromhout.minerva.data.BookMetadata;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link BookMetadata} whose values are all generated from a single number.
+ */
+class TestBookMetadata implements BookMetadata {
+    private final long genNum;
+
+    /**
+     * Create a new {@link TestBookMetadata}.
+     * @param genNum The number to generate values from.
+     */
+    TestBookMetadata(long genNum) {
+        this.genNum = genNum;
+    }
+
+    @Override
+    public String getTitle() {
+        return "Test Book " + genNum;
+    }
+
+    @Override
+    public String getFirstAuthor() {
+        return "Author " + genNum;
+    }
+
+    @Override
+    public String getFirstDesc() {
+        return "Description " + genNum;
+    }
+
+    @Override
+    public List<String> getSubjects() {
+        return Collections.singletonList("Subject " + genNum);
+    }
+
+    @Override
+    public List<String> getTypes() {
+        return Collections.singletonList("Type " + genNum);
+    }
+
+    @Override
+    public String getFormat() {
+        return "application/epub+zip";
+    }
+
+    @Override
+    public List<String> getLanguages() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String getFirstPublisher() {
+        return "Publisher " + genNum;
+    }
+
+    @Override
+    public String getBookId() {
+        return null;
+    }
+
+    @Override
+    public String getCreateDate() {
+        return "Create Date " + genNum;
+    }
+
+    @Override
+    public String getPubDate() {
+        return "Publish Date " + genNum;
+    }
+
+    @Override
+    public String getModDate() {
+        return "Modified Date " + genNum;
+    }
+
+    @Override
+    public int getNumChaps() {
+        return 0;
+    }
+
+    @Override
+    public boolean hasCoverImage() {
+        return false;
+    }
+
+    @Override
+    public InputStream openCoverImage() {
+        return null;
+    }
+}
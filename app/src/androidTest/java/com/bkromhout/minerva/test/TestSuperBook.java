@@ -1,7 +1,7 @@
 package com.bkromhout.minerva.test;
 
+import com.bkromhout.minerva.data.BookMetadata;
 import com.bkromhout.minerva.data.SuperBook;
-import nl.siegmann.epublib.domain.Book;
 
 /**
  * Extension of the {@link SuperBook} class which stores the number used to generate it.
@@ -11,12 +11,13 @@ public class TestSuperBook extends SuperBook {
 
     /**
      * Create a new {@link SuperBook} wrapped in a {@link TestSuperBook}
-     * @param book The {@link Book} to hold.
-     * @param path The path (relative to the library dir) to the book file.
-     * @param hash The hash of the book file.
+     * @param metadata The {@link BookMetadata} to hold.
+     * @param path     The path (relative to the library dir) to the book file.
+     * @param hash     The hash of the book file.
+     * @param genNum   The number used to generate the book.
      */
-    TestSuperBook(Book book, String path, byte[] hash, long genNum) {
-        super(book, path, hash);
+    TestSuperBook(BookMetadata metadata, String path, byte[] hash, long genNum) {
+        super(metadata, path, hash);
         this.genNum = genNum;
     }
 
@@ -12,6 +12,8 @@ import android.support.annotation.PluralsRes;
 import android.support.v4.content.ContextCompat;
 import com.bkromhout.minerva.data.BackupUtils;
 import com.bkromhout.minerva.data.Importer;
+import com.bkromhout.minerva.data.LibraryWatcher;
+import com.bkromhout.minerva.data.SmartListCache;
 import com.bkromhout.minerva.data.UniqueIdFactory;
 import com.bkromhout.minerva.events.ShowRateMeDialogEvent;
 import com.bkromhout.minerva.realm.RTag;
@@ -44,7 +46,7 @@ public class Minerva extends Application {
     /**
      * Realm schema version.
      */
-    private static final long REALM_SCHEMA_VERSION = 1;
+    private static final long REALM_SCHEMA_VERSION = 6;
 
     /**
      * Static INSTANCE of application context. Beware, this isn't available before the application starts.
@@ -116,8 +118,18 @@ public class Minerva extends Application {
             }
         }
 
-        // Trigger auto-import if needed.
-        if (prefs.isLibAutoImport(false)) Importer.get().queueFullImport();
+        // Start keeping the cached smart list results in sync with the main thread's Realm.
+        SmartListCache.get().startListening();
+
+        // Trigger auto-import if needed, or resume a full import if the app was killed while it was running. If full
+        // imports keep getting interrupted, a book file is probably crashing the importer, so stop starting them
+        // automatically until one which is started manually finishes.
+        int interruptedImportCount = prefs.getInterruptedImportCount();
+        if (interruptedImportCount >= Importer.MAX_INTERRUPTED_IMPORTS)
+            Timber.w("Not starting a full import automatically, the last %d were interrupted.", interruptedImportCount);
+        else if (prefs.isLibAutoImport(false) || interruptedImportCount > 0) Importer.get().queueFullImport();
+        // Start watching the library directory for changes if need be.
+        LibraryWatcher.get().update();
 
         // Send event to have MainActivity trigger "Rate Minerva" dialog if need be.
         if (prefs.shouldShowRateMeDialog()) EventBus.getDefault().postSticky(new ShowRateMeDialogEvent());
@@ -7,6 +7,8 @@ import com.bkromhout.minerva.enums.MainFrag;
 import com.bkromhout.minerva.enums.SortDir;
 import com.bkromhout.minerva.enums.SortType;
 
+import java.util.Set;
+
 /**
  * Wrapper class for Shared Preferences.
  */
@@ -24,11 +26,16 @@ public class Prefs {
     private static final String DETECT_MOVED = Minerva.get().getString(R.string.key_detect_moved);
     public static final String DUPE_HANDLING = Minerva.get().getString(R.string.key_dupe_handling);
     private static final String LIB_AUTO_IMPORT = Minerva.get().getString(R.string.key_auto_import);
+    public static final String LIB_WATCH = Minerva.get().getString(R.string.key_watch_lib);
     public static final String NEW_BOOK_TAG = Minerva.get().getString(R.string.key_new_tag);
     public static final String UPDATED_BOOK_TAG = Minerva.get().getString(R.string.key_updated_tag);
     // Importing
     private static final String LAST_IMPORT_SUCCESS_TIME = "most_recent_import_success";
     private static final String FIRST_IMPORT_TRIGGERED = "first_import_triggered";
+    private static final String INTERRUPTED_IMPORT_COUNT = "interrupted_import_count";
+    private static final String IMPORT_WORKER_COUNT = "import_worker_count";
+    private static final String IMPORT_BATCH_SIZE = "import_batch_size";
+    private static final String IMPORT_EXCLUDE_GLOBS = "import_exclude_globs";
     // Recents
     public static final String RECENTS_CARD_TYPE = "recents_card_type";
     // Library
@@ -191,6 +198,23 @@ public class Prefs {
         prefs.edit().putBoolean(LIB_AUTO_IMPORT, libAutoImport).apply();
     }
 
+    /**
+     * Get the boolean telling us whether or not to watch the library directory and import changes as they happen.
+     * @param defValue The default value to return if nothing is set.
+     * @return Library watch boolean.
+     */
+    public boolean isLibWatch(boolean defValue) {
+        return prefs.getBoolean(LIB_WATCH, defValue);
+    }
+
+    /**
+     * Put the library watch boolean.
+     * @param libWatch Library watch boolean.
+     */
+    public void putLibWatch(boolean libWatch) {
+        prefs.edit().putBoolean(LIB_WATCH, libWatch).apply();
+    }
+
     /**
      * Get the name of the tag to tag new books with.
      * @param defValue The default value to return if nothing is set.
@@ -244,6 +268,28 @@ public class Prefs {
         prefs.edit().putBoolean(FIRST_IMPORT_TRIGGERED, true).apply();
     }
 
+    /**
+     * Get the number of full imports in a row which were started but never finished, meaning the app was killed (or
+     * crashed) while they were running. If this is more than zero, the last full import should be resumed.
+     * @return Number of interrupted full imports in a row.
+     */
+    public int getInterruptedImportCount() {
+        return prefs.getInt(INTERRUPTED_IMPORT_COUNT, 0);
+    }
+
+    /**
+     * Put the number of full imports in a row which were started but never finished. This is incremented when a full
+     * import starts and reset to zero when one finishes, so if it's still set when the app starts, the app must have
+     * been killed during that import.
+     * <p>
+     * This is written to disk before returning, since the app is most likely to be killed during the import that
+     * follows, before an asynchronous write would have been.
+     * @param interruptedImportCount Number of interrupted full imports in a row.
+     */
+    public void putInterruptedImportCount(int interruptedImportCount) {
+        prefs.edit().putInt(INTERRUPTED_IMPORT_COUNT, interruptedImportCount).commit();
+    }
+
     /**
      * Get the last time an import run completed successfully.
      * @param defValue The default value to return if nothing is set.
@@ -261,6 +307,57 @@ public class Prefs {
         prefs.edit().putLong(LAST_IMPORT_SUCCESS_TIME, lastImportSuccessTime).apply();
     }
 
+    /**
+     * Get the number of workers the importer should use to parse files in parallel.
+     * @param defValue The default value to return if nothing is set.
+     * @return Number of import workers.
+     */
+    public int getImportWorkerCount(int defValue) {
+        return prefs.getInt(IMPORT_WORKER_COUNT, defValue);
+    }
+
+    /**
+     * Put the number of workers the importer should use to parse files in parallel.
+     * @param importWorkerCount Number of import workers.
+     */
+    public void putImportWorkerCount(int importWorkerCount) {
+        prefs.edit().putInt(IMPORT_WORKER_COUNT, importWorkerCount).apply();
+    }
+
+    /**
+     * Get the number of books the importer should save to Realm in each transaction.
+     * @param defValue The default value to return if nothing is set.
+     * @return Import batch size.
+     */
+    public int getImportBatchSize(int defValue) {
+        return prefs.getInt(IMPORT_BATCH_SIZE, defValue);
+    }
+
+    /**
+     * Put the number of books the importer should save to Realm in each transaction.
+     * @param importBatchSize Import batch size.
+     */
+    public void putImportBatchSize(int importBatchSize) {
+        prefs.edit().putInt(IMPORT_BATCH_SIZE, importBatchSize).apply();
+    }
+
+    /**
+     * Get the globs for files and folders which the importer should never look at.
+     * @param defValue The default value to return if nothing is set.
+     * @return Set of import exclusion globs.
+     */
+    public Set<String> getImportExcludeGlobs(Set<String> defValue) {
+        return prefs.getStringSet(IMPORT_EXCLUDE_GLOBS, defValue);
+    }
+
+    /**
+     * Put the globs for files and folders which the importer should never look at.
+     * @param importExcludeGlobs Set of import exclusion globs.
+     */
+    public void putImportExcludeGlobs(Set<String> importExcludeGlobs) {
+        prefs.edit().putStringSet(IMPORT_EXCLUDE_GLOBS, importExcludeGlobs).apply();
+    }
+
     /*
      * Dynamic
      */
@@ -1,8 +1,14 @@
 package com.bkromhout.minerva;
 
+import com.bkromhout.minerva.data.DataUtils;
+import com.bkromhout.minerva.data.SortKeys;
 import io.realm.DynamicRealm;
+import io.realm.FieldAttribute;
 import io.realm.RealmMigration;
 import io.realm.RealmSchema;
+import timber.log.Timber;
+
+import java.io.IOException;
 
 /**
  * Class responsible for migrating Realm data.
@@ -23,5 +29,107 @@ class RealmMigrator implements RealmMigration {
                     .addPrimaryKey("uniqueId"); // Add @PrimaryKey to uniqueId.
             oldVersion++;
         }
+
+        /*
+         * Migrates to version 2 of the schema.
+         * - Add the RFileFingerprint class.
+         */
+        if (oldVersion == 1) {
+            schema.create("RFileFingerprint")
+                  .addField("relPath", String.class, FieldAttribute.PRIMARY_KEY, FieldAttribute.REQUIRED)
+                  .addField("size", long.class)
+                  .addField("lastModified", long.class)
+                  .addField("hash", byte[].class);
+            oldVersion++;
+        }
+
+        /*
+         * Migrates to version 3 of the schema.
+         * - Add the fastHash field to the RFileFingerprint class.
+         * - Clear RBook hashes and delete all RFileFingerprints, since files are now hashed in their entirety rather
+         *   than however much of them epublib happened to read.
+         */
+        if (oldVersion == 2) {
+            schema.get("RFileFingerprint")
+                  .addField("fastHash", byte[].class);
+            realm.delete("RFileFingerprint");
+            schema.get("RBook")
+                  .transform(obj -> obj.setNull("hash"));
+            oldVersion++;
+        }
+
+        /*
+         * Migrates to version 4 of the schema.
+         * - Add import metrics fields to the RImportLog class.
+         */
+        if (oldVersion == 3) {
+            schema.get("RImportLog")
+                  .addField("totalTime", long.class)
+                  .addField("findTime", long.class)
+                  .addField("hashTime", long.class)
+                  .addField("parseTime", long.class)
+                  .addField("coverTime", long.class)
+                  .addField("commitTime", long.class)
+                  .addField("bytesRead", long.class)
+                  .addField("numFilesRead", int.class)
+                  .addField("peakQueueDepth", int.class)
+                  .addField("slowestFiles", String.class);
+            oldVersion++;
+        }
+
+        /*
+         * Migrates to version 5 of the schema.
+         * - Move the full and error logs of the RImportLog class out to compressed files, and replace them with the
+         *   names of those files.
+         */
+        if (oldVersion == 4) {
+            schema.get("RImportLog")
+                  .addField("fullLogFile", String.class)
+                  .addField("errorLogFile", String.class)
+                  .transform(obj -> {
+                      long time = obj.getLong("endTime");
+                      obj.setString("fullLogFile", moveLogToFile(obj.getString("fullLog"), time, false));
+                      obj.setString("errorLogFile", moveLogToFile(obj.getString("errorLog"), time, true));
+                  })
+                  .removeField("fullLog")
+                  .removeField("errorLog");
+            oldVersion++;
+        }
+
+        /*
+         * Migrates to version 6 of the schema.
+         * - Add indexed sort key fields for the title, author, and relPath fields to the RBook class, and fill them in.
+         */
+        if (oldVersion == 5) {
+            schema.get("RBook")
+                  .addField("sortTitle", String.class, FieldAttribute.INDEXED, FieldAttribute.REQUIRED)
+                  .addField("sortAuthor", String.class, FieldAttribute.INDEXED, FieldAttribute.REQUIRED)
+                  .addField("sortRelPath", String.class, FieldAttribute.INDEXED, FieldAttribute.REQUIRED)
+                  .transform(obj -> {
+                      obj.setString("sortTitle", SortKeys.forTitle(obj.getString("title")));
+                      obj.setString("sortAuthor", SortKeys.forAuthor(obj.getString("author")));
+                      obj.setString("sortRelPath", SortKeys.forPath(obj.getString("relPath")));
+                  });
+            oldVersion++;
+        }
+    }
+
+    /**
+     * Save a log which was stored in Realm to a log file.
+     * @param log        Log text. May be null.
+     * @param time       Time to use to name the file.
+     * @param isErrorLog Whether the log is an errors-only log.
+     * @return Name of the log file, or null if there was nothing to save or it couldn't be saved.
+     */
+    private static String moveLogToFile(String log, long time, boolean isErrorLog) {
+        if (log == null || log.isEmpty() || log.equals("null")) return null;
+        String name = DataUtils.makeLogFileName(time, isErrorLog);
+        try {
+            DataUtils.saveLogFile(name, log);
+            return name;
+        } catch (IOException e) {
+            Timber.e(e, "Failed to move an import log to a file.");
+            return null;
+        }
     }
 }
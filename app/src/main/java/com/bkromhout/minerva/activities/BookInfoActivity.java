@@ -43,9 +43,11 @@ import com.bkromhout.minerva.realm.RBook;
 import com.bkromhout.minerva.ui.SnackKiosk;
 import com.bkromhout.minerva.ui.TagBackgroundSpan;
 import com.bkromhout.minerva.ui.UiUtils;
+import com.bkromhout.minerva.util.BookCover;
 import com.bkromhout.minerva.util.Dialogs;
 import com.bkromhout.minerva.util.Util;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.resource.drawable.GlideDrawable;
 import com.bumptech.glide.request.RequestListener;
 import com.bumptech.glide.request.target.Target;
@@ -54,7 +56,6 @@ import io.realm.RealmChangeListener;
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 
-import java.io.File;
 import java.util.Collections;
 import java.util.List;
 
@@ -207,19 +208,21 @@ public class BookInfoActivity extends PermCheckingActivity implements SnackKiosk
             // Prevent flickering by waiting until the image is loaded before starting the transition.
             postponeEnterTransition();
             Glide.with(this)
-                 .load(DataUtils.getCoverImageFile(book.relPath))
+                 .load(BookCover.fullOf(book))
+                 .diskCacheStrategy(DiskCacheStrategy.NONE)
                  .dontTransform()
                  .dontAnimate()
-                 .listener(new RequestListener<File, GlideDrawable>() {
+                 .listener(new RequestListener<BookCover, GlideDrawable>() {
                      @Override
-                     public boolean onException(Exception e, File model, Target<GlideDrawable> target,
+                     public boolean onException(Exception e, BookCover model, Target<GlideDrawable> target,
                                                 boolean isFirstResource) {
                          return false;
                      }
 
                      @Override
-                     public boolean onResourceReady(GlideDrawable resource, File model, Target<GlideDrawable> target,
-                                                    boolean isFromMemoryCache, boolean isFirstResource) {
+                     public boolean onResourceReady(GlideDrawable resource, BookCover model,
+                                                    Target<GlideDrawable> target, boolean isFromMemoryCache,
+                                                    boolean isFirstResource) {
                          startPostponedEnterTransition();
                          return false;
                      }
@@ -517,7 +520,7 @@ public class BookInfoActivity extends PermCheckingActivity implements SnackKiosk
     @OnClick(R.id.cover_image)
     void onHeaderImageClicked(View v) {
         // If this book actually has a cover, start the CoverActivity.
-        if (book.hasCoverImage) CoverActivity.start(this, book.relPath);
+        if (book.hasCoverImage) CoverActivity.start(this, book);
     }
 
     /**
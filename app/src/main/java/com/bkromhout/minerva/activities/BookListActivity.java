@@ -29,6 +29,7 @@ import com.bkromhout.minerva.R;
 import com.bkromhout.minerva.adapters.*;
 import com.bkromhout.minerva.data.ActionHelper;
 import com.bkromhout.minerva.data.DataUtils;
+import com.bkromhout.minerva.data.SmartListCache;
 import com.bkromhout.minerva.enums.BookCardType;
 import com.bkromhout.minerva.enums.MainFrag;
 import com.bkromhout.minerva.enums.MarkType;
@@ -45,6 +46,7 @@ import com.bkromhout.minerva.util.Util;
 import com.bkromhout.rrvl.RealmRecyclerView;
 import com.bkromhout.ruqus.RealmUserQuery;
 import io.realm.Realm;
+import io.realm.RealmChangeListener;
 import io.realm.RealmObject;
 import io.realm.RealmResults;
 import org.greenrobot.eventbus.EventBus;
@@ -119,6 +121,10 @@ public class BookListActivity extends PermCheckingActivity implements ActionMode
      * Recycler view adapter.
      */
     private BaseBookCardAdapter adapter;
+    /**
+     * Gets a smart list's results again once data changes have made its cached results stale.
+     */
+    private final RealmChangeListener<Realm> smartListRefresher = changedRealm -> refreshSmartListIfStale();
     /**
      * Action mode.
      */
@@ -166,6 +172,7 @@ public class BookListActivity extends PermCheckingActivity implements ActionMode
 
         // Get Realm, then get the RBookList which we will get items from.
         realm = Realm.getDefaultInstance();
+        realm.addChangeListener(smartListRefresher);
         srcList = realm.where(RBookList.class)
                        .equalTo("uniqueId", getIntent().getLongExtra(C.UNIQUE_ID, -1))
                        .findFirst();
@@ -280,7 +287,7 @@ public class BookListActivity extends PermCheckingActivity implements ActionMode
         if (smartListRuq != null) {
             // Use RUQ to set up UI.
             modelType = ModelType.fromRealmClass(smartListRuq.getQueryClass());
-            items = smartListRuq.execute(realm);
+            items = SmartListCache.get().getResults(realm, srcList, smartListRuq);
             adapter = makeAdapter();
             recyclerView.setSwipe(false);
             recyclerView.setAdapter(adapter);
@@ -313,6 +320,19 @@ public class BookListActivity extends PermCheckingActivity implements ActionMode
         }
     }
 
+    /**
+     * If we're showing a smart list whose cached results have been thrown away because data changed, get its results
+     * again, since the results we have might not include everything which the list's query matches now. Results for
+     * queries which haven't been saved to the list yet come straight from the query, so they're always up to date.
+     */
+    private void refreshSmartListIfStale() {
+        if (smartListRuq == null || adapter == null || !srcList.isValid()) return;
+        if (!smartListRuq.toRuqString().equals(srcList.smartListRuqString)) return;
+        if (SmartListCache.get().isCached(srcList)) return;
+        items = SmartListCache.get().getResults(realm, srcList, smartListRuq);
+        adapter.updateRealmResults(items);
+    }
+
     @Override
     public boolean onPrepareOptionsMenu(Menu menu) {
         Util.forceMenuIcons(menu, getClass().getSimpleName());
@@ -372,6 +392,7 @@ public class BookListActivity extends PermCheckingActivity implements ActionMode
         if (adapter != null) adapter.close();
         // Close Realm.
         if (realm != null) {
+            realm.removeChangeListener(smartListRefresher);
             realm.close();
             realm = null;
         }
@@ -541,6 +562,7 @@ public class BookListActivity extends PermCheckingActivity implements ActionMode
                     srcList.listItems.deleteAllFromRealm();
                     srcList.nextPos = 0L;
                 });
+                SmartListCache.get().onChanged(SmartListCache.Change.LIST_ITEMS);
                 break;
             case R.id.action_open_query_builder:
                 QueryBuilderActivity.start(this, smartListRuq);
@@ -769,8 +791,9 @@ public class BookListActivity extends PermCheckingActivity implements ActionMode
         final long pos = bookListItem.pos;
 
         // Remove list item.
-        realm.executeTransactionAsync(bgRealm ->
-                bgRealm.where(RBookListItem.class).equalTo("uniqueId", uniqueId).findFirst().deleteFromRealm());
+        ActionHelper.executeTransactionAsync(realm, bgRealm ->
+                        bgRealm.where(RBookListItem.class).equalTo("uniqueId", uniqueId).findFirst().deleteFromRealm(),
+                SmartListCache.Change.LIST_ITEMS);
 
         // Show undo snackbar.
         Snackbar undoSnackbar = Snackbar.make(coordinator, R.string.book_removed, Snackbar.LENGTH_LONG);
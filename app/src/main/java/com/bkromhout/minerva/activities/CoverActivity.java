@@ -6,26 +6,29 @@ import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import com.bkromhout.minerva.C;
 import com.bkromhout.minerva.R;
-import com.bkromhout.minerva.data.DataUtils;
 import com.bkromhout.minerva.realm.RBook;
+import com.bkromhout.minerva.util.BookCover;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import uk.co.senab.photoview.PhotoView;
 
-import java.io.File;
-
 /**
  * Very simple activity used to display a book's cover image in full screen.
  */
 public class CoverActivity extends AppCompatActivity {
+    // Key strings for the bundle passed when this activity is started.
+    private static final String HASH = "hash";
+
     /**
      * Start the {@link CoverActivity} to display the cover image for an {@link RBook}.
      * @param context Context to use to start the activity.
-     * @param relPath Relative path from an {@link RBook} which will be used to get the cover image file.
+     * @param book    Book whose cover image should be shown.
      */
-    public static void start(Context context, String relPath) {
-        if (relPath == null || relPath.isEmpty())
-            throw new IllegalArgumentException("Must supply non-null, non-empty cover image file path.");
-        context.startActivity(new Intent(context, CoverActivity.class).putExtra(C.REL_PATH, relPath));
+    public static void start(Context context, RBook book) {
+        if (book == null || book.relPath == null || book.relPath.isEmpty())
+            throw new IllegalArgumentException("Must supply a book with a non-null, non-empty relative path.");
+        context.startActivity(new Intent(context, CoverActivity.class).putExtra(C.REL_PATH, book.relPath)
+                                                                      .putExtra(HASH, book.hash));
     }
 
     @Override
@@ -37,13 +40,10 @@ public class CoverActivity extends AppCompatActivity {
         PhotoView coverImage = (PhotoView) findViewById(R.id.full_cover_image);
         if (coverImage == null) throw new IllegalStateException("Couldn't get PhotoView.");
 
-        // Get cover image file.
-        File coverImageFile = DataUtils.getCoverImageFile(getIntent().getStringExtra(C.REL_PATH));
-        if (coverImageFile == null) throw new IllegalStateException("Couldn't get cover image file.");
-
-        // Load image into PhotoView.
+        // Load image into PhotoView. The file is local, so there's no point in caching it on disk too.
         Glide.with(this)
-             .load(coverImageFile)
+             .load(new BookCover(getIntent().getStringExtra(C.REL_PATH), getIntent().getByteArrayExtra(HASH), false))
+             .diskCacheStrategy(DiskCacheStrategy.NONE)
              .into(coverImage);
     }
 }
@@ -0,0 +1,421 @@
+package com.bkromhout.minerva.activities;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.design.widget.CoordinatorLayout;
+import android.support.v4.content.ContextCompat;
+import android.support.v7.view.ActionMode;
+import android.support.v7.widget.Toolbar;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.TextView;
+import butterknife.BindView;
+import butterknife.ButterKnife;
+import com.bkromhout.minerva.C;
+import com.bkromhout.minerva.Minerva;
+import com.bkromhout.minerva.R;
+import com.bkromhout.minerva.adapters.BookCardCompactAdapter;
+import com.bkromhout.minerva.data.ActionHelper;
+import com.bkromhout.minerva.data.DuplicateIndex;
+import com.bkromhout.minerva.events.ActionEvent;
+import com.bkromhout.minerva.events.BookCardClickEvent;
+import com.bkromhout.minerva.events.PermGrantedEvent;
+import com.bkromhout.minerva.realm.RBook;
+import com.bkromhout.minerva.ui.SnackKiosk;
+import com.bkromhout.minerva.util.Dialogs;
+import com.bkromhout.minerva.util.Util;
+import com.bkromhout.rrvl.RealmRecyclerView;
+import io.realm.Realm;
+import io.realm.RealmResults;
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+import rx.Observable;
+import rx.Subscription;
+import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Activity which shows all books which have the same content as some other book, so that the extra copies can be dealt
+ * with in bulk.
+ * <p>
+ * Duplicates are found using the {@link DuplicateIndex}, which is built in the background the first time this activity
+ * is opened.
+ */
+public class DuplicatesActivity extends PermCheckingActivity implements ActionMode.Callback, SnackKiosk.Snacker {
+    // Views.
+    @BindView(R.id.toolbar)
+    Toolbar toolbar;
+    @BindView(R.id.coordinator)
+    CoordinatorLayout coordinator;
+    @BindView(R.id.recycler)
+    RealmRecyclerView recyclerView;
+    @BindView(R.id.status)
+    TextView status;
+
+    /**
+     * Instance of Realm.
+     */
+    private Realm realm;
+    /**
+     * Groups of unique IDs of books which have the same content.
+     */
+    private List<long[]> groups = Collections.emptyList();
+    /**
+     * {@link RBook}s currently shown in the recycler view.
+     */
+    private RealmResults<RBook> books;
+    /**
+     * Recycler view adapter.
+     */
+    private BookCardCompactAdapter adapter;
+    /**
+     * Subscription to the background task which finds the duplicates.
+     */
+    private Subscription loadSub;
+    /**
+     * Saved instance state to restore action mode from once the duplicates have been loaded, if any.
+     */
+    private Bundle pendingState;
+    /**
+     * Action mode.
+     */
+    private static ActionMode actionMode;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_duplicates);
+        ButterKnife.bind(this);
+
+        // Set up toolbar.
+        setSupportActionBar(toolbar);
+        //noinspection ConstantConditions
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+
+        realm = Realm.getDefaultInstance();
+        if (savedInstanceState != null && savedInstanceState.getBoolean(C.IS_IN_ACTION_MODE))
+            pendingState = savedInstanceState;
+        loadDuplicates();
+
+        // Handle permissions. Make sure we continue a request process if applicable.
+        initAndContinuePermChecksIfNeeded();
+    }
+
+    /**
+     * Find the duplicate books in the background, then show them.
+     */
+    private void loadDuplicates() {
+        if (loadSub != null) loadSub.unsubscribe();
+        loadSub = Observable
+                .fromCallable(() -> {
+                    try (Realm bgRealm = Realm.getDefaultInstance()) {
+                        DuplicateIndex.get().buildIfNeeded(bgRealm);
+                    }
+                    return DuplicateIndex.get().getGroups();
+                })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::showDuplicates);
+    }
+
+    /**
+     * Show the books in the given groups.
+     * @param groups Groups of unique IDs of books which have the same content.
+     */
+    private void showDuplicates(List<long[]> groups) {
+        if (realm == null) return;
+        this.groups = groups;
+        Long[] ids = DuplicateIndex.flatten(groups);
+
+        // Realm doesn't like empty "in" queries, and there's nothing to show anyway.
+        if (ids.length == 0) {
+            if (actionMode != null) actionMode.finish();
+            if (adapter != null) adapter.close();
+            adapter = null;
+            books = null;
+            recyclerView.setAdapter(null);
+            recyclerView.setVisibility(View.GONE);
+            status.setText(R.string.no_duplicates);
+            status.setVisibility(View.VISIBLE);
+            //noinspection ConstantConditions
+            getSupportActionBar().setSubtitle(null);
+            invalidateOptionsMenu();
+            return;
+        }
+
+        // Realm can't sort by hash, so sort by title; copies of the same book will usually end up next to each other.
+        books = realm.where(RBook.class).in("uniqueId", ids).findAllSorted("sortTitle");
+        if (adapter == null) {
+            adapter = new BookCardCompactAdapter(this, books);
+            recyclerView.setAdapter(adapter);
+        } else adapter.updateRealmResults(books);
+
+        status.setVisibility(View.GONE);
+        recyclerView.setVisibility(View.VISIBLE);
+        //noinspection ConstantConditions
+        getSupportActionBar().setSubtitle(Minerva.get().getQString(R.plurals.duplicate_groups, groups.size(),
+                groups.size()));
+        invalidateOptionsMenu();
+
+        // If we were in action mode before being recreated, restore the adapter's state and start action mode.
+        if (pendingState != null) {
+            adapter.restoreInstanceState(pendingState);
+            pendingState = null;
+            startActionMode();
+        }
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        Util.forceMenuIcons(menu, getClass().getSimpleName());
+        menu.findItem(R.id.action_select_extra_copies).setVisible(adapter != null);
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.duplicates, menu);
+        return super.onCreateOptionsMenu(menu);
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        EventBus.getDefault().register(this);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        SnackKiosk.startSnacking(this);
+    }
+
+    @Override
+    protected void onPause() {
+        SnackKiosk.stopSnacking();
+        super.onPause();
+    }
+
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        // Save adapter state if we're in action mode.
+        if (actionMode != null) {
+            adapter.saveInstanceState(outState);
+            outState.putBoolean(C.IS_IN_ACTION_MODE, true);
+        }
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        EventBus.getDefault().unregister(this);
+        // Finish action mode so that it doesn't leak.
+        if (actionMode != null) actionMode.finish();
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (loadSub != null) loadSub.unsubscribe();
+        // Close adapter.
+        if (adapter != null) adapter.close();
+        // Close Realm.
+        if (realm != null) {
+            realm.close();
+            realm = null;
+        }
+        if (actionMode != null) actionMode.finish();
+    }
+
+    @Override
+    public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+        mode.getMenuInflater().inflate(R.menu.duplicates_action_mode, menu);
+        adapter.setSelectionMode(true);
+        // Change status bar color to be dark to correspond to dark toolbar color.
+        getWindow().setStatusBarColor(ContextCompat.getColor(this, R.color.grey900));
+        return true;
+    }
+
+    @Override
+    public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+        Util.forceMenuIcons(menu, getClass().getSimpleName());
+        return true;
+    }
+
+    @Override
+    public void onDestroyActionMode(ActionMode mode) {
+        // Set status bar color back to normal.
+        getWindow().setStatusBarColor(ContextCompat.getColor(this, R.color.colorPrimaryDark));
+        if (adapter != null) {
+            adapter.setSelectionMode(false);
+            adapter.clearSelections();
+        }
+        actionMode = null;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case android.R.id.home:
+                onBackPressed();
+                return true;
+            case R.id.action_select_extra_copies:
+                selectExtraCopies();
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+        // Handle select all/none first, and if it isn't those then don't do anything if we haven't selected any items.
+        if (item.getItemId() == R.id.action_select_all) {
+            adapter.selectAll();
+            return true;
+        } else if (item.getItemId() == R.id.action_select_none) {
+            adapter.clearSelections();
+            return true;
+        } else if (adapter.getSelectedItemCount() == 0) return true;
+
+        // Handle actions.
+        switch (item.getItemId()) {
+            case R.id.action_tag:
+                //noinspection unchecked
+                TaggingActivity.start(this, adapter.getSelectedRealmObjects());
+                return true;
+            case R.id.action_re_import:
+                Dialogs.simpleConfirmDialog(this, R.string.title_re_import_books, R.string.prompt_re_import_books,
+                        R.string.action_re_import, R.id.action_re_import);
+                return true;
+            case R.id.action_delete:
+                Dialogs.confirmCheckBoxDialog(this, R.string.title_delete_books, R.string.prompt_delete_books,
+                        R.string.prompt_delete_from_device_too, R.string.action_delete, R.id.action_delete);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Select every book apart from the one which was imported first in each group of duplicates, then start action
+     * mode so that something can be done with them.
+     */
+    private void selectExtraCopies() {
+        if (adapter == null || books == null || !books.isValid()) return;
+
+        // Map unique IDs to adapter positions using one pass over the results.
+        Map<Long, Integer> positions = new HashMap<>(books.size());
+        for (int i = 0; i < books.size(); i++) positions.put(books.get(i).uniqueId, i);
+
+        adapter.clearSelections();
+        for (long[] group : groups) {
+            for (int i = 1; i < group.length; i++) {
+                Integer pos = positions.get(group[i]);
+                if (pos != null && !adapter.isSelected(pos)) adapter.toggleSelected(pos);
+            }
+        }
+        startActionMode();
+    }
+
+    /**
+     * Called when we wish to take some action.
+     * @param event {@link ActionEvent}.
+     */
+    @Subscribe
+    public void onActionEvent(ActionEvent event) {
+        if (adapter == null) return;
+        //noinspection unchecked
+        List<RBook> selectedItems = adapter.getSelectedRealmObjects();
+
+        switch (event.getActionId()) {
+            case R.id.action_re_import:
+                ActionHelper.reImportBooks(selectedItems);
+                break;
+            case R.id.action_delete:
+                ActionHelper.deleteBooks(realm, selectedItems, (boolean) event.getData());
+                // Books which no longer have any duplicates shouldn't be shown anymore.
+                loadDuplicates();
+                break;
+        }
+        if (actionMode != null) actionMode.finish();
+    }
+
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        switch (requestCode) {
+            case C.RC_TAG_ACTIVITY:
+                // Came back from TaggingActivity.
+                if (resultCode == Activity.RESULT_OK) {
+                    // We've changed the tags on some books.
+                    if (actionMode != null) actionMode.finish();
+                }
+                break;
+        }
+    }
+
+    /**
+     * Called when a permission has been granted.
+     * @param event {@link PermGrantedEvent}.
+     */
+    @Subscribe
+    public void onPermGrantedEvent(PermGrantedEvent event) {
+        if (event.getActionId() == R.id.action_execute_deferred) {
+            ActionHelper.doDeferredAction();
+            loadDuplicates();
+        }
+    }
+
+    /**
+     * Starts action mode (if it hasn't been already).
+     */
+    private void startActionMode() {
+        if (actionMode == null) actionMode = startSupportActionMode(this);
+    }
+
+    /**
+     * Called when one of the cards is clicked.
+     * @param event {@link BookCardClickEvent}.
+     */
+    @Subscribe
+    public void onCardClicked(BookCardClickEvent event) {
+        if (adapter == null) return;
+        if (actionMode != null) {
+            if (event.getType() == BookCardClickEvent.Type.LONG) adapter.extendSelectionTo(event.getAdapterPosition());
+            else adapter.toggleSelected(event.getAdapterPosition());
+            return;
+        }
+
+        // Get the associated RBook.
+        RBook book = books.where().equalTo("relPath", event.getRelPath()).findFirst();
+        // Do something based on the click type.
+        switch (event.getType()) {
+            case NORMAL:
+                // Open the book file.
+                ActionHelper.openBookUsingIntent(realm, book);
+                break;
+            case LONG:
+                // Start multi-select.
+                adapter.toggleSelected(event.getAdapterPosition());
+                startActionMode();
+                break;
+            case QUICK_TAG:
+                TaggingActivity.start(this, book);
+                break;
+        }
+    }
+
+    @NonNull
+    @Override
+    public View getSnackbarAnchorView() {
+        return coordinator;
+    }
+}
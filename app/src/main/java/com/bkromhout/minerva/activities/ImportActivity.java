@@ -3,6 +3,8 @@ package com.bkromhout.minerva.activities;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v7.widget.Toolbar;
+import android.text.Editable;
+import android.text.format.DateUtils;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
@@ -16,6 +18,7 @@ import com.bkromhout.minerva.Minerva;
 import com.bkromhout.minerva.R;
 import com.bkromhout.minerva.data.ImportLogger;
 import com.bkromhout.minerva.data.Importer;
+import com.bkromhout.minerva.data.LibraryWatcher;
 import com.bkromhout.minerva.events.PermGrantedEvent;
 import com.bkromhout.minerva.ui.SnackKiosk;
 import com.bkromhout.minerva.util.Util;
@@ -30,7 +33,8 @@ import java.util.List;
  * Activity which listens to our {@link Importer} and {@link ImportLogger} and displays the information which they
  * provide.
  * <p>
- * Provides a place to manually trigger a full import and to view current and past import logs.
+ * Provides a place to manually trigger a full import and to view current and past import logs, along with the metrics
+ * which were recorded for past imports.
  */
 public class ImportActivity extends PermCheckingActivity implements FolderChooserDialog.FolderCallback,
         Importer.ImportStateListener, ImportLogger.ImportLogListener, SnackKiosk.Snacker {
@@ -73,10 +77,14 @@ public class ImportActivity extends PermCheckingActivity implements FolderChoose
     TextView tvLastImportTime;
     @BindView(R.id.import_progress)
     ProgressBar progressBar;
+    @BindView(R.id.import_counts)
+    TextView tvCounts;
     @BindView(R.id.num_queued)
     TextView tvNumQueued;
     @BindView(R.id.lbl_log)
     TextView tvLogLabel;
+    @BindView(R.id.import_metrics)
+    TextView tvMetrics;
     @BindView(R.id.import_log_cont)
     ScrollView svLogCont;
     @BindView(R.id.import_log)
@@ -100,6 +108,26 @@ public class ImportActivity extends PermCheckingActivity implements FolderChoose
      * Whether or not a library dir needs to be chosen.
      */
     private boolean needsToChooseDir = false;
+    /**
+     * Number of files the importer has processed in the current run.
+     */
+    private int numProcessed = 0;
+    /**
+     * Number of files the importer has found to import in the current run.
+     */
+    private int numDiscovered = 0;
+    /**
+     * Whether or not the importer is still looking for files.
+     */
+    private boolean isDiscovering = false;
+    /**
+     * Number of files the importer is reading per second in the current run, or 0 if unknown.
+     */
+    private float filesPerSec = 0f;
+    /**
+     * Estimated time until the importer has read all files in the current run in milliseconds, or -1 if unknown.
+     */
+    private long etaMillis = -1;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -129,6 +157,9 @@ public class ImportActivity extends PermCheckingActivity implements FolderChoose
 
         // Set up the log type switch.
         swLogType.setOnCheckedChangeListener((v, isOn) -> setLogState(isOn ? LogState.ERRORS : LogState.FULL));
+        // Past logs are loaded a page at a time, so ask for more of them as the user scrolls down.
+        svLogCont.getViewTreeObserver().addOnScrollChangedListener(() -> loadMoreLogIfAtEnd(svLogCont));
+        svELogCont.getViewTreeObserver().addOnScrollChangedListener(() -> loadMoreLogIfAtEnd(svELogCont));
 
         // Check if the importer is already running; if it is then all we need to do is register as the listener,
         // because the fact that it's running allows us to make certain assumptions.
@@ -333,6 +364,7 @@ public class ImportActivity extends PermCheckingActivity implements FolderChoose
     public void onFolderSelection(@NonNull FolderChooserDialog dialog, @NonNull File folder) {
         String path = folder.getAbsolutePath();
         Minerva.prefs().putLibDir(path);
+        LibraryWatcher.get().update();
         needsToChooseDir = false;
         // Pretend this got called with READY.
         onImportStateChanged(Importer.State.READY);
@@ -351,6 +383,38 @@ public class ImportActivity extends PermCheckingActivity implements FolderChoose
         tvNumQueued.setText(numQueued > 0 ? Minerva.get().getString(R.string.num_queued, numQueued) : null);
     }
 
+    @Override
+    public void setNumDiscovered(int numDiscovered, boolean isDiscovering) {
+        this.numDiscovered = numDiscovered;
+        this.isDiscovering = isDiscovering;
+        updateCounts();
+    }
+
+    @Override
+    public void setProgressRate(float filesPerSec, long etaMillis) {
+        this.filesPerSec = filesPerSec;
+        this.etaMillis = etaMillis;
+        updateCounts();
+    }
+
+    /**
+     * Update the "processed / discovered" counts text, along with the rate and time remaining if we know them.
+     */
+    private void updateCounts() {
+        if (numDiscovered == 0 && !isDiscovering) {
+            tvCounts.setText(null);
+            return;
+        }
+
+        Minerva app = Minerva.get();
+        String counts = app.getString(isDiscovering ? R.string.import_counts_discovering : R.string.import_counts,
+                numProcessed, numDiscovered);
+        if (filesPerSec <= 0f) tvCounts.setText(counts);
+        else if (etaMillis < 0) tvCounts.setText(app.getString(R.string.import_rate, counts, filesPerSec));
+        else tvCounts.setText(app.getString(R.string.import_rate_eta, counts, filesPerSec,
+                DateUtils.formatElapsedTime(etaMillis / 1000)));
+    }
+
     /**
      * Make a log label string using the partial string given.
      * @param part Partial log label string.
@@ -366,9 +430,27 @@ public class ImportActivity extends PermCheckingActivity implements FolderChoose
     }
 
     @Override
-    public void setCurrLogs(String fullLog, String errorLog) {
-        tvLog.setText(fullLog);
-        tvELog.setText(errorLog != null && !errorLog.equals("null") ? errorLog : "");
+    public void appendLogPages(String fullLogPage, String errorLogPage) {
+        if (fullLogPage != null) tvLog.append(fullLogPage);
+        if (errorLogPage != null) tvELog.append(errorLogPage);
+    }
+
+    /**
+     * Have the {@link ImportLogger} send us more of the log we're showing if {@code scrollView} has been scrolled to
+     * (or near) the end.
+     * @param scrollView Log scroll view.
+     */
+    private void loadMoreLogIfAtEnd(ScrollView scrollView) {
+        View content = scrollView.getChildAt(0);
+        if (content == null || scrollView.getVisibility() != View.VISIBLE) return;
+        int distanceToEnd = content.getBottom() - (scrollView.getScrollY() + scrollView.getHeight());
+        if (distanceToEnd <= scrollView.getHeight()) ImportLogger.get().loadNextLogPage();
+    }
+
+    @Override
+    public void setCurrMetrics(String metrics) {
+        tvMetrics.setText(metrics);
+        tvMetrics.setVisibility(metrics != null ? View.VISIBLE : View.GONE);
     }
 
     @Override
@@ -390,6 +472,12 @@ public class ImportActivity extends PermCheckingActivity implements FolderChoose
                 if (needsToChooseDir) return;
                 progressBar.setIndeterminate(false);
                 progressBar.setProgress(0);
+                numProcessed = 0;
+                numDiscovered = 0;
+                isDiscovering = false;
+                filesPerSec = 0f;
+                etaMillis = -1;
+                updateCounts();
                 setHeaderState(HeaderState.READY);
                 setButtonState(ButtonState.START_IMPORT, true);
                 setRedTextState(RedTextState.NONE);
@@ -430,7 +518,7 @@ public class ImportActivity extends PermCheckingActivity implements FolderChoose
             public void onNext(String s) {
                 if (s == null) tvLog.setText("");
                 else {
-                    tvLog.append(s);
+                    appendLiveLog(tvLog, s);
                     // Scroll log down as we append lines.
                     svLogCont.post(() -> svLogCont.fullScroll(View.FOCUS_DOWN));
                 }
@@ -454,7 +542,7 @@ public class ImportActivity extends PermCheckingActivity implements FolderChoose
             public void onNext(String s) {
                 if (s == null) tvELog.setText("");
                 else {
-                    tvELog.append(s);
+                    appendLiveLog(tvELog, s);
                     // Scroll log down as we append lines.
                     svELogCont.post(() -> svELogCont.fullScroll(View.FOCUS_DOWN));
                 }
@@ -462,6 +550,24 @@ public class ImportActivity extends PermCheckingActivity implements FolderChoose
         };
     }
 
+    /**
+     * Append lines of the current log to a log view. Only the most recent {@link ImportLogger#LIVE_LOG_LINES} lines are
+     * kept, since a large import logs far more lines than a view can hold; the whole log can be viewed once it's saved.
+     * @param tvLog Log view.
+     * @param s     Lines to append.
+     */
+    private static void appendLiveLog(TextView tvLog, String s) {
+        tvLog.append(s);
+        Editable text = tvLog.getEditableText();
+        int numLines = 0;
+        for (int i = text.length() - 1; i >= 0; i--) {
+            if (text.charAt(i) == '\n' && ++numLines > ImportLogger.LIVE_LOG_LINES) {
+                text.delete(0, i + 1);
+                return;
+            }
+        }
+    }
+
     @NonNull
     @Override
     public Observer<Integer> getProgressObserver() {
@@ -477,6 +583,8 @@ public class ImportActivity extends PermCheckingActivity implements FolderChoose
             @Override
             public void onNext(Integer i) {
                 progressBar.setProgress(i);
+                numProcessed = i;
+                updateCounts();
             }
         };
     }
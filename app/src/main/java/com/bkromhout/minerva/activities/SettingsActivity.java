@@ -18,6 +18,7 @@ import com.bkromhout.minerva.Prefs;
 import com.bkromhout.minerva.R;
 import com.bkromhout.minerva.data.ActionHelper;
 import com.bkromhout.minerva.data.BackupUtils;
+import com.bkromhout.minerva.data.LibraryWatcher;
 import com.bkromhout.minerva.enums.MarkType;
 import com.bkromhout.minerva.events.PermGrantedEvent;
 import com.bkromhout.minerva.realm.RTag;
@@ -227,9 +228,13 @@ public class SettingsActivity extends PermCheckingActivity implements FolderChoo
         @Override
         public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
             if (key.equals(Prefs.LIB_DIR)) {
-                // Update the summary for the library directory.
+                // Update the summary for the library directory, and watch the new one if we're watching.
                 getPreferenceScreen().findPreference(Prefs.LIB_DIR)
                                      .setSummary(sharedPreferences.getString(key, ""));
+                LibraryWatcher.get().update();
+            } else if (key.equals(Prefs.LIB_WATCH)) {
+                // Start or stop watching the library directory.
+                LibraryWatcher.get().update();
             } else if (key.equals(Prefs.NEW_BOOK_TAG)) {
                 String value = sharedPreferences.getString(key, null);
                 // Update the summary for the new book tag.
@@ -26,7 +26,6 @@ import com.bkromhout.minerva.Minerva;
 import com.bkromhout.minerva.R;
 import com.bkromhout.minerva.adapters.TagCardAdapter;
 import com.bkromhout.minerva.data.ActionHelper;
-import com.bkromhout.minerva.data.DataUtils;
 import com.bkromhout.minerva.events.ActionEvent;
 import com.bkromhout.minerva.events.TagCardClickEvent;
 import com.bkromhout.minerva.events.UpdatePosEvent;
@@ -389,14 +388,15 @@ public class TaggingActivity extends AppCompatActivity implements SnackKiosk.Sna
         removedTagNames.addAll(getDeltaLines(Delta.TYPE.DELETE, patch.getDeltas()));
         removedTagNames.removeAll(addedTagNames);
 
-        boolean removedAny = !removedTagNames.isEmpty(), addedAny = !addedTagNames.isEmpty();
-        // Remove and add the applicable tags.
-        if (removedAny) ActionHelper.removeTagsFromBooks(realm,
-                taggingHelper.selectedBooks, DataUtils.stringListToTagList(removedTagNames, false));
-        if (addedAny) ActionHelper.addTagsToBooks(realm,
-                taggingHelper.selectedBooks, DataUtils.stringListToTagList(addedTagNames, true));
-        // If we actually removed and/or added any tags, indicate that we may need an explicit update.
-        if (removedAny || addedAny) taggingHelper.markForExplicitUpdateIfNecessary();
+        // Remove and add the applicable tags in the background. If we actually removed and/or added any tags, we may
+        // need an explicit update, but that has to wait until the changes have been committed.
+        if (!removedTagNames.isEmpty() || !addedTagNames.isEmpty()) {
+            boolean needsExplicitUpdate = taggingHelper.willRequireExplicitUpdate;
+            ActionHelper.retagBooks(taggingHelper.selectedBooks, addedTagNames, removedTagNames, () -> {
+                if (needsExplicitUpdate)
+                    EventBus.getDefault().postSticky(new UpdatePosEvent(UpdatePosEvent.ALL_POSITIONS));
+            });
+        }
 
         // Reset the TaggingHelper and finish this activity.
         taggingHelper = null;
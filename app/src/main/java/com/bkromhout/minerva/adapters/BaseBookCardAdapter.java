@@ -2,7 +2,6 @@ package com.bkromhout.minerva.adapters;
 
 import android.app.Activity;
 import android.graphics.PorterDuff;
-import android.support.v4.content.ContextCompat;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.RecyclerView;
 import android.util.Pair;
@@ -20,10 +19,13 @@ import com.bkromhout.minerva.events.BookCardClickEvent;
 import com.bkromhout.minerva.realm.RBook;
 import com.bkromhout.minerva.realm.RBookListItem;
 import com.bkromhout.minerva.ui.RippleForegroundListener;
-import com.bkromhout.minerva.ui.TagBackgroundSpan;
+import com.bkromhout.minerva.ui.TagSpanCache;
+import com.bkromhout.minerva.util.BookCover;
 import com.bkromhout.rrvl.RealmRecyclerViewAdapter;
 import com.bkromhout.rrvl.UIDModel;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import io.realm.RealmObject;
 import io.realm.RealmResults;
 import org.greenrobot.eventbus.EventBus;
@@ -209,9 +211,9 @@ public abstract class BaseBookCardAdapter<T extends RealmObject & UIDModel, VH e
         // Fill in data.
         resolvedVH.tvDesc.setText(DataUtils.stripHtmlTags(book.desc)); // Strip HTML tags since we have limited space.
         resolvedVH.rbRating.setRating(book.rating);
-        // Create a spannable string for the tag textview.
-        resolvedVH.tvTags.setText(TagBackgroundSpan.getSpannedTagString(book, resolvedVH.tvTags.getMaxLines()),
-                TextView.BufferType.SPANNABLE);
+        // Get a spanned string for the tag textview. It's cached, so make sure the textview doesn't copy it.
+        resolvedVH.tvTags.setText(TagSpanCache.get().getSpannedTagString(book, resolvedVH.tvTags.getMaxLines()),
+                TextView.BufferType.NORMAL);
     }
 
     /**
@@ -220,13 +222,20 @@ public abstract class BaseBookCardAdapter<T extends RealmObject & UIDModel, VH e
      * @param book       Book to populate item with.
      */
     private void bindNormalBookCard(NormalCardVH resolvedVH, RBook book) {
-        // Set cover image.
+        // Set cover image, using the thumbnail so that we aren't decoding full-size images while scrolling. Thumbnails
+        // don't need the color depth that full-size covers do, so save memory by decoding them as RGB_565.
         if (book.hasCoverImage) Glide.with(activity)
-                                     .load(DataUtils.getCoverImageFile(book.relPath))
+                                     .load(BookCover.thumbOf(book))
+                                     .asBitmap()
+                                     .format(DecodeFormat.PREFER_RGB_565)
+                                     .diskCacheStrategy(DiskCacheStrategy.NONE)
                                      .dontTransform()
                                      .into(resolvedVH.ivCoverImage);
-        else resolvedVH.ivCoverImage.setImageDrawable(
-                ContextCompat.getDrawable(Minerva.get(), R.drawable.default_cover));
+        else {
+            // Make sure a pending load for a book this view was bound to before doesn't replace the default cover.
+            Glide.clear(resolvedVH.ivCoverImage);
+            resolvedVH.ivCoverImage.setImageBitmap(DataUtils.getDefaultCoverImage());
+        }
     }
 
     /**
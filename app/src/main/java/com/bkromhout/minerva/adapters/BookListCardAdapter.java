@@ -19,12 +19,12 @@ import com.bkromhout.minerva.C;
 import com.bkromhout.minerva.Minerva;
 import com.bkromhout.minerva.R;
 import com.bkromhout.minerva.activities.BookListActivity;
+import com.bkromhout.minerva.data.SmartListCache;
 import com.bkromhout.minerva.events.BookListCardClickEvent;
 import com.bkromhout.minerva.realm.RBookList;
 import com.bkromhout.minerva.ui.RippleForegroundListener;
 import com.bkromhout.minerva.ui.UiUtils;
 import com.bkromhout.rrvl.RealmRecyclerViewAdapter;
-import com.bkromhout.ruqus.RealmUserQuery;
 import io.realm.Realm;
 import io.realm.RealmResults;
 import org.greenrobot.eventbus.EventBus;
@@ -178,8 +178,7 @@ public class BookListCardAdapter extends RealmRecyclerViewAdapter<RBookList, Rec
         // Set list count.
         int count = -1;
         if (!bookList.isSmartList) count = bookList.listItems.size();
-        else if (bookList.smartListRuqString != null && !bookList.smartListRuqString.isEmpty())
-            count = new RealmUserQuery(bookList.smartListRuqString).execute(realm).size();
+        else count = SmartListCache.get().getCount(realm, bookList);
 
         vh.tvListCount.setText(count == -1 ? activity.getString(R.string.not_set_up) : // "Not Set Up" if -1.
                 (count == 0 ? activity.getString(R.string.no_books) : // "No Books" if 0.
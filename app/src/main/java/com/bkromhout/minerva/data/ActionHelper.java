@@ -22,6 +22,7 @@ import com.bkromhout.ruqus.RealmUserQuery;
 import io.realm.Realm;
 import io.realm.RealmResults;
 import org.greenrobot.eventbus.EventBus;
+import timber.log.Timber;
 
 import java.io.File;
 import java.util.*;
@@ -104,6 +105,7 @@ public class ActionHelper {
         realm.executeTransaction(tRealm -> {
             for (RBook book : books) book.rating = rating;
         });
+        SmartListCache.get().onChanged(SmartListCache.Change.BOOK_RATINGS);
     }
 
     /**
@@ -116,34 +118,13 @@ public class ActionHelper {
         if (books == null || tags == null) throw new IllegalArgumentException("No nulls allowed.");
         if (books.isEmpty() || tags.isEmpty()) return;
 
-        // Get names of new/updated book tags.
-        String newBookTagName = Minerva.prefs().getNewBookTag(null);
-        String updatedBookTagName = Minerva.prefs().getUpdatedBookTag(null);
-
         // Sometimes this method is called when we're already in a transaction. We can't nest them.
         boolean isInXactAlready = realm.isInTransaction();
         if (!isInXactAlready) realm.beginTransaction();
-
-        // Loop through books and add tags to them.
-        for (int i = books.size() - 1; i >= 0; i--) {
-            RBook book = books.get(i);
-            for (RTag tag : tags) {
-                // If the book doesn't already have the tag,
-                if (!book.tags.contains(tag)) {
-                    // add the tag to the book,
-                    book.tags.add(tag);
-                    // and add the book to the tag.
-                    tag.taggedBooks.add(book);
-                }
-                // Make sure that we set new/updated state to true if those tags were added (and it wasn't already).
-                if (newBookTagName != null && newBookTagName.equals(tag.name) && !book.isNew)
-                    book.isNew = true;
-                if (updatedBookTagName != null && updatedBookTagName.equals(tag.name) && !book.isUpdated)
-                    book.isUpdated = true;
-            }
-        }
+        BulkTagger.addTags(realm, books, tags);
         // Again, if there's an outer transaction already ongoing, don't finish it here.
         if (!isInXactAlready) realm.commitTransaction();
+        SmartListCache.get().onChanged(SmartListCache.Change.BOOK_TAGS);
     }
 
     /**
@@ -156,26 +137,70 @@ public class ActionHelper {
         if (books == null || tags == null) throw new IllegalArgumentException("No nulls allowed.");
         if (books.isEmpty() || tags.isEmpty()) return;
 
-        // Get names of new/updated book tags.
-        String newBookTagName = Minerva.prefs().getNewBookTag(null);
-        String updatedBookTagName = Minerva.prefs().getUpdatedBookTag(null);
-
         realm.beginTransaction();
-        // Loop through books and remove tags from them.
-        for (int i = books.size() - 1; i >= 0; i--) {
-            RBook book = books.get(i);
-            for (RTag tag : tags) {
-                // If the book has the tag, remove it,
-                if (book.tags.remove(tag)) {
-                    // and remove the book from the tag.
-                    tag.taggedBooks.remove(book);
-                }
-                // Make sure that we new/updated state if we had those tags removed.
-                if (newBookTagName != null && newBookTagName.equals(tag.name)) book.isNew = false;
-                if (updatedBookTagName != null && updatedBookTagName.equals(tag.name)) book.isUpdated = false;
-            }
-        }
+        BulkTagger.removeTags(realm, books, tags);
         realm.commitTransaction();
+        SmartListCache.get().onChanged(SmartListCache.Change.BOOK_TAGS);
+    }
+
+    /**
+     * Adds and removes tags on the {@code books} in a single transaction on a background thread, so that tagging many
+     * books doesn't block the UI. Tags which are to be added but don't exist yet will be created.
+     * @param books           {@link RBook}s to change tags on.
+     * @param addedTagNames   Names of tags to add.
+     * @param removedTagNames Names of tags to remove.
+     * @param onSuccess       Called on the current thread once the tags have been changed. May be null.
+     */
+    public static void retagBooks(Collection<RBook> books, List<String> addedTagNames, List<String> removedTagNames,
+                                  Realm.Transaction.OnSuccess onSuccess) {
+        if (books == null || addedTagNames == null || removedTagNames == null)
+            throw new IllegalArgumentException("No nulls allowed.");
+        if (books.isEmpty() || (addedTagNames.isEmpty() && removedTagNames.isEmpty())) return;
+
+        // Managed objects can't be passed between threads, so pass the books' unique IDs instead.
+        Set<Long> ids = BulkTagger.idsOf(books);
+        Long[] bookIds = ids.toArray(new Long[ids.size()]);
+        List<String> toAdd = new ArrayList<>(addedTagNames), toRemove = new ArrayList<>(removedTagNames);
+
+        // Use our own Realm instance so that the callbacks are still delivered if the caller's is closed first.
+        Realm realm = Realm.getDefaultInstance();
+        realm.executeTransactionAsync(
+                bgRealm -> BulkTagger.retag(bgRealm, bookIds, toAdd, toRemove),
+                () -> {
+                    realm.close();
+                    SmartListCache.get().onChanged(SmartListCache.Change.BOOK_TAGS);
+                    if (onSuccess != null) onSuccess.onSuccess();
+                },
+                error -> {
+                    realm.close();
+                    Timber.e(error, "Failed to change tags on %d books.", bookIds.length);
+                });
+    }
+
+    /**
+     * Execute {@code transaction} asynchronously, and tell the {@link SmartListCache} about the {@code changes} it
+     * makes once it has been committed. Reporting them any earlier would let the cache recompute entries from the old
+     * data and keep them.
+     * <p>
+     * Must be called from a thread with a Looper.
+     * @param realm       Instance of Realm whose configuration to use.
+     * @param transaction Transaction to execute. Must not capture managed objects.
+     * @param changes     Changes which {@code transaction} makes.
+     */
+    public static void executeTransactionAsync(Realm realm, Realm.Transaction transaction,
+                                               SmartListCache.Change... changes) {
+        // Use our own Realm instance so that the callbacks are still delivered if the caller's is closed first.
+        Realm ownRealm = Realm.getInstance(realm.getConfiguration());
+        ownRealm.executeTransactionAsync(
+                transaction,
+                () -> {
+                    ownRealm.close();
+                    SmartListCache.get().onChanged(changes);
+                },
+                error -> {
+                    ownRealm.close();
+                    Timber.e(error, "Failed to execute transaction.");
+                });
     }
 
     /**
@@ -235,6 +260,7 @@ public class ActionHelper {
         }
 
         realm.commitTransaction();
+        SmartListCache.get().onChanged(SmartListCache.Change.BOOK_TAGS);
     }
 
     /**
@@ -264,6 +290,7 @@ public class ActionHelper {
             else if (markType == MarkType.UPDATED) book.isUpdated = marked;
         }
         realm.commitTransaction();
+        SmartListCache.get().onChanged(SmartListCache.Change.BOOK_MARKS);
     }
 
     /**
@@ -314,6 +341,7 @@ public class ActionHelper {
                 book.lastReadDate = Calendar.getInstance().getTime();
                 book.isInRecents = true;
             });
+            SmartListCache.get().onChanged(SmartListCache.Change.BOOK_RECENTS);
             // If we have a position to update, fire an ActionEvent (NOT UpdatePosEvent!!).
             if (posToUpdate != -1) EventBus.getDefault().post(new ActionEvent(R.id.action_read, null, posToUpdate));
         } catch (ActivityNotFoundException e) {
@@ -357,6 +385,7 @@ public class ActionHelper {
         }
 
         List<String> relPaths = new ArrayList<>(books.size());
+        List<Long> uniqueIds = new ArrayList<>(books.size());
         // Delete what we created.
         realm.executeTransaction(tRealm -> {
             for (RBook book : books) {
@@ -371,9 +400,16 @@ public class ActionHelper {
                 // Be sure to delete the cover file, if we have one.
                 if (book.hasCoverImage) DataUtils.deleteCoverImage(relPath);
                 // Delete the actual RBook from Realm.
+                uniqueIds.add(book.uniqueId);
                 book.deleteFromRealm();
             }
         });
+        // Now that the books are really gone, forget about their hashes and text.
+        for (long uniqueId : uniqueIds) {
+            DuplicateIndex.get().onBookDeleted(uniqueId);
+            SearchIndex.get().onBookDeleted(uniqueId);
+        }
+        SmartListCache.get().onChanged(SmartListCache.Change.BOOKS_ADDED_OR_REMOVED);
 
         // If the user wants us to, also try to delete the corresponding files from the device.
         if (deleteRealFiles) {
@@ -398,6 +434,7 @@ public class ActionHelper {
         if (listName == null || listName.isEmpty())
             throw new IllegalArgumentException("listName must be non-null and non-empty.");
         realm.executeTransaction(tRealm -> tRealm.copyToRealm(new RBookList(listName)));
+        SmartListCache.get().onChanged(SmartListCache.Change.LISTS_ADDED_OR_REMOVED);
     }
 
     /**
@@ -413,6 +450,7 @@ public class ActionHelper {
         realm.beginTransaction();
         RBookList newSmartList = realm.copyToRealm(new RBookList(listName, realmUserQuery));
         realm.commitTransaction();
+        SmartListCache.get().onChanged(SmartListCache.Change.LISTS_ADDED_OR_REMOVED);
         return newSmartList;
     }
 
@@ -427,6 +465,7 @@ public class ActionHelper {
         if (list == null) return;
         if (!list.isSmartList) throw new IllegalStateException("list is not a smart list.");
         realm.executeTransaction(tRealm -> list.smartListRuqString = ruqString);
+        SmartListCache.get().evict(list.uniqueId);
     }
 
     /**
@@ -436,6 +475,7 @@ public class ActionHelper {
      */
     public static void deleteLists(Realm realm, Collection<RBookList> lists) {
         if (lists != null && !lists.isEmpty()) {
+            for (RBookList list : lists) SmartListCache.get().evict(list.uniqueId);
             realm.executeTransaction(tRealm -> {
                 for (RBookList list : lists) {
                     // First, delete the list items (unless this is a smart list).
@@ -444,6 +484,8 @@ public class ActionHelper {
                     list.deleteFromRealm();
                 }
             });
+            SmartListCache.get().onChanged(SmartListCache.Change.LISTS_ADDED_OR_REMOVED,
+                    SmartListCache.Change.LIST_ITEMS);
         }
     }
 
@@ -460,6 +502,7 @@ public class ActionHelper {
             list.name = newName;
             list.sortName = newName.toLowerCase();
         });
+        SmartListCache.get().onChanged(SmartListCache.Change.LIST_NAMES);
     }
 
     /**
@@ -481,6 +524,7 @@ public class ActionHelper {
                 nextFirstPos -= C.LIST_ITEM_GAP;
             }
         });
+        SmartListCache.get().onChanged(SmartListCache.Change.LIST_ITEM_POSITIONS);
     }
 
     /**
@@ -504,6 +548,7 @@ public class ActionHelper {
             // Set bookList's nextPos.
             bookList.nextPos = nextLastPos;
         });
+        SmartListCache.get().onChanged(SmartListCache.Change.LIST_ITEM_POSITIONS);
     }
 
     /*
@@ -517,6 +562,7 @@ public class ActionHelper {
      */
     public static void createNewTag(Realm realm, String tagName) {
         realm.executeTransaction(tRealm -> tRealm.copyToRealm(new RTag(tagName)));
+        SmartListCache.get().onChanged(SmartListCache.Change.TAGS_ADDED_OR_REMOVED);
     }
 
     /**
@@ -527,6 +573,7 @@ public class ActionHelper {
      */
     public static void setTagTextColor(Realm realm, RTag tag, @ColorInt int textColor) {
         realm.executeTransaction(tRealm -> tag.textColor = textColor);
+        SmartListCache.get().onChanged(SmartListCache.Change.TAG_COLORS);
     }
 
     /**
@@ -537,6 +584,7 @@ public class ActionHelper {
      */
     public static void setTagBgColor(Realm realm, RTag tag, @ColorInt int bgColor) {
         realm.executeTransaction(tRealm -> tag.bgColor = bgColor);
+        SmartListCache.get().onChanged(SmartListCache.Change.TAG_COLORS);
     }
 
     /**
@@ -552,6 +600,7 @@ public class ActionHelper {
             tag.name = newName;
             tag.sortName = newName.toLowerCase();
         });
+        SmartListCache.get().onChanged(SmartListCache.Change.TAG_NAMES);
 
         // Now make sure that we swap the old name for the new one in the old/new lists.
         TaggingHelper th = TaggingHelper.get();
@@ -574,6 +623,7 @@ public class ActionHelper {
         // Delete the tag from Realm.
         String tagName = tag.name;
         realm.executeTransaction(tRealm -> tag.deleteFromRealm());
+        SmartListCache.get().onChanged(SmartListCache.Change.BOOK_TAGS);
 
         // If this was one of the new/updated book tags, be sure that we null that preference's value.
         String prefVal = Minerva.prefs().getNewBookTag(null);
@@ -180,7 +180,10 @@ public class BackupUtils {
         if (!restoreDb.renameTo(new File(filesDir, Minerva.REALM_FILE_NAME))) {
             Timber.e("Problem while renaming restore.realm to minerva.realm.");
             rollBackFromDBRestore();
-        } else dbRestoreState = DBRestoreState.RENAMED;
+        } else {
+            dbRestoreState = DBRestoreState.RENAMED;
+            clearBookIndexes();
+        }
     }
 
     /**
@@ -228,11 +231,24 @@ public class BackupUtils {
                 if (restoreDb.exists()) restoreDb.delete();
         }
 
+        // The books in the database may have changed more than once by now, so don't trust the indexes of them.
+        clearBookIndexes();
+
         // Notify user of failure to restore database.
         SnackKiosk.snack(R.string.sb_db_restore_fail, Snackbar.LENGTH_SHORT);
         dbRestoreState = DBRestoreState.NOT;
     }
 
+    /**
+     * Clear the in-memory indexes and caches of books, since they describe the books in the database we've just
+     * replaced. They'll be rebuilt from the current database the next time they're needed.
+     */
+    private static void clearBookIndexes() {
+        DuplicateIndex.get().clear();
+        SearchIndex.get().clear();
+        SmartListCache.get().invalidateAll();
+    }
+
     /**
      * Removes the temporary copy of the previously-present database created during the restore process.
      */
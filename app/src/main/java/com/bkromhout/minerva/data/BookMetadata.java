@@ -0,0 +1,104 @@
+package com.bkromhout.minerva.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * The data read from a book file which we store in an {@link com.bkromhout.minerva.realm.RBook}.
+ * <p>
+ * Implementations must return the same values for the same book file, regardless of how they read it.
+ */
+public interface BookMetadata {
+    /**
+     * Get the book's first title.
+     * @return Title, or {@code null} if the book doesn't have a non-empty title.
+     */
+    String getTitle();
+
+    /**
+     * Get the book's first non-empty author.
+     * @return Author string as "FirstName LastName", or {@code null} if the book doesn't have a non-empty author.
+     * @see DataUtils#getFirstAuthor(nl.siegmann.epublib.domain.Book)
+     */
+    String getFirstAuthor();
+
+    /**
+     * Get the book's first non-empty description.
+     * @return Description, or {@code null}.
+     */
+    String getFirstDesc();
+
+    /**
+     * Get the book's subjects.
+     * @return List of subjects, might be empty.
+     */
+    List<String> getSubjects();
+
+    /**
+     * Get the book's types.
+     * @return List of types, might be empty.
+     */
+    List<String> getTypes();
+
+    /**
+     * Get the book's format.
+     * @return Format, or {@code null}.
+     */
+    String getFormat();
+
+    /**
+     * Get the book's languages.
+     * @return List of languages, might be empty.
+     */
+    List<String> getLanguages();
+
+    /**
+     * Get the book's first non-empty publisher.
+     * @return Publisher, or {@code null}.
+     */
+    String getFirstPublisher();
+
+    /**
+     * Get the book's identifier, as a string of the form "scheme:value" (or just "value" if it has no scheme).
+     * @return Book identifier, or {@code null} if the book has no identifiers.
+     */
+    String getBookId();
+
+    /**
+     * Get the book's first non-empty creation date.
+     * @return Creation date string, or {@code null}.
+     */
+    String getCreateDate();
+
+    /**
+     * Get the book's first non-empty publication date.
+     * @return Publication date string, or {@code null}.
+     */
+    String getPubDate();
+
+    /**
+     * Get the book's first non-empty modification date.
+     * @return Modification date string, or {@code null}.
+     */
+    String getModDate();
+
+    /**
+     * Get the number of unique resources referenced by the book's table of contents.
+     * @return Number of chapters.
+     */
+    int getNumChaps();
+
+    /**
+     * Check whether the book has a cover image.
+     * @return True if it does, otherwise false.
+     */
+    boolean hasCoverImage();
+
+    /**
+     * Open the book's cover image. The caller is responsible for closing the stream.
+     * @return Input stream of the cover image, or {@code null} if {@link #hasCoverImage()} returns {@code false}.
+     * @throws IOException If the cover image can't be read.
+     */
+    InputStream openCoverImage() throws IOException;
+}
@@ -0,0 +1,152 @@
+package com.bkromhout.minerva.data;
+
+import com.bkromhout.minerva.Minerva;
+import com.bkromhout.minerva.realm.RBook;
+import com.bkromhout.minerva.realm.RTag;
+import io.realm.Realm;
+import io.realm.RealmList;
+
+import java.util.*;
+
+/**
+ * Adds and removes tags on many books at once.
+ * <p>
+ * Checking {@code book.tags.contains(tag)} and calling {@code tag.taggedBooks.remove(book)} for every book/tag pair are
+ * both linear scans of a {@link RealmList}, which makes tagging thousands of books very slow. Instead, we work out
+ * which books need to change using sets of unique IDs, so each tag's book list only has to be read once.
+ * <p>
+ * Tagging a book with the tag associated with a {@link com.bkromhout.minerva.enums.MarkType} also sets that mark on the
+ * book, and untagging it clears the mark, just like it always has.
+ * <p>
+ * IMPORTANT: All methods here must be called from within a Realm transaction.
+ */
+final class BulkTagger {
+    // No initialization.
+    private BulkTagger() {
+    }
+
+    /**
+     * Add {@code tags} to {@code books}.
+     * @param realm Instance of Realm to use.
+     * @param books Books to add tags to. May be live results which change as the books are tagged.
+     * @param tags  Tags to add.
+     */
+    static void addTags(Realm realm, List<RBook> books, Collection<RTag> tags) {
+        checkInTransaction(realm);
+        if (books.isEmpty() || tags.isEmpty()) return;
+        List<RBook> snapshot = snapshot(books);
+        String newBookTagName = Minerva.prefs().getNewBookTag(null);
+        String updatedBookTagName = Minerva.prefs().getUpdatedBookTag(null);
+
+        for (RTag tag : tags) {
+            Set<Long> taggedIds = idsOf(tag.taggedBooks);
+            boolean isNewBookTag = tag.name.equals(newBookTagName);
+            boolean isUpdatedBookTag = tag.name.equals(updatedBookTagName);
+
+            for (RBook book : snapshot) {
+                // If the book doesn't already have the tag, add the tag to the book and the book to the tag.
+                if (taggedIds.add(book.uniqueId)) {
+                    book.tags.add(tag);
+                    tag.taggedBooks.add(book);
+                }
+                // Make sure that we set new/updated state to true if those tags were added (and it wasn't already).
+                if (isNewBookTag && !book.isNew) book.isNew = true;
+                if (isUpdatedBookTag && !book.isUpdated) book.isUpdated = true;
+            }
+        }
+    }
+
+    /**
+     * Remove {@code tags} from {@code books}.
+     * @param realm Instance of Realm to use.
+     * @param books Books to remove tags from. May be live results which change as the books are untagged.
+     * @param tags  Tags to remove.
+     */
+    static void removeTags(Realm realm, List<RBook> books, Collection<RTag> tags) {
+        checkInTransaction(realm);
+        if (books.isEmpty() || tags.isEmpty()) return;
+        List<RBook> snapshot = snapshot(books);
+        Set<Long> bookIds = idsOf(snapshot);
+        String newBookTagName = Minerva.prefs().getNewBookTag(null);
+        String updatedBookTagName = Minerva.prefs().getUpdatedBookTag(null);
+
+        for (RTag tag : tags) {
+            boolean isNewBookTag = tag.name.equals(newBookTagName);
+            boolean isUpdatedBookTag = tag.name.equals(updatedBookTagName);
+
+            // Books only have a few tags each, so removing the tag from each book is cheap.
+            for (RBook book : snapshot) {
+                book.tags.remove(tag);
+                // Make sure that we clear new/updated state if we had those tags removed.
+                if (isNewBookTag) book.isNew = false;
+                if (isUpdatedBookTag) book.isUpdated = false;
+            }
+
+            // A tag may have thousands of books though, so remove them all in a single backwards pass.
+            RealmList<RBook> taggedBooks = tag.taggedBooks;
+            for (int i = taggedBooks.size() - 1; i >= 0; i--)
+                if (bookIds.contains(taggedBooks.get(i).uniqueId)) taggedBooks.remove(i);
+        }
+    }
+
+    /**
+     * Add and remove tags by name on the books with the given unique IDs. Tags which are to be added but don't exist
+     * yet will be created. Tags are removed before they're added, so a tag in both lists ends up being added.
+     * @param realm           Instance of Realm to use.
+     * @param bookIds         Unique IDs of books to change tags on.
+     * @param addedTagNames   Names of tags to add.
+     * @param removedTagNames Names of tags to remove.
+     */
+    static void retag(Realm realm, Long[] bookIds, Collection<String> addedTagNames,
+                      Collection<String> removedTagNames) {
+        checkInTransaction(realm);
+        // Realm doesn't allow "in" queries with nothing in them.
+        if (bookIds.length == 0) return;
+        List<RBook> books = realm.where(RBook.class).in("uniqueId", bookIds).findAll();
+
+        List<RTag> removedTags = new ArrayList<>(removedTagNames.size());
+        for (String name : removedTagNames) {
+            RTag tag = realm.where(RTag.class).equalTo("name", name).findFirst();
+            if (tag != null) removedTags.add(tag);
+        }
+        removeTags(realm, books, removedTags);
+
+        List<RTag> addedTags = new ArrayList<>(addedTagNames.size());
+        for (String name : addedTagNames) {
+            RTag tag = realm.where(RTag.class).equalTo("name", name).findFirst();
+            addedTags.add(tag != null ? tag : realm.copyToRealm(new RTag(name)));
+        }
+        addTags(realm, books, addedTags);
+    }
+
+    /**
+     * Get the unique IDs of some books.
+     * @param books Books.
+     * @return Set of unique IDs.
+     */
+    static Set<Long> idsOf(Collection<RBook> books) {
+        Set<Long> ids = new HashSet<>(Math.max(16, books.size() * 2));
+        for (RBook book : books) ids.add(book.uniqueId);
+        return ids;
+    }
+
+    /**
+     * Copy {@code books} into a plain list, so that changes we make to the books can't change what we iterate over.
+     * @param books Books, which may be live results.
+     * @return Copy of {@code books}.
+     */
+    private static List<RBook> snapshot(List<RBook> books) {
+        List<RBook> snapshot = new ArrayList<>(books.size());
+        for (int i = books.size() - 1; i >= 0; i--) snapshot.add(books.get(i));
+        return snapshot;
+    }
+
+    /**
+     * Make sure that {@code realm} is in a transaction.
+     * @param realm Instance of Realm.
+     */
+    private static void checkInTransaction(Realm realm) {
+        if (!realm.isInTransaction())
+            throw new IllegalStateException("You must call this method from within a Realm transaction.");
+    }
+}
@@ -0,0 +1,104 @@
+package com.bkromhout.minerva.data;
+
+import android.graphics.*;
+import timber.log.Timber;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Creates small, pre-cropped versions of cover images, so that book cards don't have to decode (often multi-megapixel)
+ * original cover images just to show them at a fraction of their size.
+ * <p>
+ * Thumbnails are cropped the same way the cards' {@code centerCrop} image views would crop the originals, and are never
+ * larger than the size requested.
+ */
+final class CoverThumbnailer {
+    /**
+     * Quality used to encode thumbnails as WebP images.
+     */
+    private static final int QUALITY = 80;
+
+    // No initialization.
+    private CoverThumbnailer() {
+    }
+
+    /**
+     * Create a thumbnail of an image.
+     * @param src    Image file to create thumbnail of.
+     * @param dest   File to save thumbnail to. Will be overwritten if it exists.
+     * @param width  Width of the thumbnail, in pixels.
+     * @param height Height of the thumbnail, in pixels.
+     * @return True if the thumbnail was created, otherwise false.
+     */
+    static boolean makeThumbnail(File src, File dest, int width, int height) {
+        // Read only the image's size first.
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(src.getPath(), opts);
+        if (opts.outWidth <= 0 || opts.outHeight <= 0) return false;
+
+        // Decode the image at the smallest power-of-two scale which is still at least as large as the thumbnail.
+        opts.inJustDecodeBounds = false;
+        opts.inSampleSize = calculateInSampleSize(opts.outWidth, opts.outHeight, width, height);
+        Bitmap decoded = BitmapFactory.decodeFile(src.getPath(), opts);
+        if (decoded == null) return false;
+
+        Bitmap thumb = null;
+        try {
+            // Crop and scale the decoded image down to the thumbnail's size.
+            int[] bounds = calculateCrop(decoded.getWidth(), decoded.getHeight(), width, height);
+            Rect crop = new Rect(bounds[0], bounds[1], bounds[2], bounds[3]);
+            float scale = Math.min(1f, (float) width / crop.width());
+            thumb = Bitmap.createBitmap(Math.max(1, Math.round(crop.width() * scale)),
+                    Math.max(1, Math.round(crop.height() * scale)), Bitmap.Config.ARGB_8888);
+            new Canvas(thumb).drawBitmap(decoded, crop, new Rect(0, 0, thumb.getWidth(), thumb.getHeight()),
+                    new Paint(Paint.FILTER_BITMAP_FLAG));
+
+            try (FileOutputStream out = new FileOutputStream(dest)) {
+                return thumb.compress(Bitmap.CompressFormat.WEBP, QUALITY, out);
+            }
+        } catch (IOException e) {
+            Timber.e(e, "Failed to save cover thumbnail %s.", dest);
+            return false;
+        } finally {
+            decoded.recycle();
+            if (thumb != null) thumb.recycle();
+        }
+    }
+
+    /**
+     * Calculate the largest power-of-two sample size which can be used to decode an image while keeping it at least as
+     * large as a thumbnail in both dimensions.
+     * @param srcWidth  Width of the image.
+     * @param srcHeight Height of the image.
+     * @param width     Width of the thumbnail.
+     * @param height    Height of the thumbnail.
+     * @return Sample size, at least 1.
+     */
+    static int calculateInSampleSize(int srcWidth, int srcHeight, int width, int height) {
+        int sampleSize = 1;
+        while (srcWidth / (sampleSize * 2) >= width && srcHeight / (sampleSize * 2) >= height) sampleSize *= 2;
+        return sampleSize;
+    }
+
+    /**
+     * Calculate the centered part of an image which has the same aspect ratio as a thumbnail.
+     * @param srcWidth  Width of the image.
+     * @param srcHeight Height of the image.
+     * @param width     Width of the thumbnail.
+     * @param height    Height of the thumbnail.
+     * @return Bounds of the part of the image to keep, as {@code {left, top, right, bottom}}.
+     */
+    static int[] calculateCrop(int srcWidth, int srcHeight, int width, int height) {
+        int cropWidth = srcWidth, cropHeight = srcHeight;
+        // Compare aspect ratios without dividing, then trim whichever dimension is too long.
+        if ((long) srcWidth * height > (long) width * srcHeight)
+            cropWidth = Math.max(1, (int) ((long) srcHeight * width / height));
+        else cropHeight = Math.max(1, (int) ((long) srcWidth * height / width));
+
+        int left = (srcWidth - cropWidth) / 2, top = (srcHeight - cropHeight) / 2;
+        return new int[] {left, top, left + cropWidth, top + cropHeight};
+    }
+}
@@ -1,5 +1,6 @@
 package com.bkromhout.minerva.data;
 
+import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.drawable.Drawable;
@@ -8,20 +9,17 @@ import android.text.Html;
 import android.text.Spanned;
 import com.bkromhout.minerva.Minerva;
 import com.bkromhout.minerva.R;
-import com.bkromhout.minerva.enums.ModelType;
 import com.bkromhout.minerva.realm.RBook;
 import com.bkromhout.minerva.realm.RBookList;
 import com.bkromhout.minerva.realm.RBookListItem;
 import com.bkromhout.minerva.realm.RTag;
 import com.bkromhout.minerva.util.Util;
-import com.bkromhout.ruqus.RealmUserQuery;
 import io.realm.Realm;
 import io.realm.RealmResults;
 import nl.siegmann.epublib.domain.Author;
 import nl.siegmann.epublib.domain.Book;
 import nl.siegmann.epublib.domain.Date;
 import nl.siegmann.epublib.domain.DcmesElement;
-import nl.siegmann.epublib.epub.EpubReader;
 import rx.Observable;
 
 import java.io.*;
@@ -38,18 +36,39 @@ public class DataUtils {
      * Extension to append to cover image files.
      */
     private static final String COVER_EXT = ".cover";
+    /**
+     * Extension to append to cover thumbnail files.
+     */
+    private static final String COVER_THUMB_EXT = ".thumb";
+    /**
+     * Name of the folder which import log files are saved in.
+     */
+    private static final String LOG_DIR = "import_logs";
+    /**
+     * Extension to append to import log files.
+     */
+    private static final String LOG_EXT = ".log.gz";
+
+    /**
+     * Default cover image, drawn the first time it's needed by {@link #getDefaultCoverImage()}.
+     */
+    private static Bitmap defaultCoverImage;
 
     /**
      * Get a {@link SuperBook} object from a file object.
-     * @param file The file to try and read as an ePub
+     * <p>
+     * Only the metadata, table of contents, and cover image are read from the file (see {@link EpubMetadataReader}),
+     * so memory use doesn't grow with the size of the book's content.
+     * @param file    The file to try and read as an ePub
+     * @param relPath The path of {@code file}, relative to the library directory.
+     * @param hash    The hash of {@code file}.
      * @return Book object, or {@code null} if there were issues.
      */
-    static SuperBook readEpubFile(File file, String relPath) {
+    static SuperBook readEpubFile(File file, String relPath, byte[] hash) {
         if (file == null || !file.exists() || !file.isFile()) return null;
 
-        try (HashingInputStream in = new HashingInputStream(new FileInputStream(file))) {
-            Book book = new EpubReader().readEpub(in);
-            return new SuperBook(book, relPath, in.hash().asBytes());
+        try {
+            return new SuperBook(EpubMetadataReader.read(file), relPath, hash);
         } catch (IOException e) {
             e.printStackTrace();
             return null;
@@ -186,6 +205,17 @@ public class DataUtils {
             }
         } catch (IOException e) {
             e.printStackTrace();
+            return;
+        }
+
+        // Make a thumbnail for book cards to use, sized to fit the normal card's cover image view exactly. If we can't,
+        // make sure we don't leave an old one lying around.
+        File thumbFile = new File(Minerva.get().getFilesDir(), relPath + COVER_THUMB_EXT);
+        Resources res = Minerva.get().getResources();
+        if (!CoverThumbnailer.makeThumbnail(coverFile, thumbFile, res.getDimensionPixelSize(R.dimen.large_cover_width),
+                res.getDimensionPixelSize(R.dimen.large_cover_height))) {
+            //noinspection ResultOfMethodCallIgnored
+            thumbFile.delete();
         }
     }
 
@@ -194,6 +224,10 @@ public class DataUtils {
      * @param relPath Relative path which was used to create cover file path.
      */
     public static void deleteCoverImage(String relPath) {
+        File thumbFile = Util.getFileFromRelPath(Minerva.get().getFilesDir(), relPath + COVER_THUMB_EXT);
+        //noinspection ResultOfMethodCallIgnored
+        if (thumbFile != null && thumbFile.exists()) thumbFile.delete();
+
         File coverFile = Util.getFileFromRelPath(Minerva.get().getFilesDir(), relPath + COVER_EXT);
         if (coverFile == null || !coverFile.exists()) return;
         //noinspection ResultOfMethodCallIgnored
@@ -209,19 +243,72 @@ public class DataUtils {
         return Util.getFileFromRelPath(Minerva.get().getFilesDir(), relPath + COVER_EXT);
     }
 
+    /**
+     * Get the cover thumbnail file saved using the given relative path, falling back to the full cover file if there
+     * is no thumbnail (which will be the case for books which haven't been imported since thumbnails were added).
+     * @param relPath Relative path which was used to create cover file path.
+     * @return Cover thumbnail file, cover file, or {@code null}.
+     */
+    public static File getCoverThumbFile(String relPath) {
+        File thumbFile = Util.getFileFromRelPath(Minerva.get().getFilesDir(), relPath + COVER_THUMB_EXT);
+        return thumbFile != null && thumbFile.exists() ? thumbFile : getCoverImageFile(relPath);
+    }
+
+    /**
+     * Make a name for an import log file.
+     * @param startTime  Time when the import run started in milliseconds.
+     * @param isErrorLog Whether the file is for the errors-only log rather than the full log.
+     * @return Log file name.
+     */
+    public static String makeLogFileName(long startTime, boolean isErrorLog) {
+        return startTime + (isErrorLog ? "_errors" : "") + LOG_EXT;
+    }
+
+    /**
+     * Get the import log file with the given name.
+     * @param name Log file name, from {@link #makeLogFileName(long, boolean)}.
+     * @return Log file, which might not exist.
+     */
+    static File getLogFile(String name) {
+        return new File(new File(Minerva.get().getFilesDir(), LOG_DIR), name);
+    }
+
+    /**
+     * Write an entire import log to a new log file.
+     * @param name Log file name, from {@link #makeLogFileName(long, boolean)}.
+     * @param log  Log text.
+     * @throws IOException If the file couldn't be created.
+     */
+    public static void saveLogFile(String name, String log) throws IOException {
+        try (LogFileWriter writer = new LogFileWriter(getLogFile(name))) {
+            writer.write(log);
+        }
+    }
+
+    /**
+     * Delete the import log file with the given name, if there is one.
+     * @param name Log file name. May be null.
+     */
+    static void deleteLogFile(String name) {
+        if (name == null) return;
+        //noinspection ResultOfMethodCallIgnored
+        getLogFile(name).delete();
+    }
+
     /**
      * Get the default cover image as a bitmap so that the system can scale it easier than it otherwise could as a
-     * LayerDrawable.
+     * LayerDrawable. The bitmap is only drawn once, so it must not be modified.
      * @return Bitmap created using LayerDrawable.
      */
-    public static Bitmap getDefaultCoverImage() {
+    public static synchronized Bitmap getDefaultCoverImage() {
+        if (defaultCoverImage != null) return defaultCoverImage;
         Drawable d = Minerva.get().getDrawable(R.drawable.default_cover);
         if (d == null) throw new IllegalStateException("Couldn't get default cover drawable");
         Bitmap bitmap = Bitmap.createBitmap(d.getIntrinsicWidth(), d.getIntrinsicHeight(), Bitmap.Config.ARGB_8888);
         Canvas canvas = new Canvas(bitmap);
         d.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
         d.draw(canvas);
-        // TODO may want to cache this somehow so we don't have to do this each time?
+        defaultCoverImage = bitmap;
         return bitmap;
     }
 
@@ -245,23 +332,9 @@ public class DataUtils {
             RealmResults<RBookList> smartLists = realm.where(RBookList.class)
                                                       .equalTo("isSmartList", true)
                                                       .findAllSorted("name");
-            // For each smart list:
-            for (RBookList smartList : smartLists) {
-                if (smartList.smartListRuqString == null || smartList.smartListRuqString.isEmpty()) continue;
-                // Get the query and its type.
-                RealmUserQuery ruq = new RealmUserQuery(smartList.smartListRuqString);
-                ModelType at = ModelType.fromRealmClass(ruq.getQueryClass());
-
-                if (at == ModelType.BOOK) {
-                    // For RBook-type queries, we can simply check if the results contain the book.
-                    if (ruq.execute(realm).contains(book)) listNames.add(smartList.name);
-                } else if (at == ModelType.BOOK_LIST_ITEM) {
-                    // For RBookListItem-type queries, we have to do another Realm query to see if there's an
-                    // RBookListItem for the book.
-                    if (ruq.execute(realm).where().equalTo("book.relPath", book.relPath).findFirst() != null)
-                        listNames.add(smartList.name);
-                }
-            }
+            // For each smart list, check whether its cached results include the book.
+            for (RBookList smartList : smartLists)
+                if (SmartListCache.get().contains(realm, smartList, book.uniqueId)) listNames.add(smartList.name);
         }
         return listNames;
     }
@@ -299,6 +372,7 @@ public class DataUtils {
             realm.beginTransaction();
             tag = realm.copyToRealm(new RTag(name));
             realm.commitTransaction();
+            SmartListCache.get().onChanged(SmartListCache.Change.TAGS_ADDED_OR_REMOVED);
             return tag;
         }
     }
@@ -320,17 +394,6 @@ public class DataUtils {
                          .single();
     }
 
-    /**
-     * Take a list of {@code DcmesElement}s and concatenate them, separated by {@code separator}.
-     * @param list      List of {@code DcmesElement}s.
-     * @param separator What string to use as separators in the output string.
-     * @return Concatenated string, or {@code null} if the list is {@code null} or empty.
-     */
-    public static String concatDEList(List<DcmesElement> list, String separator) {
-        if (list == null) return null;
-        return concatList(Observable.from(list).map(DcmesElement::getValue).toList().toBlocking().first(), separator);
-    }
-
     /**
      * Take a list of strings and concatenate them, separated by {@code separator}.
      * @param list      List of strings.
@@ -359,17 +422,4 @@ public class DataUtils {
         if (strings.size() == 1 && strings.get(0).trim().equals("")) return new ArrayList<>();
         return strings;
     }
-
-    /**
-     * Takes a String Observable and concatenates its emissions into a single String using StringBuilder, then returns
-     * that String.
-     * @param stringObservable String observable.
-     * @return Concatenated string.
-     */
-    static String rxToString(Observable<String> stringObservable) {
-        return stringObservable.reduce(new StringBuilder(), StringBuilder::append)
-                               .toBlocking()
-                               .single()
-                               .toString();
-    }
 }
@@ -0,0 +1,157 @@
+package com.bkromhout.minerva.data;
+
+import com.bkromhout.minerva.realm.RBook;
+import io.realm.Realm;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * In-memory index which groups all {@link RBook}s by {@link RBook#hash}, so that books whose files have the same
+ * content can be found without querying Realm for each book.
+ * <p>
+ * The index is built lazily using a single pass over all books, the first time someone asks for it. After that, the
+ * {@link Importer} keeps it up to date as it saves books, and {@link ActionHelper} does the same when books are
+ * deleted. All methods are thread-safe.
+ */
+public class DuplicateIndex {
+    /**
+     * Instance of DuplicateIndex.
+     */
+    private static DuplicateIndex INSTANCE;
+
+    /**
+     * Unique IDs of books, keyed by their hashes. Books without hashes aren't indexed.
+     */
+    private final Map<ByteBuffer, Set<Long>> idsByHash = new HashMap<>();
+    /**
+     * Hashes of books, keyed by their unique IDs.
+     */
+    private final Map<Long, ByteBuffer> hashesById = new HashMap<>();
+    /**
+     * Whether or not the index has been built.
+     */
+    private boolean isBuilt = false;
+
+    /**
+     * Get the instance of {@link DuplicateIndex}.
+     * @return Instance.
+     */
+    public static synchronized DuplicateIndex get() {
+        if (INSTANCE == null) INSTANCE = new DuplicateIndex();
+        return INSTANCE;
+    }
+
+    // No public initialization.
+    DuplicateIndex() {
+    }
+
+    /**
+     * Build the index if it hasn't been built yet. This reads every {@link RBook}, so it shouldn't be called on the
+     * main thread.
+     * @param realm Instance of Realm to use.
+     */
+    public final synchronized void buildIfNeeded(Realm realm) {
+        if (!isBuilt) build(realm.where(RBook.class).findAll());
+    }
+
+    /**
+     * Forget everything in the index, so that it is built again the next time someone asks for it. This must be called
+     * whenever the books in Realm are replaced wholesale, such as when a backup is restored.
+     */
+    public final synchronized void clear() {
+        idsByHash.clear();
+        hashesById.clear();
+        isBuilt = false;
+    }
+
+    /**
+     * Build the index from the given books, replacing whatever was in it.
+     * @param books All books.
+     */
+    synchronized void build(Iterable<RBook> books) {
+        clear();
+        for (RBook book : books) put(book.uniqueId, book.hash);
+        isBuilt = true;
+    }
+
+    /**
+     * Note that a book has been saved, possibly with a different hash than it had before. Does nothing if the index
+     * hasn't been built yet, since it will see the book when it is.
+     * @param uniqueId Unique ID of the book.
+     * @param hash     Hash of the book.
+     */
+    synchronized void onBookSaved(long uniqueId, byte[] hash) {
+        if (isBuilt) put(uniqueId, hash);
+    }
+
+    /**
+     * Note that a book has been deleted.
+     * @param uniqueId Unique ID of the book.
+     */
+    synchronized void onBookDeleted(long uniqueId) {
+        remove(uniqueId);
+    }
+
+    /**
+     * Get the groups of books which have the same hash.
+     * @return Groups of two or more unique IDs, each sorted in ascending order (so the book which was imported first
+     * comes first). Groups are sorted by their first unique ID.
+     */
+    public final synchronized List<long[]> getGroups() {
+        List<long[]> groups = new ArrayList<>();
+        for (Set<Long> ids : idsByHash.values()) {
+            if (ids.size() < 2) continue;
+            long[] group = new long[ids.size()];
+            int i = 0;
+            for (Long id : ids) group[i++] = id;
+            Arrays.sort(group);
+            groups.add(group);
+        }
+        Collections.sort(groups, (a, b) -> Long.compare(a[0], b[0]));
+        return groups;
+    }
+
+    /**
+     * Flatten groups from {@link #getGroups()} into a single array.
+     * @param groups Groups of unique IDs.
+     * @return Unique IDs, in the same order as they appear in {@code groups}.
+     */
+    public static Long[] flatten(List<long[]> groups) {
+        List<Long> ids = new ArrayList<>();
+        for (long[] group : groups) for (long id : group) ids.add(id);
+        return ids.toArray(new Long[ids.size()]);
+    }
+
+    /**
+     * Index a book under its hash, removing it from wherever it was indexed before.
+     * @param uniqueId Unique ID of the book.
+     * @param hash     Hash of the book. If null, the book is just removed from the index.
+     */
+    private void put(long uniqueId, byte[] hash) {
+        remove(uniqueId);
+        if (hash == null) return;
+
+        // Copy the hash, since it might belong to a Realm object or be reused by the caller.
+        ByteBuffer key = ByteBuffer.wrap(hash.clone());
+        Set<Long> ids = idsByHash.get(key);
+        if (ids == null) {
+            ids = new HashSet<>(2);
+            idsByHash.put(key, ids);
+        }
+        ids.add(uniqueId);
+        hashesById.put(uniqueId, key);
+    }
+
+    /**
+     * Remove a book from the index.
+     * @param uniqueId Unique ID of the book.
+     */
+    private void remove(long uniqueId) {
+        ByteBuffer key = hashesById.remove(uniqueId);
+        if (key == null) return;
+        Set<Long> ids = idsByHash.get(key);
+        ids.remove(uniqueId);
+        if (ids.isEmpty()) idsByHash.remove(key);
+    }
+}
@@ -0,0 +1,559 @@
+package com.bkromhout.minerva.data;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.*;
+import java.net.URLDecoder;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads only the parts of an ePub file which we need in order to create an {@link
+ * com.bkromhout.minerva.realm.RBook}.
+ * <p>
+ * Rather than reading (and inflating) every entry in the file the way epublib's {@code EpubReader} does, this uses
+ * random access to read just {@code META-INF/container.xml}, the OPF package document, the NCX (or EPUB 3 navigation
+ * document), and the cover image. Memory use therefore doesn't depend on how large the book's chapters, images, and
+ * fonts are.
+ * <p>
+ * Values are extracted the same way epublib extracts them, so that the resulting {@link BookMetadata} produces the same
+ * {@link com.bkromhout.minerva.realm.RBook} fields.
+ */
+final class EpubMetadataReader {
+    private static final String CONTAINER_PATH = "META-INF/container.xml";
+    private static final String NCX_MEDIA_TYPE = "application/x-dtbncx+xml";
+    private static final String DEFAULT_FORMAT = "application/epub+zip";
+    private static final String EPUB_NS = "http://www.idpf.org/2007/ops";
+    private static final String OPF_NS = "http://www.idpf.org/2007/opf";
+    private static final List<String> BITMAP_MEDIA_TYPES = Arrays.asList("image/jpeg", "image/png", "image/gif");
+    private static final List<String> BITMAP_EXTENSIONS = Arrays.asList("jpg", "jpeg", "png", "gif");
+
+    private final ZipFile zip;
+    private final DocumentBuilder docBuilder;
+    /**
+     * Path of the directory which contains the OPF file, either empty or ending with a slash. All manifest hrefs are
+     * relative to this.
+     */
+    private String opfDir;
+    /**
+     * Manifest items' hrefs (relative to {@link #opfDir}), keyed by ID.
+     */
+    private final Map<String, String> hrefsById = new HashMap<>();
+    /**
+     * Manifest items' media types, keyed by href.
+     */
+    private final Map<String, String> mediaTypesByHref = new HashMap<>();
+
+    private EpubMetadataReader(ZipFile zip) throws IOException {
+        this.zip = zip;
+        this.docBuilder = createDocumentBuilder();
+    }
+
+    /**
+     * Read the metadata of the given ePub file.
+     * @param file ePub file.
+     * @return {@link BookMetadata} read from the file.
+     * @throws IOException If the file can't be read, or isn't a valid ePub file.
+     */
+    static BookMetadata read(File file) throws IOException {
+        try (ZipFile zip = new ZipFile(file)) {
+            return new EpubMetadataReader(zip).read();
+        }
+    }
+
+    /**
+     * Create a namespace-aware document builder which never tries to fetch external DTDs (NCX files usually declare
+     * one).
+     * @return Document builder.
+     * @throws IOException If one can't be created.
+     */
+    private static DocumentBuilder createDocumentBuilder() throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setValidating(false);
+            factory.setExpandEntityReferences(false);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            builder.setEntityResolver((publicId, systemId) -> new InputSource(new StringReader("")));
+            return builder;
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Do the actual reading.
+     * @return {@link BookMetadata}.
+     * @throws IOException If something goes wrong.
+     */
+    private BookMetadata read() throws IOException {
+        // Find the OPF file using the container file.
+        Element rootFile = firstElement(parse(CONTAINER_PATH), "rootfile");
+        String opfPath = rootFile == null ? null : decode(rootFile.getAttribute("full-path"));
+        if (opfPath == null || opfPath.isEmpty()) throw new IOException("No OPF file listed in " + CONTAINER_PATH);
+        int lastSlash = opfPath.lastIndexOf('/');
+        opfDir = lastSlash < 0 ? "" : opfPath.substring(0, lastSlash + 1);
+
+        Document opf = parse(opfPath);
+        readManifest(opf);
+
+        OpfMetadata metadata = new OpfMetadata();
+        List<String> titles = texts(opf, "title");
+        metadata.title = titles.isEmpty() || titles.get(0).isEmpty() ? null : titles.get(0);
+        metadata.firstAuthor = readFirstAuthor(opf);
+        metadata.firstDesc = firstNonEmpty(texts(opf, "description"));
+        metadata.subjects = texts(opf, "subject");
+        metadata.types = texts(opf, "type");
+        String format = firstNonEmpty(texts(opf, "format"));
+        metadata.format = format != null ? format : DEFAULT_FORMAT;
+        metadata.languages = texts(opf, "language");
+        metadata.firstPublisher = firstNonEmpty(texts(opf, "publisher"));
+        metadata.bookId = readBookId(opf);
+        readDates(opf, metadata);
+        metadata.numChaps = readNumChaps(opf);
+        metadata.coverImage = readCoverImage(opf);
+        return metadata;
+    }
+
+    /**
+     * Parse the zip entry at {@code path} as XML.
+     * @param path Path of the zip entry.
+     * @return Parsed document.
+     * @throws IOException If the entry doesn't exist or isn't valid XML.
+     */
+    private Document parse(String path) throws IOException {
+        ZipEntry entry = zip.getEntry(path);
+        if (entry == null) throw new FileNotFoundException(path);
+        try (InputStream in = new BufferedInputStream(zip.getInputStream(entry))) {
+            return docBuilder.parse(in);
+        } catch (SAXException e) {
+            throw new IOException("Couldn't parse " + path, e);
+        }
+    }
+
+    /**
+     * Record the href and media type of each item in the manifest.
+     * @param opf OPF document.
+     */
+    private void readManifest(Document opf) {
+        for (Element item : elements(opf, "item")) {
+            String href = decode(item.getAttribute("href"));
+            if (href.isEmpty()) continue;
+            hrefsById.put(item.getAttribute("id"), href);
+            mediaTypesByHref.put(href, item.getAttribute("media-type"));
+        }
+    }
+
+    /**
+     * Get the first non-empty author name, reassembled from first and last names the same way that epublib splits it
+     * and {@link DataUtils#getFirstAuthor(nl.siegmann.epublib.domain.Book)} puts it back together.
+     * @param opf OPF document.
+     * @return Author string, or {@code null}.
+     */
+    private static String readFirstAuthor(Document opf) {
+        for (String name : texts(opf, "creator")) {
+            int i = name.lastIndexOf(' ');
+            String first = i < 0 ? "" : name.substring(0, i).trim();
+            String last = i < 0 ? name : name.substring(i + 1).trim();
+            if (first.isEmpty() && last.isEmpty()) continue;
+            if (first.isEmpty()) return last;
+            if (last.isEmpty()) return first;
+            return first + " " + last;
+        }
+        return null;
+    }
+
+    /**
+     * Get the identifier which the package element says is the book's unique identifier, or the first one if there
+     * isn't one.
+     * @param opf OPF document.
+     * @return Identifier string as "scheme:value" or "value", or {@code null} if there are no identifiers.
+     */
+    private static String readBookId(Document opf) {
+        Element pkg = opf.getDocumentElement();
+        String uniqueId = pkg == null ? "" : pkg.getAttribute("unique-identifier");
+
+        String first = null;
+        for (Element identifier : elements(opf, "identifier")) {
+            String value = identifier.getTextContent().trim();
+            if (value.isEmpty()) continue;
+            String scheme = opfAttribute(identifier, "scheme").trim();
+            String idString = scheme.isEmpty() ? value : scheme + ":" + value;
+
+            if (!uniqueId.isEmpty() && uniqueId.equals(identifier.getAttribute("id"))) return idString;
+            if (first == null) first = idString;
+        }
+        return first;
+    }
+
+    /**
+     * Read the first non-empty date for each of the date events we care about.
+     * @param opf      OPF document.
+     * @param metadata Metadata to fill in.
+     */
+    private static void readDates(Document opf, OpfMetadata metadata) {
+        for (Element date : elements(opf, "date")) {
+            String value = date.getTextContent().trim();
+            if (value.isEmpty()) continue;
+            switch (opfAttribute(date, "event")) {
+                case "creation":
+                    if (metadata.createDate == null) metadata.createDate = value;
+                    break;
+                case "publication":
+                    if (metadata.pubDate == null) metadata.pubDate = value;
+                    break;
+                case "modification":
+                    if (metadata.modDate == null) metadata.modDate = value;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Count the unique manifest items referenced by the book's table of contents. The NCX is used if there is one,
+     * since that is what epublib uses; otherwise we fall back to the EPUB 3 navigation document.
+     * @param opf OPF document.
+     * @return Number of chapters.
+     * @throws IOException If the table of contents can't be read.
+     */
+    private int readNumChaps(Document opf) throws IOException {
+        // Find the NCX using the spine's toc attribute, or failing that, its media type.
+        Element spine = firstElement(opf, "spine");
+        String ncxHref = spine == null ? null : hrefsById.get(spine.getAttribute("toc"));
+        if (ncxHref == null) {
+            for (Map.Entry<String, String> entry : mediaTypesByHref.entrySet()) {
+                if (NCX_MEDIA_TYPE.equals(entry.getValue())) {
+                    ncxHref = entry.getKey();
+                    break;
+                }
+            }
+        }
+
+        Set<String> uniqueHrefs = new HashSet<>();
+        if (ncxHref != null && zip.getEntry(opfDir + ncxHref) != null) {
+            Document ncx = parse(opfDir + ncxHref);
+            for (Element navPoint : elements(ncx, "navPoint")) {
+                Element content = firstChildElement(navPoint, "content");
+                if (content != null) addTocHref(uniqueHrefs, ncxHref, content.getAttribute("src"));
+            }
+            return uniqueHrefs.size();
+        }
+
+        // Fall back to the navigation document, if there is one.
+        String navHref = null;
+        for (Element item : elements(opf, "item")) {
+            if (Arrays.asList(item.getAttribute("properties").split("\\s+")).contains("nav")) {
+                navHref = decode(item.getAttribute("href"));
+                break;
+            }
+        }
+        if (navHref == null || zip.getEntry(opfDir + navHref) == null) return 0;
+
+        Document nav = parse(opfDir + navHref);
+        for (Element navElement : elements(nav, "nav")) {
+            String type = navElement.getAttributeNS(EPUB_NS, "type");
+            if (type.isEmpty()) type = navElement.getAttribute("epub:type");
+            if (!"toc".equals(type)) continue;
+            NodeList links = navElement.getElementsByTagNameNS("*", "a");
+            for (int i = 0; i < links.getLength(); i++)
+                addTocHref(uniqueHrefs, navHref, ((Element) links.item(i)).getAttribute("href"));
+            break;
+        }
+        return uniqueHrefs.size();
+    }
+
+    /**
+     * Resolve a table of contents reference and add it to {@code uniqueHrefs} if it refers to a manifest item.
+     * @param uniqueHrefs Set of unique hrefs.
+     * @param tocHref     Href of the table of contents document, which {@code reference} is relative to.
+     * @param reference   The reference, which may have a fragment.
+     */
+    private void addTocHref(Set<String> uniqueHrefs, String tocHref, String reference) {
+        if (reference == null || reference.isEmpty()) return;
+        int hashIdx = reference.indexOf('#');
+        if (hashIdx >= 0) reference = reference.substring(0, hashIdx);
+        int lastSlash = tocHref.lastIndexOf('/');
+        String href = collapsePathDots((lastSlash < 0 ? "" : tocHref.substring(0, lastSlash + 1)) + decode(reference));
+        if (mediaTypesByHref.containsKey(href)) uniqueHrefs.add(href);
+    }
+
+    /**
+     * Find and read the cover image. Like epublib, we look at the cover meta element and the cover guide reference;
+     * failing those, we look for a manifest item with the EPUB 3 "cover-image" property.
+     * @param opf OPF document.
+     * @return Cover image bytes, or {@code null} if there isn't a cover image.
+     * @throws IOException If the cover image can't be read.
+     */
+    private byte[] readCoverImage(Document opf) throws IOException {
+        List<String> candidates = new ArrayList<>();
+        for (Element meta : elements(opf, "meta")) {
+            if (!"cover".equals(meta.getAttribute("name"))) continue;
+            String content = meta.getAttribute("content");
+            if (content.trim().isEmpty()) continue;
+            // The content is supposed to be an ID, but is sometimes an href.
+            String href = hrefsById.get(content);
+            candidates.add(href != null ? href : decode(content));
+            break;
+        }
+        for (Element reference : elements(opf, "reference")) {
+            if ("cover".equals(reference.getAttribute("type")) && !reference.getAttribute("href").trim().isEmpty()) {
+                candidates.add(decode(reference.getAttribute("href")));
+                break;
+            }
+        }
+        for (Element item : elements(opf, "item")) {
+            if (Arrays.asList(item.getAttribute("properties").split("\\s+")).contains("cover-image"))
+                candidates.add(decode(item.getAttribute("href")));
+        }
+
+        for (String href : candidates) {
+            if (!mediaTypesByHref.containsKey(href) || !isBitmapImage(href)) continue;
+            ZipEntry entry = zip.getEntry(opfDir + href);
+            if (entry == null) continue;
+            try (InputStream in = zip.getInputStream(entry)) {
+                return toByteArray(in, entry.getSize());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check whether the manifest item at {@code href} is a bitmap image, using its media type if it has one we know,
+     * otherwise its extension.
+     * @param href Manifest href.
+     * @return True if the item is a bitmap image.
+     */
+    private boolean isBitmapImage(String href) {
+        String mediaType = mediaTypesByHref.get(href);
+        if (mediaType != null && !mediaType.isEmpty()) return BITMAP_MEDIA_TYPES.contains(mediaType.toLowerCase());
+        int dotIdx = href.lastIndexOf('.');
+        return dotIdx >= 0 && BITMAP_EXTENSIONS.contains(href.substring(dotIdx + 1).toLowerCase());
+    }
+
+    /*
+     * XML and path helpers.
+     */
+
+    /**
+     * Get all elements in {@code doc} with the given local name, in any namespace.
+     * @param doc       Document.
+     * @param localName Local name.
+     * @return List of elements, in document order.
+     */
+    private static List<Element> elements(Document doc, String localName) {
+        NodeList nodes = doc.getElementsByTagNameNS("*", localName);
+        List<Element> elements = new ArrayList<>(nodes.getLength());
+        for (int i = 0; i < nodes.getLength(); i++) elements.add((Element) nodes.item(i));
+        return elements;
+    }
+
+    /**
+     * Get the first element in {@code doc} with the given local name, in any namespace.
+     * @param doc       Document.
+     * @param localName Local name.
+     * @return Element, or {@code null}.
+     */
+    private static Element firstElement(Document doc, String localName) {
+        NodeList nodes = doc.getElementsByTagNameNS("*", localName);
+        return nodes.getLength() == 0 ? null : (Element) nodes.item(0);
+    }
+
+    /**
+     * Get the first direct child of {@code parent} with the given local name.
+     * @param parent    Parent element.
+     * @param localName Local name.
+     * @return Element, or {@code null}.
+     */
+    private static Element firstChildElement(Element parent, String localName) {
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling())
+            if (n.getNodeType() == Node.ELEMENT_NODE && localName.equals(n.getLocalName())) return (Element) n;
+        return null;
+    }
+
+    /**
+     * Get the trimmed text content of all elements in {@code doc} with the given local name.
+     * @param doc       Document.
+     * @param localName Local name.
+     * @return List of strings, might be empty.
+     */
+    private static List<String> texts(Document doc, String localName) {
+        List<String> texts = new ArrayList<>();
+        for (Element element : elements(doc, localName)) texts.add(element.getTextContent().trim());
+        return texts;
+    }
+
+    /**
+     * Get the first non-empty string in {@code strings}.
+     * @param strings List of strings.
+     * @return First non-empty string, or {@code null}.
+     */
+    private static String firstNonEmpty(List<String> strings) {
+        for (String s : strings) if (!s.isEmpty()) return s;
+        return null;
+    }
+
+    /**
+     * Get an attribute which should be in the OPF namespace, but which might not be.
+     * @param element Element.
+     * @param name    Local name of the attribute.
+     * @return Attribute value, or the empty string.
+     */
+    private static String opfAttribute(Element element, String name) {
+        String value = element.getAttributeNS(OPF_NS, name);
+        return !value.isEmpty() ? value : element.getAttribute(name);
+    }
+
+    /**
+     * URL-decode an href, the same way that epublib does.
+     * @param href Href.
+     * @return Decoded href.
+     */
+    private static String decode(String href) {
+        try {
+            return URLDecoder.decode(href, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return href;
+        }
+    }
+
+    /**
+     * Resolve any "." and ".." segments in the given path.
+     * @param path Path.
+     * @return Collapsed path.
+     */
+    private static String collapsePathDots(String path) {
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) continue;
+            if (segment.equals("..")) {
+                if (!segments.isEmpty()) segments.removeLast();
+            } else segments.addLast(segment);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (String segment : segments) {
+            if (builder.length() > 0) builder.append('/');
+            builder.append(segment);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Read the whole stream into a byte array.
+     * @param in       Input stream.
+     * @param sizeHint Expected size, or -1 if unknown.
+     * @return Byte array.
+     * @throws IOException If reading fails.
+     */
+    private static byte[] toByteArray(InputStream in, long sizeHint) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sizeHint > 0 ? (int) sizeHint : 8192);
+        byte[] buffer = new byte[8192];
+        int numRead;
+        while ((numRead = in.read(buffer)) != -1) out.write(buffer, 0, numRead);
+        return out.toByteArray();
+    }
+
+    /**
+     * {@link BookMetadata} read by an {@link EpubMetadataReader}. The cover image, if any, is the only content from
+     * the book which is held in memory.
+     */
+    private static class OpfMetadata implements BookMetadata {
+        private String title;
+        private String firstAuthor;
+        private String firstDesc;
+        private List<String> subjects;
+        private List<String> types;
+        private String format;
+        private List<String> languages;
+        private String firstPublisher;
+        private String bookId;
+        private String createDate;
+        private String pubDate;
+        private String modDate;
+        private int numChaps;
+        private byte[] coverImage;
+
+        @Override
+        public String getTitle() {
+            return title;
+        }
+
+        @Override
+        public String getFirstAuthor() {
+            return firstAuthor;
+        }
+
+        @Override
+        public String getFirstDesc() {
+            return firstDesc;
+        }
+
+        @Override
+        public List<String> getSubjects() {
+            return subjects;
+        }
+
+        @Override
+        public List<String> getTypes() {
+            return types;
+        }
+
+        @Override
+        public String getFormat() {
+            return format;
+        }
+
+        @Override
+        public List<String> getLanguages() {
+            return languages;
+        }
+
+        @Override
+        public String getFirstPublisher() {
+            return firstPublisher;
+        }
+
+        @Override
+        public String getBookId() {
+            return bookId;
+        }
+
+        @Override
+        public String getCreateDate() {
+            return createDate;
+        }
+
+        @Override
+        public String getPubDate() {
+            return pubDate;
+        }
+
+        @Override
+        public String getModDate() {
+            return modDate;
+        }
+
+        @Override
+        public int getNumChaps() {
+            return numChaps;
+        }
+
+        @Override
+        public boolean hasCoverImage() {
+            return coverImage != null;
+        }
+
+        @Override
+        public InputStream openCoverImage() {
+            return coverImage != null ? new ByteArrayInputStream(coverImage) : null;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.bkromhout.minerva.data;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Globs for files and directories in the library directory which should never be imported or watched.
+ * <p>
+ * A glob which doesn't contain a "/" is matched against names; otherwise it is matched against paths relative to the
+ * library directory (without a leading "/"). In globs, "*" and "?" match any characters except "/", and "**" matches
+ * any characters.
+ */
+final class ExcludeGlobs {
+    /**
+     * The trimmed, non-empty globs, sorted so that instances with the same globs are equal.
+     */
+    private final List<String> globs = new ArrayList<>();
+    /**
+     * Patterns created from globs which are matched against names.
+     */
+    private final List<Pattern> nameExcludes = new ArrayList<>();
+    /**
+     * Patterns created from globs which are matched against relative paths.
+     */
+    private final List<Pattern> pathExcludes = new ArrayList<>();
+
+    /**
+     * Create a new {@link ExcludeGlobs}.
+     * @param excludeGlobs Globs. May be null, in which case nothing is excluded.
+     */
+    ExcludeGlobs(Collection<String> excludeGlobs) {
+        if (excludeGlobs != null) {
+            for (String glob : excludeGlobs) {
+                if (glob == null || glob.trim().isEmpty()) continue;
+                globs.add(glob.trim());
+            }
+            Collections.sort(globs);
+        }
+        for (String glob : globs) {
+            if (!glob.contains("/")) nameExcludes.add(globToPattern(glob));
+            else pathExcludes.add(globToPattern(glob.startsWith("/") ? glob.substring(1) : glob));
+        }
+    }
+
+    /**
+     * Convert a glob to a regex pattern.
+     * @param glob Glob.
+     * @return Pattern.
+     */
+    static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else regex.append("[^/]*");
+            } else if (c == '?') regex.append("[^/]");
+            else if (Character.isLetterOrDigit(c)) regex.append(c);
+            else regex.append('\\').append(c);
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Check whether the file or directory with the given name and relative path matches any of the globs. This doesn't
+     * check the directories which it is in.
+     * @param name    Name.
+     * @param relPath Path relative to the library directory, without a leading "/".
+     * @return True if it should be skipped.
+     */
+    boolean isExcluded(String name, String relPath) {
+        for (Pattern pattern : nameExcludes) if (pattern.matcher(name).matches()) return true;
+        for (Pattern pattern : pathExcludes) if (pattern.matcher(relPath).matches()) return true;
+        return false;
+    }
+
+    /**
+     * Check whether the file or directory at the given relative path, or any of the directories it is in, matches any
+     * of the globs. Use this for paths which didn't come from walking down the library directory.
+     * @param relPath Path relative to the library directory, with or without a leading "/".
+     * @return True if it should be skipped.
+     */
+    boolean isPathExcluded(String relPath) {
+        if (globs.isEmpty() || relPath == null) return false;
+        relPath = trimRelPath(relPath);
+        int start = 0;
+        while (start < relPath.length()) {
+            int end = relPath.indexOf('/', start);
+            if (end == -1) end = relPath.length();
+            if (end > start && isExcluded(relPath.substring(start, end), relPath.substring(0, end))) return true;
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Remove the leading "/" which our relative paths usually have.
+     * @param relPath Relative path.
+     * @return Relative path without a leading "/".
+     */
+    static String trimRelPath(String relPath) {
+        return relPath.startsWith("/") ? relPath.substring(1) : relPath;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return globs.equals(((ExcludeGlobs) o).globs);
+    }
+
+    @Override
+    public int hashCode() {
+        return globs.hashCode();
+    }
+}
@@ -0,0 +1,194 @@
+package com.bkromhout.minerva.data;
+
+import com.bkromhout.minerva.realm.RBook;
+import com.bkromhout.minerva.realm.RFileFingerprint;
+import io.realm.Realm;
+import io.realm.RealmModel;
+import io.realm.RealmQuery;
+import io.realm.RealmResults;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Helper class which lets the {@link Importer} skip files which haven't changed since they were last imported, based on
+ * the {@link RFileFingerprint}s we've persisted.
+ * <p>
+ * A file is considered unchanged if its size and last modified time match its fingerprint, and if there is still an
+ * {@link RBook} at its relative path whose hash matches the one in its fingerprint. If only the last modified time is
+ * different, the file is hashed using the fast hash algorithm, and is still considered unchanged if that hash matches
+ * too; those fingerprints are refreshed so that the file won't need to be hashed again next time.
+ */
+class FileFingerprintCache {
+    /**
+     * Fingerprints which we trust, keyed by relative path.
+     */
+    private final Map<String, RFileFingerprint> trusted;
+    /**
+     * Relative paths of all fingerprints we have, trusted or not.
+     */
+    private final Set<String> allRelPaths;
+    /**
+     * Algorithm which was used to compute the fingerprints' fast hashes.
+     */
+    private final FileHashAlgorithm fastHashAlgorithm;
+    /**
+     * Fingerprints of files which were touched, but whose contents haven't changed.
+     */
+    private final List<RFileFingerprint> refreshed = new ArrayList<>();
+
+    private FileFingerprintCache(Map<String, RFileFingerprint> trusted, Set<String> allRelPaths,
+                                 FileHashAlgorithm fastHashAlgorithm) {
+        this.trusted = trusted;
+        this.allRelPaths = allRelPaths;
+        this.fastHashAlgorithm = fastHashAlgorithm;
+    }
+
+    /**
+     * Load all persisted fingerprints using the given {@code realm}. This does a single pass over the {@link RBook}s
+     * and a single pass over the {@link RFileFingerprint}s, rather than querying for each file.
+     * @param realm             Instance of Realm to use.
+     * @param fastHashAlgorithm Algorithm which was used to compute the fingerprints' fast hashes.
+     * @return New {@link FileFingerprintCache}, which may be used from any one thread.
+     */
+    static FileFingerprintCache load(Realm realm, FileHashAlgorithm fastHashAlgorithm) {
+        return load(realm.where(RBook.class).findAll(), realm.where(RFileFingerprint.class).findAll(),
+                fastHashAlgorithm);
+    }
+
+    /**
+     * Load only the persisted fingerprints for files which are at, or are in directories at, the given {@code
+     * relPaths}. Use this when only part of the library needs to be checked, since it doesn't need to look at every
+     * book and fingerprint.
+     * <p>
+     * {@link #getMissingRelPaths(Set)} will only consider the fingerprints which were loaded.
+     * @param realm             Instance of Realm to use.
+     * @param fastHashAlgorithm Algorithm which was used to compute the fingerprints' fast hashes.
+     * @param relPaths          Relative paths of files and directories. Must not be empty.
+     * @return New {@link FileFingerprintCache}, which may be used from any one thread.
+     */
+    static FileFingerprintCache load(Realm realm, FileHashAlgorithm fastHashAlgorithm, Collection<String> relPaths) {
+        return load(findAtOrUnder(realm, RBook.class, relPaths), findAtOrUnder(realm, RFileFingerprint.class, relPaths),
+                fastHashAlgorithm);
+    }
+
+    /**
+     * Find the objects of the given class whose {@code relPath} fields are equal to, or are under a directory at, one
+     * of the given {@code relPaths}.
+     * @param realm    Instance of Realm to use.
+     * @param clazz    Class of object to find.
+     * @param relPaths Relative paths. Must not be empty.
+     * @return Matching objects.
+     */
+    private static <E extends RealmModel> RealmResults<E> findAtOrUnder(Realm realm, Class<E> clazz,
+                                                                        Collection<String> relPaths) {
+        RealmQuery<E> query = realm.where(clazz).beginGroup();
+        boolean isFirst = true;
+        for (String relPath : relPaths) {
+            if (!isFirst) query.or();
+            isFirst = false;
+            query.equalTo("relPath", relPath)
+                 .or()
+                 .beginsWith("relPath", relPath + File.separator);
+        }
+        return query.endGroup().findAll();
+    }
+
+    /**
+     * Create a cache from the given books and fingerprints.
+     * @param books             Books whose hashes are used to decide which fingerprints to trust.
+     * @param fingerprints      Fingerprints.
+     * @param fastHashAlgorithm Algorithm which was used to compute the fingerprints' fast hashes.
+     * @return New {@link FileFingerprintCache}.
+     */
+    private static FileFingerprintCache load(RealmResults<RBook> books, RealmResults<RFileFingerprint> fingerprints,
+                                             FileHashAlgorithm fastHashAlgorithm) {
+        // Get the hash of each book, keyed by its relative path.
+        Map<String, byte[]> bookHashes = new HashMap<>(books.size());
+        for (RBook book : books) bookHashes.put(book.relPath, book.hash);
+
+        // Only trust the fingerprints which still agree with their books.
+        Map<String, RFileFingerprint> trusted = new HashMap<>(fingerprints.size());
+        Set<String> allRelPaths = new HashSet<>(fingerprints.size());
+        for (RFileFingerprint fp : fingerprints) {
+            allRelPaths.add(fp.relPath);
+            if (fp.hash != null && Arrays.equals(fp.hash, bookHashes.get(fp.relPath)))
+                trusted.put(fp.relPath, new RFileFingerprint(fp.relPath, fp.size, fp.lastModified, fp.hash,
+                        fp.fastHash));
+        }
+        return new FileFingerprintCache(trusted, allRelPaths, fastHashAlgorithm);
+    }
+
+    /**
+     * Check whether the given {@code file} is unchanged since it was last imported.
+     * @param file    File to check.
+     * @param relPath Relative path of {@code file}.
+     * @return True if the file is unchanged, false if it is new or has changed.
+     */
+    boolean isUnchanged(File file, String relPath) {
+        RFileFingerprint fp = trusted.get(relPath);
+        if (fp == null) return false;
+        long size = file.length(), lastModified = file.lastModified();
+        if (fp.size != size) return false;
+        if (fp.lastModified == lastModified) return true;
+
+        // The file was touched, so check whether its contents actually changed.
+        if (fp.fastHash == null) return false;
+        try {
+            if (!Arrays.equals(fp.fastHash, FileHasher.hash(file, fastHashAlgorithm)[0])) return false;
+        } catch (IOException e) {
+            return false;
+        }
+        refreshed.add(new RFileFingerprint(relPath, size, lastModified, fp.hash, fp.fastHash));
+        return true;
+    }
+
+    /**
+     * Get the fingerprints of files which {@link #isUnchanged(File, String)} found to have been touched without their
+     * contents changing. These should be persisted.
+     * @return List of refreshed fingerprints. Might be empty.
+     */
+    List<RFileFingerprint> getRefreshedFingerprints() {
+        return refreshed;
+    }
+
+    /**
+     * Get the relative paths which we have fingerprints for but which aren't in {@code foundRelPaths}; these files
+     * have been moved or deleted since they were last imported.
+     * @param foundRelPaths Relative paths of all files which currently exist.
+     * @return List of relative paths of files which no longer exist. Might be empty.
+     */
+    List<String> getMissingRelPaths(Set<String> foundRelPaths) {
+        List<String> missing = new ArrayList<>();
+        for (String relPath : allRelPaths) if (!foundRelPaths.contains(relPath)) missing.add(relPath);
+        Collections.sort(missing);
+        return missing;
+    }
+
+    /**
+     * Create a new, unmanaged {@link RFileFingerprint} for the given {@code file} using its current size and last
+     * modified time. Call this before reading the file, then fill in the hashes once they're known.
+     * @param file    File to fingerprint.
+     * @param relPath Relative path of {@code file}.
+     * @return New {@link RFileFingerprint} without hashes.
+     */
+    static RFileFingerprint fingerprint(File file, String relPath) {
+        return new RFileFingerprint(relPath, file.length(), file.lastModified(), null, null);
+    }
+
+    /**
+     * Delete the fingerprints for the given {@code relPaths}.
+     * <p>
+     * IMPORTANT: Only call this method from within a Realm transaction.
+     * @param realm    Instance of Realm to use.
+     * @param relPaths Relative paths whose fingerprints should be deleted.
+     */
+    static void deleteFingerprints(Realm realm, Collection<String> relPaths) {
+        if (relPaths.isEmpty()) return;
+        realm.where(RFileFingerprint.class)
+             .in("relPath", relPaths.toArray(new String[relPaths.size()]))
+             .findAll()
+             .deleteAllFromRealm();
+    }
+}
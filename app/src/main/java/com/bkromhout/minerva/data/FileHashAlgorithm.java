@@ -0,0 +1,36 @@
+package com.bkromhout.minerva.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A hashing algorithm which {@link FileHasher} can use to hash files.
+ * <p>
+ * This lets us use a cryptographic hash for books' identities while using a much faster, non-cryptographic hash to
+ * detect whether files have changed.
+ */
+interface FileHashAlgorithm {
+    /**
+     * Begin a new hash computation.
+     * @return New {@link Hasher}, which is ready to receive data.
+     */
+    Hasher newHasher();
+
+    /**
+     * Stateful hash computation. Instances are not thread-safe.
+     */
+    interface Hasher {
+        /**
+         * Update this hasher with the remaining bytes in {@code buffer}. When this returns, {@code buffer}'s position
+         * will be equal to its limit. This may also change {@code buffer}'s byte order.
+         * @param buffer Buffer to read bytes from.
+         */
+        void update(ByteBuffer buffer);
+
+        /**
+         * Finish the computation and get the hash of all of the bytes which this hasher was updated with. The hasher
+         * can't be used after calling this.
+         * @return Hash bytes.
+         */
+        byte[] hash();
+    }
+}
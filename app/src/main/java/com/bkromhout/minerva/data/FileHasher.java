@@ -0,0 +1,60 @@
+package com.bkromhout.minerva.data;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Hashes whole files using one or more {@link FileHashAlgorithm}s.
+ * <p>
+ * Files are read sequentially through a {@link FileChannel} into a large direct buffer, which is reused for every file
+ * hashed on the same thread, so hashing doesn't allocate per read and isn't limited by how some other reader (such as
+ * a zip stream) chooses to consume the file. When several algorithms are given, the file is still only read once.
+ */
+final class FileHasher {
+    /**
+     * Size of each thread's read buffer.
+     */
+    private static final int BUFFER_SIZE = 256 * 1024;
+    /**
+     * Read buffer for each thread.
+     */
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    };
+
+    private FileHasher() {
+    }
+
+    /**
+     * Hash the contents of {@code file} using each of the given {@code algorithms}.
+     * @param file       File to hash.
+     * @param algorithms Algorithms to use.
+     * @return Array of hashes, in the same order as {@code algorithms}.
+     * @throws IOException If the file can't be read.
+     */
+    static byte[][] hash(File file, FileHashAlgorithm... algorithms) throws IOException {
+        FileHashAlgorithm.Hasher[] hashers = new FileHashAlgorithm.Hasher[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) hashers[i] = algorithms[i].newHasher();
+
+        ByteBuffer buffer = BUFFERS.get();
+        try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                // Give each hasher its own view of the buffer, since reading from it moves its position.
+                for (FileHashAlgorithm.Hasher hasher : hashers) hasher.update(buffer.duplicate());
+                buffer.clear();
+            }
+        }
+
+        byte[][] hashes = new byte[hashers.length][];
+        for (int i = 0; i < hashers.length; i++) hashes[i] = hashers[i].hash();
+        return hashes;
+    }
+}
@@ -0,0 +1,177 @@
+package com.bkromhout.minerva.data;
+
+import com.bkromhout.minerva.realm.RBook;
+import io.realm.Realm;
+import io.realm.RealmResults;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory index of the existing {@link RBook}s, by relative path and by hash, which the {@link Importer} builds once
+ * per run so that it can figure out whether each book it reads is new, updated, or moved without querying Realm for
+ * each one.
+ * <p>
+ * The index must be kept up to date (using {@link #onMoved(Entry, String)}, {@link #onUpdated(Entry, byte[])}, and
+ * {@link #onInserted(RBook)}) as the importer saves books. Books can still be deleted by the user while an import is
+ * running, so use {@link #getBook(Realm, Entry)} to get the book for an entry.
+ */
+class ImportBookIndex {
+    /**
+     * An indexed book.
+     */
+    static class Entry {
+        /**
+         * Unique ID of the {@link RBook}.
+         */
+        final long uniqueId;
+        /**
+         * Current relative path of the {@link RBook}.
+         */
+        private String relPath;
+        /**
+         * Current hash of the {@link RBook}.
+         */
+        private byte[] hash;
+
+        private Entry(long uniqueId, String relPath, byte[] hash) {
+            this.uniqueId = uniqueId;
+            this.relPath = relPath;
+            this.hash = hash;
+        }
+
+        /**
+         * Get the {@link RBook} this entry represents.
+         * @param realm Instance of Realm to use.
+         * @return {@link RBook}.
+         */
+        RBook getBook(Realm realm) {
+            return realm.where(RBook.class).equalTo("uniqueId", uniqueId).findFirst();
+        }
+    }
+
+    /**
+     * Entries keyed by relative path.
+     */
+    private final Map<String, Entry> byRelPath;
+    /**
+     * Entries keyed by hash. If several books share the same hash, only the first one we saw is indexed.
+     */
+    private final Map<ByteBuffer, Entry> byHash;
+
+    private ImportBookIndex(int size) {
+        this.byRelPath = new HashMap<>(size);
+        this.byHash = new HashMap<>(size);
+    }
+
+    /**
+     * Build an index of all {@link RBook}s using a single pass over them.
+     * @param realm Instance of Realm to use.
+     * @return New {@link ImportBookIndex}.
+     */
+    static ImportBookIndex build(Realm realm) {
+        RealmResults<RBook> books = realm.where(RBook.class).findAll();
+        ImportBookIndex index = new ImportBookIndex(books.size());
+        for (RBook book : books) index.add(new Entry(book.uniqueId, book.relPath, book.hash));
+        return index;
+    }
+
+    /**
+     * Wraps a hash so that it can be used as a map key.
+     * @param hash Hash.
+     * @return Key for {@link #byHash}, or {@code null} if {@code hash} is {@code null}.
+     */
+    private static ByteBuffer hashKey(byte[] hash) {
+        return hash == null ? null : ByteBuffer.wrap(hash);
+    }
+
+    /**
+     * Add an entry to both maps.
+     * @param entry Entry to add.
+     */
+    private void add(Entry entry) {
+        byRelPath.put(entry.relPath, entry);
+        ByteBuffer key = hashKey(entry.hash);
+        if (key != null && !byHash.containsKey(key)) byHash.put(key, entry);
+    }
+
+    /**
+     * Get the entry for the book at {@code relPath}.
+     * @param relPath Relative path.
+     * @return Entry, or {@code null} if there isn't a book at {@code relPath}.
+     */
+    Entry getByRelPath(String relPath) {
+        return byRelPath.get(relPath);
+    }
+
+    /**
+     * Get the entry for a book whose hash is {@code hash} but which is at a different relative path than {@code
+     * relPath}; this is the book which a file at {@code relPath} has been moved from.
+     * @param hash    Hash.
+     * @param relPath Relative path of the file which might have been moved.
+     * @return Entry, or {@code null} if there isn't one.
+     */
+    Entry getMovedFrom(byte[] hash, String relPath) {
+        ByteBuffer key = hashKey(hash);
+        if (key == null) return null;
+        Entry entry = byHash.get(key);
+        return entry != null && !entry.relPath.equals(relPath) ? entry : null;
+    }
+
+    /**
+     * Get the {@link RBook} for an entry. If the book has been deleted since the index was built, the entry is removed
+     * from the index.
+     * @param realm Instance of Realm to use.
+     * @param entry Entry. May be null.
+     * @return {@link RBook}, or {@code null} if {@code entry} is {@code null} or its book no longer exists.
+     */
+    RBook getBook(Realm realm, Entry entry) {
+        if (entry == null) return null;
+        RBook book = entry.getBook(realm);
+        if (book == null) remove(entry);
+        return book;
+    }
+
+    /**
+     * Remove an entry from both maps.
+     * @param entry Entry to remove.
+     */
+    private void remove(Entry entry) {
+        if (byRelPath.get(entry.relPath) == entry) byRelPath.remove(entry.relPath);
+        ByteBuffer key = hashKey(entry.hash);
+        if (key != null && byHash.get(key) == entry) byHash.remove(key);
+    }
+
+    /**
+     * Update the index to reflect that the book for {@code entry} has moved to {@code newRelPath}.
+     * @param entry      Entry for the book which moved.
+     * @param newRelPath New relative path.
+     */
+    void onMoved(Entry entry, String newRelPath) {
+        if (byRelPath.get(entry.relPath) == entry) byRelPath.remove(entry.relPath);
+        entry.relPath = newRelPath;
+        byRelPath.put(newRelPath, entry);
+    }
+
+    /**
+     * Update the index to reflect that the book for {@code entry} now has the hash {@code newHash}.
+     * @param entry   Entry for the book which was updated.
+     * @param newHash New hash.
+     */
+    void onUpdated(Entry entry, byte[] newHash) {
+        ByteBuffer oldKey = hashKey(entry.hash);
+        if (oldKey != null && byHash.get(oldKey) == entry) byHash.remove(oldKey);
+        entry.hash = newHash;
+        ByteBuffer newKey = hashKey(newHash);
+        if (newKey != null && !byHash.containsKey(newKey)) byHash.put(newKey, entry);
+    }
+
+    /**
+     * Update the index to reflect that {@code book} has been added to Realm.
+     * @param book Book which was added.
+     */
+    void onInserted(RBook book) {
+        add(new Entry(book.uniqueId, book.relPath, book.hash));
+    }
+}
@@ -1,6 +1,7 @@
 package com.bkromhout.minerva.data;
 
 import android.support.annotation.NonNull;
+import android.text.format.Formatter;
 import com.bkromhout.minerva.Minerva;
 import com.bkromhout.minerva.R;
 import com.bkromhout.minerva.realm.RImportLog;
@@ -8,19 +9,29 @@ import com.bkromhout.minerva.util.Util;
 import io.realm.Realm;
 import io.realm.RealmResults;
 import io.realm.Sort;
+import rx.Observable;
 import rx.Observer;
 import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
 import rx.subjects.ReplaySubject;
 import rx.subjects.SerializedSubject;
 import rx.subjects.Subject;
+import timber.log.Timber;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Helper class which handles logging functionality for the {@link Importer}.
+ * <p>
+ * Only the most recent lines of the current log are kept in memory, for listeners to display. The full and errors-only
+ * logs are streamed to compressed files as they're logged, and past logs are read back from those files a page at a
+ * time, as the listener asks for them.
  */
 public class ImportLogger {
     /**
@@ -31,6 +42,20 @@ public class ImportLogger {
      * Represents either the current log (if we're logging), or the most recent log (if we aren't logging).
      */
     private static final int CURRENT_OR_LATEST_LOG = 0;
+    /**
+     * How long to collect log lines for before sending them to the listener together. Importing can log lines far
+     * faster than a view could ever display them, so sending them one at a time would just swamp the main thread.
+     */
+    private static final long LOG_INTERVAL_MS = 250;
+    /**
+     * Number of the current log's most recent lines to keep in memory for the listener. Listeners shouldn't need to
+     * show more than this many lines of the current log either.
+     */
+    public static final int LIVE_LOG_LINES = 1000;
+    /**
+     * Roughly how many characters of a past log to read at a time.
+     */
+    private static final int LOG_PAGE_SIZE = 32 * 1024;
 
     /**
      * Implement to view past import logs and listen to running import logs.
@@ -69,11 +94,20 @@ public class ImportLogger {
         void setCurrLogLabel(String logLabel);
 
         /**
-         * Manually set the text to use for the current full and error logs.
-         * @param fullLog  Full log as a string.
-         * @param errorLog Error log as a string.
+         * Append the next pages of the past log which is currently published. Unlike the log observers, this shouldn't
+         * cause the listener to scroll its logs, since that would make it ask for more pages right away.
+         * <p>
+         * Listeners should call {@link #loadNextLogPage()} when the user reaches the end of what they've been given.
+         * @param fullLogPage  Next page of the full log, or null if there isn't one.
+         * @param errorLogPage Next page of the error log, or null if there isn't one.
+         */
+        void appendLogPages(String fullLogPage, String errorLogPage);
+
+        /**
+         * Set the summary of metrics to show for the log currently published.
+         * @param metrics Metrics summary, or null if there aren't any (such as while an import is running).
          */
-        void setCurrLogs(String fullLog, String errorLog);
+        void setCurrMetrics(String metrics);
     }
 
     /**
@@ -96,6 +130,18 @@ public class ImportLogger {
      * Listener's subscription to the error stream.
      */
     private Subscription listenerErrorSub;
+    /**
+     * Reads the full log of the past log which is currently published.
+     */
+    private PagedLogReader fullLogReader;
+    /**
+     * Reads the error log of the past log which is currently published.
+     */
+    private PagedLogReader errorLogReader;
+    /**
+     * Subscription to the flow which is reading the next pages of the past log which is currently published.
+     */
+    private Subscription logPageSub;
 
     /*
      * Current import run vars.
@@ -103,16 +149,32 @@ public class ImportLogger {
     /**
      * Whether or not we're currently logging for an import run.
      */
-    private boolean isLogging = false;
+    private volatile boolean isLogging = false;
     /**
-     * ReplaySubject wrapped in a SerializedSubject which holds log lines.
+     * ReplaySubject wrapped in a SerializedSubject which holds the most recent log lines.
      */
     private Subject<String, String> logSubject;
     /**
-     * ReplaySubject wrapped in a SerializedSubject which holds log lines which describe errors (these lines are also
-     * printed to the regular log stream)
+     * ReplaySubject wrapped in a SerializedSubject which holds the most recent log lines which describe errors (these
+     * lines are also printed to the regular log stream)
      */
     private Subject<String, String> errorSubject;
+    /**
+     * Writes the full log to its file.
+     */
+    private LogFileWriter fullLogWriter;
+    /**
+     * Writes the error log to its file.
+     */
+    private LogFileWriter errorLogWriter;
+    /**
+     * Name of the full log's file, or null if we couldn't create it.
+     */
+    private String fullLogFile;
+    /**
+     * Name of the error log's file, or null if we couldn't create it.
+     */
+    private String errorLogFile;
     /**
      * Current number of errors logged.
      */
@@ -142,8 +204,8 @@ public class ImportLogger {
      * Create new subjects.
      */
     private void createSubjects() {
-        if (logSubject == null) logSubject = new SerializedSubject<>(ReplaySubject.create());
-        if (errorSubject == null) errorSubject = new SerializedSubject<>(ReplaySubject.create());
+        if (logSubject == null) logSubject = new SerializedSubject<>(ReplaySubject.createWithSize(LIVE_LOG_LINES));
+        if (errorSubject == null) errorSubject = new SerializedSubject<>(ReplaySubject.createWithSize(LIVE_LOG_LINES));
     }
 
     /**
@@ -168,15 +230,47 @@ public class ImportLogger {
         if (listener == null) return;
         // Subscribe to full log.
         if (logSubject != null && listenerLogSub == null)
-            listenerLogSub = logSubject.onBackpressureBuffer()
-                                       .observeOn(AndroidSchedulers.mainThread())
-                                       .subscribe(listener.getFullLogObserver());
+            listenerLogSub = batchLines(logSubject).subscribe(listener.getFullLogObserver());
 
         // Subscribe to error log.
         if (errorSubject != null && listenerErrorSub == null)
-            listenerErrorSub = errorSubject.onBackpressureBuffer()
-                                           .observeOn(AndroidSchedulers.mainThread())
-                                           .subscribe(listener.getErrorLogObserver());
+            listenerErrorSub = batchLines(errorSubject).subscribe(listener.getErrorLogObserver());
+    }
+
+    /**
+     * Collect the lines emitted by the given log subject for {@link #LOG_INTERVAL_MS} at a time, then join them
+     * together so that the listener only has to handle one string on the main thread for each interval.
+     * @param subject Log subject.
+     * @return Observable which emits joined lines on the main thread.
+     */
+    private static Observable<String> batchLines(Subject<String, String> subject) {
+        return subject.onBackpressureBuffer()
+                      .buffer(LOG_INTERVAL_MS, TimeUnit.MILLISECONDS)
+                      .filter(lines -> !lines.isEmpty())
+                      .map(ImportLogger::joinLines)
+                      .observeOn(AndroidSchedulers.mainThread())
+                      .concatMapIterable(lines -> lines);
+    }
+
+    /**
+     * Join each run of non-null lines into a single string. Nulls are kept where they are, since they tell the listener
+     * to clear its log.
+     * @param lines Lines to join.
+     * @return Joined lines.
+     */
+    private static List<String> joinLines(List<String> lines) {
+        List<String> joined = new ArrayList<>();
+        StringBuilder builder = null;
+        for (String line : lines) {
+            if (line == null) {
+                if (builder != null) joined.add(builder.toString());
+                builder = null;
+                joined.add(null);
+            } else if (builder == null) builder = new StringBuilder(line);
+            else builder.append(line);
+        }
+        if (builder != null) joined.add(builder.toString());
+        return joined;
     }
 
     /**
@@ -203,7 +297,12 @@ public class ImportLogger {
                                                  .findAllSorted("endTime", Sort.DESCENDING);
 
             // Remove earliest log if we're at the limit.
-            if (logs.size() == MAX_LOGS) realm.executeTransaction(tRealm -> logs.last().deleteFromRealm());
+            if (logs.size() == MAX_LOGS) {
+                RImportLog earliest = logs.last();
+                DataUtils.deleteLogFile(earliest.fullLogFile);
+                DataUtils.deleteLogFile(earliest.errorLogFile);
+                realm.executeTransaction(tRealm -> earliest.deleteFromRealm());
+            }
         }
     }
 
@@ -217,54 +316,129 @@ public class ImportLogger {
     }
 
     /**
-     * Publish a full log that we'd saved to the listener, if it's attached.
-     * @param fullLog Full log as a string.
+     * Open a new log file for writing.
+     * @param name Log file name.
+     * @return Writer, or null if the file couldn't be opened.
      */
-    private void publishSavedFullLog(String fullLog) {
-        if (listener == null) return;
-        Observer<String> fullLogObserver = listener.getFullLogObserver();
-        fullLogObserver.onNext(null);
-        fullLogObserver.onNext(fullLog);
+    private static LogFileWriter openLogFile(String name) {
+        try {
+            return new LogFileWriter(DataUtils.getLogFile(name));
+        } catch (IOException e) {
+            Timber.e(e, "Failed to open import log file %s.", name);
+            return null;
+        }
     }
 
     /**
-     * Publish an error log that we'd saved to the listener, if it's attached.
-     * @param errorLog Error log as a string.
+     * Publish a past log to the listener, if it's attached, by having it clear its logs and then sending it the first
+     * pages of the log's files.
+     * @param log Past log.
      */
-    private void publishSavedErrorsLog(String errorLog) {
+    private void publishSavedLog(RImportLog log) {
+        closeSavedLog();
         if (listener == null) return;
-        Observer<String> errorLogObserver = listener.getErrorLogObserver();
-        errorLogObserver.onNext(null);
-        errorLogObserver.onNext(errorLog);
+        listener.getFullLogObserver().onNext(null);
+        listener.getErrorLogObserver().onNext(null);
+
+        // The files won't exist if the log was saved before a backup was restored, for instance.
+        File fullFile = log.fullLogFile != null ? DataUtils.getLogFile(log.fullLogFile) : null;
+        if (fullFile == null || !fullFile.exists()) {
+            listener.getFullLogObserver().onNext(Minerva.get().getString(R.string.log_unavailable));
+            return;
+        }
+        fullLogReader = new PagedLogReader(fullFile, LOG_PAGE_SIZE);
+        if (log.errorLogFile != null)
+            errorLogReader = new PagedLogReader(DataUtils.getLogFile(log.errorLogFile), LOG_PAGE_SIZE);
+        loadNextLogPage();
+    }
+
+    /**
+     * Stop reading the past log which is currently published, if there is one.
+     */
+    private void closeSavedLog() {
+        if (logPageSub != null) {
+            logPageSub.unsubscribe();
+            logPageSub = null;
+        }
+        if (fullLogReader != null) fullLogReader.close();
+        if (errorLogReader != null) errorLogReader.close();
+        fullLogReader = null;
+        errorLogReader = null;
+    }
+
+    /**
+     * Read the next page using the given reader.
+     * @param reader Reader. May be null.
+     * @return Next page, or null if there isn't one.
+     */
+    private static String readLogPage(PagedLogReader reader) {
+        if (reader == null) return null;
+        try {
+            return reader.readPage();
+        } catch (IOException e) {
+            Timber.e(e, "Failed to read import log file.");
+            return null;
+        }
     }
 
     /**
      * Save a new log using the current import run information.
-     * @param endTime    Time the import run ended.
-     * @param fullLog    Full log string.
-     * @param errorLog   Error log string.
-     * @param wasSuccess Whether or not the import run was successful.
+     * @param log New log.
      */
-    private void saveNewLog(long endTime, String fullLog, String errorLog, boolean wasSuccess) {
-        // Create and persist new log object.
+    private void saveNewLog(RImportLog log) {
+        // Persist new log object.
         try (Realm realm = Realm.getDefaultInstance()) {
-            realm.executeTransaction(tRealm ->
-                    tRealm.copyToRealm(new RImportLog(endTime, fullLog, errorLog, wasSuccess)));
+            realm.executeTransaction(tRealm -> tRealm.copyToRealm(log));
         }
     }
 
+    /**
+     * Make a human-readable summary of the metrics saved with a log.
+     * @param log Import log.
+     * @return Metrics summary, or null if the log doesn't have any metrics.
+     */
+    private static String makeMetricsSummary(RImportLog log) {
+        if (log.totalTime == 0) return null;
+        Minerva app = Minerva.get();
+
+        float filesPerSec = log.numFilesRead * 1000f / log.totalTime;
+        String summary = app.getString(R.string.import_metrics, log.numFilesRead, formatMillis(log.totalTime),
+                filesPerSec, Formatter.formatShortFileSize(app, log.bytesRead), formatMillis(log.findTime),
+                formatMillis(log.hashTime), formatMillis(log.parseTime), formatMillis(log.coverTime),
+                formatMillis(log.commitTime), log.peakQueueDepth);
+        if (log.slowestFiles != null)
+            summary += "\n" + app.getString(R.string.import_metrics_slowest, log.slowestFiles);
+        return summary;
+    }
+
+    /**
+     * Format a time in milliseconds as seconds, with one decimal place.
+     * @param millis Time in milliseconds.
+     * @return Formatted time.
+     */
+    private static String formatMillis(long millis) {
+        return Minerva.get().getString(R.string.import_metrics_seconds, millis / 1000f);
+    }
+
     /**
      * Called by {@link Importer} to indicate that it is about to start an import run, and that we need to be prepared
      * to start logging.
      */
-    void prepareNewLog() {
+    synchronized void prepareNewLog() {
         // Make sure we aren't already logging.
         if (isLogging) throw new IllegalStateException("Already logging.");
         isLogging = true;
         currNumErrors = 0;
 
-        // Create subjects and make room for a new log if necessary.
+        // Create subjects and log files, and make room for a new log if necessary.
         createSubjects();
+        long startTime = Calendar.getInstance().getTimeInMillis();
+        fullLogFile = DataUtils.makeLogFileName(startTime, false);
+        errorLogFile = DataUtils.makeLogFileName(startTime, true);
+        fullLogWriter = openLogFile(fullLogFile);
+        errorLogWriter = openLogFile(errorLogFile);
+        if (fullLogWriter == null) fullLogFile = null;
+        if (errorLogWriter == null) errorLogFile = null;
         makeRoomForNewLogIfNeeded();
 
         // Switch the listener to the current log immediately, if it's attached and wishes for us to do so.
@@ -274,60 +448,79 @@ public class ImportLogger {
     /**
      * Called by {@link Importer} when it has finished an import run so that we can save the current log.
      * @param wasSuccess Whether or not the import run was successful.
+     * @param metrics    Metrics collected during the import run, to save with the log. May be null.
      */
-    void finishCurrentLog(boolean wasSuccess) {
+    synchronized void finishCurrentLog(boolean wasSuccess, ImportMetrics metrics) {
         throwIfNotLogging();
 
-        // Complete our subjects.
+        // Complete and destroy our subjects, and finish writing the log files. Everything has already been written to
+        // the files, so all that's left to do is flush them.
         logSubject.onCompleted();
         errorSubject.onCompleted();
+        destroySubjects();
+        if (fullLogWriter != null) fullLogWriter.close();
+        if (errorLogWriter != null) errorLogWriter.close();
+        fullLogWriter = null;
+        errorLogWriter = null;
 
         // Get current time. Persist it if this was a successful finish.
         long endTime = Calendar.getInstance().getTimeInMillis();
         if (wasSuccess) updateLastSuccessTime(endTime);
 
-        // Concatenate logs into strings, then destroy the subjects.
-        String fullLog = DataUtils.rxToString(logSubject);
-        String errorLog = DataUtils.rxToString(errorSubject);
-        destroySubjects();
-        // Often times the subject simply hasn't kept up, so the listener doesn't see the last parts of the log
-        // before the subjects are destroyed.
-        if (listener != null) listener.setCurrLogs(fullLog, errorLog);
-
-        // Save new log, then destroy the
-        saveNewLog(endTime, fullLog, errorLog, wasSuccess);
+        // Create and save the new log, with metrics if we have them.
+        RImportLog log = new RImportLog(endTime, fullLogFile, errorLogFile, wasSuccess);
+        if (metrics != null) metrics.writeTo(log);
+        saveNewLog(log);
 
         // Set isLogging to false.
         isLogging = false;
+
+        // Often times the subject simply hasn't kept up, so the listener doesn't see the last parts of the log before
+        // the subjects are destroyed. Have it show the saved log instead.
+        if (listener != null) switchLogs(CURRENT_OR_LATEST_LOG);
     }
 
     /**
      * Publish a normal log line for the current import run.
+     * <p>
+     * This may be called from several of the importer's worker threads at once. Lines logged once the current log has
+     * been finished (such as by workers which were still busy when an import was cancelled) are dropped.
      * @param logStr String to log.
      */
-    void log(String logStr) {
-        throwIfNotLogging();
+    synchronized void log(String logStr) {
+        if (!isLogging) {
+            Timber.d("Dropped import log line logged after the log was finished: %s", logStr);
+            return;
+        }
         logSubject.onNext(logStr);
+        if (fullLogWriter != null) fullLogWriter.write(logStr);
     }
 
     /**
      * Publish an error log line for the current import run.
+     * <p>
+     * This may be called from several of the importer's worker threads at once. Lines logged once the current log has
+     * been finished are dropped.
      * @param errStr String to log.
      */
-    void error(String errStr) {
-        throwIfNotLogging();
+    synchronized void error(String errStr) {
+        if (!isLogging) {
+            Timber.d("Dropped import error line logged after the log was finished: %s", errStr);
+            return;
+        }
         if (errStr != null) {
             log(errStr);
             currNumErrors++;
         }
         errorSubject.onNext(errStr);
+        if (errorLogWriter != null) errorLogWriter.write(errStr);
     }
 
     /**
      * Get the number of errors which have been logged so far in this run.
      * @return Number of errors logged this run.
      */
-    int getCurrNumErrors() {
+    synchronized int getCurrNumErrors() {
         throwIfNotLogging();
         return currNumErrors;
     }
@@ -360,11 +553,34 @@ public class ImportLogger {
      * Detaches the currently attached listener.
      */
     public final void stopListening() {
-        // Unsubscribe the listener's subscriptions, if they exist.
+        // Unsubscribe the listener's subscriptions, if they exist, and stop reading any past log.
         unsubscribeListenerFromSubjects();
+        closeSavedLog();
         listener = null;
     }
 
+    /**
+     * Send the next pages of the past log which is currently published to the listener, if there are any. Pages are
+     * read in the background.
+     * <p>
+     * Does nothing if the current log is published, or if the next pages are already being read.
+     */
+    public final void loadNextLogPage() {
+        if (listener == null || logPageSub != null) return;
+        PagedLogReader fullReader = fullLogReader;
+        PagedLogReader errorReader = errorLogReader;
+        if ((fullReader == null || !fullReader.hasMore()) && (errorReader == null || !errorReader.hasMore())) return;
+
+        logPageSub = Observable.fromCallable(() -> new String[] {readLogPage(fullReader), readLogPage(errorReader)})
+                               .subscribeOn(Schedulers.io())
+                               .observeOn(AndroidSchedulers.mainThread())
+                               .subscribe(pages -> {
+                                   logPageSub = null;
+                                   if (listener != null && (pages[0] != null || pages[1] != null))
+                                       listener.appendLogPages(pages[0], pages[1]);
+                               }, t -> logPageSub = null);
+    }
+
     /**
      * Returns a list of past logs which are available for viewing. If there is an import running, the current log will
      * be the first item. If there are no past logs, and there isn't an import running, the list will be empty.
@@ -408,14 +624,16 @@ public class ImportLogger {
         if (isLogging) {
             if (whichLog == CURRENT_OR_LATEST_LOG) {
                 // If 0 is passed, we should subscribe the listener to the currently ongoing log.
+                closeSavedLog();
                 subscribeListenerToSubjects();
 
                 // Now have the listener clear its current contents.
                 logSubject.onNext(null);
                 errorSubject.onNext(null);
 
-                // Then set the log label, and we're done.
+                // Then set the log label and clear the metrics, and we're done.
                 listener.setCurrLogLabel(Minerva.get().getString(R.string.log_label_current_import_lc));
+                listener.setCurrMetrics(null);
                 return;
             } else // If we're logging and didn't pass 0, we want a past log; translate to proper index now.
                 whichLog--;
@@ -438,8 +656,8 @@ public class ImportLogger {
 
             // Tell the listener the label, then publish the logs.
             listener.setCurrLogLabel(label);
-            publishSavedFullLog(log.fullLog);
-            publishSavedErrorsLog(log.errorLog);
+            publishSavedLog(log);
+            listener.setCurrMetrics(makeMetricsSummary(log));
         }
     }
 }
@@ -0,0 +1,211 @@
+package com.bkromhout.minerva.data;
+
+import com.bkromhout.minerva.realm.RImportLog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects timing and throughput information about the stages of a single import run, so that it can be saved with
+ * the run's {@link RImportLog}.
+ * <p>
+ * The parse stage runs on several threads at once, so all methods are thread-safe. Because of that, the time spent
+ * hashing, parsing, and writing covers is summed across all of the workers, and may add up to more than the run's
+ * total time.
+ */
+final class ImportMetrics {
+    /**
+     * Number of slowest files to remember.
+     */
+    static final int NUM_SLOWEST_FILES = 5;
+
+    /**
+     * Stages of an import run which we time.
+     */
+    enum Stage {
+        /**
+         * Finding files to import; the library walk for full imports, or resolving relative paths for re-imports.
+         */
+        FIND,
+        /**
+         * Hashing files.
+         */
+        HASH,
+        /**
+         * Reading metadata from files.
+         */
+        PARSE,
+        /**
+         * Creating {@link com.bkromhout.minerva.realm.RBook}s, which includes writing their cover images.
+         */
+        COVER,
+        /**
+         * Realm transactions which save books and tag them.
+         */
+        COMMIT
+    }
+
+    /**
+     * When the run started, from {@link System#nanoTime()}.
+     */
+    private final long startNanos;
+    /**
+     * Nanoseconds spent in each stage, indexed by {@link Stage#ordinal()}.
+     */
+    private final AtomicLong[] stageNanos = new AtomicLong[Stage.values().length];
+    /**
+     * Number of bytes read from files which were hashed.
+     */
+    private final AtomicLong bytesRead = new AtomicLong();
+    /**
+     * Number of files which were read.
+     */
+    private final AtomicInteger numFilesRead = new AtomicInteger();
+    /**
+     * Number of files which have been found but haven't been read yet.
+     */
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    /**
+     * Largest value {@link #queueDepth} has reached.
+     */
+    private final AtomicInteger peakQueueDepth = new AtomicInteger();
+    /**
+     * The slowest files read so far, with the fastest of them at the head. Guarded by itself.
+     */
+    private final PriorityQueue<SlowFile> slowestFiles = new PriorityQueue<>(NUM_SLOWEST_FILES + 1);
+    /**
+     * Total time the run took, in nanoseconds. Set by {@link #finish()}.
+     */
+    private long totalNanos = -1;
+
+    /**
+     * Create a new {@link ImportMetrics}, which starts timing the run immediately.
+     */
+    ImportMetrics() {
+        startNanos = System.nanoTime();
+        for (int i = 0; i < stageNanos.length; i++) stageNanos[i] = new AtomicLong();
+    }
+
+    /**
+     * Add time spent in a stage.
+     * @param stage      Stage.
+     * @param startNanos When the time being added started, from {@link System#nanoTime()}. The time ends now.
+     */
+    void addTime(Stage stage, long startNanos) {
+        stageNanos[stage.ordinal()].addAndGet(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Note that some files have been found and are waiting to be read.
+     * @param numFiles Number of files.
+     */
+    void onFilesQueued(int numFiles) {
+        int depth = queueDepth.addAndGet(numFiles);
+        int peak;
+        do {
+            peak = peakQueueDepth.get();
+        } while (depth > peak && !peakQueueDepth.compareAndSet(peak, depth));
+    }
+
+    /**
+     * Note that a file which was waiting to be read no longer is, either because it has been read or because it has
+     * been skipped.
+     */
+    void onFileDequeued() {
+        queueDepth.decrementAndGet();
+    }
+
+    /**
+     * Note that a file has been read.
+     * @param relPath    Relative path of the file.
+     * @param numBytes   Size of the file.
+     * @param startNanos When we started processing the file, from {@link System#nanoTime()}.
+     */
+    void onFileRead(String relPath, long numBytes, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        bytesRead.addAndGet(numBytes);
+        numFilesRead.incrementAndGet();
+
+        synchronized (slowestFiles) {
+            if (slowestFiles.size() < NUM_SLOWEST_FILES || nanos > slowestFiles.peek().nanos) {
+                slowestFiles.add(new SlowFile(relPath, nanos));
+                if (slowestFiles.size() > NUM_SLOWEST_FILES) slowestFiles.poll();
+            }
+        }
+    }
+
+    /**
+     * Stop timing the run. Only the first call has any effect.
+     */
+    void finish() {
+        if (totalNanos == -1) totalNanos = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Copy the collected metrics to the given {@link RImportLog}. Calls {@link #finish()} first.
+     * <p>
+     * Times are stored in milliseconds.
+     * @param log Import log, which should not be managed by Realm yet.
+     */
+    void writeTo(RImportLog log) {
+        finish();
+        log.totalTime = toMillis(totalNanos);
+        log.findTime = toMillis(stageNanos[Stage.FIND.ordinal()].get());
+        log.hashTime = toMillis(stageNanos[Stage.HASH.ordinal()].get());
+        log.parseTime = toMillis(stageNanos[Stage.PARSE.ordinal()].get());
+        log.coverTime = toMillis(stageNanos[Stage.COVER.ordinal()].get());
+        log.commitTime = toMillis(stageNanos[Stage.COMMIT.ordinal()].get());
+        log.bytesRead = bytesRead.get();
+        log.numFilesRead = numFilesRead.get();
+        log.peakQueueDepth = peakQueueDepth.get();
+        log.slowestFiles = getSlowestFiles();
+    }
+
+    /**
+     * Get the slowest files read so far as a string with one file per line, slowest first, in the form "relPath
+     * (time in ms)".
+     * @return Slowest files, or null if no files have been read.
+     */
+    String getSlowestFiles() {
+        List<SlowFile> files;
+        synchronized (slowestFiles) {
+            files = new ArrayList<>(slowestFiles);
+        }
+        if (files.isEmpty()) return null;
+        Collections.sort(files, Collections.reverseOrder());
+
+        StringBuilder builder = new StringBuilder();
+        for (SlowFile file : files) {
+            if (builder.length() > 0) builder.append('\n');
+            builder.append(file.relPath).append(" (").append(toMillis(file.nanos)).append(" ms)");
+        }
+        return builder.toString();
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * A file and how long it took to read.
+     */
+    private static class SlowFile implements Comparable<SlowFile> {
+        private final String relPath;
+        private final long nanos;
+
+        private SlowFile(String relPath, long nanos) {
+            this.relPath = relPath;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public int compareTo(SlowFile other) {
+            return Long.compare(nanos, other.nanos);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.bkromhout.minerva.Minerva;
 import com.bkromhout.minerva.R;
 import com.bkromhout.minerva.enums.MarkType;
 import com.bkromhout.minerva.realm.RBook;
+import com.bkromhout.minerva.realm.RFileFingerprint;
 import com.bkromhout.minerva.realm.RTag;
 import com.bkromhout.minerva.ui.SnackKiosk;
 import com.bkromhout.minerva.util.Util;
@@ -14,19 +15,33 @@ import io.realm.Realm;
 import io.realm.RealmResults;
 import rx.Observable;
 import rx.Observer;
+import rx.Scheduler;
 import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
 import rx.schedulers.Schedulers;
 import rx.subjects.BehaviorSubject;
+import rx.subjects.PublishSubject;
 import rx.subjects.SerializedSubject;
 import rx.subjects.Subject;
 import timber.log.Timber;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Handles all importing.
+ * <p>
+ * Import runs are checkpointed as they go: each batch of books is saved along with the fingerprints of their files,
+ * and a full import skips any file whose fingerprint shows it hasn't changed. So if a run is cancelled, or if the app
+ * is killed during a full import (which is then resumed the next time the app starts), the next full import picks up
+ * where the last one stopped rather than starting over.
  */
 public class Importer {
     /**
@@ -37,10 +52,37 @@ public class Importer {
      * Clear the progress UI to a determinate, empty state.
      */
     public static final int SET_PROGRESS_DETERMINATE_ZERO = -2;
+    /**
+     * Number of full imports in a row which can be interrupted before we stop starting full imports automatically
+     * when the app starts. An import which keeps getting interrupted is likely crashing the app.
+     */
+    public static final int MAX_INTERRUPTED_IMPORTS = 2;
     /**
      * File extensions which we support importing.
      */
     private static final List<String> VALID_EXTENSIONS = Collections.singletonList("epub");
+    /**
+     * Globs for files and folders which we skip by default, since they never hold books which the user wants.
+     */
+    private static final Set<String> DEFAULT_EXCLUDE_GLOBS = new HashSet<>(
+            Arrays.asList(".Trash*", ".thumbnails", ".cache", "LOST.DIR"));
+    /**
+     * Default number of books to save to Realm in each transaction.
+     */
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    /**
+     * Algorithm used to hash files for {@link RBook#hash}, which identifies books by their content.
+     */
+    private static final FileHashAlgorithm IDENTITY_HASH = new SHA256FileHashAlgorithm();
+    /**
+     * Algorithm used to hash files for {@link RFileFingerprint#fastHash}, which is only used to detect changes.
+     */
+    private static final FileHashAlgorithm FAST_HASH = new XXHash64FileHashAlgorithm();
+    /**
+     * How often, at most, to send progress updates to the listener. Files can be read far more quickly than the UI
+     * could ever redraw, so only the latest progress is sent, once per interval.
+     */
+    private static final long PROGRESS_INTERVAL_MS = 250;
 
     /**
      * Implemented by classes which wish to listen to events from the importer.
@@ -64,6 +106,26 @@ public class Importer {
          */
         void onProgressFlag(int maxProgress);
 
+        /**
+         * Set the number of files which the current run has found to import so far.
+         * <p>
+         * Full imports start importing files as soon as they're found, so this will be called repeatedly while {@code
+         * isDiscovering} is true.
+         * @param numDiscovered Number of files found so far.
+         * @param isDiscovering Whether or not the importer is still looking for files.
+         */
+        void setNumDiscovered(int numDiscovered, boolean isDiscovering);
+
+        /**
+         * Set how quickly the current run is reading files, and about how long it will take to finish.
+         * <p>
+         * This is called along with each progress update.
+         * @param filesPerSec Files read per second, or 0 if it isn't known yet.
+         * @param etaMillis   Estimated time until all files have been read in milliseconds, or -1 if it isn't known
+         *                    (such as while the importer is still looking for files).
+         */
+        void setProgressRate(float filesPerSec, long etaMillis);
+
         /**
          * Set the number of queued import runs.
          * @param numQueued Number of import runs in the queue.
@@ -88,7 +150,7 @@ public class Importer {
      * Types of import runs.
      */
     private enum ImportType {
-        FULL, REDO
+        FULL, REDO, DELTA
     }
 
     /**
@@ -116,34 +178,98 @@ public class Importer {
      */
     private File currDir;
     /**
-     * How many files in the current run have been processed.
+     * How many files in the current run have been processed. Incremented by the parse workers, so it's atomic.
      */
-    private int numDone;
+    private final AtomicInteger numDone = new AtomicInteger(0);
     /**
-     * Total number of files in the current run.
+     * Total number of files in the current run. During a full import, this is the number of files which have been
+     * found so far.
      */
     private int numTotal;
+    /**
+     * Number of files which the current full import has found and handed to the parse stage so far. Only written by
+     * the file walker's thread.
+     */
+    private volatile int numDiscovered;
+    /**
+     * Whether or not the current full import is still looking for files.
+     */
+    private volatile boolean isDiscovering;
+    /**
+     * Whether or not an update to {@link #numTotal} from {@link #numDiscovered} has been scheduled on the main thread.
+     */
+    private final AtomicBoolean discoveryUpdatePending = new AtomicBoolean(false);
+    /**
+     * How many books in the current run have been saved to Realm.
+     */
+    private int numSaved;
+    /**
+     * Whether or not the current run should try to detect files which have been moved.
+     */
+    private boolean detectMoved;
+    /**
+     * Index of existing books used to save books for the current run. Built when the first batch is saved.
+     */
+    private ImportBookIndex bookIndex;
 
     /*
      * Import process vars.
      */
     private final ImportLogger logger;
     /**
-     * Subscription to an Rx flow which attempts to get a list of files for us to import.
+     * Subscription to an Rx flow which attempts to get a list of files for us to re-import.
      */
     private Subscription fileResolverSubscription;
     /**
-     * Subscription to an Rx flow which uses
+     * Subscription to an Rx flow which uses {@link #parseExecutor} to turn files into {@link RBook}s.
      */
     private Subscription fileImporterSubscription;
     /**
-     * List of {@link RBook}s that have been created from book files.
+     * Emits when the current run is cancelled, which stops {@link #fileImporterSubscription} from taking new files so
+     * that it can finish saving the files it has already read.
+     */
+    private PublishSubject<Void> stopTakingFiles;
+    /**
+     * Pool of workers which the parse stage of the current run uses to read files in parallel.
      */
-    private LinkedList<RBook> bookQueue;
+    private ExecutorService parseExecutor;
+    /**
+     * Used to post updates about discovered files to the main thread during a full import.
+     */
+    private Scheduler.Worker mainThreadWorker;
     /**
      * List of relative paths for which we didn't find files during re-import.
      */
     private List<String> invalidReImportPaths;
+    /**
+     * Number of files which a full import skipped because they hadn't changed since they were last imported. Only
+     * touched by the file walker's thread.
+     */
+    private int numUnchanged;
+    /**
+     * Relative paths of all files which a full import has found, changed or not. Only touched by the file walker's
+     * thread.
+     */
+    private Set<String> foundRelPaths;
+    /**
+     * Relative paths of files which the current full import should import even if they haven't changed, because it
+     * absorbed re-imports of them. Empty for other types of runs.
+     */
+    private Set<String> forcedRelPaths;
+    /**
+     * Fingerprints of the files which have been read during this run, keyed by relative path. Written to by the parse
+     * stage's workers.
+     */
+    private Map<String, RFileFingerprint> newFingerprints;
+    /**
+     * Timing and throughput metrics for the current run. Replaced when each run starts rather than cleared when it
+     * ends, since the parse stage's workers may still be finishing up a file after a run is cancelled.
+     */
+    private ImportMetrics metrics;
+    /**
+     * When the current run started finding files, or when it started tagging books, from {@link System#nanoTime()}.
+     */
+    private long stageStartNanos;
     /**
      * Instance of Realm.
      */
@@ -164,6 +290,10 @@ public class Importer {
      * Listener's subscription to the progress stream.
      */
     private Subscription listenerProgressSub;
+    /**
+     * Estimates the rate and time remaining which we send to the listener along with progress updates.
+     */
+    private final ProgressRate progressRate = new ProgressRate();
 
     /**
      * Get the instance of {@link Importer}.
@@ -179,11 +309,14 @@ public class Importer {
         // Init vars
         this.logger = ImportLogger.get();
         this.currDir = null;
-        this.numDone = 0;
         this.numTotal = 0;
+        this.numSaved = 0;
         this.currRun = null;
-        this.bookQueue = new LinkedList<>();
         this.invalidReImportPaths = new ArrayList<>();
+        this.numUnchanged = 0;
+        this.foundRelPaths = new HashSet<>();
+        this.forcedRelPaths = Collections.emptySet();
+        this.newFingerprints = new ConcurrentHashMap<>();
         this.queuedRuns = new LinkedList<>();
 
         // Set our state to READY.
@@ -217,10 +350,24 @@ public class Importer {
         if (listener == null) return;
         // Subscribe to progress updates.
         if (progressSubject != null && listenerProgressSub == null)
-            listenerProgressSub = progressSubject.observeOn(AndroidSchedulers.mainThread())
+            listenerProgressSub = progressSubject.sample(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS)
+                                                 .observeOn(AndroidSchedulers.mainThread())
+                                                 .doOnNext(this::publishProgressRate)
                                                  .subscribe(listener.getProgressObserver());
     }
 
+    /**
+     * Update the progress rate estimate, and tell the listener about it.
+     * <p>
+     * This is called on the main thread with the latest progress, at most once every {@link #PROGRESS_INTERVAL_MS}.
+     * @param numDone Number of files read so far.
+     */
+    private void publishProgressRate(int numDone) {
+        progressRate.update(System.nanoTime(), numDone);
+        if (listener != null) listener.setProgressRate(progressRate.getFilesPerSec(),
+                isDiscovering ? ProgressRate.UNKNOWN_ETA : progressRate.getEtaMillis(numTotal - numDone));
+    }
+
     /**
      * Unsubscribe listener from progress subject.
      */
@@ -250,16 +397,68 @@ public class Importer {
 
     /**
      * Queue a new import run. If no import runs are currently queued/running, the new one will be started immediately.
+     * <p>
+     * The new run is merged with the runs which are already queued if they overlap, so that no file is imported more
+     * than once before the queue is drained; see {@link #mergeIntoQueuedRuns(ImportRun)}.
      * @param newRun New import run.
      */
     private void queueNewRun(ImportRun newRun) {
-        queuedRuns.add(newRun);
+        if (!mergeIntoQueuedRuns(newRun)) queuedRuns.add(newRun);
         int numBefore = queuedRuns.size();
         startNextRun();
         // Only update the listener if we know startNextRun() didn't do it.
         if (queuedRuns.size() == numBefore && listener != null) listener.setNumQueued(numBefore);
     }
 
+    /**
+     * Merge {@code newRun} with the runs in {@link #queuedRuns}, if they overlap. The run which is currently executing
+     * is never touched.
+     * <ul>
+     * <li>A full import covers everything a delta import would, so queued delta imports are dropped when a full import
+     * is queued, and delta imports aren't queued at all if a full import already is.</li>
+     * <li>A queued full import also absorbs re-imports, and will import their files even if they haven't changed.</li>
+     * <li>Otherwise, re-imports are merged with a queued re-import, and delta imports with a queued delta import, by
+     * taking the union of their relative paths.</li>
+     * </ul>
+     * Since merging keeps at most one run of each type in the queue, and never a full import along with another run,
+     * {@code newRun} can absorb or be absorbed by at most one queued run of its own type.
+     * @param newRun New import run.
+     * @return True if {@code newRun} was merged into a queued run, and shouldn't be queued itself.
+     */
+    private boolean mergeIntoQueuedRuns(ImportRun newRun) {
+        ImportRun queuedFull = findQueuedRun(ImportType.FULL);
+        if (newRun.type == ImportType.FULL) {
+            if (queuedFull != null) return true;
+            // Absorb everything else which is queued.
+            Iterator<ImportRun> iter = queuedRuns.iterator();
+            while (iter.hasNext()) {
+                ImportRun run = iter.next();
+                if (run.type == ImportType.REDO) newRun.relPaths.addAll(run.relPaths);
+                iter.remove();
+            }
+            return false;
+        }
+
+        if (queuedFull != null) {
+            if (newRun.type == ImportType.REDO) queuedFull.relPaths.addAll(newRun.relPaths);
+            return true;
+        }
+        ImportRun queuedSameType = findQueuedRun(newRun.type);
+        if (queuedSameType == null) return false;
+        queuedSameType.relPaths.addAll(newRun.relPaths);
+        return true;
+    }
+
+    /**
+     * Find the queued import run of the given type.
+     * @param type Import run type.
+     * @return Queued run, or null if there isn't one.
+     */
+    private ImportRun findQueuedRun(ImportType type) {
+        for (ImportRun run : queuedRuns) if (run.type == type) return run;
+        return null;
+    }
+
     /**
      * Attempts to start executing the next {@link ImportRun} in {@link #queuedRuns}.
      */
@@ -280,11 +479,12 @@ public class Importer {
      */
     private void doCommonPrep() {
         currState = State.PREP;
+        metrics = new ImportMetrics();
 
         // Figure out what type of import run this is, then tell the logger we're about to start a new run.
         logger.prepareNewLog();
-        logger.log(Minerva.get()
-                          .getString(currRun.type == ImportType.FULL ? R.string.fil_starting : R.string.ril_starting));
+        logger.log(Minerva.get().getString(currRun.type == ImportType.FULL ? R.string.fil_starting
+                : (currRun.type == ImportType.DELTA ? R.string.dil_starting : R.string.ril_starting)));
 
         // Create progress subject and update listener
         createProgressSubject();
@@ -298,34 +498,208 @@ public class Importer {
             // We don't have a valid library directory.
             logger.error(Minerva.get().getString(R.string.il_err_invalid_lib_dir));
             doTeardownThenStartNextRun(true);
+            return;
         }
 
         // Depending on the type of run this is, do a different sort of preparation.
         if (currRun.type == ImportType.FULL) doFullImportPrep();
-        else doReImportPrep(currRun.reImportRelPaths);
+        else if (currRun.type == ImportType.DELTA) doDeltaImportPrep(new ArrayList<>(currRun.relPaths));
+        else doReImportPrep(new ArrayList<>(currRun.relPaths));
     }
 
     /**
      * Prepare for a full import.
      * <p>
-     * Try to recursively get all files with specific extensions within the library directory.
-     * <p>
-     * At the end of this method we pass off control to an Rx flow which uses {@link RxFileWalker} to get a list of
-     * files; once that flow produces a list, it will call {@link #onGotFileList(List)}.
+     * Rather than waiting until we've found all of the files in the library directory before starting to import them,
+     * we hand them to the import flow as soon as {@link RxFileWalker} finds them; see {@link
+     * #discoverChangedFiles(List)}.
      */
     private void doFullImportPrep() {
+        // Note that a full import is running, so that we can resume it if the app is killed.
+        int interruptedImportCount = Minerva.prefs().getInterruptedImportCount();
+        if (interruptedImportCount > 0) logger.log(Minerva.get().getString(R.string.fil_resuming));
+        Minerva.prefs().putInterruptedImportCount(interruptedImportCount + 1);
+
         logger.log(Minerva.get().getString(R.string.fil_finding_files));
-        // Get a list of files in the directory (and its subdirectories) which have certain extensions.
-        // This will call through to onGotFileList() once it has the results.
-        fileResolverSubscription = Observable
-                .create(new RxFileWalker(currDir, VALID_EXTENSIONS))
-                .subscribeOn(Schedulers.io()) // Everything above runs on the io thread pool.
-                .unsubscribeOn(AndroidSchedulers.mainThread())
-                .doOnUnsubscribe(() -> fileResolverSubscription = null)
-                .toList()
-                .single()
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(this::onGotFileList);
+        forcedRelPaths = currRun.relPaths;
+        startDiscoveringFiles(null);
+    }
+
+    /**
+     * Prepare for a delta import, which only looks at the given {@code relPaths} rather than the whole library
+     * directory.
+     * <p>
+     * Otherwise, this works just like a full import; files which are at or below the given paths are imported if
+     * they're new or have changed, and we forget about files which used to be there but no longer are.
+     * @param relPaths Relative paths of files and directories which have changed.
+     */
+    private void doDeltaImportPrep(List<String> relPaths) {
+        logger.log(Minerva.get().getString(R.string.dil_checking_files, relPaths.size()));
+        startDiscoveringFiles(relPaths);
+    }
+
+    /**
+     * Start importing files while they're still being discovered.
+     * @param deltaRelPaths Relative paths to look for files at, or null to look at the whole library directory.
+     */
+    private void startDiscoveringFiles(List<String> deltaRelPaths) {
+        numDiscovered = 0;
+        isDiscovering = true;
+        mainThreadWorker = AndroidSchedulers.mainThread().createWorker();
+
+        // Start actual importing. The progress bar's maximum will grow as we find more files.
+        numDone.set(0);
+        numTotal = 0;
+        if (listener != null) {
+            listener.onProgressFlag(numTotal);
+            listener.setNumDiscovered(numTotal, true);
+        }
+        progressSubject.onNext(0);
+        doImportFiles(discoverChangedFiles(deltaRelPaths));
+    }
+
+    /**
+     * Get an Observable which recursively finds files with specific extensions within the library directory (or just
+     * at the given {@code deltaRelPaths}) using {@link RxFileWalker}, and emits them as soon as they're found; any
+     * which haven't changed since they were last imported (according to the {@link FileFingerprintCache}) are dropped.
+     * <p>
+     * Once the walk is complete, {@link #onDiscoveryFinished(FileFingerprintCache)} is called.
+     * @param deltaRelPaths Relative paths to look for files at, or null to look at the whole library directory.
+     * @return Observable of files which are new or have changed.
+     */
+    private Observable<File> discoverChangedFiles(List<String> deltaRelPaths) {
+        return Observable
+                .fromCallable(() -> {
+                    stageStartNanos = System.nanoTime();
+                    try (Realm realm = Realm.getDefaultInstance()) {
+                        return deltaRelPaths == null ? FileFingerprintCache.load(realm, FAST_HASH)
+                                : FileFingerprintCache.load(realm, FAST_HASH, deltaRelPaths);
+                    }
+                })
+                .flatMap(cache -> findFiles(deltaRelPaths)
+                        .doOnNext(file -> metrics.onFilesQueued(1))
+                        // Let the walk get ahead of the parse stage; only File objects are buffered.
+                        .onBackpressureBuffer()
+                        .filter(file -> isChanged(cache, file))
+                        .doOnNext(file -> onFileDiscovered())
+                        .doOnCompleted(() -> onDiscoveryFinished(cache)));
+    }
+
+    /**
+     * Get an Observable which finds files to import using {@link RxFileWalker}.
+     * @param deltaRelPaths Relative paths of files and directories to look at, or null to look at the whole library
+     *                      directory. Paths which don't exist any more are ignored.
+     * @return Observable of files which might need to be imported.
+     */
+    private Observable<File> findFiles(List<String> deltaRelPaths) {
+        ExcludeGlobs excludeGlobs = getExcludeGlobs();
+        if (deltaRelPaths == null)
+            return Observable.create(new RxFileWalker(currDir, "", VALID_EXTENSIONS, excludeGlobs, getNumWorkers()));
+
+        return Observable.from(deltaRelPaths)
+                         // A full import would never have found these, so a delta import shouldn't either.
+                         .filter(relPath -> !excludeGlobs.isPathExcluded(relPath))
+                         .concatMap(relPath -> {
+                             File file = new File(currDir, relPath);
+                             if (file.isDirectory())
+                                 return Observable.create(new RxFileWalker(file, relPath, VALID_EXTENSIONS,
+                                         excludeGlobs, 1));
+                             else if (file.isFile() && VALID_EXTENSIONS.contains(Util.getExtFromFName(file.getName())))
+                                 return Observable.just(file);
+                             else return Observable.empty();
+                         });
+    }
+
+    /**
+     * Get the globs for files and directories which should never be imported, or watched by {@link LibraryWatcher}.
+     * @return Exclusion globs.
+     */
+    static ExcludeGlobs getExcludeGlobs() {
+        return new ExcludeGlobs(Minerva.prefs().getImportExcludeGlobs(DEFAULT_EXCLUDE_GLOBS));
+    }
+
+    /**
+     * Check whether the given {@code file} is new or has changed since it was last imported, and note that we found
+     * it.
+     * <p>
+     * This is called on the file walker's thread.
+     * @param cache Fingerprint cache.
+     * @param file  File which was found.
+     * @return True if the file should be imported, false if it should be skipped.
+     */
+    private boolean isChanged(FileFingerprintCache cache, File file) {
+        String relPath = toRelPath(file);
+        // Delta imports may look at a directory and a file in it, but each file only needs to be imported once.
+        if (!foundRelPaths.add(relPath)) {
+            metrics.onFileDequeued();
+            return false;
+        }
+        if (forcedRelPaths.contains(relPath) || !cache.isUnchanged(file, relPath)) return true;
+        numUnchanged++;
+        metrics.onFileDequeued();
+        return false;
+    }
+
+    /**
+     * What to do when we've found a file which should be imported.
+     * <p>
+     * This is called on the file walker's thread.
+     */
+    private void onFileDiscovered() {
+        numDiscovered++;
+        postDiscoveryUpdate();
+    }
+
+    /**
+     * What to do once the file walker has finished. Forgets the fingerprints of files which no longer exist, persists
+     * the fingerprints of files which were touched without being changed, and logs what we found.
+     * <p>
+     * This is called on the file walker's thread.
+     * @param cache Fingerprint cache.
+     */
+    private void onDiscoveryFinished(FileFingerprintCache cache) {
+        List<RFileFingerprint> refreshed = cache.getRefreshedFingerprints();
+        List<String> missingRelPaths = cache.getMissingRelPaths(foundRelPaths);
+        if (!refreshed.isEmpty() || !missingRelPaths.isEmpty()) {
+            try (Realm realm = Realm.getDefaultInstance()) {
+                realm.executeTransaction(tRealm -> {
+                    tRealm.copyToRealmOrUpdate(refreshed);
+                    FileFingerprintCache.deleteFingerprints(tRealm, missingRelPaths);
+                });
+            }
+        }
+
+        // Note any files which no longer exist, and how many we found.
+        for (String relPath : missingRelPaths) logger.log(Minerva.get().getString(R.string.il_missing_file, relPath));
+        if (numUnchanged > 0) logger.log(Minerva.get().getString(R.string.il_skipped_unchanged, numUnchanged));
+        if (numDiscovered == 0) logger.log(Minerva.get().getString(R.string.il_err_no_files));
+        else logger.log(Minerva.get().getString(R.string.il_found_files, numDiscovered));
+
+        metrics.addTime(ImportMetrics.Stage.FIND, stageStartNanos);
+        isDiscovering = false;
+        postDiscoveryUpdate();
+    }
+
+    /**
+     * Schedule {@link #publishDiscoveryUpdate()} on the main thread, unless it's already scheduled.
+     */
+    private void postDiscoveryUpdate() {
+        if (discoveryUpdatePending.compareAndSet(false, true)) mainThreadWorker.schedule(this::publishDiscoveryUpdate);
+    }
+
+    /**
+     * Update {@link #numTotal} with the number of files we've found so far, and tell the listener.
+     * <p>
+     * This is called on the main thread.
+     */
+    private void publishDiscoveryUpdate() {
+        // Clear the flag before reading the counts so that we can't miss an update.
+        discoveryUpdatePending.set(false);
+        numTotal = numDiscovered;
+        if (listener != null) {
+            listener.onProgressFlag(numTotal);
+            listener.setNumDiscovered(numTotal, isDiscovering);
+        }
     }
 
     /**
@@ -338,6 +712,7 @@ public class Importer {
      */
     private void doReImportPrep(List<String> relPaths) {
         logger.log(Minerva.get().getString(R.string.ril_build_file_list));
+        stageStartNanos = System.nanoTime();
         fileResolverSubscription = Observable
                 .from(relPaths)
                 .subscribeOn(Schedulers.io())
@@ -367,11 +742,11 @@ public class Importer {
     /**
      * Called by {@link #fileResolverSubscription} when it calls {@code onNext()}.
      * <p>
-     * This is part of full import preparation.
-     * @param files List of files with specific extensions found by {@link RxFileWalker}. These are the files we will
-     *              try to import.
+     * This is part of re-import preparation.
+     * @param files List of files which we will try to re-import.
      */
     private void onGotFileList(List<File> files) {
+        metrics.addTime(ImportMetrics.Stage.FIND, stageStartNanos);
         logger.log(Minerva.get().getString(R.string.il_done));
         // Check if we should stop.
         if (isReadyOrTryingToBe()) {
@@ -386,17 +761,18 @@ public class Importer {
 
         // Make sure that any RBooks which have invalid relative paths don't indicate they have cover images.
         if (!invalidReImportPaths.isEmpty()) {
-            realm = Realm.getDefaultInstance();
-            realm.executeTransactionAsync(tRealm -> {
-                for (String relPath : invalidReImportPaths) {
-                    RBook book = tRealm.where(RBook.class)
-                                       .equalTo("relPath", relPath)
-                                       .equalTo("hasCoverImage", true)
-                                       .findFirst();
-                    if (book != null) book.hasCoverImage = false;
-                }
-            });
-            realm.close();
+            List<String> relPaths = new ArrayList<>(invalidReImportPaths);
+            try (Realm realm = Realm.getDefaultInstance()) {
+                ActionHelper.executeTransactionAsync(realm, tRealm -> {
+                    for (String relPath : relPaths) {
+                        RBook book = tRealm.where(RBook.class)
+                                           .equalTo("relPath", relPath)
+                                           .equalTo("hasCoverImage", true)
+                                           .findFirst();
+                        if (book != null) book.hasCoverImage = false;
+                    }
+                }, SmartListCache.Change.BOOK_COVERS);
+            }
         }
 
         // Check file list.
@@ -408,27 +784,35 @@ public class Importer {
         }
 
         // Update state.
-        numDone = 0;
+        numDone.set(0);
         numTotal = files.size();
 
         // Update listener.
         logger.log(Minerva.get().getString(R.string.il_found_files, numTotal));
-        if (listener != null) listener.onProgressFlag(numTotal);
-        progressSubject.onNext(numDone);
+        if (listener != null) {
+            listener.onProgressFlag(numTotal);
+            listener.setNumDiscovered(numTotal, false);
+        }
+        progressSubject.onNext(0);
 
         // Start actual importing.
-        doImportFiles(files);
+        metrics.onFilesQueued(files.size());
+        doImportFiles(Observable.from(files));
     }
 
     /**
-     * Take the list of files we want to import and actually import them.
+     * Take the files we want to import and actually import them.
      * <p>
      * This is the point where we transition from preparing to running. At the end of this method we pass off control to
-     * an Rx flow. It will either call {@link #onAllFilesImported()} or {@link #onFileImporterError(Throwable)} when it
-     * is finished.
-     * @param files List of files to import.
+     * an Rx flow, which parses files and saves the resulting {@link RBook}s to Realm in batches as it goes, calling
+     * {@link #onBatchSaved(int)} after each batch. It will either call {@link #onAllFilesImported()} or {@link
+     * #onFileImporterError(Throwable)} when it is finished.
+     * <p>
+     * Only a few batches are ever held in memory at once, no matter how many files there are. If the run is cancelled,
+     * the flow stops taking new files, but still saves those which have already been read before it completes.
+     * @param files Files to import. These may still be in the process of being found.
      */
-    private void doImportFiles(List<File> files) {
+    private void doImportFiles(Observable<File> files) {
         // Check if we should stop.
         if (isReadyOrTryingToBe()) {
             doTeardownThenStartNextRun(true);
@@ -438,53 +822,224 @@ public class Importer {
         // Change state to running.
         currState = State.IMPORTING;
         logger.log(Minerva.get().getString(R.string.il_reading_files));
-
-        // Do importer flow.
-        fileImporterSubscription = Observable
-                .from(files)
+        numSaved = 0;
+        detectMoved = Minerva.prefs().shouldDetectMoved(true);
+        int batchSize = Math.max(1, Minerva.prefs().getImportBatchSize(DEFAULT_BATCH_SIZE));
+        progressRate.reset();
+
+        // Set up the workers for the parse stage.
+        int numWorkers = getNumWorkers();
+        parseExecutor = Executors.newFixedThreadPool(numWorkers);
+        Scheduler parseScheduler = Schedulers.from(parseExecutor);
+        stopTakingFiles = PublishSubject.create();
+
+        // Do importer flow. Up to numWorkers files are parsed at once, but concatMapEager() still emits the resulting
+        // RBooks in the same order as the files were found, no matter which files finish first.
+        fileImporterSubscription = files
                 .subscribeOn(Schedulers.io())
                 .unsubscribeOn(AndroidSchedulers.mainThread())
                 .doOnUnsubscribe(() -> fileImporterSubscription = null)
-                .map(this::convertFileToSuperBook) // Create a SuperBook from the file.
-                .filter(sb -> sb != null)
-                .map(RBook::new) // Create an RBook from the SuperBook.
-                .onBackpressureBuffer()
+                .takeUntil(stopTakingFiles)
+                .concatMapEager(file -> Observable.fromCallable(() -> convertFileToRBook(file))
+                                                  .subscribeOn(parseScheduler), numWorkers, numWorkers)
+                .filter(rBook -> rBook != null)
+                .doOnNext(this::onImportedBookFile)
+                .buffer(batchSize)
+                // Only allow one batch to wait while another is being saved, so that parsing can't outrun saving.
+                .observeOn(Schedulers.io(), 1)
+                .map(this::saveBatch)
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(this::onImportedBookFile, this::onFileImporterError, this::onAllFilesImported);
+                .subscribe(this::onBatchSaved, this::onFileImporterError, this::onAllFilesImported);
     }
 
     /**
-     * Convert the given file to a {@link SuperBook}.
+     * Get the number of workers to use for each parallel stage of an import run.
+     * @return Number of workers.
+     */
+    private int getNumWorkers() {
+        return Math.max(1, Minerva.prefs().getImportWorkerCount(Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Get the path of the given file relative to the library directory.
      * @param file File.
+     * @return Relative path.
+     */
+    private String toRelPath(File file) {
+        return file.getAbsolutePath().replace(currDir.getAbsolutePath(), "");
+    }
+
+    /**
+     * Convert the given file to a {@link SuperBook}.
+     * @param file    File.
+     * @param relPath Relative path of {@code file}.
+     * @param hash    Identity hash of {@code file}.
      * @return New SuperBook, or null if there were issues.
      */
-    private SuperBook convertFileToSuperBook(File file) {
-        String relPath = file.getAbsolutePath().replace(currDir.getAbsolutePath(), "");
+    private SuperBook convertFileToSuperBook(File file, String relPath, byte[] hash) {
         try {
-            return DataUtils.readEpubFile(file, relPath);
+            return DataUtils.readEpubFile(file, relPath, hash);
         } catch (IllegalArgumentException e) {
             logger.error(Minerva.get().getString(R.string.il_err_processing_file, e.getMessage()));
             return null;
         }
     }
 
+    /**
+     * Convert the given file to an {@link RBook} by way of a {@link SuperBook}. This hashes and reads the file, and
+     * saves its cover image if it has one. The file's fingerprint is recorded in {@link #newFingerprints}.
+     * <p>
+     * This is called from the parse stage's workers, so it may be running on several threads at once.
+     * @param file File.
+     * @return New RBook, or null if there were issues.
+     */
+    private RBook convertFileToRBook(File file) {
+        metrics.onFileDequeued();
+        long fileStartNanos = System.nanoTime();
+        String relPath = toRelPath(file);
+        // Take the fingerprint before reading the file so that we can't miss a change made while we're reading it.
+        RFileFingerprint fingerprint = FileFingerprintCache.fingerprint(file, relPath);
+
+        // Compute both hashes using a single pass over the file.
+        byte[][] hashes;
+        try {
+            hashes = FileHasher.hash(file, IDENTITY_HASH, FAST_HASH);
+        } catch (IOException e) {
+            Timber.e(e, "Failed to hash \"%s\".", relPath);
+            logger.error(Minerva.get().getString(R.string.il_err_processing_file, relPath));
+            return null;
+        }
+        metrics.addTime(ImportMetrics.Stage.HASH, fileStartNanos);
+
+        long startNanos = System.nanoTime();
+        SuperBook superBook = convertFileToSuperBook(file, relPath, hashes[0]);
+        metrics.addTime(ImportMetrics.Stage.PARSE, startNanos);
+        if (superBook == null) return null;
+
+        startNanos = System.nanoTime();
+        RBook rBook = new RBook(superBook);
+        metrics.addTime(ImportMetrics.Stage.COVER, startNanos);
+        metrics.onFileRead(relPath, fingerprint.size, fileStartNanos);
+
+        fingerprint.hash = rBook.hash;
+        fingerprint.fastHash = hashes[1];
+        newFingerprints.put(relPath, fingerprint);
+        return rBook;
+    }
+
     /**
      * What to do when we've finished importing and processing a book file.
      * <p>
-     * This is called at the end of the import flow, it should be lightweight!!
+     * This is called from the import flow each time it produces an {@link RBook}, in file list order but not on the
+     * main thread. It should be lightweight!!
+     * <p>
+     * The book's import date is filled in here rather than by the parse stage's workers, so that import dates follow
+     * the order of the files rather than the order in which the workers finish reading them.
      * @param rBook The {@link RBook} we created using info from the file.
      */
     private void onImportedBookFile(RBook rBook) {
-        // Check if we should stop.
-        if (isReadyOrTryingToBe()) {
-            doTeardownThenStartNextRun(true);
-            return;
-        }
+        rBook.lastImportDate = Calendar.getInstance().getTime();
+        rBook.lastModifiedDate = rBook.lastImportDate;
 
-        // Add RBook to queue and emit file path.
-        bookQueue.add(rBook);
+        // Emit file path and progress. Neither of these do any work on the main thread right away; the listener only
+        // sees the latest progress every so often, and log lines are batched up before they're sent to it.
         logger.log(Minerva.get().getString(R.string.il_read_file, rBook.relPath));
-        progressSubject.onNext(numDone++);
+        progressSubject.onNext(numDone.incrementAndGet());
+    }
+
+    /**
+     * Save a batch of {@link RBook}s to Realm in a single transaction, along with the fingerprints of their files.
+     * <p>
+     * This is called from the import flow on a background thread, one batch at a time.
+     * @param batch Books to save.
+     * @return Number of books in the batch.
+     */
+    private int saveBatch(List<RBook> batch) {
+        long startNanos = System.nanoTime();
+        // Unique IDs of the books whose hashes might have changed, in the same order as the batch.
+        long[] savedIds = new long[batch.size()];
+        try (Realm realm = Realm.getDefaultInstance()) {
+            realm.executeTransaction(tRealm -> {
+                // Build the index of existing books the first time through.
+                ImportBookIndex index = bookIndex;
+                if (index == null) bookIndex = index = ImportBookIndex.build(tRealm);
+
+                for (int i = 0; i < batch.size(); i++) {
+                    RBook book = batch.get(i);
+                    savedIds[i] = -1;
+                    // Try to find an existing RBook at the same relative path first. Books which were deleted since the
+                    // index was built are dropped from it, and files for them are treated as new books.
+                    ImportBookIndex.Entry entry = index.getByRelPath(book.relPath);
+                    RBook existing = index.getBook(tRealm, entry);
+
+                    // If there isn't one, try to find an existing RBook whose hash matches but whose relative path
+                    // doesn't, if our current settings say we should detect files which have been moved.
+                    if (existing == null && detectMoved) {
+                        ImportBookIndex.Entry movedFrom = index.getMovedFrom(book.hash, book.relPath);
+                        RBook movedBook = index.getBook(tRealm, movedFrom);
+                        if (movedBook != null) {
+                            // If we found one, update the relPath of the existing RBook and discard the "new" one.
+                            movedBook.updateBasedOnHash(tRealm, book);
+                            index.onMoved(movedFrom, book.relPath);
+                            saveFingerprint(tRealm, book.relPath);
+                            continue;
+                        }
+                    }
+
+                    if (existing != null) {
+                        // If we found one at the same path, just update the fields which we read from the file.
+                        existing.updateBasedOnRelPath(tRealm, book);
+                        index.onUpdated(entry, book.hash);
+                        savedIds[i] = entry.uniqueId;
+                    } else {
+                        // Otherwise, this is a new book. Give it its unique ID now so that IDs follow file order, and
+                        // so that we don't use up IDs for books which turn out to already exist.
+                        book.uniqueId = UniqueIdFactory.getInstance().nextId(RBook.class);
+                        tRealm.copyToRealmOrUpdate(book);
+                        index.onInserted(book);
+                        savedIds[i] = book.uniqueId;
+                    }
+                    saveFingerprint(tRealm, book.relPath);
+                }
+            });
+        }
+
+        // Now that the books are committed, keep the duplicate and search indices up to date. Moved books keep their
+        // hashes and text.
+        DuplicateIndex duplicateIndex = DuplicateIndex.get();
+        SearchIndex searchIndex = SearchIndex.get();
+        for (int i = 0; i < savedIds.length; i++) {
+            if (savedIds[i] == -1) continue;
+            RBook book = batch.get(i);
+            duplicateIndex.onBookSaved(savedIds[i], book.hash);
+            searchIndex.onBookSaved(savedIds[i], book.title, book.author, book.subjects, book.desc);
+        }
+        // Books can change in too many ways during an import to be worth tracking which smart lists they affect.
+        SmartListCache.get().invalidateAll();
+        metrics.addTime(ImportMetrics.Stage.COMMIT, startNanos);
+        return batch.size();
+    }
+
+    /**
+     * Persist the fingerprint we recorded for the file at {@code relPath}, so that it can be skipped next time, and
+     * stop holding onto it.
+     * <p>
+     * IMPORTANT: Only call this method from within a Realm transaction.
+     * @param realm   Instance of Realm to use.
+     * @param relPath Relative path of the file.
+     */
+    private void saveFingerprint(Realm realm, String relPath) {
+        RFileFingerprint fingerprint = newFingerprints.remove(relPath);
+        if (fingerprint != null) realm.copyToRealmOrUpdate(fingerprint);
+    }
+
+    /**
+     * What to do when a batch of books has been saved to Realm.
+     * @param batchSize Number of books which were in the batch.
+     */
+    private void onBatchSaved(int batchSize) {
+        numSaved += batchSize;
+        logger.log(Minerva.get().getString(R.string.il_saved_books, numSaved));
     }
 
     /**
@@ -492,67 +1047,39 @@ public class Importer {
      * @param t Throwable.
      */
     private void onFileImporterError(Throwable t) {
+        // The flow has already stopped, so there's nothing to wait for.
+        fileImporterSubscription = null;
         String s = Minerva.get().getString(R.string.il_err_generic);
         Timber.e(t, s);
         logger.error("\n" + s + ":\n\"" + t.getMessage() + "\"\n");
-        cancelImportRun();
+        // If we were already cancelling, we were waiting for the flow to finish, which it now has.
+        if (currState == State.CANCELLING) doTeardownThenStartNextRun(true);
+        else cancelImportRun();
     }
 
     /**
      * What to do after we've finished importing all books.
      */
     private void onAllFilesImported() {
-        logger.log(Minerva.get().getString(R.string.il_all_files_read));
-        // Check if we should stop.
+        fileImporterSubscription = null;
+        // Check if we should stop. If we were cancelled, this is where we stop, now that we've saved what we'd read.
         if (isReadyOrTryingToBe()) {
             doTeardownThenStartNextRun(true);
             return;
         }
+        logger.log(Minerva.get().getString(R.string.il_all_files_read));
 
-        // Cancelling isn't allowed from this point until we're done persisting data to Realm.
+        // Cancelling isn't allowed from this point until we're done updating the new/updated tags.
         currState = State.SAVING;
         publishStateUpdate(State.SAVING);
         logger.log(Minerva.get().getString(R.string.il_saving_files));
         if (listener != null) listener.onProgressFlag(SET_PROGRESS_INDETERMINATE);
 
-        // We've finished importing all books, now we'll persist them to Realm.
+        // All of the books have already been saved, so we just need to tag any which are newly marked.
+        stageStartNanos = System.nanoTime();
         realm = Realm.getDefaultInstance();
         realm.executeTransactionAsync(
                 bgRealm -> {
-                    // Detect files which have been moved, if our current settings say we should.
-                    if (Minerva.prefs().shouldDetectMoved(true)) {
-                        // Use an iterator, because we want to remove books which have moved.
-                        Iterator<RBook> bi = bookQueue.iterator();
-                        while (bi.hasNext()) {
-                            RBook book = bi.next();
-                            // Try to find an existing RBook whose hash matches, but only return it if its relPath
-                            // doesn't match.
-                            RBook existingBook = bgRealm.where(RBook.class)
-                                                        .equalTo("hash", book.hash)
-                                                        .notEqualTo("relPath", book.relPath)
-                                                        .findFirst();
-
-                            // If we found one, update the relPath of the existing RBook, then discard the "new"
-                            // RBook from the queue.
-                            if (existingBook != null) {
-                                existingBook.updateBasedOnHash(bgRealm, book);
-                                bi.remove();
-                            }
-                        }
-                    }
-
-                    // Detect files which have been updated, and are at the same path.
-                    for (RBook book : bookQueue) {
-                        // Try to find existing RBook by its relative path before adding a new one.
-                        RBook existingBook = bgRealm.where(RBook.class)
-                                                    .equalTo("relPath", book.relPath)
-                                                    .findFirst();
-
-                        // If we found one, just update the fields which we read from the file.
-                        if (existingBook != null) existingBook.updateBasedOnRelPath(bgRealm, book);
-                        else bgRealm.copyToRealmOrUpdate(book);
-                    }
-
                     // Check to see if we have new/updated tags set. If so, we need to ensure that any books whose marks
                     // were just set to true have the appropriate tags added to them.
                     String tagName = MarkType.NEW.getTagName();
@@ -571,7 +1098,7 @@ public class Importer {
                                                            .endGroup()
                                                            .findAll();
                         // Add the new tag to those books.
-                        ActionHelper.addTagsToBooks(bgRealm, books, Collections.singletonList(tag));
+                        if (tag != null) BulkTagger.addTags(bgRealm, books, Collections.singletonList(tag));
                     }
 
                     tagName = MarkType.UPDATED.getTagName();
@@ -590,7 +1117,7 @@ public class Importer {
                                                            .endGroup()
                                                            .findAll();
                         // Add the updated tag to those books.
-                        ActionHelper.addTagsToBooks(bgRealm, books, Collections.singletonList(tag));
+                        if (tag != null) BulkTagger.addTags(bgRealm, books, Collections.singletonList(tag));
                     }
                 },
                 this::importFinished,
@@ -606,6 +1133,8 @@ public class Importer {
      * Called when an import run has finished successfully.
      */
     private void importFinished() {
+        metrics.addTime(ImportMetrics.Stage.COMMIT, stageStartNanos);
+        SmartListCache.get().onChanged(SmartListCache.Change.BOOK_TAGS);
         logger.log(Minerva.get().getString(R.string.il_done));
         doTeardownThenStartNextRun(false);
     }
@@ -619,7 +1148,11 @@ public class Importer {
     private void _cancelImportRun() {
         currState = State.CANCELLING;
         publishStateUpdate(State.CANCELLING);
-        doTeardownThenStartNextRun(true);
+
+        // If we're importing files, stop taking new ones, but let the import flow save the ones it has already read so
+        // that they don't need to be read again; it tears down once it's done. Otherwise, just tear down now.
+        if (fileImporterSubscription != null && stopTakingFiles != null) stopTakingFiles.onNext(null);
+        else doTeardownThenStartNextRun(true);
     }
 
     /**
@@ -632,18 +1165,26 @@ public class Importer {
         StringBuilder builder = new StringBuilder();
 
         // Which type?
-        String part = Minerva.get().getString(currRun.type == ImportType.FULL ? R.string.sb_fil : R.string.sb_ril);
+        String part = Minerva.get().getString(currRun.type == ImportType.FULL ? R.string.sb_fil
+                : (currRun.type == ImportType.DELTA ? R.string.sb_dil : R.string.sb_ril));
         builder.append(part);
 
         // Finished, or cancelled?
         part = Minerva.get().getString(wasCancelled ? R.string.sb_result_cancelled : R.string.sb_result_finished);
         builder.append(part);
 
+        // Delta imports happen in the background whenever the library changes, so don't bother the user unless there
+        // was something to import.
+        if (currRun.type == ImportType.DELTA && numTotal == 0 && numErrors == 0) return;
+
         // Processing result.
         if (numTotal == 0 && numErrors == 0) part = Minerva.get().getString(R.string.sb_il_results_zero);
         else if (numTotal == 0) part = Minerva.get().getQString(R.plurals.sb_il_just_error_results, numErrors,
                 numErrors);
-        else part = Minerva.get().getQString(R.plurals.sb_il_results, numDone, numDone, numTotal);
+        else {
+            int done = numDone.get();
+            part = Minerva.get().getQString(R.plurals.sb_il_results, done, done, numTotal);
+        }
         builder.append(part);
 
         // Errors result (if errors weren't our sole processing result).
@@ -686,6 +1227,20 @@ public class Importer {
             fileImporterSubscription.unsubscribe();
             fileImporterSubscription = null;
         }
+        stopTakingFiles = null;
+
+        // Stop posting discovery updates.
+        if (mainThreadWorker != null) {
+            mainThreadWorker.unsubscribe();
+            mainThreadWorker = null;
+        }
+        discoveryUpdatePending.set(false);
+
+        // Stop the parse stage's workers.
+        if (parseExecutor != null) {
+            parseExecutor.shutdownNow();
+            parseExecutor = null;
+        }
 
         // Close Realm if need be.
         if (realm != null) {
@@ -694,7 +1249,10 @@ public class Importer {
         }
 
         // Try to have the listener clear its progress UI, then destroy the progress subject.
-        if (listener != null) listener.onProgressFlag(SET_PROGRESS_DETERMINATE_ZERO);
+        if (listener != null) {
+            listener.onProgressFlag(SET_PROGRESS_DETERMINATE_ZERO);
+            listener.setProgressRate(0f, ProgressRate.UNKNOWN_ETA);
+        }
         destroyProgressSubject();
 
         // Do a bit more logging.
@@ -705,8 +1263,8 @@ public class Importer {
             logger.log(Minerva.get().getString(R.string.il_cancelled));
             wasSuccess = false;
         } else {
-            // We currently still consider a full import successful even if it had errors.
-            wasSuccess = numErrors == 0 || currRun.type == ImportType.FULL;
+            // We currently still consider a full or delta import successful even if it had errors.
+            wasSuccess = numErrors == 0 || currRun.type != ImportType.REDO;
 
             // Final log message depends on the number of errors that occurred.
             if (numErrors > 0) logger.log(Minerva.get().getString(R.string.il_finished_with_errors, numErrors));
@@ -716,16 +1274,26 @@ public class Importer {
         // Send Snackbar at this point informing the user of results.
         sendFinishedSnackbar(wasCancelled, numErrors);
 
+        // The run didn't get interrupted by the app being killed, so it shouldn't be resumed.
+        if (currRun.type == ImportType.FULL) Minerva.prefs().putInterruptedImportCount(0);
+
         // Reset vars.
         currDir = null;
-        numDone = 0;
+        numDone.set(0);
         numTotal = 0;
+        numDiscovered = 0;
+        isDiscovering = false;
+        numSaved = 0;
+        bookIndex = null;
         currRun = null;
-        bookQueue = new LinkedList<>();
         invalidReImportPaths = new ArrayList<>();
+        numUnchanged = 0;
+        foundRelPaths = new HashSet<>();
+        forcedRelPaths = Collections.emptySet();
+        newFingerprints = new ConcurrentHashMap<>();
 
-        // Close the log, then inform the listener that we're ready again.
-        logger.finishCurrentLog(wasSuccess);
+        // Close the log, saving the run's metrics with it, then inform the listener that we're ready again.
+        logger.finishCurrentLog(wasSuccess, metrics);
         this.currState = State.READY;
         publishStateUpdate(State.READY);
 
@@ -747,6 +1315,7 @@ public class Importer {
         listener.onImportStateChanged(currState);
         listener.setNumQueued(queuedRuns.size());
         listener.onProgressFlag(numTotal);
+        listener.setNumDiscovered(numTotal, isDiscovering);
         subscribeListenerToProgressSubject();
     }
 
@@ -775,7 +1344,7 @@ public class Importer {
      * Calling this when the importer isn't in a ready state will do nothing.
      */
     public final void queueFullImport() {
-        queueNewRun(new ImportRun(ImportType.FULL, null));
+        queueNewRun(new ImportRun(ImportType.FULL, (Collection<String>) null));
         // Show snackbar if we had to queue the import, or if we didn't but our listener isn't attached.
         if (!queuedRuns.isEmpty()) SnackKiosk.snack(R.string.sb_fil_queued, Snackbar.LENGTH_SHORT);
         else if (listener == null) SnackKiosk.snack(R.string.sb_fil_started, Snackbar.LENGTH_SHORT);
@@ -796,6 +1365,19 @@ public class Importer {
                 Snackbar.LENGTH_SHORT);
     }
 
+    /**
+     * Queues a delta import run. The importer will only look at the given {@code relPaths} in the configured library
+     * directory, importing any files there which are new or have changed, and forgetting about any files which no
+     * longer exist. Paths of directories cover everything in them.
+     * <p>
+     * This is meant to be used by {@link LibraryWatcher}, so no snackbar is shown when the run is queued or started.
+     * @param relPaths Relative paths of files and directories which have changed.
+     */
+    public final void queueDeltaImport(List<String> relPaths) {
+        if (relPaths == null || relPaths.isEmpty()) return;
+        queueNewRun(new ImportRun(ImportType.DELTA, relPaths));
+    }
+
     /**
      * Cancels the current import run. Note that this will automatically cause the next queued run to be started.
      * <p>
@@ -816,14 +1398,22 @@ public class Importer {
          */
         public final ImportType type;
         /**
-         * If {@link #type} is {@link ImportType#REDO}, this will be a list of {@link RBook}s from which we will obtain
-         * relative paths to use when finding files to re-import.
+         * If {@link #type} is {@link ImportType#REDO}, these are the relative paths obtained from the {@link RBook}s we
+         * want to re-import. If {@link #type} is {@link ImportType#DELTA}, these are the relative paths of the files
+         * and directories which have changed. If {@link #type} is {@link ImportType#FULL}, these are the relative paths
+         * of files which should be imported even if they haven't changed, from re-imports which the run absorbed.
+         * <p>
+         * This may grow while the run is queued, as other runs are merged into it.
          */
-        public final List<String> reImportRelPaths;
+        public final Set<String> relPaths;
 
         private ImportRun(ImportType type, Iterable<RBook> reImportBooks) {
+            this(type, reImportBooks == null ? null : rBooksToRelPaths(reImportBooks));
+        }
+
+        private ImportRun(ImportType type, Collection<String> relPaths) {
             this.type = type;
-            this.reImportRelPaths = reImportBooks == null ? null : rBooksToRelPaths(reImportBooks);
+            this.relPaths = relPaths == null ? new LinkedHashSet<>() : new LinkedHashSet<>(relPaths);
         }
 
         /**
@@ -831,7 +1421,7 @@ public class Importer {
          * @param books List of {@link RBook}s.
          * @return List of relative paths.
          */
-        private List<String> rBooksToRelPaths(Iterable<RBook> books) {
+        private static List<String> rBooksToRelPaths(Iterable<RBook> books) {
             return Observable.from(books)
                              .map(book -> book.relPath)
                              .toList()
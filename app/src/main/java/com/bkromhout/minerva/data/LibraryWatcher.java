@@ -0,0 +1,264 @@
+package com.bkromhout.minerva.data;
+
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.Looper;
+import com.bkromhout.minerva.Minerva;
+import com.bkromhout.minerva.util.Util;
+import rx.Observable;
+import rx.Subscription;
+import rx.schedulers.Schedulers;
+import timber.log.Timber;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Watches the library directory tree for changes, and has the {@link Importer} run delta imports which only cover the
+ * paths which changed, rather than full imports which would rescan the whole library.
+ * <p>
+ * {@link FileObserver}s aren't recursive, so one is used for each directory in the tree. Events are coalesced: paths
+ * are collected until there haven't been any events for {@link #COALESCE_DELAY_MS}, and are then handed to the
+ * importer all at once. Paths of directories are handed over as-is; the importer will look at the files in them.
+ * <p>
+ * Directories which the importer's exclusion globs match aren't watched, and events for paths in them are ignored.
+ */
+public class LibraryWatcher {
+    /**
+     * How long to wait after the most recent event before queuing a delta import.
+     */
+    private static final long COALESCE_DELAY_MS = 2000;
+    /**
+     * Events we care about.
+     */
+    private static final int EVENTS = FileObserver.CREATE | FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO |
+            FileObserver.MOVED_FROM | FileObserver.DELETE | FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+    /**
+     * Events after which a directory might hold new things to watch.
+     */
+    private static final int ADD_EVENTS = FileObserver.CREATE | FileObserver.MOVED_TO;
+    /**
+     * Events which mean that the watched directory itself is gone.
+     */
+    private static final int SELF_EVENTS = FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+
+    /**
+     * Instance of LibraryWatcher.
+     */
+    private static LibraryWatcher INSTANCE;
+
+    /**
+     * Library directory being watched, or null if we aren't watching.
+     */
+    private File libDir;
+    /**
+     * Globs for files and directories which we ignore.
+     */
+    private ExcludeGlobs excludeGlobs;
+    /**
+     * Observers for each watched directory, keyed by the directory's path relative to {@link #libDir}.
+     */
+    private final Map<String, DirObserver> observers = new HashMap<>();
+    /**
+     * Relative paths which have changed since we last queued a delta import.
+     */
+    private final Set<String> changedRelPaths = new HashSet<>();
+    /**
+     * Subscription to the flow which sets up the initial observers.
+     */
+    private Subscription setupSubscription;
+    /**
+     * Used to coalesce events and queue delta imports on the main thread.
+     */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    /**
+     * Queues a delta import for {@link #changedRelPaths}.
+     */
+    private final Runnable queueDeltaImport = this::queueDeltaImport;
+
+    /**
+     * Get the instance of {@link LibraryWatcher}.
+     * @return Instance.
+     */
+    public static LibraryWatcher get() {
+        if (INSTANCE == null) INSTANCE = new LibraryWatcher();
+        return INSTANCE;
+    }
+
+    // No public initialization.
+    private LibraryWatcher() {
+    }
+
+    /**
+     * Start or stop watching based on the current preferences. If the library directory has changed, the new one will
+     * be watched instead.
+     */
+    public final synchronized void update() {
+        File newLibDir = Minerva.prefs().isLibWatch(false) ? Util.tryResolveDir(Minerva.prefs().getLibDir(null))
+                : null;
+        ExcludeGlobs newExcludeGlobs = Importer.getExcludeGlobs();
+        if (newLibDir != null && newLibDir.equals(libDir) && newExcludeGlobs.equals(excludeGlobs)) return;
+
+        stop();
+        if (newLibDir == null) return;
+        libDir = newLibDir;
+        excludeGlobs = newExcludeGlobs;
+
+        // Listing the tree might take a moment, so do it in the background.
+        setupSubscription = Observable.just(libDir)
+                                      .subscribeOn(Schedulers.io())
+                                      .subscribe(dir -> watchTree(dir, dir, ""),
+                                              t -> Timber.e(t, "Failed to watch the library directory."));
+    }
+
+    /**
+     * Stop watching, and forget about any changes which haven't been handed to the importer yet.
+     */
+    private void stop() {
+        if (setupSubscription != null) {
+            setupSubscription.unsubscribe();
+            setupSubscription = null;
+        }
+        for (DirObserver observer : observers.values()) observer.stopWatching();
+        observers.clear();
+        changedRelPaths.clear();
+        handler.removeCallbacks(queueDeltaImport);
+        libDir = null;
+        excludeGlobs = null;
+    }
+
+    /**
+     * Start watching {@code dir} and all directories below it.
+     * @param root    Library directory which {@code dir} is in.
+     * @param dir     Directory.
+     * @param relPath Path of {@code dir} relative to {@code root}.
+     */
+    private void watchTree(File root, File dir, String relPath) {
+        Deque<File> dirs = new ArrayDeque<>();
+        Deque<String> relPaths = new ArrayDeque<>();
+        dirs.push(dir);
+        relPaths.push(relPath);
+
+        while (!dirs.isEmpty()) {
+            File currDir = dirs.pop();
+            String currRelPath = relPaths.pop();
+            synchronized (this) {
+                // Stop if we've stopped watching this library directory since we started.
+                if (libDir != root) return;
+                if (observers.containsKey(currRelPath)) continue;
+                DirObserver observer = new DirObserver(currDir, currRelPath);
+                observers.put(currRelPath, observer);
+                observer.startWatching();
+            }
+
+            File[] children = currDir.listFiles();
+            if (children == null) continue;
+            for (File child : children) {
+                String childRelPath = currRelPath + File.separator + child.getName();
+                if (!child.isDirectory() || isExcluded(childRelPath)) continue;
+                dirs.push(child);
+                relPaths.push(childRelPath);
+            }
+        }
+    }
+
+    /**
+     * Called by the {@link DirObserver}s when something happens in the directories they watch.
+     * <p>
+     * This is called on the {@link FileObserver} thread.
+     * @param dir        Directory the event happened in.
+     * @param dirRelPath Path of {@code dir} relative to the library directory.
+     * @param event      Event.
+     * @param name       Name of the file or directory the event is about, or null if it's about {@code dir}.
+     */
+    private void onEvent(File dir, String dirRelPath, int event, String name) {
+        File root;
+        String relPath;
+        synchronized (this) {
+            root = libDir;
+            if (root == null) return;
+            if ((event & SELF_EVENTS) != 0) {
+                // The directory is gone, so stop watching it and everything below it. Its parent will have told us
+                // about it too, and if it was moved somewhere else in the library, we'll start watching it there.
+                String prefix = dirRelPath + File.separator;
+                Iterator<Map.Entry<String, DirObserver>> iter = observers.entrySet().iterator();
+                while (iter.hasNext()) {
+                    Map.Entry<String, DirObserver> entry = iter.next();
+                    if (!entry.getKey().equals(dirRelPath) && !entry.getKey().startsWith(prefix)) continue;
+                    entry.getValue().stopWatching();
+                    iter.remove();
+                }
+                return;
+            }
+            relPath = changedRelPath(excludeGlobs, dirRelPath, name);
+            if (relPath == null) return;
+
+            // Note the change, and put off queuing a delta import until things settle down.
+            changedRelPaths.add(relPath);
+            handler.removeCallbacks(queueDeltaImport);
+            handler.postDelayed(queueDeltaImport, COALESCE_DELAY_MS);
+        }
+
+        // If a directory was added, watch it too.
+        File file = new File(dir, name);
+        if ((event & ADD_EVENTS) != 0 && file.isDirectory()) watchTree(root, file, relPath);
+    }
+
+    /**
+     * Get the relative path of the file or directory which an event is about, unless it should be ignored.
+     * @param excludeGlobs Globs for files and directories to ignore. May be null.
+     * @param dirRelPath   Path of the directory the event happened in, relative to the library directory.
+     * @param name         Name of the file or directory the event is about, or null if it's about the directory.
+     * @return Relative path, or null if the event should be ignored because it is about the directory itself, or about
+     * something which is excluded or in an excluded directory.
+     */
+    static String changedRelPath(ExcludeGlobs excludeGlobs, String dirRelPath, String name) {
+        if (name == null) return null;
+        String relPath = dirRelPath + File.separator + name;
+        return excludeGlobs != null && excludeGlobs.isPathExcluded(relPath) ? null : relPath;
+    }
+
+    /**
+     * Check whether the file or directory at the given path, or any directory it is in, is excluded.
+     * @param relPath Path relative to the library directory.
+     * @return True if it should be ignored.
+     */
+    private synchronized boolean isExcluded(String relPath) {
+        return excludeGlobs != null && excludeGlobs.isPathExcluded(relPath);
+    }
+
+    /**
+     * Queue a delta import for the paths which have changed.
+     * <p>
+     * This is called on the main thread.
+     */
+    private void queueDeltaImport() {
+        List<String> relPaths;
+        synchronized (this) {
+            if (changedRelPaths.isEmpty()) return;
+            relPaths = new ArrayList<>(changedRelPaths);
+            changedRelPaths.clear();
+        }
+        Collections.sort(relPaths);
+        Importer.get().queueDeltaImport(relPaths);
+    }
+
+    /**
+     * Watches a single directory.
+     */
+    private class DirObserver extends FileObserver {
+        private final File dir;
+        private final String relPath;
+
+        private DirObserver(File dir, String relPath) {
+            super(dir.getAbsolutePath(), EVENTS);
+            this.dir = dir;
+            this.relPath = relPath;
+        }
+
+        @Override
+        public void onEvent(int event, String path) {
+            LibraryWatcher.this.onEvent(dir, relPath, event & FileObserver.ALL_EVENTS, path);
+        }
+    }
+}
@@ -4,9 +4,13 @@ import com.bkromhout.minerva.C;
 import com.bkromhout.minerva.realm.RBookList;
 import com.bkromhout.minerva.realm.RBookListItem;
 import io.realm.Realm;
+import io.realm.RealmQuery;
 import io.realm.RealmResults;
 import io.realm.Sort;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Provides static methods to help with reordering {@link RBookListItem}s when they are dragged.
  */
@@ -91,8 +95,9 @@ public class ListItemPositionHelper {
      * it's {@code item2}), or the last (if it's {@code item1}) item in {@code bookList}. If this isn't the case, some
      * items will likely have colliding position values when this method finishes.
      * <p>
-     * If there's no space between {@code item1} and {@code item2}, the whole list will have its items re-spaced before
-     * moving the item.
+     * If there's no space between {@code item1} and {@code item2}, a neighbourhood of items around them will be
+     * re-spaced in order to make room (see {@link PositionRebalancer}). The whole list will only have its items
+     * re-spaced if that isn't possible, which would mean that every position around them is in use.
      * <p>
      * The current spacing gap can be found at {@link C#LIST_ITEM_GAP}.
      * @param bookList   The book list which owns {@code itemToMove}, {@code item1}, and {@code item2}.
@@ -112,7 +117,14 @@ public class ListItemPositionHelper {
         // Try to find the new position for the item, and make sure we didn't get a null back.
         Long newPos = findMiddlePos(bookList, item1, item2);
         if (newPos == null) {
-            // If newPos is null, we need to re-sort the items before moving itemToMove.
+            // If newPos is null, try to make space by re-spacing the items around item1 and item2, which also moves
+            // itemToMove.
+            if (moveItemByRespacing(bookList, itemToMove, item1, item2)) {
+                SmartListCache.get().onChanged(SmartListCache.Change.LIST_ITEM_POSITIONS);
+                return;
+            }
+            // If that wasn't possible, we need to re-sort the whole list before moving itemToMove. As a last resort,
+            // this is bounded by the size of the list, and can only happen once every position around item1 is used.
             bookList.resetPositions();
             newPos = findMiddlePos(bookList, item1, item2);
             if (newPos == null)
@@ -124,6 +136,61 @@ public class ListItemPositionHelper {
             final Long finalNewPos = newPos;
             realm.executeTransaction(tRealm -> itemToMove.pos = finalNewPos);
         }
+        SmartListCache.get().onChanged(SmartListCache.Change.LIST_ITEM_POSITIONS);
+    }
+
+    /**
+     * Moves {@code itemToMove} to between {@code item1} and {@code item2} by re-spacing the items in a neighbourhood
+     * around them. The neighbourhood is kept small unless there's no room in any small one. Only works if {@code
+     * item1} and {@code item2} are consecutive and have no space left between them, and neither of them is {@code
+     * null}.
+     * @param bookList   The book list which owns {@code itemToMove}, {@code item1}, and {@code item2}.
+     * @param itemToMove The item which is being moved.
+     * @param item1      The item which will now precede {@code itemToMove}.
+     * @param item2      The item which will now follow {@code itemToMove}.
+     * @return True if {@code itemToMove} was moved, false if it wasn't possible to make room for it this way.
+     */
+    private static boolean moveItemByRespacing(RBookList bookList, RBookListItem itemToMove, RBookListItem item1,
+                                               RBookListItem item2) {
+        if (item1 == null || item2 == null || item2.pos != item1.pos + 1) return false;
+        long before = item1.pos;
+        PositionRebalancer.PositionCounter counter = (from, to) ->
+                otherItemsBetween(bookList, itemToMove, from, to).count();
+        PositionRebalancer.Window window = PositionRebalancer.findWindow(before, counter);
+        if (window == null) window = PositionRebalancer.findWideWindow(before, counter);
+        if (window == null) return false;
+
+        // Get the items in the window in their current position-based order, but put them into an ArrayList so that
+        // they aren't rearranged as we update their positions.
+        List<RBookListItem> items = new ArrayList<>(otherItemsBetween(bookList, itemToMove, window.from, window.to)
+                .findAllSorted("pos"));
+        long[] positions = new long[items.size()];
+        for (int i = 0; i < positions.length; i++) positions[i] = items.get(i).pos;
+        long[] newPositions = window.respace(positions, before);
+
+        try (Realm realm = Realm.getDefaultInstance()) {
+            realm.executeTransaction(tRealm -> {
+                for (int i = 0; i < items.size(); i++) items.get(i).pos = newPositions[i];
+                itemToMove.pos = newPositions[items.size()];
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Get a query for the items in {@code bookList} whose positions are between {@code from} and {@code to}
+     * (inclusive), other than {@code itemToMove}.
+     * @param bookList   The book list which owns the items.
+     * @param itemToMove The item which is being moved.
+     * @param from       First position.
+     * @param to         Last position.
+     * @return Query.
+     */
+    private static RealmQuery<RBookListItem> otherItemsBetween(RBookList bookList, RBookListItem itemToMove, long from,
+                                                               long to) {
+        return bookList.listItems.where()
+                                 .between("pos", from, to)
+                                 .notEqualTo("uniqueId", itemToMove.uniqueId);
     }
 
     /**
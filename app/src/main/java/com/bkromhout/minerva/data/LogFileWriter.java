@@ -0,0 +1,77 @@
+package com.bkromhout.minerva.data;
+
+import timber.log.Timber;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams log text to a gzip-compressed file as it's logged, so that a log never has to be held in memory in its
+ * entirety.
+ * <p>
+ * All methods are thread-safe. If the file can't be written to, the writer gives up quietly; importing is more
+ * important than logging.
+ */
+final class LogFileWriter implements Closeable {
+    /**
+     * Charset used for log files.
+     */
+    static final Charset CHARSET = Charset.forName("UTF-8");
+    /**
+     * Size of the buffers in front of the compressor and the file.
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * File being written to.
+     */
+    private final File file;
+    /**
+     * Writer for {@link #file}, or null if it has been closed or couldn't be written to.
+     */
+    private Writer writer;
+
+    /**
+     * Create a new {@link LogFileWriter}, creating or truncating {@code file}.
+     * @param file File to write to. Its parent directories are created if needed.
+     * @throws IOException If the file couldn't be opened.
+     */
+    LogFileWriter(File file) throws IOException {
+        this.file = file;
+        File parent = file.getParentFile();
+        if (parent != null && !parent.mkdirs() && !parent.isDirectory())
+            throw new IOException("Unable to create parent directories of " + file);
+
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, CHARSET), BUFFER_SIZE);
+    }
+
+    /**
+     * Append some text to the file.
+     * @param text Text to append. Nulls are ignored.
+     */
+    synchronized void write(String text) {
+        if (writer == null || text == null) return;
+        try {
+            writer.write(text);
+        } catch (IOException e) {
+            Timber.e(e, "Failed to write to log file %s, giving up on it.", file);
+            close();
+        }
+    }
+
+    /**
+     * Flush and close the file. Nothing else can be written afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Timber.e(e, "Failed to close log file %s.", file);
+        }
+        writer = null;
+    }
+}
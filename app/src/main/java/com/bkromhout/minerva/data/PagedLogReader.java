@@ -0,0 +1,102 @@
+package com.bkromhout.minerva.data;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a log file written by {@link LogFileWriter} a page at a time, so that only as much of it as someone actually
+ * looks at is ever decompressed and held in memory.
+ * <p>
+ * Nothing is read until the first call to {@link #readPage()}, so instances may be created on the main thread. All
+ * methods are thread-safe.
+ */
+final class PagedLogReader implements Closeable {
+    /**
+     * File to read.
+     */
+    private final File file;
+    /**
+     * Roughly how many characters to read for each page. Pages are extended to the end of the line they'd otherwise
+     * finish in.
+     */
+    private final int pageSize;
+    /**
+     * Reader for {@link #file}, or null if it hasn't been opened yet.
+     */
+    private Reader reader;
+    /**
+     * Whether or not we've reached the end of the file or have been closed.
+     */
+    private boolean isDone = false;
+
+    /**
+     * Create a new {@link PagedLogReader}.
+     * @param file     File to read.
+     * @param pageSize Roughly how many characters to read for each page.
+     */
+    PagedLogReader(File file, int pageSize) {
+        if (pageSize <= 0) throw new IllegalArgumentException("pageSize must be positive.");
+        this.file = file;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Read the next page of the file.
+     * @return Next page, or null if there is nothing left to read.
+     * @throws IOException If the file couldn't be read. The reader is closed before this is thrown.
+     */
+    synchronized String readPage() throws IOException {
+        if (isDone) return null;
+        try {
+            if (reader == null) reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new FileInputStream(file)), LogFileWriter.CHARSET));
+
+            StringBuilder page = new StringBuilder(pageSize);
+            char[] buffer = new char[Math.min(pageSize, 8192)];
+            boolean isEof = false;
+            while (page.length() < pageSize) {
+                int numRead = reader.read(buffer, 0, Math.min(buffer.length, pageSize - page.length()));
+                if (numRead == -1) {
+                    isEof = true;
+                    break;
+                }
+                page.append(buffer, 0, numRead);
+            }
+
+            // Finish the line we stopped in, unless we stopped right after one.
+            while (!isEof && page.charAt(page.length() - 1) != '\n') {
+                int c = reader.read();
+                if (c == -1) isEof = true;
+                else page.append((char) c);
+            }
+
+            if (isEof) close();
+            return page.length() == 0 ? null : page.toString();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get whether or not there may be more to read.
+     * @return True if {@link #readPage()} might return another page.
+     */
+    synchronized boolean hasMore() {
+        return !isDone;
+    }
+
+    /**
+     * Close the file. {@link #readPage()} will return null afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        isDone = true;
+        if (reader == null) return;
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+        }
+        reader = null;
+    }
+}
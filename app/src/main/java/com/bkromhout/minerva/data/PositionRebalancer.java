@@ -0,0 +1,167 @@
+package com.bkromhout.minerva.data;
+
+/**
+ * Finds the neighbourhood of {@link com.bkromhout.minerva.realm.RBookListItem} positions which should be re-spaced when
+ * there isn't any room left to move an item between two others.
+ * <p>
+ * Rather than re-spacing the whole list, we look at windows of the position space which contain the spot the item is
+ * being moved to, starting with a tiny window and doubling its width each time. Windows are aligned to multiples of
+ * their width, so each window is made up of exactly two windows from the level below it. The first window which is
+ * sparse enough is re-spaced evenly, which only changes the positions of the items inside it. Larger windows must be
+ * sparser than smaller ones, so that re-spacing a window leaves room in all of the windows within it for a while
+ * before they need to be re-spaced again. This is the classic approach to the order-maintenance problem, and keeps the
+ * amortized number of items re-spaced per move logarithmic in the size of the list.
+ * <p>
+ * To bound the worst case, we normally never re-space more than {@link #MAX_REBALANCE_ITEMS} items. If none of the
+ * windows within that limit are sparse enough, the largest one which still has room is used. If none of them have room
+ * at all, which would mean that more than {@link #MAX_REBALANCE_ITEMS} items have been packed into consecutive
+ * positions, {@link #findWideWindow(long, PositionCounter)} keeps widening the window past that limit until it has
+ * room. That still only touches the items around the spot the item is being moved to.
+ */
+final class PositionRebalancer {
+    /**
+     * Maximum number of items that will be re-spaced in one go.
+     */
+    static final int MAX_REBALANCE_ITEMS = 1024;
+    /**
+     * Number of window levels. The largest window is 2^62 positions wide, so window boundaries never overflow.
+     */
+    private static final int NUM_LEVELS = 62;
+
+    /**
+     * Counts the items in a range of positions.
+     */
+    interface PositionCounter {
+        /**
+         * Count the items whose positions are in a range. The item which is being moved mustn't be counted.
+         * @param from First position in the range.
+         * @param to   Last position in the range.
+         * @return Number of items.
+         */
+        long count(long from, long to);
+    }
+
+    // No initialization.
+    private PositionRebalancer() {
+    }
+
+    /**
+     * Find the window to re-space in order to make room for an item right after the position {@code before}.
+     * @param before  Position of the item which the moved item will follow. The item which the moved item will precede
+     *                must be at {@code before + 1}.
+     * @param counter Used to count the items in windows.
+     * @return Window to re-space, or null if no window with at most {@link #MAX_REBALANCE_ITEMS} items has room.
+     */
+    static Window findWindow(long before, PositionCounter counter) {
+        Window roomy = null;
+        for (int level = 0; level < NUM_LEVELS; level++) {
+            long width = 2L << level;
+            long from = before & -width;
+            long to = from + (width - 1);
+            // The window must contain both items we're moving between.
+            if (before == to) continue;
+
+            long numItems = counter.count(from, to);
+            if (numItems > MAX_REBALANCE_ITEMS) break;
+            Window window = new Window(from, to, (int) numItems);
+            if (window.getGap() >= minGapAt(level)) return window;
+            if (window.getGap() >= 1) roomy = window;
+        }
+        return roomy;
+    }
+
+    /**
+     * Find the window to re-space in order to make room for an item right after the position {@code before}, when
+     * {@link #findWindow(long, PositionCounter)} couldn't find one. This ignores {@link #MAX_REBALANCE_ITEMS}, so it
+     * can re-space a lot of items.
+     * @param before  Position of the item which the moved item will follow. The item which the moved item will precede
+     *                must be at {@code before + 1}.
+     * @param counter Used to count the items in windows.
+     * @return Smallest window which has room, or null if even the largest window is full.
+     */
+    static Window findWideWindow(long before, PositionCounter counter) {
+        for (int level = 0; level < NUM_LEVELS; level++) {
+            long width = 2L << level;
+            long from = before & -width;
+            long to = from + (width - 1);
+            if (before == to) continue;
+
+            long numItems = counter.count(from, to);
+            if (numItems >= Integer.MAX_VALUE) return null;
+            Window window = new Window(from, to, (int) numItems);
+            if (window.getGap() >= 1) return window;
+        }
+        return null;
+    }
+
+    /**
+     * Get the smallest gap between positions which a window must have once it has been re-spaced for it to be used.
+     * This grows with the level, so that larger windows must be sparser.
+     * @param level Window level.
+     * @return Minimum gap.
+     */
+    static long minGapAt(int level) {
+        return level + 2;
+    }
+
+    /**
+     * A range of positions to re-space.
+     */
+    static final class Window {
+        /**
+         * First position in the window.
+         */
+        final long from;
+        /**
+         * Last position in the window.
+         */
+        final long to;
+        /**
+         * Number of items in the window, not including the item being moved.
+         */
+        final int numItems;
+
+        Window(long from, long to, int numItems) {
+            this.from = from;
+            this.to = to;
+            this.numItems = numItems;
+        }
+
+        /**
+         * Get the gap between positions once the items in this window, plus the item being moved, are re-spaced.
+         * @return Gap. Zero if there isn't enough room in this window for all of the items.
+         */
+        long getGap() {
+            return (to - from + 1) / (numItems + 1);
+        }
+
+        /**
+         * Get the new position of an item once the window has been re-spaced.
+         * @param index Index of the item amongst the items in this window, including the item being moved.
+         * @return New position.
+         */
+        long positionAt(int index) {
+            long gap = getGap();
+            return from + index * gap + gap / 2;
+        }
+
+        /**
+         * Re-space the items in this window, making room for the item being moved right after the position {@code
+         * before}.
+         * @param positions Current positions of the items in this window, not including the item being moved, in order.
+         * @param before    Position of the item which the moved item will follow.
+         * @return New positions. The first {@code positions.length} are the new positions of the items in {@code
+         * positions}, in the same order, and the last is the new position of the item being moved.
+         */
+        long[] respace(long[] positions, long before) {
+            if (positions.length != numItems)
+                throw new IllegalArgumentException("Expected " + numItems + " positions, got " + positions.length);
+            long[] newPositions = new long[numItems + 1];
+            int insertAt = 0;
+            while (insertAt < numItems && positions[insertAt] <= before) insertAt++;
+            for (int i = 0; i < numItems; i++) newPositions[i] = positionAt(i < insertAt ? i : i + 1);
+            newPositions[numItems] = positionAt(insertAt);
+            return newPositions;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.bkromhout.minerva.data;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates how quickly an import run is getting through its files, and how long it will take to get through the rest
+ * of them.
+ * <p>
+ * The rate is an exponentially weighted moving average of the rates seen between each pair of samples, so it follows
+ * changes in speed without jumping around every time a large file comes along.
+ */
+final class ProgressRate {
+    /**
+     * How much weight the newest sample gets when it's folded into the average.
+     */
+    static final double SMOOTHING = 0.3;
+    /**
+     * Value returned by {@link #getEtaMillis(int)} when we can't estimate the time remaining.
+     */
+    static final long UNKNOWN_ETA = -1;
+
+    /**
+     * Time of the previous sample, from {@link System#nanoTime()}, or -1 if we don't have one yet.
+     */
+    private long lastNanos = -1;
+    /**
+     * Number of files done as of the previous sample.
+     */
+    private int lastNumDone;
+    /**
+     * Smoothed rate in files per second, or -1 if we don't have one yet.
+     */
+    private double rate = -1;
+
+    /**
+     * Forget all samples.
+     */
+    void reset() {
+        lastNanos = -1;
+        lastNumDone = 0;
+        rate = -1;
+    }
+
+    /**
+     * Add a sample.
+     * @param nowNanos Time of the sample, from {@link System#nanoTime()}.
+     * @param numDone  Number of files which have been done as of the sample.
+     */
+    void update(long nowNanos, int numDone) {
+        if (lastNanos != -1) {
+            long elapsedNanos = nowNanos - lastNanos;
+            if (elapsedNanos <= 0) return;
+
+            double sample = (numDone - lastNumDone) * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+            rate = rate < 0 ? sample : rate + SMOOTHING * (sample - rate);
+        }
+        lastNanos = nowNanos;
+        lastNumDone = numDone;
+    }
+
+    /**
+     * Get the current rate.
+     * @return Files per second, or 0 if there haven't been enough samples yet.
+     */
+    float getFilesPerSec() {
+        return rate < 0 ? 0f : (float) rate;
+    }
+
+    /**
+     * Estimate how long it will take to do the given number of files at the current rate.
+     * @param numRemaining Number of files left to do.
+     * @return Estimated time in milliseconds, or {@link #UNKNOWN_ETA} if we can't estimate it yet.
+     */
+    long getEtaMillis(int numRemaining) {
+        if (numRemaining <= 0) return 0;
+        if (rate <= 0) return UNKNOWN_ETA;
+        return Math.round(numRemaining / rate * 1000);
+    }
+}
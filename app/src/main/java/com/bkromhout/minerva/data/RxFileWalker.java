@@ -3,13 +3,25 @@ package com.bkromhout.minerva.data;
 import com.bkromhout.minerva.util.Util;
 import rx.Observable;
 import rx.Subscriber;
+import rx.subscriptions.Subscriptions;
 
 import java.io.File;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Recursively walks down from a given starting directory and emits File objects for any files whose extensions match
  * the given extensions.
+ * <p>
+ * Directories are listed in parallel using a {@link ForkJoinPool}: as soon as a directory has been listed, listing its
+ * subdirectories is forked, so the pool stays ahead of the (single) thread which emits files. Emission order doesn't
+ * depend on which listings finish first; each directory's files are emitted in name order, followed by each of its
+ * subdirectories' files, also in name order.
+ * <p>
+ * Files and directories which match any of the given {@link ExcludeGlobs} are skipped, and excluded directories are
+ * never descended into.
  */
 class RxFileWalker implements Observable.OnSubscribe<File> {
     /**
@@ -21,15 +33,55 @@ class RxFileWalker implements Observable.OnSubscribe<File> {
      * files will be emitted; if the list is empty, no files will be emitted.
      */
     private final List<String> extensions;
+    /**
+     * Path of {@link #root} relative to the library directory, without a leading "/". Exclusion globs are matched
+     * against paths relative to the library directory.
+     */
+    private final String rootRelPath;
+    /**
+     * Globs for files and directories to skip.
+     */
+    private final ExcludeGlobs excludeGlobs;
+    /**
+     * Number of threads to list directories with.
+     */
+    private final int parallelism;
 
     /**
-     * Create a new {@link RxFileWalker}.
+     * Create a new {@link RxFileWalker} which doesn't exclude anything.
      * @param root       The directory to start at.
      * @param extensions The extensions to limit which files to emit. If null, will emit all files.
      */
     RxFileWalker(File root, List<String> extensions) {
+        this(root, extensions, null, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a new {@link RxFileWalker}.
+     * @param root         The directory to start at.
+     * @param extensions   The extensions to limit which files to emit. If null, will emit all files.
+     * @param excludeGlobs Globs for files and directories to skip. May be null.
+     * @param parallelism  Number of threads to list directories with.
+     */
+    RxFileWalker(File root, List<String> extensions, Collection<String> excludeGlobs, int parallelism) {
+        this(root, "", extensions, new ExcludeGlobs(excludeGlobs), parallelism);
+    }
+
+    /**
+     * Create a new {@link RxFileWalker} which starts at a directory below the library directory.
+     * @param root         The directory to start at.
+     * @param rootRelPath  Path of {@code root} relative to the library directory.
+     * @param extensions   The extensions to limit which files to emit. If null, will emit all files.
+     * @param excludeGlobs Globs for files and directories to skip.
+     * @param parallelism  Number of threads to list directories with.
+     */
+    RxFileWalker(File root, String rootRelPath, List<String> extensions, ExcludeGlobs excludeGlobs,
+                 int parallelism) {
         this.root = root;
+        this.rootRelPath = ExcludeGlobs.trimRelPath(rootRelPath);
         this.extensions = extensions;
+        this.excludeGlobs = excludeGlobs;
+        this.parallelism = Math.max(1, parallelism);
     }
 
     @Override
@@ -46,39 +98,94 @@ class RxFileWalker implements Observable.OnSubscribe<File> {
             return;
         }
 
-        // Walk the directory, recursing into any subdirectories as well.
-        walk(root, sub);
+        // Stop listing directories as soon as we're unsubscribed.
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        sub.add(Subscriptions.create(() -> cancelled.set(true)));
+
+        // List the directory tree using the pool, emitting files as their directories' listings become available.
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            ListDirTask rootTask = new ListDirTask(root, rootRelPath, cancelled);
+            pool.execute(rootTask);
+            emit(rootTask, sub);
+        } finally {
+            pool.shutdownNow();
+        }
         if (!sub.isUnsubscribed()) sub.onCompleted();
     }
 
     /**
-     * Walk the given directory, recursing into any subdirectories.
+     * Wait for the given directory's listing, emit its files, then do the same for each of its subdirectories.
      * <p>
      * Will return ASAP if {@code sub.isUnsubscribed() == true}.
-     * @param root Directory to walk.
+     * @param task Listing task for the directory.
      * @param sub  The subscriber to emit Files to.
      */
-    private void walk(File root, Subscriber<? super File> sub) {
+    private void emit(ListDirTask task, Subscriber<? super File> sub) {
         // Return ASAP if we have no subscribers.
         if (sub.isUnsubscribed()) return;
+        task.join();
 
-        // List files and directories in this directory, then iterate through and check all of them.
-        File[] list = root.listFiles();
-        if (list == null) return;
-        for (File f : list) {
+        for (File file : task.files) {
             // Return ASAP if we have no subscribers.
             if (sub.isUnsubscribed()) return;
+            sub.onNext(file);
+        }
+        for (ListDirTask subdirTask : task.subdirTasks) emit(subdirTask, sub);
+    }
 
-            // Check this File object.
-            if (f.isDirectory()) {
-                // A directory, we'll walk it too.
-                walk(f, sub);
-            } else {
-                // It's a file and its extension is in the list (or the list of extensions is null), so emit it.
-                if ((extensions == null || extensions.contains(Util.getExtFromFName(f.getName())))
-                        && !sub.isUnsubscribed()) sub.onNext(f);
+    /**
+     * Lists a single directory, then forks tasks to list its subdirectories.
+     */
+    private class ListDirTask extends RecursiveAction {
+        private final File dir;
+        private final String relPath;
+        private final AtomicBoolean cancelled;
+        /**
+         * Files in the directory which should be emitted, sorted by name. Only valid once this task is done.
+         */
+        private final List<File> files = new ArrayList<>();
+        /**
+         * Tasks for the directory's subdirectories, sorted by name. Only valid once this task is done.
+         */
+        private final List<ListDirTask> subdirTasks = new ArrayList<>();
+
+        /**
+         * Create a new {@link ListDirTask}.
+         * @param dir       Directory to list.
+         * @param relPath   Path of {@code dir} relative to the library directory, without a leading "/".
+         * @param cancelled Set once the walk has been cancelled.
+         */
+        private ListDirTask(File dir, String relPath, AtomicBoolean cancelled) {
+            this.dir = dir;
+            this.relPath = relPath;
+            this.cancelled = cancelled;
+        }
 
+        @Override
+        protected void compute() {
+            if (cancelled.get()) return;
+
+            // List names in this directory, then iterate through and check all of them.
+            String[] names = dir.list();
+            if (names == null) return;
+            Arrays.sort(names);
+            for (String name : names) {
+                String childRelPath = relPath.isEmpty() ? name : relPath + "/" + name;
+                if (excludeGlobs.isExcluded(name, childRelPath)) continue;
+
+                File f = new File(dir, name);
+                if (f.isDirectory()) {
+                    // A directory, we'll list it too.
+                    subdirTasks.add(new ListDirTask(f, childRelPath, cancelled));
+                } else if (extensions == null || extensions.contains(Util.getExtFromFName(name))) {
+                    // It's a file and its extension is in the list (or the list of extensions is null).
+                    files.add(f);
+                }
             }
+
+            // Let the pool list the subdirectories; we don't wait for them here, since the emitting thread will.
+            for (ListDirTask subdirTask : subdirTasks) subdirTask.fork();
         }
     }
 }
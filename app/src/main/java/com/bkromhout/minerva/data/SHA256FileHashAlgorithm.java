@@ -0,0 +1,44 @@
+package com.bkromhout.minerva.data;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * {@link FileHashAlgorithm} which uses SHA-256. This is what we use to identify books by their content.
+ */
+class SHA256FileHashAlgorithm implements FileHashAlgorithm {
+    @Override
+    public Hasher newHasher() {
+        try {
+            return new MessageDigestHasher(MessageDigest.getInstance("SHA-256"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Hasher that updates a message digest.
+     */
+    private static class MessageDigestHasher implements Hasher {
+        private final MessageDigest digest;
+        private boolean done;
+
+        private MessageDigestHasher(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            if (done) throw new IllegalStateException("Cannot re-use after calling hash().");
+            digest.update(buffer);
+        }
+
+        @Override
+        public byte[] hash() {
+            if (done) throw new IllegalStateException("Cannot re-use after calling hash().");
+            done = true;
+            return digest.digest();
+        }
+    }
+}
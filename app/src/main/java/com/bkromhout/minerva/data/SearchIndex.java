@@ -0,0 +1,386 @@
+package com.bkromhout.minerva.data;
+
+import com.bkromhout.minerva.realm.RBook;
+import io.realm.Realm;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over the text fields of all {@link RBook}s, used to search the library without having Realm
+ * scan every book's text for every keystroke.
+ * <p>
+ * Text is split into lower-cased, accent-stripped words. Every word in a query must match the start of some word in a
+ * book for the book to match. Matches are ranked by which fields they're in (title, then author, then subjects, then
+ * description), with whole-word matches ranked above prefix matches.
+ * <p>
+ * Like the {@link DuplicateIndex}, the index is built lazily using a single pass over all books, then kept up to date
+ * by the {@link Importer} and {@link ActionHelper}. All methods are thread-safe.
+ */
+public class SearchIndex {
+    /**
+     * Field weights. These are bits so that a word's weight in a book is the sum of the weights of the fields it's in.
+     */
+    static final int TITLE = 8, AUTHOR = 4, SUBJECTS = 2, DESC = 1;
+    /**
+     * Maximum number of distinct words to index from each description. Descriptions are by far the longest text we
+     * index, and their first few sentences are what people remember, so this keeps memory use down.
+     */
+    private static final int MAX_DESC_WORDS = 32;
+    /**
+     * Words which aren't worth indexing in descriptions.
+     */
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList("a", "an", "and", "are", "as", "at", "be",
+            "by", "for", "from", "has", "he", "her", "his", "in", "is", "it", "its", "of", "on", "or", "she", "that",
+            "the", "their", "they", "this", "to", "was", "were", "who", "will", "with"));
+    /**
+     * Pattern which matches HTML tags and entities.
+     */
+    private static final Pattern HTML_PATTERN = Pattern.compile("<[^>]*>|&#?\\w+;");
+    /**
+     * Pattern which matches combining marks left behind after decomposing characters.
+     */
+    private static final Pattern MARKS_PATTERN = Pattern.compile("\\p{M}+");
+    /**
+     * Instance of SearchIndex.
+     */
+    private static SearchIndex INSTANCE;
+
+    /**
+     * Postings for each word, sorted so that all words with a given prefix can be found quickly.
+     */
+    private final TreeMap<String, Postings> postingsByWord = new TreeMap<>();
+    /**
+     * Document numbers, keyed by book unique IDs. Document numbers are dense so that searches can use arrays.
+     */
+    private final Map<Long, Integer> docsById = new HashMap<>();
+    /**
+     * Unique IDs of books, indexed by document number. Free document numbers have the value {@code -1}.
+     */
+    private long[] idsByDoc = new long[0];
+    /**
+     * Words indexed for each document, so that they can be removed when the document is.
+     */
+    private String[][] wordsByDoc = new String[0][];
+    /**
+     * Document numbers which have been freed and can be reused.
+     */
+    private final Deque<Integer> freeDocs = new ArrayDeque<>();
+    /**
+     * Number of document numbers which have been handed out, including freed ones.
+     */
+    private int numDocs = 0;
+    /**
+     * Scratch arrays used while searching, indexed by document number.
+     */
+    private int[] matchCounts = new int[0], scores = new int[0], wordScores = new int[0];
+    /**
+     * Whether or not the index has been built.
+     */
+    private boolean isBuilt = false;
+
+    /**
+     * Get the instance of {@link SearchIndex}.
+     * @return Instance.
+     */
+    public static synchronized SearchIndex get() {
+        if (INSTANCE == null) INSTANCE = new SearchIndex();
+        return INSTANCE;
+    }
+
+    // No public initialization.
+    SearchIndex() {
+    }
+
+    /**
+     * Build the index if it hasn't been built yet. This reads every {@link RBook}, so it shouldn't be called on the
+     * main thread.
+     * @param realm Instance of Realm to use.
+     */
+    public final synchronized void buildIfNeeded(Realm realm) {
+        if (!isBuilt) build(realm.where(RBook.class).findAll());
+    }
+
+    /**
+     * Get whether or not the index has been built.
+     * @return True if the index has been built and can be searched.
+     */
+    public final synchronized boolean isBuilt() {
+        return isBuilt;
+    }
+
+    /**
+     * Forget everything in the index, so that it is built again the next time someone asks for it. This must be called
+     * whenever the books in Realm are replaced wholesale, such as when a backup is restored.
+     */
+    public final synchronized void clear() {
+        postingsByWord.clear();
+        docsById.clear();
+        freeDocs.clear();
+        idsByDoc = new long[0];
+        wordsByDoc = new String[0][];
+        matchCounts = new int[0];
+        scores = new int[0];
+        wordScores = new int[0];
+        numDocs = 0;
+        isBuilt = false;
+    }
+
+    /**
+     * Build the index from the given books, replacing whatever was in it.
+     * @param books All books.
+     */
+    synchronized void build(Iterable<RBook> books) {
+        clear();
+        for (RBook book : books) put(book.uniqueId, book.title, book.author, book.subjects, book.desc);
+        isBuilt = true;
+    }
+
+    /**
+     * Note that a book has been saved, possibly with different text than it had before. Does nothing if the index
+     * hasn't been built yet, since it will see the book when it is.
+     * @param uniqueId Unique ID of the book.
+     * @param title    Title.
+     * @param author   Author.
+     * @param subjects Subjects.
+     * @param desc     Description.
+     */
+    synchronized void onBookSaved(long uniqueId, String title, String author, String subjects, String desc) {
+        if (isBuilt) put(uniqueId, title, author, subjects, desc);
+    }
+
+    /**
+     * Note that a book has been deleted.
+     * @param uniqueId Unique ID of the book.
+     */
+    synchronized void onBookDeleted(long uniqueId) {
+        remove(uniqueId);
+    }
+
+    /**
+     * Search the index.
+     * @param query Query text.
+     * @return Unique IDs of the books which match every word in {@code query}, best matches first. Empty if the query
+     * has no words in it or the index hasn't been built.
+     */
+    public final long[] search(String query) {
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Search the index, giving up if there are too many matches.
+     * @param query      Query text.
+     * @param maxResults Maximum number of matches to return.
+     * @return Unique IDs of the books which match every word in {@code query}, best matches first. Empty if the query
+     * has no words in it or the index hasn't been built. Null if more than {@code maxResults} books match.
+     */
+    public final synchronized long[] search(String query, int maxResults) {
+        List<String> queryWords = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (queryWords.isEmpty() || !isBuilt) return new long[0];
+        // Longer words usually match fewer books, and only books which match the first word need to be looked at
+        // after that, so start with the longest.
+        Collections.sort(queryWords, (a, b) -> Integer.compare(b.length(), a.length()));
+
+        // Documents which matched the first word; only these can match the whole query.
+        int[] candidates = null;
+        int numCandidates = 0;
+        for (int w = 0; w < queryWords.size(); w++) {
+            String queryWord = queryWords.get(w);
+            int[] touched = new int[16];
+            int numTouched = 0;
+
+            // Find the best score each document gets for this query word, from all of the words it's a prefix of.
+            SortedMap<String, Postings> prefixed = postingsByWord.subMap(queryWord, queryWord + Character.MAX_VALUE);
+            for (Map.Entry<String, Postings> entry : prefixed.entrySet()) {
+                int multiplier = entry.getKey().length() == queryWord.length() ? 2 : 1;
+                Postings postings = entry.getValue();
+                for (int i = 0; i < postings.size; i++) {
+                    int doc = postings.docs[i];
+                    // Skip documents which didn't match all of the previous query words.
+                    if (matchCounts[doc] != w) continue;
+                    int score = postings.weights[i] * multiplier;
+                    if (wordScores[doc] == 0) {
+                        if (numTouched == touched.length) touched = Arrays.copyOf(touched, numTouched * 2);
+                        touched[numTouched++] = doc;
+                    }
+                    if (score > wordScores[doc]) wordScores[doc] = score;
+                }
+            }
+
+            for (int i = 0; i < numTouched; i++) {
+                int doc = touched[i];
+                matchCounts[doc]++;
+                scores[doc] += wordScores[doc];
+                wordScores[doc] = 0;
+            }
+            if (w == 0) {
+                candidates = touched;
+                numCandidates = numTouched;
+            }
+            // Nothing can match the whole query if nothing matched this word.
+            if (numTouched == 0) break;
+        }
+
+        // Collect the documents which matched every query word, and reset the scratch arrays as we go.
+        List<int[]> matches = new ArrayList<>();
+        for (int i = 0; i < numCandidates; i++) {
+            int doc = candidates[i];
+            if (matchCounts[doc] == queryWords.size()) matches.add(new int[] {doc, scores[doc]});
+            matchCounts[doc] = 0;
+            scores[doc] = 0;
+        }
+        if (matches.size() > maxResults) return null;
+        Collections.sort(matches, (a, b) -> a[1] != b[1] ? Integer.compare(b[1], a[1])
+                : Long.compare(idsByDoc[a[0]], idsByDoc[b[0]]));
+
+        long[] ids = new long[matches.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = idsByDoc[matches.get(i)[0]];
+        return ids;
+    }
+
+    /**
+     * Index a book, replacing whatever was indexed for it before.
+     * @param uniqueId Unique ID of the book.
+     * @param title    Title.
+     * @param author   Author.
+     * @param subjects Subjects.
+     * @param desc     Description.
+     */
+    private void put(long uniqueId, String title, String author, String subjects, String desc) {
+        remove(uniqueId);
+
+        // Figure out the weight of each word, in the order we first see them.
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        addWords(weights, title, TITLE, Integer.MAX_VALUE);
+        addWords(weights, author, AUTHOR, Integer.MAX_VALUE);
+        addWords(weights, subjects, SUBJECTS, Integer.MAX_VALUE);
+        if (desc != null) addWords(weights, HTML_PATTERN.matcher(desc).replaceAll(" "), DESC, MAX_DESC_WORDS);
+        if (weights.isEmpty()) return;
+
+        int doc = newDoc(uniqueId);
+        String[] words = new String[weights.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            String word = entry.getKey();
+            Postings postings = postingsByWord.get(word);
+            if (postings == null) postingsByWord.put(word, postings = new Postings());
+            else word = postingsByWord.ceilingKey(word); // Share the existing string.
+            postings.add(doc, entry.getValue());
+            words[i++] = word;
+        }
+        wordsByDoc[doc] = words;
+    }
+
+    /**
+     * Tokenize {@code text} and add its words to {@code weights} with the given {@code weight}.
+     * @param weights  Map of words to weights to add to.
+     * @param text     Text to tokenize. May be null.
+     * @param weight   Weight of the field {@code text} is from.
+     * @param maxWords Maximum number of new, non-stop words to add.
+     */
+    private static void addWords(Map<String, Integer> weights, String text, int weight, int maxWords) {
+        int numAdded = 0;
+        for (String word : tokenize(text)) {
+            Integer oldWeight = weights.get(word);
+            if (oldWeight != null) weights.put(word, oldWeight | weight);
+            else if (numAdded < maxWords && (weight != DESC || !STOP_WORDS.contains(word))) {
+                weights.put(word, weight);
+                numAdded++;
+            }
+        }
+    }
+
+    /**
+     * Remove a book from the index.
+     * @param uniqueId Unique ID of the book.
+     */
+    private void remove(long uniqueId) {
+        Integer doc = docsById.remove(uniqueId);
+        if (doc == null) return;
+        for (String word : wordsByDoc[doc]) {
+            Postings postings = postingsByWord.get(word);
+            postings.remove(doc);
+            if (postings.size == 0) postingsByWord.remove(word);
+        }
+        wordsByDoc[doc] = null;
+        idsByDoc[doc] = -1;
+        freeDocs.push(doc);
+    }
+
+    /**
+     * Get a document number for a book, growing the arrays indexed by document number if needed.
+     * @param uniqueId Unique ID of the book.
+     * @return Document number.
+     */
+    private int newDoc(long uniqueId) {
+        int doc;
+        if (!freeDocs.isEmpty()) doc = freeDocs.pop();
+        else {
+            doc = numDocs++;
+            if (doc == idsByDoc.length) {
+                int newLength = Math.max(64, doc * 2);
+                idsByDoc = Arrays.copyOf(idsByDoc, newLength);
+                wordsByDoc = Arrays.copyOf(wordsByDoc, newLength);
+                matchCounts = Arrays.copyOf(matchCounts, newLength);
+                scores = Arrays.copyOf(scores, newLength);
+                wordScores = Arrays.copyOf(wordScores, newLength);
+            }
+        }
+        idsByDoc[doc] = uniqueId;
+        docsById.put(uniqueId, doc);
+        return doc;
+    }
+
+    /**
+     * Split text into lower-cased words, with accents removed.
+     * @param text Text to split. May be null.
+     * @return Words, in the order they appear in {@code text}.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null || text.isEmpty()) return words;
+        String folded = MARKS_PATTERN.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                                     .replaceAll("")
+                                     .toLowerCase(Locale.ROOT);
+
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean isWordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (isWordChar && start == -1) start = i;
+            else if (!isWordChar && start != -1) {
+                words.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Documents which contain a word, along with the word's weight in each.
+     */
+    private static final class Postings {
+        private int[] docs = new int[2];
+        private byte[] weights = new byte[2];
+        private int size = 0;
+
+        void add(int doc, int weight) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = doc;
+            weights[size++] = (byte) weight;
+        }
+
+        void remove(int doc) {
+            for (int i = 0; i < size; i++) {
+                if (docs[i] != doc) continue;
+                // Order doesn't matter, so just move the last posting into this one's place.
+                docs[i] = docs[--size];
+                weights[i] = weights[size];
+                return;
+            }
+        }
+    }
+}
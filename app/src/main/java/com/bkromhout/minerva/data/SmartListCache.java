@@ -0,0 +1,474 @@
+package com.bkromhout.minerva.data;
+
+import com.bkromhout.minerva.realm.RBook;
+import com.bkromhout.minerva.realm.RBookList;
+import com.bkromhout.minerva.realm.RBookListItem;
+import com.bkromhout.minerva.realm.RTag;
+import com.bkromhout.minerva.ui.TagSpanCache;
+import com.bkromhout.ruqus.RealmUserQuery;
+import io.realm.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the results of smart lists' queries as sets of unique IDs, so that counting the books in a smart list,
+ * checking whether a book is in one, or showing one doesn't mean executing its {@link RealmUserQuery} every time.
+ * <p>
+ * Each entry remembers which model fields its query references. Code which changes data tells the cache what kind of
+ * {@link Change} it made using {@link #onChanged(Change...)}, and only entries whose queries reference the fields (or,
+ * if objects were added or removed, the model classes) affected by it are thrown away. Entries are recomputed the next
+ * time they're needed.
+ * <p>
+ * Entries are computed using the main thread's Realm, which doesn't see commits made on other threads right away. To
+ * make sure that entries computed from data which was about to change aren't kept, changes are applied both right
+ * away and again once the main thread's Realm has caught up.
+ * <p>
+ * Changes which affect the tags shown on books are passed on to the {@link TagSpanCache} in the same way.
+ * <p>
+ * The getters must only be called from the main thread, but changes can be reported from any thread.
+ */
+public class SmartListCache {
+    /**
+     * Model classes which smart list queries could reference.
+     */
+    static final List<Class<? extends RealmObject>> MODEL_CLASSES = Collections.unmodifiableList(
+            Arrays.<Class<? extends RealmObject>>asList(RBook.class, RBookListItem.class, RBookList.class, RTag.class));
+    /**
+     * Maximum number of results which {@link #getResults(Realm, RBookList, RealmUserQuery)} will fetch by their unique
+     * IDs. Realm checks IDs one at a time, so past this it's faster to just execute the query.
+     */
+    private static final int MAX_RESULTS_BY_ID = 500;
+    /**
+     * Pattern which matches things which could be field names.
+     */
+    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    /**
+     * Names of the fields of all model classes which smart list queries could reference.
+     */
+    static final Set<String> FIELD_NAMES = fieldNamesOf(MODEL_CLASSES);
+    /**
+     * Instance of SmartListCache.
+     */
+    private static SmartListCache INSTANCE;
+
+    /**
+     * Kinds of changes to data which could affect the results of smart lists' queries.
+     */
+    public enum Change {
+        /**
+         * Books were added or deleted, along with their list items and their links from tags.
+         */
+        BOOKS_ADDED_OR_REMOVED(false, "RBook", "RBookListItem", "listItems", "taggedBooks"),
+        /**
+         * Books' ratings were changed.
+         */
+        BOOK_RATINGS(false, "rating"),
+        /**
+         * Books were tagged or untagged, which can also create tags and change books' marks.
+         */
+        BOOK_TAGS(true, "tags", "taggedBooks", "isNew", "isUpdated", "RTag"),
+        /**
+         * Books' marks were changed without changing their tags.
+         */
+        BOOK_MARKS(false, "isNew", "isUpdated"),
+        /**
+         * Whether books have cover images was changed.
+         */
+        BOOK_COVERS(false, "hasCoverImage"),
+        /**
+         * Books were opened, or added to or removed from the recents list.
+         */
+        BOOK_RECENTS(false, "lastReadDate", "isInRecents"),
+        /**
+         * Lists were created or deleted.
+         */
+        LISTS_ADDED_OR_REMOVED(false, "RBookList"),
+        /**
+         * Lists were renamed.
+         */
+        LIST_NAMES(false, "name", "sortName"),
+        /**
+         * Items were added to or removed from normal lists.
+         */
+        LIST_ITEMS(false, "RBookListItem", "listItems", "nextPos"),
+        /**
+         * Items in normal lists were moved.
+         */
+        LIST_ITEM_POSITIONS(false, "pos", "nextPos"),
+        /**
+         * Tags were created or deleted, without changing which books they're on.
+         */
+        TAGS_ADDED_OR_REMOVED(false, "RTag"),
+        /**
+         * Tags were renamed.
+         */
+        TAG_NAMES(true, "name", "sortName"),
+        /**
+         * Tags were recolored.
+         */
+        TAG_COLORS(true, "textColor", "bgColor");
+
+        /**
+         * Whether the change affects the tags shown on books, meaning their names, colors, or which books they're on.
+         */
+        final boolean changesBookTags;
+        /**
+         * Names of the fields which are changed, and of the model classes which have objects added or removed.
+         */
+        final List<String> names;
+
+        Change(boolean changesBookTags, String... names) {
+            this.changesBookTags = changesBookTags;
+            this.names = Collections.unmodifiableList(Arrays.asList(names));
+        }
+    }
+
+    /**
+     * Cached entries, keyed by smart list unique IDs.
+     */
+    private final Map<Long, Entry> entries = new HashMap<>();
+    /**
+     * Changes which have been reported since the main thread's Realm last caught up.
+     */
+    private final Set<String> pendingChanges = new HashSet<>();
+    /**
+     * Whether {@link #invalidateAll()} has been called since the main thread's Realm last caught up.
+     */
+    private boolean pendingInvalidateAll = false;
+    /**
+     * Whether a change which affects the tags shown on books has been reported since the main thread's Realm last
+     * caught up.
+     */
+    private boolean pendingTagsChanged = false;
+    /**
+     * Instance of Realm used to find out when the main thread's Realm catches up.
+     */
+    private Realm realm;
+
+    /**
+     * Get the instance of {@link SmartListCache}.
+     * @return Instance.
+     */
+    public static synchronized SmartListCache get() {
+        if (INSTANCE == null) INSTANCE = new SmartListCache();
+        return INSTANCE;
+    }
+
+    // No public initialization.
+    SmartListCache() {
+    }
+
+    /**
+     * Start listening for the main thread's Realm to catch up with changes. Must be called from the main thread once
+     * Realm has been configured. The Realm instance opened here is kept open for the life of the app.
+     */
+    public final synchronized void startListening() {
+        if (realm != null) return;
+        realm = Realm.getDefaultInstance();
+        realm.addChangeListener(changedRealm -> onRealmChanged());
+    }
+
+    /**
+     * Get the number of items in a smart list.
+     * @param realm Instance of Realm to use if the list's query needs to be executed.
+     * @param list  Smart list.
+     * @return Number of items which the list's query returns, or -1 if the list doesn't have a query.
+     */
+    public final synchronized int getCount(Realm realm, RBookList list) {
+        Entry entry = getEntry(realm, list);
+        return entry != null ? entry.resultIds.length : -1;
+    }
+
+    /**
+     * Check whether a book is in a smart list. For lists which query for {@link RBookListItem}s, this checks whether
+     * any of the items are for the book.
+     * @param realm        Instance of Realm to use if the list's query needs to be executed.
+     * @param list         Smart list.
+     * @param bookUniqueId Unique ID of the book.
+     * @return True if the book is in the list, otherwise false.
+     */
+    public final synchronized boolean contains(Realm realm, RBookList list, long bookUniqueId) {
+        Entry entry = getEntry(realm, list);
+        return entry != null && Arrays.binarySearch(entry.bookIds, bookUniqueId) >= 0;
+    }
+
+    /**
+     * Get the results of a smart list's query. If they're cached, the results are fetched using their unique IDs
+     * rather than by executing the query, and are sorted the same way the query sorts them.
+     * <p>
+     * Results fetched using their unique IDs won't pick up objects which start matching the query later, so callers
+     * should use {@link #isCached(RBookList)} to check whether they need to get the results again when data changes.
+     * @param realm Instance of Realm to use.
+     * @param list  Smart list.
+     * @param ruq   The list's query.
+     * @param <E>   Class the query returns objects of.
+     * @return Results.
+     */
+    public final synchronized <E extends RealmModel> RealmResults<E> getResults(Realm realm, RBookList list,
+                                                                               RealmUserQuery ruq) {
+        // Queries which haven't been saved to the list yet can't be cached.
+        if (!ruq.toRuqString().equals(list.smartListRuqString)) return ruq.execute(realm);
+
+        Entry entry = getValidEntry(list);
+        if (entry == null) {
+            RealmResults<E> results = ruq.execute(realm);
+            cacheResults(list, ruq, results);
+            return results;
+        }
+        if (entry.resultIds.length > MAX_RESULTS_BY_ID) return ruq.execute(realm);
+        return findByIds(realm, ruq, entry.resultIds);
+    }
+
+    /**
+     * Check whether a smart list's results are cached.
+     * @param list Smart list.
+     * @return True if they're cached and up to date.
+     */
+    public final synchronized boolean isCached(RBookList list) {
+        return getValidEntry(list) != null;
+    }
+
+    /**
+     * Note that data has changed, throwing away any entries whose queries might have been affected.
+     * @param changes Changes which were made.
+     */
+    public final synchronized void onChanged(Change... changes) {
+        List<String> names = new ArrayList<>();
+        boolean tagsChanged = false;
+        for (Change change : changes) {
+            names.addAll(change.names);
+            tagsChanged |= change.changesBookTags;
+        }
+        invalidate(names);
+        pendingChanges.addAll(names);
+        if (tagsChanged) {
+            TagSpanCache.onTagsChanged();
+            pendingTagsChanged = true;
+        }
+    }
+
+    /**
+     * Throw away all entries. Used when too much has changed to be worth tracking, such as during an import.
+     */
+    public final synchronized void invalidateAll() {
+        entries.clear();
+        pendingInvalidateAll = true;
+        TagSpanCache.onTagsChanged();
+    }
+
+    /**
+     * Throw away the entry for a list, such as when it stops being a smart list, its query is changed, or it's deleted.
+     * @param listUniqueId Unique ID of the list.
+     */
+    public final synchronized void evict(long listUniqueId) {
+        entries.remove(listUniqueId);
+    }
+
+    /**
+     * Called once the main thread's Realm has caught up with changes. Applies the changes reported since the last time
+     * again, since entries might have been computed from the old data in the meantime.
+     */
+    synchronized void onRealmChanged() {
+        if (pendingInvalidateAll) entries.clear();
+        else invalidate(pendingChanges);
+        if (pendingInvalidateAll || pendingTagsChanged) TagSpanCache.onTagsChanged();
+        pendingChanges.clear();
+        pendingInvalidateAll = false;
+        pendingTagsChanged = false;
+    }
+
+    /**
+     * Get the entry for a smart list, computing it if it isn't cached or its query has changed.
+     * @param realm Instance of Realm to use if the list's query needs to be executed.
+     * @param list  Smart list.
+     * @return Entry, or null if the list isn't a smart list or doesn't have a query.
+     */
+    private Entry getEntry(Realm realm, RBookList list) {
+        String ruqString = list.smartListRuqString;
+        if (!list.isSmartList || ruqString == null || ruqString.isEmpty()) return null;
+        Entry entry = getValidEntry(list);
+        if (entry != null) return entry;
+
+        RealmUserQuery ruq = new RealmUserQuery(ruqString);
+        return cacheResults(list, ruq, ruq.execute(realm));
+    }
+
+    /**
+     * Get the entry for a smart list if it's cached and its query hasn't changed, without computing it.
+     * @param list Smart list.
+     * @return Entry, or null.
+     */
+    private Entry getValidEntry(RBookList list) {
+        Entry entry = entries.get(list.uniqueId);
+        return entry != null && entry.ruqString.equals(list.smartListRuqString) ? entry : null;
+    }
+
+    /**
+     * Cache the results of a smart list's query.
+     * @param list    Smart list.
+     * @param ruq     The list's query.
+     * @param results Results of executing {@code ruq}.
+     * @return New entry.
+     */
+    private Entry cacheResults(RBookList list, RealmUserQuery ruq, RealmResults<?> results) {
+        String ruqString = list.smartListRuqString;
+        Entry entry = new Entry(ruqString, dependenciesOf(ruqString, ruq.getQueryClass()), bookIdsOf(results),
+                uniqueIdsOf(results));
+        entries.put(list.uniqueId, entry);
+        return entry;
+    }
+
+    /**
+     * Fetch the results of a query using their unique IDs, sorted the same way the query sorts them.
+     * @param realm Instance of Realm to use.
+     * @param ruq   Query.
+     * @param ids   Sorted unique IDs of the results.
+     * @param <E>   Class the query returns objects of.
+     * @return Results.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E extends RealmModel> RealmResults<E> findByIds(Realm realm, RealmUserQuery ruq, long[] ids) {
+        RealmQuery<E> query = realm.where((Class<E>) ruq.getQueryClass());
+        // Realm doesn't allow "in" queries with nothing in them, and nothing has a unique ID of -1.
+        if (ids.length == 0) query.equalTo("uniqueId", -1L);
+        else {
+            Long[] boxedIds = new Long[ids.length];
+            for (int i = 0; i < ids.length; i++) boxedIds[i] = ids[i];
+            query.in("uniqueId", boxedIds);
+        }
+
+        List<String> sortFields = ruq.getSortFields();
+        List<Sort> sortDirs = ruq.getSortDirs();
+        if (sortFields.isEmpty()) return query.findAll();
+        return query.findAllSorted(sortFields.toArray(new String[sortFields.size()]),
+                sortDirs.toArray(new Sort[sortDirs.size()]));
+    }
+
+    /**
+     * Get the entry for a smart list if it's cached, without computing it.
+     * @param listUniqueId Unique ID of the smart list.
+     * @return Entry, or null.
+     */
+    synchronized Entry getCachedEntry(long listUniqueId) {
+        return entries.get(listUniqueId);
+    }
+
+    /**
+     * Cache an entry for a smart list.
+     * @param listUniqueId Unique ID of the smart list.
+     * @param entry        Entry.
+     */
+    synchronized void putEntry(long listUniqueId, Entry entry) {
+        entries.put(listUniqueId, entry);
+    }
+
+    /**
+     * Throw away the entries whose queries might have been affected by some changes.
+     * @param changes Names of the fields which were changed, and of the classes which had objects added or removed.
+     */
+    private void invalidate(Collection<String> changes) {
+        if (changes.isEmpty()) return;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Set<String> dependencies = iterator.next().dependencies;
+            if (dependencies == null || !Collections.disjoint(dependencies, changes)) iterator.remove();
+        }
+    }
+
+    /**
+     * Figure out what a query depends on, by finding the names of model fields in its RUQ string.
+     * @param ruqString  RUQ string.
+     * @param queryClass Class the query returns objects of.
+     * @return Names of the fields which the query references, plus the name of {@code queryClass}, since adding or
+     * removing objects of that class changes the results. Null if no field names were found, meaning that the query
+     * should be assumed to depend on everything.
+     */
+    static Set<String> dependenciesOf(String ruqString, Class<?> queryClass) {
+        Set<String> dependencies = new HashSet<>();
+        Matcher matcher = IDENTIFIER_PATTERN.matcher(ruqString);
+        while (matcher.find()) if (FIELD_NAMES.contains(matcher.group())) dependencies.add(matcher.group());
+        if (dependencies.isEmpty()) return null;
+        dependencies.add(queryClass.getSimpleName());
+        return dependencies;
+    }
+
+    /**
+     * Get the sorted, distinct unique IDs of the books in a smart list's results.
+     * @param results Results of a smart list's query, either {@link RBook}s or {@link RBookListItem}s.
+     * @return Sorted array of book unique IDs.
+     */
+    private static long[] bookIdsOf(RealmResults<?> results) {
+        long[] ids = new long[results.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Object obj = results.get(i);
+            ids[i] = obj instanceof RBookListItem ? ((RBookListItem) obj).book.uniqueId : ((RBook) obj).uniqueId;
+        }
+        Arrays.sort(ids);
+
+        // Remove duplicates, since a book could be in more than one list.
+        int numDistinct = 0;
+        for (int i = 0; i < ids.length; i++) if (i == 0 || ids[i] != ids[i - 1]) ids[numDistinct++] = ids[i];
+        return numDistinct == ids.length ? ids : Arrays.copyOf(ids, numDistinct);
+    }
+
+    /**
+     * Get the sorted unique IDs of the objects in a smart list's results.
+     * @param results Results of a smart list's query, either {@link RBook}s or {@link RBookListItem}s.
+     * @return Sorted array of unique IDs.
+     */
+    private static long[] uniqueIdsOf(RealmResults<?> results) {
+        long[] ids = new long[results.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Object obj = results.get(i);
+            ids[i] = obj instanceof RBookListItem ? ((RBookListItem) obj).uniqueId : ((RBook) obj).uniqueId;
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Get the names of the instance fields of some classes.
+     * @param classes Classes.
+     * @return Field names.
+     */
+    private static Set<String> fieldNamesOf(List<Class<? extends RealmObject>> classes) {
+        Set<String> names = new HashSet<>();
+        for (Class<?> clazz : classes)
+            for (Field field : clazz.getDeclaredFields())
+                if (!Modifier.isStatic(field.getModifiers())) names.add(field.getName());
+        return names;
+    }
+
+    /**
+     * Cached results of a smart list's query.
+     */
+    static final class Entry {
+        /**
+         * RUQ string the results are for.
+         */
+        final String ruqString;
+        /**
+         * What the query depends on. See {@link #dependenciesOf(String, Class)}.
+         */
+        final Set<String> dependencies;
+        /**
+         * Sorted, distinct unique IDs of the books in the results.
+         */
+        final long[] bookIds;
+        /**
+         * Sorted unique IDs of the results, which are either books or list items.
+         */
+        final long[] resultIds;
+
+        Entry(String ruqString, Set<String> dependencies, long[] bookIds, long[] resultIds) {
+            this.ruqString = ruqString;
+            this.dependencies = dependencies;
+            this.bookIds = bookIds;
+            this.resultIds = resultIds;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.bkromhout.minerva.data;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Creates the normalized keys which {@link com.bkromhout.minerva.realm.RBook}s are sorted by, so that sorting is just
+ * a walk of Realm's index on the key field rather than a comparison of the raw strings.
+ * <p>
+ * Keys are case-folded and have their accents and punctuation removed, so that "Émile" sorts with "emile" and not after
+ * "Zola". Runs of digits are zero-padded so that "Book 2" sorts before "Book 10". Titles have a leading article
+ * removed, so that "The Hobbit" sorts under H, and authors are put surname-first, so that "Patrick Rothfuss" sorts
+ * under R.
+ * <p>
+ * Realm can only compare strings by their characters, so the keys only contain lower-case letters, digits, spaces, and
+ * (for paths) slashes.
+ */
+public final class SortKeys {
+    /**
+     * Width to zero-pad runs of digits to.
+     */
+    private static final int NUMBER_WIDTH = 10;
+    /**
+     * Pattern which matches combining marks left behind after decomposing characters.
+     */
+    private static final Pattern MARKS_PATTERN = Pattern.compile("\\p{M}+");
+    /**
+     * Articles to remove from the start of titles.
+     */
+    private static final String[] ARTICLES = {"the ", "an ", "a "};
+    /**
+     * Words which can come after a surname, but aren't part of it.
+     */
+    private static final Set<String> NAME_SUFFIXES = new HashSet<>(Arrays.asList("jr", "sr", "ii", "iii", "iv",
+            "phd", "md"));
+    /**
+     * Words which, when they come before a surname, are part of it.
+     */
+    private static final Set<String> SURNAME_PARTICLES = new HashSet<>(Arrays.asList("da", "de", "del", "della",
+            "den", "der", "di", "du", "la", "le", "st", "van", "von"));
+
+    // No initialization.
+    private SortKeys() {
+    }
+
+    /**
+     * Get the sort key for a title.
+     * @param title Title. May be null.
+     * @return Sort key.
+     */
+    public static String forTitle(String title) {
+        String key = fold(title);
+        for (String article : ARTICLES)
+            if (key.startsWith(article) && key.length() > article.length()) return key.substring(article.length());
+        return key;
+    }
+
+    /**
+     * Get the sort key for an author, which puts their surname first. Names which are already in "Surname, Given
+     * Names" form are left in that order.
+     * @param author Author. May be null.
+     * @return Sort key.
+     */
+    public static String forAuthor(String author) {
+        if (author == null) return "";
+        String suffix = "";
+        int comma = author.indexOf(',');
+        if (comma != -1) {
+            String afterComma = fold(author.substring(comma + 1));
+            // "Given Surname, Jr." isn't in surname-first form, the comma just separates the suffix.
+            if (!NAME_SUFFIXES.contains(afterComma)) return join(fold(author.substring(0, comma)), afterComma);
+            author = author.substring(0, comma);
+            suffix = afterComma;
+        }
+
+        List<String> words = new ArrayList<>(Arrays.asList(fold(author).split(" ")));
+        while (words.size() > 1 && NAME_SUFFIXES.contains(words.get(words.size() - 1)))
+            suffix = join(words.remove(words.size() - 1), suffix);
+        if (words.size() == 1) return join(words.get(0), suffix);
+
+        // Find where the surname starts, including any particles in front of it, but leave at least one given name.
+        int surnameStart = words.size() - 1;
+        while (surnameStart > 1 && SURNAME_PARTICLES.contains(words.get(surnameStart - 1))) surnameStart--;
+
+        StringBuilder key = new StringBuilder();
+        for (int i = surnameStart; i < words.size(); i++) key.append(words.get(i)).append(' ');
+        for (int i = 0; i < surnameStart; i++) key.append(words.get(i)).append(' ');
+        return join(key.toString().trim(), suffix);
+    }
+
+    /**
+     * Get the sort key for a relative path. Each part of the path is folded separately, so that books stay grouped by
+     * folder.
+     * @param relPath Relative path. May be null.
+     * @return Sort key.
+     */
+    public static String forPath(String relPath) {
+        if (relPath == null) return "";
+        StringBuilder key = new StringBuilder();
+        for (String part : relPath.split("/")) {
+            if (key.length() > 0) key.append('/');
+            key.append(fold(part));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Fold text into a form which sorts sensibly when compared character by character: lower-cased, without accents,
+     * with punctuation replaced by single spaces, and with runs of digits zero-padded.
+     * @param text Text to fold. May be null.
+     * @return Folded text.
+     */
+    static String fold(String text) {
+        if (text == null || text.isEmpty()) return "";
+        String decomposed = MARKS_PATTERN.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                                         .replaceAll("")
+                                         .toLowerCase(Locale.ROOT);
+
+        StringBuilder folded = new StringBuilder(decomposed.length() + NUMBER_WIDTH);
+        int digitsStart = -1;
+        for (int i = 0; i <= decomposed.length(); i++) {
+            char c = i < decomposed.length() ? decomposed.charAt(i) : ' ';
+            if (Character.isDigit(c)) {
+                if (digitsStart == -1) digitsStart = folded.length();
+                folded.append(c);
+                continue;
+            }
+            // Pad the run of digits we just finished, if there was one.
+            if (digitsStart != -1) {
+                for (int pad = folded.length() - digitsStart; pad < NUMBER_WIDTH; pad++)
+                    folded.insert(digitsStart, '0');
+                digitsStart = -1;
+            }
+            if (i == decomposed.length()) break;
+            if (Character.isLetter(c)) folded.append(c);
+            else if (folded.length() > 0 && folded.charAt(folded.length() - 1) != ' ') folded.append(' ');
+        }
+
+        int end = folded.length();
+        if (end > 0 && folded.charAt(end - 1) == ' ') folded.setLength(end - 1);
+        return folded.toString();
+    }
+
+    /**
+     * Join two parts of a key with a space, skipping empty ones.
+     * @param first  First part.
+     * @param second Second part.
+     * @return Joined parts.
+     */
+    private static String join(String first, String second) {
+        if (first.isEmpty()) return second;
+        if (second.isEmpty()) return first;
+        return first + " " + second;
+    }
+}
@@ -1,32 +1,30 @@
 package com.bkromhout.minerva.data;
 
-import nl.siegmann.epublib.domain.Book;
-
 /**
- * Holds a {@link nl.siegmann.epublib.domain.Book}, plus other data.
+ * Holds the {@link BookMetadata} read from a book file, plus other data.
  */
 public class SuperBook {
-    private final Book book;
+    private final BookMetadata metadata;
     private final String path;
     private final byte[] hash;
 
     /**
      * Create a new {@link SuperBook}.
-     * @param book The {@link Book} to hold.
-     * @param path The path (relative to the library dir) to the book file.
-     * @param hash The hash of the book file.
+     * @param metadata The {@link BookMetadata} to hold.
+     * @param path     The path (relative to the library dir) to the book file.
+     * @param hash     The hash of the book file.
      */
-    public SuperBook(Book book, String path, byte[] hash) {
-        if (book == null || DataUtils.isDENullOrEmpty(book.getTitle()) || DataUtils.getFirstAuthor(book) == null ||
-                path == null || path.isEmpty()) throw new IllegalArgumentException(path);
+    public SuperBook(BookMetadata metadata, String path, byte[] hash) {
+        if (metadata == null || metadata.getTitle() == null || metadata.getFirstAuthor() == null || path == null ||
+                path.isEmpty()) throw new IllegalArgumentException(path);
 
-        this.book = book;
+        this.metadata = metadata;
         this.path = path;
         this.hash = hash;
     }
 
-    public Book getBook() {
-        return book;
+    public BookMetadata getMetadata() {
+        return metadata;
     }
 
     public String getPath() {
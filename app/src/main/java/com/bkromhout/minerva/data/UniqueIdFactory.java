@@ -90,20 +90,36 @@ public class UniqueIdFactory {
     public synchronized long nextId(final Class<? extends RealmModel> clazz) {
         // Don't allow any IDs to be retrieved if we haven't
         if (ids == null) throw new IllegalStateException("Default ID map not initialized yet.");
-        return nextIdInternal(clazz, tempIds == null ? ids : tempIds);
+        return nextIdsInternal(clazz, 1, tempIds == null ? ids : tempIds);
     }
 
     /**
-     * Returns a unique ID for the given {@code clazz} using the {@code AtomicLong}s which are stored in the given
-     * {@code idMap}.
+     * Reserve a contiguous block of unique IDs for a given class in one step, which is cheaper than calling {@link
+     * #nextId(Class)} once per object when creating many objects at once.
+     * <p>
+     * Uses the temporary IDs map in the same situations that {@link #nextId(Class)} would.
+     * @param clazz Realm model class to reserve unique IDs for.
+     * @param count Number of unique IDs to reserve. Must be positive.
+     * @return The first reserved unique ID. The others are the {@code count - 1} values which follow it.
+     */
+    public synchronized long nextIds(final Class<? extends RealmModel> clazz, int count) {
+        if (ids == null) throw new IllegalStateException("Default ID map not initialized yet.");
+        if (count < 1) throw new IllegalArgumentException("count must be positive.");
+        return nextIdsInternal(clazz, count, tempIds == null ? ids : tempIds);
+    }
+
+    /**
+     * Reserves {@code count} unique IDs for the given {@code clazz} using the {@code AtomicLong}s which are stored in
+     * the given {@code idMap}.
      * <p>
      * If the given {@code clazz} doesn't currently have an entry in the map, one will be created.
-     * @param clazz Realm model class to return a unique ID for.
+     * @param clazz Realm model class to return unique IDs for.
+     * @param count Number of unique IDs to reserve.
      * @param idMap Map of model classes to {@code AtomicLong}s.
-     * @return Unique ID.
+     * @return First reserved unique ID.
      */
-    private static long nextIdInternal(final Class<? extends RealmModel> clazz,
-                                       Map<Class<? extends RealmModel>, AtomicLong> idMap) {
+    private static long nextIdsInternal(final Class<? extends RealmModel> clazz, int count,
+                                        Map<Class<? extends RealmModel>, AtomicLong> idMap) {
         AtomicLong l = idMap.get(clazz);
         if (l == null) {
             // RealmConfiguration#getRealmObjectClasses() returns only classes with existing instances so we need to
@@ -111,7 +127,7 @@ public class UniqueIdFactory {
             l = new AtomicLong(0);
             idMap.put(clazz, l);
         }
-        return l.incrementAndGet();
+        return l.getAndAdd(count) + 1;
     }
 
     /**
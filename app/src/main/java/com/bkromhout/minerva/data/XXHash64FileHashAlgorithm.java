@@ -0,0 +1,126 @@
+package com.bkromhout.minerva.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link FileHashAlgorithm} which uses the 64-bit variant of xxHash (with a seed of 0). It isn't cryptographic, but it
+ * is many times faster than SHA-256, which makes it a good fit for checking whether a file's contents have changed.
+ * <p>
+ * Hashes are 8 bytes long, in big-endian order (xxHash's canonical representation).
+ * @see <a href="https://github.com/Cyan4973/xxHash/blob/dev/doc/xxhash_spec.md">xxHash specification</a>
+ */
+class XXHash64FileHashAlgorithm implements FileHashAlgorithm {
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+    /**
+     * Number of bytes which are consumed by each round of the main loop.
+     */
+    private static final int STRIPE_LEN = 32;
+
+    @Override
+    public Hasher newHasher() {
+        return new XXHash64Hasher();
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME64_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME64_1;
+    }
+
+    private static long mergeRound(long acc, long val) {
+        acc ^= round(0, val);
+        return acc * PRIME64_1 + PRIME64_4;
+    }
+
+    /**
+     * Streaming xxHash64 computation.
+     */
+    private static class XXHash64Hasher implements Hasher {
+        /**
+         * Holds the bytes of a partial stripe between calls to {@link #update(ByteBuffer)}.
+         */
+        private final ByteBuffer pending = ByteBuffer.allocate(STRIPE_LEN).order(ByteOrder.LITTLE_ENDIAN);
+        private long v1 = PRIME64_1 + PRIME64_2;
+        private long v2 = PRIME64_2;
+        private long v3 = 0;
+        private long v4 = -PRIME64_1;
+        private long totalLen = 0;
+        private boolean done;
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            if (done) throw new IllegalStateException("Cannot re-use after calling hash().");
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            totalLen += buffer.remaining();
+
+            // Finish off any partial stripe from last time first.
+            if (pending.position() > 0) {
+                while (pending.hasRemaining() && buffer.hasRemaining()) pending.put(buffer.get());
+                if (pending.hasRemaining()) return;
+                pending.flip();
+                processStripe(pending);
+                pending.clear();
+            }
+
+            while (buffer.remaining() >= STRIPE_LEN) processStripe(buffer);
+            pending.put(buffer);
+        }
+
+        /**
+         * Consume one stripe from {@code buffer}.
+         * @param buffer Little-endian buffer with at least {@link #STRIPE_LEN} bytes remaining.
+         */
+        private void processStripe(ByteBuffer buffer) {
+            v1 = round(v1, buffer.getLong());
+            v2 = round(v2, buffer.getLong());
+            v3 = round(v3, buffer.getLong());
+            v4 = round(v4, buffer.getLong());
+        }
+
+        @Override
+        public byte[] hash() {
+            if (done) throw new IllegalStateException("Cannot re-use after calling hash().");
+            done = true;
+
+            long h;
+            if (totalLen >= STRIPE_LEN) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) +
+                        Long.rotateLeft(v4, 18);
+                h = mergeRound(h, v1);
+                h = mergeRound(h, v2);
+                h = mergeRound(h, v3);
+                h = mergeRound(h, v4);
+            } else h = PRIME64_5;
+            h += totalLen;
+
+            // Consume the remaining bytes.
+            pending.flip();
+            while (pending.remaining() >= 8) {
+                h ^= round(0, pending.getLong());
+                h = Long.rotateLeft(h, 27) * PRIME64_1 + PRIME64_4;
+            }
+            if (pending.remaining() >= 4) {
+                h ^= (pending.getInt() & 0xFFFFFFFFL) * PRIME64_1;
+                h = Long.rotateLeft(h, 23) * PRIME64_2 + PRIME64_3;
+            }
+            while (pending.hasRemaining()) {
+                h ^= (pending.get() & 0xFFL) * PRIME64_5;
+                h = Long.rotateLeft(h, 11) * PRIME64_1;
+            }
+
+            // Avalanche.
+            h ^= h >>> 33;
+            h *= PRIME64_2;
+            h ^= h >>> 29;
+            h *= PRIME64_3;
+            h ^= h >>> 32;
+
+            return ByteBuffer.allocate(8).putLong(h).array();
+        }
+    }
+}
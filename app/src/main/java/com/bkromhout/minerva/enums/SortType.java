@@ -10,11 +10,11 @@ import com.bkromhout.minerva.R;
  * Represents the different methods of sorting.
  */
 public enum SortType {
-    TITLE(0, R.id.sort_title, R.string.sort_title, "title"),
-    AUTHOR(1, R.id.sort_author, R.string.sort_author, "author"),
+    TITLE(0, R.id.sort_title, R.string.sort_title, "sortTitle"),
+    AUTHOR(1, R.id.sort_author, R.string.sort_author, "sortAuthor", "sortTitle"),
     TIME_ADDED(2, R.id.sort_time_added, R.string.sort_time_added, "lastImportDate"),
     RATING(3, R.id.sort_rating, R.string.sort_rating, "rating"),
-    REL_PATH(4, R.id.sort_rel_path, R.string.sort_rel_path, "relPath", "title");
+    REL_PATH(4, R.id.sort_rel_path, R.string.sort_rel_path, "sortRelPath", "sortTitle");
 
     private final int num;
     private final int id;
@@ -28,6 +28,7 @@ import com.bkromhout.minerva.C;
 import com.bkromhout.minerva.Minerva;
 import com.bkromhout.minerva.Prefs;
 import com.bkromhout.minerva.R;
+import com.bkromhout.minerva.activities.DuplicatesActivity;
 import com.bkromhout.minerva.activities.ImportActivity;
 import com.bkromhout.minerva.activities.TaggingActivity;
 import com.bkromhout.minerva.adapters.BaseBookCardAdapter;
@@ -35,6 +36,7 @@ import com.bkromhout.minerva.adapters.BookCardAdapter;
 import com.bkromhout.minerva.adapters.BookCardCompactAdapter;
 import com.bkromhout.minerva.adapters.BookCardNoCoverAdapter;
 import com.bkromhout.minerva.data.ActionHelper;
+import com.bkromhout.minerva.data.SearchIndex;
 import com.bkromhout.minerva.enums.BookCardType;
 import com.bkromhout.minerva.enums.MarkType;
 import com.bkromhout.minerva.enums.SortDir;
@@ -52,14 +54,15 @@ import com.bkromhout.rrvl.FastScrollHandleStateListener;
 import com.bkromhout.rrvl.FastScrollerHandleState;
 import com.bkromhout.rrvl.RealmRecyclerView;
 import com.jakewharton.rxbinding.support.v7.widget.RxSearchView;
-import io.realm.Case;
 import io.realm.Realm;
 import io.realm.RealmChangeListener;
+import io.realm.RealmQuery;
 import io.realm.RealmResults;
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
+import rx.schedulers.Schedulers;
 import timber.log.Timber;
 
 import java.util.List;
@@ -70,6 +73,12 @@ import java.util.concurrent.TimeUnit;
  */
 public class LibraryFragment extends Fragment implements ActionMode.Callback, BubbleTextProvider,
         FastScrollHandleStateListener, SnackKiosk.Snacker {
+    /**
+     * Maximum number of unique IDs to put in a single "in" condition when querying Realm for search results. Realm
+     * turns each "in" condition into a group of "equal to" conditions, so larger sets of results are split into
+     * several "in" conditions which are ORed together.
+     */
+    private static final int MAX_IDS_PER_IN = 500;
     // Views.
     @BindView(R.id.coordinator)
     CoordinatorLayout coordinator;
@@ -309,6 +318,10 @@ public class LibraryFragment extends Fragment implements ActionMode.Callback, Bu
                 // Open the import activity.
                 Util.startAct(getActivity(), ImportActivity.class, null);
                 return true;
+            case R.id.action_find_duplicates:
+                // Open the duplicates activity.
+                Util.startAct(getActivity(), DuplicatesActivity.class, null);
+                return true;
             default:
                 return super.onOptionsItemSelected(item);
         }
@@ -532,6 +545,14 @@ public class LibraryFragment extends Fragment implements ActionMode.Callback, Bu
         searchViewChangeSub = RxSearchView.queryTextChanges(searchView)
                                           .skip(1)
                                           .debounce(500, TimeUnit.MILLISECONDS)
+                                          .observeOn(Schedulers.io())
+                                          .doOnNext(cs -> {
+                                              // Make sure the search index is built before we need it.
+                                              if (SearchIndex.get().isBuilt()) return;
+                                              try (Realm bgRealm = Realm.getDefaultInstance()) {
+                                                  SearchIndex.get().buildIfNeeded(bgRealm);
+                                              }
+                                          })
                                           .observeOn(AndroidSchedulers.mainThread())
                                           .subscribe(cs -> {
                                               // Apply filter to items and then update adapter's copy of items.
@@ -547,6 +568,10 @@ public class LibraryFragment extends Fragment implements ActionMode.Callback, Bu
     /**
      * Queries Realm to get the {@link #books} list. Uses the given {@code filter} and keeps the current sort method and
      * direction. This method does NOT update the adapter.
+     * <p>
+     * The books which match {@code filter} are always found using the {@link SearchIndex}, no matter how many there
+     * are. They're shown using the current sort method rather than the index's ranking, the same as the unfiltered
+     * list is.
      * @param filter String to use to filter the list. Can be {@code null}/empty.
      */
     private void getBooksList(String filter) {
@@ -554,17 +579,38 @@ public class LibraryFragment extends Fragment implements ActionMode.Callback, Bu
         if (filter == null || filter.isEmpty())
             books = realm.where(RBook.class)
                          .findAllSorted(sortType.getRealmFields(), sortDir.getRealmSort(sortType.getNumRealmFields()));
-        else
-            books = realm.where(RBook.class)
-                         .contains("title", filter, Case.INSENSITIVE)
-                         .or()
-                         .contains("author", filter, Case.INSENSITIVE)
-                         .findAllSorted(sortType.getRealmFields(), sortDir.getRealmSort(sortType.getNumRealmFields()));
+        else {
+            // The search view's subscriber builds the index in the background before calling this. It's only still
+            // unbuilt if a backup was restored in the meantime, which is rare enough to rebuild it here.
+            SearchIndex.get().buildIfNeeded(realm);
+            books = whereIdIn(SearchIndex.get().search(filter))
+                    .findAllSorted(sortType.getRealmFields(), sortDir.getRealmSort(sortType.getNumRealmFields()));
+        }
 
         books.addChangeListener(emptyListener);
         // TODO Might need to manually call toggleEmptyState() here.
     }
 
+    /**
+     * Get a query for the books with the given unique IDs.
+     * @param ids Unique IDs of books.
+     * @return Query for the books.
+     */
+    private RealmQuery<RBook> whereIdIn(long[] ids) {
+        RealmQuery<RBook> query = realm.where(RBook.class);
+        // Realm doesn't allow "in" queries with nothing in them, and no book has a unique ID of -1.
+        if (ids.length == 0) return query.equalTo("uniqueId", -1L);
+
+        query.beginGroup();
+        for (int start = 0; start < ids.length; start += MAX_IDS_PER_IN) {
+            Long[] chunk = new Long[Math.min(MAX_IDS_PER_IN, ids.length - start)];
+            for (int i = 0; i < chunk.length; i++) chunk[i] = ids[start + i];
+            if (start > 0) query.or();
+            query.in("uniqueId", chunk);
+        }
+        return query.endGroup();
+    }
+
     /**
      * Uses the current view options to resort the current {@link RealmResults} in {@link #books}. This method makes no
      * attempts to force a redraw on the actual recycler view.
@@ -637,9 +683,9 @@ public class LibraryFragment extends Fragment implements ActionMode.Callback, Bu
         if (position < 0 || position >= books.size()) return null;
         switch (sortType) {
             case TITLE:
-                return String.valueOf(Character.toUpperCase(books.get(position).title.charAt(0)));
+                return getBubbleText(books.get(position).sortTitle);
             case AUTHOR:
-                return String.valueOf(Character.toUpperCase(books.get(position).author.charAt(0)));
+                return getBubbleText(books.get(position).sortAuthor);
             case RATING:
                 return String.valueOf(books.get(position).rating);
             default:
@@ -647,6 +693,15 @@ public class LibraryFragment extends Fragment implements ActionMode.Callback, Bu
         }
     }
 
+    /**
+     * Get the fast scroll bubble text for a book with the given sort key, so that the bubble agrees with the sort order.
+     * @param sortKey Sort key of the book.
+     * @return Upper-cased first character of {@code sortKey}, or null if it's empty.
+     */
+    private static String getBubbleText(String sortKey) {
+        return sortKey.isEmpty() ? null : String.valueOf(Character.toUpperCase(sortKey.charAt(0)));
+    }
+
     @Override
     public void onHandleStateChanged(FastScrollerHandleState newState) {
         if (newState == FastScrollerHandleState.PRESSED) fabViewOpts.hide();
@@ -24,6 +24,7 @@ import com.bkromhout.minerva.R;
 import com.bkromhout.minerva.activities.TaggingActivity;
 import com.bkromhout.minerva.adapters.*;
 import com.bkromhout.minerva.data.ActionHelper;
+import com.bkromhout.minerva.data.SmartListCache;
 import com.bkromhout.minerva.enums.BookCardType;
 import com.bkromhout.minerva.enums.MainFrag;
 import com.bkromhout.minerva.enums.MarkType;
@@ -318,6 +319,7 @@ public class RecentFragment extends Fragment implements ActionMode.Callback, Fas
                     RealmResults<RBook> recentBooks = tRealm.where(RBook.class).equalTo("isInRecents", true).findAll();
                     for (int i = recentBooks.size() - 1; i >= 0; i--) recentBooks.get(i).isInRecents = false;
                 });
+                SmartListCache.get().onChanged(SmartListCache.Change.BOOK_RECENTS);
                 break;
             case R.id.action_rate:
                 ActionHelper.rateBooks(realm, selectedItems, (Integer) event.getData());
@@ -342,6 +344,7 @@ public class RecentFragment extends Fragment implements ActionMode.Callback, Fas
                     // Set isInRecents to false for all selected RBooks.
                     for (RBook book : selectedItems) book.isInRecents = false;
                 });
+                SmartListCache.get().onChanged(SmartListCache.Change.BOOK_RECENTS);
                 break;
             case R.id.action_delete:
                 ActionHelper.deleteBooks(realm, selectedItems, (boolean) event.getData());
@@ -417,16 +420,18 @@ public class RecentFragment extends Fragment implements ActionMode.Callback, Fas
     @Override
     public void handleSwiped(long uniqueId) {
         // Remove from recents.
-        realm.executeTransactionAsync(bgRealm ->
-                bgRealm.where(RBook.class).equalTo("uniqueId", uniqueId).findFirst().isInRecents = false);
+        ActionHelper.executeTransactionAsync(realm, bgRealm ->
+                        bgRealm.where(RBook.class).equalTo("uniqueId", uniqueId).findFirst().isInRecents = false,
+                SmartListCache.Change.BOOK_RECENTS);
 
         // Show snackbar with "Undo" button.
         Snackbar undoSnackbar = Snackbar.make(coordinator, R.string.book_removed, Snackbar.LENGTH_LONG);
         undoSnackbar.setAction(R.string.undo, view -> {
             // Put back in recents if undo button is clicked.
             try (Realm realm = Realm.getDefaultInstance()) {
-                realm.executeTransactionAsync(bgRealm ->
-                    bgRealm.where(RBook.class).equalTo("uniqueId", uniqueId).findFirst().isInRecents = true);
+                ActionHelper.executeTransactionAsync(realm, bgRealm ->
+                                bgRealm.where(RBook.class).equalTo("uniqueId", uniqueId).findFirst().isInRecents = true,
+                        SmartListCache.Change.BOOK_RECENTS);
             }
         });
         undoSnackbar.show();
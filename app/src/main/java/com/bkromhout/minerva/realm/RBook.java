@@ -1,8 +1,9 @@
 package com.bkromhout.minerva.realm;
 
+import com.bkromhout.minerva.data.BookMetadata;
 import com.bkromhout.minerva.data.DataUtils;
+import com.bkromhout.minerva.data.SortKeys;
 import com.bkromhout.minerva.data.SuperBook;
-import com.bkromhout.minerva.data.UniqueIdFactory;
 import com.bkromhout.rrvl.UIDModel;
 import com.bkromhout.ruqus.Hide;
 import com.bkromhout.ruqus.Queryable;
@@ -13,12 +14,10 @@ import io.realm.RealmObject;
 import io.realm.annotations.Index;
 import io.realm.annotations.PrimaryKey;
 import io.realm.annotations.Required;
-import nl.siegmann.epublib.domain.Book;
-import nl.siegmann.epublib.domain.Identifier;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
-import java.util.Calendar;
 import java.util.Date;
 
 /**
@@ -52,6 +51,27 @@ public class RBook extends RealmObject implements UIDModel {
     @Index
     @Required
     public String author;
+    /**
+     * Key to sort by {@link #title} with. See {@link SortKeys#forTitle(String)}.
+     */
+    @Index
+    @Required
+    @Hide
+    public String sortTitle;
+    /**
+     * Key to sort by {@link #author} with. See {@link SortKeys#forAuthor(String)}.
+     */
+    @Index
+    @Required
+    @Hide
+    public String sortAuthor;
+    /**
+     * Key to sort by {@link #relPath} with. See {@link SortKeys#forPath(String)}.
+     */
+    @Index
+    @Required
+    @Hide
+    public String sortRelPath;
     /**
      * Book description from epub.
      */
@@ -113,7 +133,8 @@ public class RBook extends RealmObject implements UIDModel {
     /* Below this are variables which hold data that are not read from the ePub file. */
 
     /**
-     * Hash of file from the last time it was imported.
+     * SHA-256 hash of file from the last time it was imported. Might be {@code null} if the book hasn't been
+     * re-imported since the way we hash files changed.
      */
     public byte[] hash;
     /**
@@ -158,6 +179,9 @@ public class RBook extends RealmObject implements UIDModel {
      * Create an {@link RBook} from a {@link SuperBook}.
      * <p>
      * {@link SuperBook}s are guaranteed to have a non-null, non-empty path, title, and author.
+     * <p>
+     * This doesn't fill in {@link #uniqueId}, {@link #lastImportDate}, or {@link #lastModifiedDate}, since books are
+     * created on several threads at once during imports, and those should follow the order of the files instead.
      * @param superBook The {@link SuperBook} to use.
      */
     public RBook(SuperBook superBook) {
@@ -165,26 +189,26 @@ public class RBook extends RealmObject implements UIDModel {
         this.relPath = superBook.getPath();
         this.hash = superBook.getHash();
 
-        // Fill in data from Book file.
-        Book book = superBook.getBook();
-        this.title = book.getTitle().getValue();
-        this.author = DataUtils.getFirstAuthor(book);
-        this.desc = DataUtils.getFirstDesc(book);
-        this.subjects = DataUtils.concatDEList(book.getMetadata().getSubjects(), LIST_SEP);
-        this.types = DataUtils.concatDEList(book.getMetadata().getTypes(), LIST_SEP);
-        this.format = book.getMetadata().getFormat();
-        this.language = DataUtils.concatDEList(book.getMetadata().getLanguages(), LIST_SEP);
-        this.publisher = DataUtils.getFirstPublisher(book);
-        Identifier identifier = Identifier.getBookIdIdentifier(book.getMetadata().getIdentifiers());
-        this.bookId = identifier == null ? null : identifier.toString();
-        this.createDate = DataUtils.getFirstBookDate(book, nl.siegmann.epublib.domain.Date.Event.CREATION);
-        this.pubDate = DataUtils.getFirstBookDate(book, nl.siegmann.epublib.domain.Date.Event.PUBLICATION);
-        this.modDate = DataUtils.getFirstBookDate(book, nl.siegmann.epublib.domain.Date.Event.MODIFICATION);
-        this.numChaps = book.getTableOfContents().getAllUniqueResources().size();
-        if (book.getCoverImage() != null) {
-            try {
-                // Get the cover image and store it.
-                DataUtils.saveStreamAsCoverImage(book.getCoverImage().getInputStream(), relPath);
+        // Fill in data from book file.
+        BookMetadata metadata = superBook.getMetadata();
+        this.title = metadata.getTitle();
+        this.author = metadata.getFirstAuthor();
+        this.desc = metadata.getFirstDesc();
+        this.subjects = DataUtils.concatList(metadata.getSubjects(), LIST_SEP);
+        this.types = DataUtils.concatList(metadata.getTypes(), LIST_SEP);
+        this.format = metadata.getFormat();
+        this.language = DataUtils.concatList(metadata.getLanguages(), LIST_SEP);
+        this.publisher = metadata.getFirstPublisher();
+        this.bookId = metadata.getBookId();
+        this.createDate = metadata.getCreateDate();
+        this.pubDate = metadata.getPubDate();
+        this.modDate = metadata.getModDate();
+        this.numChaps = metadata.getNumChaps();
+        updateSortKeys();
+        if (metadata.hasCoverImage()) {
+            // Get the cover image and store it.
+            try (InputStream in = metadata.openCoverImage()) {
+                DataUtils.saveStreamAsCoverImage(in, relPath);
                 hasCoverImage = true;
             } catch (IOException e) {
                 e.printStackTrace();
@@ -193,14 +217,11 @@ public class RBook extends RealmObject implements UIDModel {
         } else hasCoverImage = false;
 
         // Fill in other data.
-        this.lastImportDate = Calendar.getInstance().getTime();
-        this.lastModifiedDate = lastImportDate;
         this.lastReadDate = null;
         this.isInRecents = false;
         this.rating = 0;
         this.isNew = true;
         this.isUpdated = false;
-        this.uniqueId = UniqueIdFactory.getInstance().nextId(RBook.class);
     }
 
     /**
@@ -223,6 +244,7 @@ public class RBook extends RealmObject implements UIDModel {
         if (this.hasCoverImage) DataUtils.deleteCoverImage(this.relPath);
 
         this.relPath = otherBook.relPath;
+        this.sortRelPath = otherBook.sortRelPath;
     }
 
     /**
@@ -245,6 +267,8 @@ public class RBook extends RealmObject implements UIDModel {
         this.lastImportDate = otherBook.lastImportDate;
         // Check if the hashes are different, and if they aren't then we're done. If they are, copy the new one.
         if (Arrays.equals(this.hash, otherBook.hash)) return;
+        // If we don't have a hash, we can't tell whether the file actually changed.
+        boolean couldHaveChanged = this.hash != null;
         this.hash = otherBook.hash;
         this.title = otherBook.title;
         this.author = otherBook.author;
@@ -259,15 +283,27 @@ public class RBook extends RealmObject implements UIDModel {
         this.pubDate = otherBook.pubDate;
         this.modDate = otherBook.modDate;
         this.numChaps = otherBook.numChaps;
+        this.sortTitle = otherBook.sortTitle;
+        this.sortAuthor = otherBook.sortAuthor;
         // Delete the cover image if the other book doesn't have one.
         if (this.hasCoverImage && !otherBook.hasCoverImage) DataUtils.deleteCoverImage(this.relPath);
         // We would have already gotten/replaced the cover image file if the other book has one, so just set the flag.
         this.hasCoverImage = otherBook.hasCoverImage;
-        // As long as this book isn't still marked as new, mark it as updated.
-        if (!this.isNew) this.isUpdated = true;
+        // As long as this book isn't still marked as new (and might really have changed), mark it as updated.
+        if (!this.isNew && couldHaveChanged) this.isUpdated = true;
         this.lastModifiedDate = otherBook.lastModifiedDate;
     }
 
+    /**
+     * Recompute {@link #sortTitle}, {@link #sortAuthor}, and {@link #sortRelPath} from the fields they're based on.
+     * Must be called whenever those fields change.
+     */
+    public void updateSortKeys() {
+        this.sortTitle = SortKeys.forTitle(title);
+        this.sortAuthor = SortKeys.forAuthor(author);
+        this.sortRelPath = SortKeys.forPath(relPath);
+    }
+
     @Override
     public Object getUID() {
         return uniqueId;
@@ -1,6 +1,7 @@
 package com.bkromhout.minerva.realm;
 
 import com.bkromhout.minerva.C;
+import com.bkromhout.minerva.data.SmartListCache;
 import com.bkromhout.minerva.data.UniqueIdFactory;
 import com.bkromhout.rrvl.UIDModel;
 import com.bkromhout.ruqus.Hide;
@@ -8,13 +9,15 @@ import com.bkromhout.ruqus.RealmUserQuery;
 import io.realm.Realm;
 import io.realm.RealmList;
 import io.realm.RealmObject;
+import io.realm.RealmResults;
 import io.realm.annotations.Index;
 import io.realm.annotations.PrimaryKey;
 import io.realm.annotations.Required;
-import rx.Observable;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Represents a book list in Realm.
@@ -103,43 +106,45 @@ public class RBookList extends RealmObject implements UIDModel {
         if (isSmartList) throw new UnsupportedOperationException("Not supported by smart lists.");
     }
 
-    /**
-     * Checks to see if {@code book} is already in this list.
-     * @param book Book to check for.
-     * @return True if {@code book} is in this list, otherwise false.
-     */
-    private boolean isBookInList(RBook book) {
-        return listItems.where()
-                        .equalTo("owningList.name", name)
-                        .equalTo("book.relPath", book.relPath)
-                        .findFirst() != null;
-    }
-
     /**
      * Adds multiple {@link RBook}s to this list, ignoring any which are already in it.
+     * <p>
+     * All of the new items are created in a single transaction, and their positions and unique IDs are reserved as
+     * contiguous blocks rather than one at a time.
      * @param realm Instance of Realm to use.
      * @param books Books to add to this list.
      */
     public void addBooks(Realm realm, Iterable<RBook> books) {
         throwIfSmartList();
-        // Create a list of RBookListItems from books, ignoring any RBooks which are already in this list.
-        List<RBookListItem> newItems = booksToBookListItems(realm, books);
-        realm.executeTransaction(tRealm -> listItems.addAll(newItems));
+        realm.executeTransaction(tRealm -> listItems.addAll(booksToBookListItems(books)));
+        SmartListCache.get().onChanged(SmartListCache.Change.LIST_ITEMS);
     }
 
     /**
-     * Convert a list of {@link RBook}s to a list of {@link RBookListItem}s.
-     * @param realm Instance of Realm to use.
+     * Convert a list of {@link RBook}s to a list of {@link RBookListItem}s, ignoring any {@link RBook}s which are
+     * already in this list (or which are in {@code books} more than once). Must be called from within a transaction,
+     * since it reserves positions for the new items.
      * @param books Books to convert to {@link RBookListItem}s.
      * @return List of {@link RBookListItem}s.
      */
-    private List<RBookListItem> booksToBookListItems(Realm realm, Iterable<RBook> books) {
-        return Observable.from(books)
-                         .filter(book -> !isBookInList(book))
-                         .map(book -> new RBookListItem(realm, this, book))
-                         .toList()
-                         .toBlocking()
-                         .single();
+    private List<RBookListItem> booksToBookListItems(Iterable<RBook> books) {
+        // Get the unique IDs of the books already in this list in one pass, rather than querying once per book.
+        Set<Long> bookIdsInList = new HashSet<>(listItems.size());
+        for (RBookListItem listItem : listItems) if (listItem.book != null) bookIdsInList.add(listItem.book.uniqueId);
+
+        List<RBook> newBooks = new ArrayList<>();
+        for (RBook book : books) if (bookIdsInList.add(book.uniqueId)) newBooks.add(book);
+        if (newBooks.isEmpty()) return new ArrayList<>();
+
+        // Reserve positions and unique IDs for all of the new items at once.
+        long pos = reservePositions(newBooks.size());
+        long uniqueId = UniqueIdFactory.getInstance().nextIds(RBookListItem.class, newBooks.size());
+        List<RBookListItem> newItems = new ArrayList<>(newBooks.size());
+        for (RBook book : newBooks) {
+            newItems.add(new RBookListItem(this, book, pos, uniqueId++));
+            pos += C.LIST_ITEM_GAP;
+        }
+        return newItems;
     }
 
     /**
@@ -154,6 +159,7 @@ public class RBookList extends RealmObject implements UIDModel {
             for (RBook book : books)
                 listItems.where().equalTo("book.relPath", book.relPath).findFirst().deleteFromRealm();
         });
+        SmartListCache.get().onChanged(SmartListCache.Change.LIST_ITEMS);
     }
 
     /**
@@ -171,6 +177,7 @@ public class RBookList extends RealmObject implements UIDModel {
             RBookListItem listItem = new RBookListItem(this, book, pos, uniqueId);
             listItems.add(listItem);
         });
+        SmartListCache.get().onChanged(SmartListCache.Change.LIST_ITEMS);
     }
 
     /**
@@ -185,9 +192,10 @@ public class RBookList extends RealmObject implements UIDModel {
         // If this is a smart list but it doesn't actually have a query, just toggle the boolean.
         // If there is a query, we'll need to actually add the items, which means we need to get a
         // RealmUserQuery first.
-        if (smartListRuqString == null || smartListRuqString.isEmpty())
+        if (smartListRuqString == null || smartListRuqString.isEmpty()) {
             realm.executeTransaction(tRealm -> isSmartList = false);
-        else convertToNormalListUsingRuq(realm, new RealmUserQuery(smartListRuqString));
+            SmartListCache.get().evict(uniqueId);
+        } else convertToNormalListUsingRuq(realm, new RealmUserQuery(smartListRuqString));
     }
 
     /**
@@ -201,14 +209,15 @@ public class RBookList extends RealmObject implements UIDModel {
         if (!isSmartList) return;
         if (ruq == null || !ruq.isQueryValid()) throw new IllegalArgumentException("ruq must be non-null and valid.");
 
-        // Create RBookListItems from RBooks returned by query.
-        List<RBookListItem> bookListItems = booksToBookListItems(realm, ruq.execute(realm));
+        RealmResults<RBook> books = ruq.execute(realm);
         realm.executeTransaction(tRealm -> {
-            // Turn this into a normal list.
+            // Turn this into a normal list, creating RBookListItems from RBooks returned by query.
             isSmartList = false;
-            listItems.addAll(bookListItems);
+            listItems.addAll(booksToBookListItems(books));
             smartListRuqString = null;
         });
+        SmartListCache.get().evict(uniqueId);
+        SmartListCache.get().onChanged(SmartListCache.Change.LIST_ITEMS);
     }
 
     /**
@@ -237,19 +246,19 @@ public class RBookList extends RealmObject implements UIDModel {
                 }
             });
         }
+        SmartListCache.get().onChanged(SmartListCache.Change.LIST_ITEM_POSITIONS);
     }
 
     /**
-     * Gets current value of {@link #nextPos}, then increments the field by {@link C#LIST_ITEM_GAP} before returning the
-     * originally retrieved value.
-     * @param realm Instance of Realm to use when incrementing {@link #nextPos}.
+     * Reserves a contiguous block of positions for new items by incrementing {@link #nextPos} by {@link
+     * C#LIST_ITEM_GAP} once for each of them. Must be called from within a transaction.
+     * @param count Number of positions to reserve.
+     * @return The first reserved position. The others follow it at intervals of {@link C#LIST_ITEM_GAP}.
      */
-    long getThenIncrementNextPos(Realm realm) {
-        long temp = this.nextPos;
-        realm.beginTransaction();
-        this.nextPos += C.LIST_ITEM_GAP;
-        realm.commitTransaction();
-        return temp;
+    long reservePositions(int count) {
+        long first = this.nextPos;
+        this.nextPos += C.LIST_ITEM_GAP * count;
+        return first;
     }
 
     @Override
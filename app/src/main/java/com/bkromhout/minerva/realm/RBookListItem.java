@@ -1,10 +1,8 @@
 package com.bkromhout.minerva.realm;
 
-import com.bkromhout.minerva.data.UniqueIdFactory;
 import com.bkromhout.rrvl.UIDModel;
 import com.bkromhout.ruqus.Hide;
 import com.bkromhout.ruqus.Queryable;
-import io.realm.Realm;
 import io.realm.RealmObject;
 import io.realm.annotations.Index;
 import io.realm.annotations.PrimaryKey;
@@ -43,17 +41,13 @@ public class RBookListItem extends RealmObject implements UIDModel {
     }
 
     /**
-     * Create a new {@link RBookListItem} using to hold the given {@link RBook} in the given {@link RBookList}.
-     * @param realm      Instance of Realm to use for updating the value of {@link RBookList#nextPos} when the {@link
-     *                   RBookListItem} is created.
+     * Create a new {@link RBookListItem} to hold the given {@link RBook} in the given {@link RBookList}. The position
+     * and unique ID must already have been reserved.
      * @param owningList {@link RBookList} this this list item belongs to.
      * @param book       {@link RBook} that this list item refers to.
+     * @param pos        Position of this item in the list.
+     * @param uniqueId   Unique ID of this item.
      */
-    public RBookListItem(Realm realm, RBookList owningList, RBook book) {
-        this(owningList, book, owningList.getThenIncrementNextPos(realm),
-                UniqueIdFactory.getInstance().nextId(RBookListItem.class));
-    }
-
     RBookListItem(RBookList owningList, RBook book, long pos, long uniqueId) {
         this.owningList = owningList;
         this.book = book;
@@ -66,11 +60,17 @@ public class RBookListItem extends RealmObject implements UIDModel {
         return uniqueId;
     }
 
-    // TODO Workaround for an issue where the realm transformer doesn't work on androidTest sources :(
+    /*
+     * TODO Workarounds for an issue where the realm transformer doesn't work on androidTest sources :(
+     */
     RBook getBook() {
         return this.book;
     }
 
+    Long getPos() {
+        return pos;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
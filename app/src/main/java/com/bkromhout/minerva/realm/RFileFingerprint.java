@@ -0,0 +1,70 @@
+package com.bkromhout.minerva.realm;
+
+import io.realm.RealmObject;
+import io.realm.annotations.PrimaryKey;
+import io.realm.annotations.Required;
+
+/**
+ * Represents the fingerprint of a book file, as of the last time it was imported, in Realm.
+ * <p>
+ * The importer uses these to avoid re-reading files which haven't changed since they were last imported.
+ */
+public class RFileFingerprint extends RealmObject {
+    /**
+     * Path to book file (relative to library directory).
+     */
+    @PrimaryKey
+    @Required
+    public String relPath;
+    /**
+     * Size of the file in bytes.
+     */
+    public long size;
+    /**
+     * Time the file was last modified, in milliseconds.
+     */
+    public long lastModified;
+    /**
+     * Identity hash of the file's contents, which is the same as the hash of its {@link RBook}.
+     */
+    public byte[] hash;
+    /**
+     * Fast, non-cryptographic hash of the file's contents, which is used to check whether the file has actually changed
+     * if its last modified time has.
+     */
+    public byte[] fastHash;
+
+    public RFileFingerprint() {
+    }
+
+    /**
+     * Create a new {@link RFileFingerprint}.
+     * @param relPath      Path to book file (relative to library directory).
+     * @param size         Size of the file in bytes.
+     * @param lastModified Time the file was last modified, in milliseconds.
+     * @param hash         Identity hash of the file's contents.
+     * @param fastHash     Fast hash of the file's contents.
+     */
+    public RFileFingerprint(String relPath, long size, long lastModified, byte[] hash, byte[] fastHash) {
+        this.relPath = relPath;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.hash = hash;
+        this.fastHash = fastHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RFileFingerprint that = (RFileFingerprint) o;
+
+        return relPath.equals(that.relPath);
+    }
+
+    @Override
+    public int hashCode() {
+        return relPath.hashCode();
+    }
+}
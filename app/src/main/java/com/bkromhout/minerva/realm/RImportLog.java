@@ -11,32 +11,78 @@ public class RImportLog extends RealmObject {
      */
     public long endTime;
     /**
-     * Full import log.
+     * Name of the compressed file which holds the full import log, or null if there isn't one. Logs are kept in files
+     * rather than in Realm because they can be quite large.
      */
-    public String fullLog;
+    public String fullLogFile;
     /**
-     * Errors-only import log.
+     * Name of the compressed file which holds the errors-only import log, or null if there isn't one.
      */
-    public String errorLog;
+    public String errorLogFile;
     /**
      * Whether or not the import was a success.
      */
     public boolean wasSuccess;
+    /*
+     * Metrics. Times are in milliseconds. The hash, parse, and cover times are summed across all of the importer's
+     * workers, so together they may be longer than the total time. All of these will be 0 for logs saved before we
+     * started recording metrics.
+     */
+    /**
+     * How long the import took in total.
+     */
+    public long totalTime;
+    /**
+     * Time spent finding files to import.
+     */
+    public long findTime;
+    /**
+     * Time spent hashing files.
+     */
+    public long hashTime;
+    /**
+     * Time spent reading metadata from files.
+     */
+    public long parseTime;
+    /**
+     * Time spent creating books from files' metadata, which is mostly spent writing cover images.
+     */
+    public long coverTime;
+    /**
+     * Time spent in Realm transactions.
+     */
+    public long commitTime;
+    /**
+     * Number of bytes read from book files.
+     */
+    public long bytesRead;
+    /**
+     * Number of book files read.
+     */
+    public int numFilesRead;
+    /**
+     * Largest number of files which had been found but not yet read at any one time.
+     */
+    public int peakQueueDepth;
+    /**
+     * The slowest files to read, one per line, slowest first. May be null.
+     */
+    public String slowestFiles;
 
     public RImportLog() {
     }
 
     /**
      * Create a new {@link RImportLog}.
-     * @param endTime    Time when the import ended, in milliseconds.
-     * @param fullLog    Full import log.
-     * @param errorLog   Errors-only import log.
-     * @param wasSuccess Whether or not the import was a success.
+     * @param endTime      Time when the import ended, in milliseconds.
+     * @param fullLogFile  Name of the full import log's file.
+     * @param errorLogFile Name of the errors-only import log's file.
+     * @param wasSuccess   Whether or not the import was a success.
      */
-    public RImportLog(long endTime, String fullLog, String errorLog, boolean wasSuccess) {
+    public RImportLog(long endTime, String fullLogFile, String errorLogFile, boolean wasSuccess) {
         this.endTime = endTime;
-        this.fullLog = fullLog;
-        this.errorLog = errorLog;
+        this.fullLogFile = fullLogFile;
+        this.errorLogFile = errorLogFile;
         this.wasSuccess = wasSuccess;
     }
 
@@ -0,0 +1,115 @@
+package com.bkromhout.minerva.ui;
+
+import android.text.SpannedString;
+import android.util.LruCache;
+import com.bkromhout.minerva.data.SmartListCache;
+import com.bkromhout.minerva.realm.RBook;
+import com.bkromhout.minerva.realm.RTag;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches the spanned tag strings made by {@link TagBackgroundSpan#getSpannedTagString(RBook, int)} for books, so that
+ * binding a book card doesn't build a new set of spans, or read the book's tags from Realm, each time it scrolls into
+ * view.
+ * <p>
+ * Entries are keyed by book unique ID, and remember the tags version they were made at. The version is bumped by
+ * {@link #onTagsChanged()} whenever tags are added to or removed from books, or are renamed, recolored, or deleted,
+ * which {@link SmartListCache} does for the changes reported to it. Bumping the version invalidates every entry.
+ * <p>
+ * Cached strings are immutable {@link SpannedString}s, which TextViews will use as-is when set using {@link
+ * android.widget.TextView.BufferType#NORMAL} instead of copying them. Apart from {@link #onTagsChanged()}, this class
+ * should only be used from the main thread.
+ */
+public final class TagSpanCache {
+    /**
+     * Maximum number of books to cache tag strings for.
+     */
+    private static final int MAX_ENTRIES = 256;
+    /**
+     * Current tags version. Entries made at any other version are stale.
+     */
+    private static final AtomicInteger tagsVersion = new AtomicInteger();
+    /**
+     * Instance of TagSpanCache.
+     */
+    private static TagSpanCache INSTANCE;
+
+    /**
+     * Cached tag strings, keyed by book unique IDs.
+     */
+    private final LruCache<Long, Entry> cache = new LruCache<>(MAX_ENTRIES);
+
+    /**
+     * Get the instance of {@link TagSpanCache}.
+     * @return Instance.
+     */
+    public static TagSpanCache get() {
+        if (INSTANCE == null) INSTANCE = new TagSpanCache();
+        return INSTANCE;
+    }
+
+    // No public initialization.
+    private TagSpanCache() {
+    }
+
+    /**
+     * Note that tags have changed, so that all cached strings are made again the next time they're needed. Can be
+     * called from any thread.
+     */
+    public static void onTagsChanged() {
+        tagsVersion.incrementAndGet();
+    }
+
+    /**
+     * Get the current tags version.
+     * @return Tags version.
+     */
+    static int getTagsVersion() {
+        return tagsVersion.get();
+    }
+
+    /**
+     * Get a spanned string suitable for displaying in a TextView using the given {@code book}'s {@link RTag}s, reusing
+     * the last one made for the book if tags haven't changed since.
+     * @param book     Book whose tags to use.
+     * @param maxLines Maximum number of lines to draw backgrounds for.
+     * @return An immutable SpannedString. Don't set it on a TextView using {@link
+     * android.widget.TextView.BufferType#SPANNABLE}, or it will be copied.
+     */
+    public SpannedString getSpannedTagString(RBook book, int maxLines) {
+        // Read the version first, so that a change made while we're building the string makes it stale.
+        int version = tagsVersion.get();
+        Entry entry = cache.get(book.uniqueId);
+        if (entry != null && entry.matches(version, maxLines)) return entry.text;
+
+        SpannedString text = new SpannedString(TagBackgroundSpan.getSpannedTagString(book, maxLines));
+        cache.put(book.uniqueId, new Entry(version, maxLines, text));
+        return text;
+    }
+
+    /**
+     * Cached tag string for a book.
+     */
+    static final class Entry {
+        private final int tagsVersion;
+        private final int maxLines;
+        private final SpannedString text;
+
+        Entry(int tagsVersion, int maxLines, SpannedString text) {
+            this.tagsVersion = tagsVersion;
+            this.maxLines = maxLines;
+            this.text = text;
+        }
+
+        /**
+         * Check whether this entry's string can still be used.
+         * @param tagsVersion The current tags version.
+         * @param maxLines    Maximum number of lines to draw backgrounds for.
+         * @return True if the string was made at the current tags version with the same line limit.
+         */
+        boolean matches(int tagsVersion, int maxLines) {
+            return this.tagsVersion == tagsVersion && this.maxLines == maxLines;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.bkromhout.minerva.util;
+
+import com.bkromhout.minerva.realm.RBook;
+
+/**
+ * Glide model for an {@link RBook}'s cover image, loaded by {@link BookCoverLoader}.
+ * <p>
+ * Glide would otherwise key its caches on the cover file's path, which doesn't change when a book is re-imported, so
+ * the cache key here also includes the book's hash. Only immutable copies of the book's fields are held, so instances
+ * are safe to use off of the thread the book came from.
+ */
+public final class BookCover {
+    /**
+     * Relative path of the book.
+     */
+    final String relPath;
+    /**
+     * Whether this is for the cover's thumbnail rather than the original cover image.
+     */
+    final boolean isThumb;
+    /**
+     * Key which uniquely identifies this version of the cover.
+     */
+    private final String cacheKey;
+
+    /**
+     * Create a new {@link BookCover}.
+     * @param relPath Relative path of the book.
+     * @param hash    Hash of the book. May be null.
+     * @param isThumb Whether to load the cover's thumbnail rather than the original cover image.
+     */
+    public BookCover(String relPath, byte[] hash, boolean isThumb) {
+        if (relPath == null) throw new IllegalArgumentException("relPath must not be null.");
+        this.relPath = relPath;
+        this.isThumb = isThumb;
+        this.cacheKey = makeCacheKey(relPath, hash, isThumb);
+    }
+
+    /**
+     * Get a {@link BookCover} for the thumbnail of {@code book}'s cover, which is what book cards should show.
+     * @param book Book.
+     * @return Cover thumbnail model.
+     */
+    public static BookCover thumbOf(RBook book) {
+        return new BookCover(book.relPath, book.hash, true);
+    }
+
+    /**
+     * Get a {@link BookCover} for {@code book}'s original cover image.
+     * @param book Book.
+     * @return Cover model.
+     */
+    public static BookCover fullOf(RBook book) {
+        return new BookCover(book.relPath, book.hash, false);
+    }
+
+    /**
+     * Get the key to use for this cover in Glide's caches.
+     * @return Cache key.
+     */
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    /**
+     * Make a cache key.
+     * @param relPath Relative path of the book.
+     * @param hash    Hash of the book. May be null.
+     * @param isThumb Whether the key is for the cover's thumbnail.
+     * @return Cache key.
+     */
+    static String makeCacheKey(String relPath, byte[] hash, boolean isThumb) {
+        StringBuilder sb = new StringBuilder(relPath.length() + 4 + (hash == null ? 0 : hash.length * 2));
+        sb.append(isThumb ? "thumb:" : "full:");
+        if (hash != null) for (byte b : hash) sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                                                .append(Character.forDigit(b & 0xF, 16));
+        return sb.append(':').append(relPath).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof BookCover && cacheKey.equals(((BookCover) o).cacheKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return cacheKey.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return cacheKey;
+    }
+}
@@ -0,0 +1,79 @@
+package com.bkromhout.minerva.util;
+
+import android.content.Context;
+import com.bkromhout.minerva.data.DataUtils;
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.GenericLoaderFactory;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.stream.StreamModelLoader;
+
+import java.io.*;
+
+/**
+ * Glide model loader which opens the files behind {@link BookCover}s.
+ */
+public class BookCoverLoader implements StreamModelLoader<BookCover> {
+    @Override
+    public DataFetcher<InputStream> getResourceFetcher(BookCover model, int width, int height) {
+        return new BookCoverFetcher(model);
+    }
+
+    /**
+     * Factory which Glide uses to create {@link BookCoverLoader}s.
+     */
+    public static class Factory implements ModelLoaderFactory<BookCover, InputStream> {
+        @Override
+        public ModelLoader<BookCover, InputStream> build(Context context, GenericLoaderFactory factories) {
+            return new BookCoverLoader();
+        }
+
+        @Override
+        public void teardown() {
+        }
+    }
+
+    /**
+     * Opens the file for a {@link BookCover}. Files are only resolved once Glide asks for data (which it does on a
+     * background thread), since doing so touches the file system.
+     */
+    private static class BookCoverFetcher implements DataFetcher<InputStream> {
+        private final BookCover model;
+        private InputStream stream;
+
+        BookCoverFetcher(BookCover model) {
+            this.model = model;
+        }
+
+        @Override
+        public InputStream loadData(Priority priority) throws Exception {
+            // Thumbnails fall back to the original cover image if they don't exist yet.
+            File file = model.isThumb ? DataUtils.getCoverThumbFile(model.relPath)
+                    : DataUtils.getCoverImageFile(model.relPath);
+            if (file == null) throw new FileNotFoundException("No cover image file for " + model.relPath);
+            stream = new BufferedInputStream(new FileInputStream(file));
+            return stream;
+        }
+
+        @Override
+        public void cleanup() {
+            if (stream == null) return;
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+            stream = null;
+        }
+
+        @Override
+        public String getId() {
+            return model.getCacheKey();
+        }
+
+        @Override
+        public void cancel() {
+            // Opening a local file is quick, so there's nothing worth cancelling.
+        }
+    }
+}
@@ -4,19 +4,43 @@ import android.content.Context;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.GlideBuilder;
 import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
 import com.bumptech.glide.module.GlideModule;
 
+import java.io.InputStream;
+
 /**
  * Custom configuration for Glide.
+ * <p>
+ * Nearly everything we load is a cover image from a local file, so we don't need much of a disk cache. Card covers are
+ * small pre-scaled thumbnails decoded as RGB_565 (see {@link BookCover}), so we don't need memory caches as large as
+ * Glide would normally use, either.
  */
 public class GlideConfig implements GlideModule {
+    /**
+     * Fraction of Glide's default memory cache and bitmap pool sizes to use.
+     */
+    private static final float MEMORY_FRACTION = 0.5f;
+    /**
+     * Size of the disk cache, in bytes.
+     */
+    private static final int DISK_CACHE_SIZE = 10 * 1024 * 1024;
+
     @Override
     public void applyOptions(Context context, GlideBuilder builder) {
         builder.setDecodeFormat(DecodeFormat.PREFER_ARGB_8888);
+
+        MemorySizeCalculator calculator = new MemorySizeCalculator(context);
+        builder.setMemoryCache(new LruResourceCache((int) (calculator.getMemoryCacheSize() * MEMORY_FRACTION)));
+        builder.setBitmapPool(new LruBitmapPool((int) (calculator.getBitmapPoolSize() * MEMORY_FRACTION)));
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_SIZE));
     }
 
     @Override
     public void registerComponents(Context context, Glide glide) {
-
+        glide.register(BookCover.class, InputStream.class, new BookCoverLoader.Factory());
     }
 }
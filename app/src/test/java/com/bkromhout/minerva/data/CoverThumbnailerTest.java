@@ -0,0 +1,34 @@
+package com.bkromhout.minerva.data;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests the size calculations in the {@link CoverThumbnailer} class.
+ */
+public class CoverThumbnailerTest {
+    @Test
+    public void sampleSizeKeepsImageLargeEnough() {
+        assertThat(CoverThumbnailer.calculateInSampleSize(1600, 2400, 288, 384), is(4));
+        assertThat(CoverThumbnailer.calculateInSampleSize(1152, 1536, 288, 384), is(4));
+        assertThat(CoverThumbnailer.calculateInSampleSize(1151, 1536, 288, 384), is(2));
+        assertThat(CoverThumbnailer.calculateInSampleSize(200, 300, 288, 384), is(1));
+    }
+
+    @Test
+    public void cropTrimsTallImages() {
+        assertThat(CoverThumbnailer.calculateCrop(600, 1200, 3, 4), is(new int[] {0, 200, 600, 1000}));
+    }
+
+    @Test
+    public void cropTrimsWideImages() {
+        assertThat(CoverThumbnailer.calculateCrop(1000, 600, 3, 4), is(new int[] {275, 0, 725, 600}));
+    }
+
+    @Test
+    public void cropKeepsMatchingImages() {
+        assertThat(CoverThumbnailer.calculateCrop(300, 400, 96, 128), is(new int[] {0, 0, 300, 400}));
+    }
+}
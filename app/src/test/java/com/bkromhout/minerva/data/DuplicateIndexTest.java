@@ -0,0 +1,89 @@
+package com.bkromhout.minerva.data;
+
+import com.bkromhout.minerva.realm.RBook;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests the {@link DuplicateIndex} class.
+ */
+public class DuplicateIndexTest {
+    private static final byte[] HASH_A = {1, 2, 3, 4};
+    private static final byte[] HASH_B = {5, 6, 7, 8};
+
+    private DuplicateIndex index;
+
+    @Before
+    public void setUp() {
+        index = new DuplicateIndex();
+        index.build(Collections.<RBook>emptyList());
+    }
+
+    @Test
+    public void groupsBooksWithSameHash() {
+        index.onBookSaved(3, HASH_A);
+        index.onBookSaved(1, HASH_A.clone());
+        index.onBookSaved(2, HASH_B);
+        index.onBookSaved(4, null);
+        index.onBookSaved(0, HASH_B.clone());
+        index.onBookSaved(5, HASH_A.clone());
+
+        List<long[]> groups = index.getGroups();
+        assertThat(groups, hasSize(2));
+        assertThat(groups.get(0), is(new long[] {0, 2}));
+        assertThat(groups.get(1), is(new long[] {1, 3, 5}));
+        assertThat(DuplicateIndex.flatten(groups), is(new Long[] {0L, 2L, 1L, 3L, 5L}));
+    }
+
+    @Test
+    public void followsChangedHashes() {
+        byte[] hash = HASH_A.clone();
+        index.onBookSaved(1, hash);
+        index.onBookSaved(2, HASH_A);
+        // Changing the caller's array mustn't change the index.
+        hash[0] = 9;
+        assertThat(index.getGroups(), hasSize(1));
+
+        index.onBookSaved(2, HASH_B);
+        assertThat(index.getGroups(), is(empty()));
+        index.onBookSaved(1, HASH_B);
+        assertThat(index.getGroups().get(0), is(new long[] {1, 2}));
+    }
+
+    @Test
+    public void forgetsDeletedBooks() {
+        index.onBookSaved(1, HASH_A);
+        index.onBookSaved(2, HASH_A);
+        index.onBookSaved(3, HASH_A);
+        index.onBookDeleted(2);
+        assertThat(index.getGroups().get(0), is(new long[] {1, 3}));
+        index.onBookDeleted(3);
+        assertThat(index.getGroups(), is(empty()));
+    }
+
+    @Test
+    public void ignoresSavesUntilBuilt() {
+        DuplicateIndex unbuilt = new DuplicateIndex();
+        unbuilt.onBookSaved(1, HASH_A);
+        unbuilt.onBookSaved(2, HASH_A);
+        assertThat(unbuilt.getGroups(), is(empty()));
+    }
+
+    @Test
+    public void forgetsEverythingWhenCleared() {
+        index.onBookSaved(1, HASH_A);
+        index.onBookSaved(2, HASH_A);
+        index.clear();
+        assertThat(index.getGroups(), is(empty()));
+        // Until it's built again, saves are ignored.
+        index.onBookSaved(3, HASH_A);
+        index.onBookSaved(4, HASH_A);
+        assertThat(index.getGroups(), is(empty()));
+    }
+}
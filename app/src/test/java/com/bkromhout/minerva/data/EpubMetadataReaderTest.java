@@ -0,0 +1,146 @@
+package com.bkromhout.minerva.data;
+
+import nl.siegmann.epublib.epub.EpubReader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests the {@link EpubMetadataReader} class by reading the same sample ePub with it and with epublib, and checking
+ * that both give the same values for the fields we store in {@link com.bkromhout.minerva.realm.RBook}s.
+ */
+public class EpubMetadataReaderTest {
+    private static final byte[] COVER_BYTES = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0x00, 0x01, 0x02, 0x03};
+    private static final String CONTAINER = "<?xml version=\"1.0\"?>\n" +
+            "<container version=\"1.0\" xmlns=\"urn:oasis:names:tc:opendocument:xmlns:container\">\n" +
+            "  <rootfiles>\n" +
+            "    <rootfile full-path=\"OEBPS/content.opf\" media-type=\"application/oebps-package+xml\"/>\n" +
+            "  </rootfiles>\n" +
+            "</container>\n";
+    private static final String OPF = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<package xmlns=\"http://www.idpf.org/2007/opf\" version=\"2.0\" unique-identifier=\"bookid\">\n" +
+            "  <metadata xmlns:dc=\"http://purl.org/dc/elements/1.1/\" " +
+            "xmlns:opf=\"http://www.idpf.org/2007/opf\">\n" +
+            "    <dc:title>The Name of the Wind</dc:title>\n" +
+            "    <dc:creator opf:role=\"aut\">Patrick Rothfuss</dc:creator>\n" +
+            "    <dc:subject>Fantasy</dc:subject>\n" +
+            "    <dc:subject>Magic</dc:subject>\n" +
+            "    <dc:description>A young man named Kvothe.</dc:description>\n" +
+            "    <dc:language>en</dc:language>\n" +
+            "    <dc:identifier id=\"bookid\" opf:scheme=\"ISBN\">9780756404741</dc:identifier>\n" +
+            "    <meta name=\"cover\" content=\"cover-img\"/>\n" +
+            "  </metadata>\n" +
+            "  <manifest>\n" +
+            "    <item id=\"ncx\" href=\"toc.ncx\" media-type=\"application/x-dtbncx+xml\"/>\n" +
+            "    <item id=\"cover-img\" href=\"images/cover.jpg\" media-type=\"image/jpeg\"/>\n" +
+            "    <item id=\"ch1\" href=\"text/ch1.xhtml\" media-type=\"application/xhtml+xml\"/>\n" +
+            "    <item id=\"ch2\" href=\"text/ch2.xhtml\" media-type=\"application/xhtml+xml\"/>\n" +
+            "    <item id=\"ch3\" href=\"text/ch3.xhtml\" media-type=\"application/xhtml+xml\"/>\n" +
+            "  </manifest>\n" +
+            "  <spine toc=\"ncx\">\n" +
+            "    <itemref idref=\"ch1\"/>\n" +
+            "    <itemref idref=\"ch2\"/>\n" +
+            "    <itemref idref=\"ch3\"/>\n" +
+            "  </spine>\n" +
+            "</package>\n";
+    // Chapter 1 is referenced twice with different fragments, and chapter 3 is nested under chapter 2.
+    private static final String NCX = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<ncx xmlns=\"http://www.daisy.org/z3986/2005/ncx/\" version=\"2005-1\">\n" +
+            "  <head/>\n" +
+            "  <docTitle><text>The Name of the Wind</text></docTitle>\n" +
+            "  <navMap>\n" +
+            navPoint("1", "Prologue", "text/ch1.xhtml#prologue", "") +
+            navPoint("2", "Chapter 1", "text/ch1.xhtml#chapter1", "") +
+            navPoint("3", "Chapter 2", "text/ch2.xhtml", navPoint("4", "Interlude", "text/ch3.xhtml", "")) +
+            "  </navMap>\n" +
+            "</ncx>\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BookMetadata ours;
+    private BookMetadata epublibs;
+
+    @Before
+    public void readSample() throws IOException {
+        File file = folder.newFile("sample.epub");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            putEntry(out, "mimetype", "application/epub+zip".getBytes(StandardCharsets.UTF_8));
+            putEntry(out, "META-INF/container.xml", CONTAINER.getBytes(StandardCharsets.UTF_8));
+            putEntry(out, "OEBPS/content.opf", OPF.getBytes(StandardCharsets.UTF_8));
+            putEntry(out, "OEBPS/toc.ncx", NCX.getBytes(StandardCharsets.UTF_8));
+            putEntry(out, "OEBPS/images/cover.jpg", COVER_BYTES);
+            for (int i = 1; i <= 3; i++) putEntry(out, "OEBPS/text/ch" + i + ".xhtml", chapter(i));
+        }
+
+        ours = EpubMetadataReader.read(file);
+        try (InputStream in = new FileInputStream(file)) {
+            epublibs = EpublibBookMetadata.of(new EpubReader().readEpub(in));
+        }
+    }
+
+    @Test
+    public void readsSameTitleAndAuthor() {
+        assertThat(ours.getTitle(), is("The Name of the Wind"));
+        assertThat(ours.getTitle(), is(epublibs.getTitle()));
+        assertThat(ours.getFirstAuthor(), is("Patrick Rothfuss"));
+        assertThat(ours.getFirstAuthor(), is(epublibs.getFirstAuthor()));
+    }
+
+    @Test
+    public void readsSameSubjects() {
+        assertThat(ours.getSubjects(), contains("Fantasy", "Magic"));
+        assertThat(ours.getSubjects(), is(epublibs.getSubjects()));
+    }
+
+    @Test
+    public void readsSameTableOfContents() {
+        assertThat(ours.getNumChaps(), is(3));
+        assertThat(ours.getNumChaps(), is(epublibs.getNumChaps()));
+    }
+
+    @Test
+    public void readsSameCover() throws IOException {
+        assertThat(ours.hasCoverImage(), is(true));
+        assertThat(epublibs.hasCoverImage(), is(true));
+        assertThat(readAll(ours.openCoverImage()), is(COVER_BYTES));
+        assertThat(readAll(epublibs.openCoverImage()), is(COVER_BYTES));
+    }
+
+    private static String navPoint(String id, String label, String src, String children) {
+        return "<navPoint id=\"np" + id + "\" playOrder=\"" + id + "\">" +
+                "<navLabel><text>" + label + "</text></navLabel>" +
+                "<content src=\"" + src + "\"/>" + children + "</navPoint>\n";
+    }
+
+    private static byte[] chapter(int num) {
+        return ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<html xmlns=\"http://www.w3.org/1999/xhtml\"><head>" +
+                "<title>Chapter " + num + "</title></head><body><p id=\"prologue\">Text.</p>" +
+                "<p id=\"chapter1\">More text.</p></body></html>\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putEntry(ZipOutputStream out, String name, byte[] bytes) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream is = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = is.read(buffer)) != -1) out.write(buffer, 0, read);
+            return out.toByteArray();
+        }
+    }
+}
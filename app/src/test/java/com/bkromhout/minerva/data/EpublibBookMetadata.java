@@ -0,0 +1,119 @@
+package com.bkromhout.minerva.data;
+
+import nl.siegmann.epublib.domain.Book;
+import nl.siegmann.epublib.domain.Date;
+import nl.siegmann.epublib.domain.DcmesElement;
+import nl.siegmann.epublib.domain.Identifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link BookMetadata} backed by a fully-read epublib {@link Book}, used by tests to compare what we read from ePubs
+ * with what epublib reads from them.
+ */
+class EpublibBookMetadata implements BookMetadata {
+    private final Book book;
+
+    private EpublibBookMetadata(Book book) {
+        this.book = book;
+    }
+
+    /**
+     * Get the {@link BookMetadata} of an epublib {@link Book}.
+     * @param book The {@link Book} to read from. May be null.
+     * @return {@link BookMetadata} backed by {@code book}, or {@code null} if {@code book} is {@code null}.
+     */
+    static BookMetadata of(Book book) {
+        return book == null ? null : new EpublibBookMetadata(book);
+    }
+
+    /**
+     * Get the values of the given {@code DcmesElement}s.
+     * @param list List of {@code DcmesElement}s.
+     * @return List of values.
+     */
+    private static List<String> values(List<DcmesElement> list) {
+        List<String> values = new ArrayList<>();
+        if (list != null) for (DcmesElement element : list) values.add(element.getValue());
+        return values;
+    }
+
+    @Override
+    public String getTitle() {
+        return DataUtils.isDENullOrEmpty(book.getTitle()) ? null : book.getTitle().getValue();
+    }
+
+    @Override
+    public String getFirstAuthor() {
+        return DataUtils.getFirstAuthor(book);
+    }
+
+    @Override
+    public String getFirstDesc() {
+        return DataUtils.getFirstDesc(book);
+    }
+
+    @Override
+    public List<String> getSubjects() {
+        return values(book.getMetadata().getSubjects());
+    }
+
+    @Override
+    public List<String> getTypes() {
+        return values(book.getMetadata().getTypes());
+    }
+
+    @Override
+    public String getFormat() {
+        return book.getMetadata().getFormat();
+    }
+
+    @Override
+    public List<String> getLanguages() {
+        return values(book.getMetadata().getLanguages());
+    }
+
+    @Override
+    public String getFirstPublisher() {
+        return DataUtils.getFirstPublisher(book);
+    }
+
+    @Override
+    public String getBookId() {
+        Identifier identifier = Identifier.getBookIdIdentifier(book.getMetadata().getIdentifiers());
+        return identifier == null ? null : identifier.toString();
+    }
+
+    @Override
+    public String getCreateDate() {
+        return DataUtils.getFirstBookDate(book, Date.Event.CREATION);
+    }
+
+    @Override
+    public String getPubDate() {
+        return DataUtils.getFirstBookDate(book, Date.Event.PUBLICATION);
+    }
+
+    @Override
+    public String getModDate() {
+        return DataUtils.getFirstBookDate(book, Date.Event.MODIFICATION);
+    }
+
+    @Override
+    public int getNumChaps() {
+        return book.getTableOfContents().getAllUniqueResources().size();
+    }
+
+    @Override
+    public boolean hasCoverImage() {
+        return book.getCoverImage() != null;
+    }
+
+    @Override
+    public InputStream openCoverImage() throws IOException {
+        return hasCoverImage() ? book.getCoverImage().getInputStream() : null;
+    }
+}
@@ -0,0 +1,49 @@
+package com.bkromhout.minerva.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Tests the {@link ExcludeGlobs} class.
+ */
+public class ExcludeGlobsTest {
+    private final ExcludeGlobs globs = new ExcludeGlobs(Arrays.asList(".Trash*", " c/skip ", ""));
+
+    @Test
+    public void globToPattern() {
+        assertThat(ExcludeGlobs.globToPattern(".Trash*").matcher(".Trash-1000").matches(), is(true));
+        assertThat(ExcludeGlobs.globToPattern("a?c").matcher("abc").matches(), is(true));
+        assertThat(ExcludeGlobs.globToPattern("a/*").matcher("a/b/c").matches(), is(false));
+        assertThat(ExcludeGlobs.globToPattern("a/**").matcher("a/b/c").matches(), is(true));
+        assertThat(ExcludeGlobs.globToPattern("a.b").matcher("axb").matches(), is(false));
+    }
+
+    @Test
+    public void matchesNamesAndPaths() {
+        assertThat(globs.isExcluded(".Trash-1000", "c/.Trash-1000"), is(true));
+        assertThat(globs.isExcluded("skip", "c/skip"), is(true));
+        assertThat(globs.isExcluded("skip", "d/skip"), is(false));
+    }
+
+    @Test
+    public void matchesPathsInExcludedDirectories() {
+        assertThat(globs.isPathExcluded("/books/.Trash-1000/a.epub"), is(true));
+        assertThat(globs.isPathExcluded("/.Trash-1000"), is(true));
+        assertThat(globs.isPathExcluded("c/skip/d/5.epub"), is(true));
+        assertThat(globs.isPathExcluded("/books/Trash/a.epub"), is(false));
+        assertThat(globs.isPathExcluded("/d/skip/5.epub"), is(false));
+        assertThat(new ExcludeGlobs(null).isPathExcluded("/.Trash-1000/a.epub"), is(false));
+    }
+
+    @Test
+    public void equalWhenGlobsAreEqual() {
+        assertThat(globs, is(new ExcludeGlobs(Arrays.asList("c/skip", ".Trash*"))));
+        assertThat(globs, is(not(new ExcludeGlobs(Collections.singletonList(".Trash*")))));
+    }
+}
@@ -0,0 +1,38 @@
+package com.bkromhout.minerva.data;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests the {@link ImportMetrics} class.
+ */
+public class ImportMetricsTest {
+    /**
+     * Get a start time which is {@code millis} milliseconds ago.
+     */
+    private static long millisAgo(long millis) {
+        return System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void noSlowestFilesBeforeAnyAreRead() {
+        assertThat(new ImportMetrics().getSlowestFiles(), is(nullValue()));
+    }
+
+    @Test
+    public void keepsOnlySlowestFilesInOrder() {
+        ImportMetrics metrics = new ImportMetrics();
+        long[] times = {3000, 1000, 7000, 2000, 6000, 4000, 5000};
+        for (int i = 0; i < times.length; i++) metrics.onFileRead("/" + i + ".epub", 0, millisAgo(times[i]));
+
+        String[] lines = metrics.getSlowestFiles().split("\n");
+        assertThat(lines.length, is(ImportMetrics.NUM_SLOWEST_FILES));
+        String[] expected = {"/2.epub", "/4.epub", "/6.epub", "/5.epub", "/0.epub"};
+        for (int i = 0; i < expected.length; i++) assertThat(lines[i].startsWith(expected[i] + " ("), is(true));
+    }
+}
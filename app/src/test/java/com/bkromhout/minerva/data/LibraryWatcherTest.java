@@ -0,0 +1,37 @@
+package com.bkromhout.minerva.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests the {@link LibraryWatcher} class.
+ */
+public class LibraryWatcherTest {
+    private final ExcludeGlobs globs = new ExcludeGlobs(Arrays.asList(".Trash*", "books/skip"));
+
+    @Test
+    public void ignoresEventsInExcludedDirectories() {
+        assertThat(LibraryWatcher.changedRelPath(globs, "/books/.Trash-1000", "a.epub"), is(nullValue()));
+        assertThat(LibraryWatcher.changedRelPath(globs, "/books/.Trash-1000/files", "a.epub"), is(nullValue()));
+        assertThat(LibraryWatcher.changedRelPath(globs, "/books/skip", "a.epub"), is(nullValue()));
+    }
+
+    @Test
+    public void ignoresEventsForExcludedDirectories() {
+        assertThat(LibraryWatcher.changedRelPath(globs, "", ".Trash-1000"), is(nullValue()));
+        assertThat(LibraryWatcher.changedRelPath(globs, "/books", "skip"), is(nullValue()));
+    }
+
+    @Test
+    public void keepsOtherEvents() {
+        assertThat(LibraryWatcher.changedRelPath(globs, "/books", "a.epub"), is("/books/a.epub"));
+        assertThat(LibraryWatcher.changedRelPath(globs, "/skip", "a.epub"), is("/skip/a.epub"));
+        assertThat(LibraryWatcher.changedRelPath(null, "/.Trash-1000", "a.epub"), is("/.Trash-1000/a.epub"));
+        assertThat(LibraryWatcher.changedRelPath(globs, "/books", null), is(nullValue()));
+    }
+}
@@ -0,0 +1,78 @@
+package com.bkromhout.minerva.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests the {@link PagedLogReader} class, using files written by {@link LogFileWriter}.
+ */
+public class PagedLogReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File writeLog(String... parts) throws IOException {
+        File file = new File(folder.getRoot(), "logs/test.log.gz");
+        try (LogFileWriter writer = new LogFileWriter(file)) {
+            for (String part : parts) writer.write(part);
+        }
+        return file;
+    }
+
+    @Test
+    public void readsWholeLogAcrossPages() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        String[] lines = new String[500];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = "Read \u201cbook " + i + ".epub\u201d\n";
+            expected.append(lines[i]);
+        }
+        File file = writeLog(lines);
+
+        PagedLogReader reader = new PagedLogReader(file, 1000);
+        StringBuilder actual = new StringBuilder();
+        int numPages = 0;
+        String page;
+        while ((page = reader.readPage()) != null) {
+            // Pages should always end at line breaks, and every line here has one.
+            assertThat(page.endsWith("\n"), is(true));
+            actual.append(page);
+            numPages++;
+        }
+
+        assertThat(actual.toString(), is(expected.toString()));
+        assertThat(numPages > 1, is(true));
+        assertThat(reader.hasMore(), is(false));
+    }
+
+    @Test
+    public void keepsTextWhichIsNotLineTerminated() throws IOException {
+        File file = writeLog("Finding files\u2026", "Found 2 file(s)\n\n", "\nFinished import.");
+        PagedLogReader reader = new PagedLogReader(file, 8);
+        StringBuilder actual = new StringBuilder();
+        String page;
+        while ((page = reader.readPage()) != null) actual.append(page);
+        assertThat(actual.toString(), is("Finding files\u2026Found 2 file(s)\n\n\nFinished import."));
+    }
+
+    @Test
+    public void emptyLogHasNoPages() throws IOException {
+        PagedLogReader reader = new PagedLogReader(writeLog(), 1000);
+        assertThat(reader.readPage(), is(nullValue()));
+        assertThat(reader.hasMore(), is(false));
+    }
+
+    @Test
+    public void nothingIsReadAfterClose() throws IOException {
+        PagedLogReader reader = new PagedLogReader(writeLog("line\n"), 1000);
+        reader.close();
+        assertThat(reader.readPage(), is(nullValue()));
+    }
+}
@@ -0,0 +1,252 @@
+package com.bkromhout.minerva.data;
+
+import com.bkromhout.minerva.C;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests the {@link PositionRebalancer} class. Most of these tests make lots of random moves in a simulated list, and
+ * check that the list's order is preserved after each one.
+ */
+public class PositionRebalancerTest {
+    private static final int NUM_ITEMS = 2000;
+    private static final int NUM_MOVES = 1500;
+    private static final long[] SEEDS = {1L, 42L, 1234567L, -8L};
+
+    @Test
+    public void findsSmallestSparseWindow() {
+        // Items at 0, 100, 101, and 200.
+        List<Long> positions = new ArrayList<>();
+        positions.add(0L);
+        positions.add(100L);
+        positions.add(101L);
+        positions.add(200L);
+        PositionRebalancer.Window window = PositionRebalancer.findWindow(100L, counterFor(positions));
+
+        assertThat(window.from, is(lessThanOrEqualTo(100L)));
+        assertThat(window.to, is(greaterThanOrEqualTo(101L)));
+        assertThat(window.numItems, is(2));
+        assertThat(window.getGap(), is(greaterThanOrEqualTo(2L)));
+    }
+
+    @Test
+    public void givesUpWhenTooManyItemsArePacked() {
+        List<Long> positions = new ArrayList<>();
+        for (long i = 0; i < 4 * PositionRebalancer.MAX_REBALANCE_ITEMS; i++) positions.add(i);
+        assertThat(PositionRebalancer.findWindow(2 * PositionRebalancer.MAX_REBALANCE_ITEMS, counterFor(positions)),
+                is(nullValue()));
+    }
+
+    @Test
+    public void widensPastLimitWhenTooManyItemsArePacked() {
+        List<Long> positions = new ArrayList<>();
+        for (long i = 0; i < 4 * PositionRebalancer.MAX_REBALANCE_ITEMS; i++) positions.add(i);
+        long before = 2 * PositionRebalancer.MAX_REBALANCE_ITEMS;
+        PositionRebalancer.Window window = PositionRebalancer.findWideWindow(before, counterFor(positions));
+
+        assertThat(window, is(notNullValue()));
+        assertThat(window.from, is(lessThanOrEqualTo(before)));
+        assertThat(window.to, is(greaterThanOrEqualTo(before + 1)));
+        assertThat(window.numItems, is(4 * PositionRebalancer.MAX_REBALANCE_ITEMS));
+        assertThat(window.getGap(), is(1L));
+    }
+
+    @Test
+    public void respacesAroundMovedItem() {
+        // Items at 3, 4, and 5 in a window with room for four items, with a gap of 4 between them.
+        PositionRebalancer.Window window = new PositionRebalancer.Window(0L, 15L, 3);
+        long[] positions = {3L, 4L, 5L};
+
+        assertThat(window.respace(positions, 4L), is(new long[] {2L, 6L, 14L, 10L}));
+        assertThat(window.respace(positions, 3L), is(new long[] {2L, 10L, 14L, 6L}));
+        assertThat(window.respace(positions, 5L), is(new long[] {2L, 6L, 10L, 14L}));
+        // The positions passed in aren't changed.
+        assertThat(positions, is(new long[] {3L, 4L, 5L}));
+    }
+
+    @Test
+    public void preservesOrderForRandomMoves() {
+        for (long seed : SEEDS) {
+            Random random = new Random(seed);
+            SimulatedList list = new SimulatedList(NUM_ITEMS);
+            for (int i = 0; i < NUM_MOVES; i++)
+                list.move(random.nextInt(NUM_ITEMS), random.nextInt(NUM_ITEMS));
+            assertThat(list.numFallbacks, is(0));
+        }
+    }
+
+    @Test
+    public void preservesOrderForMovesToSameSpot() {
+        for (long seed : SEEDS) {
+            Random random = new Random(seed);
+            SimulatedList list = new SimulatedList(NUM_ITEMS);
+            // Keep moving items to right after the same item, which is the worst case for bisecting positions.
+            for (int i = 0; i < NUM_MOVES; i++) list.moveNextTo(random.nextInt(NUM_ITEMS), 0L, true);
+            assertThat(list.numFallbacks, is(0));
+            assertThat(list.maxRespaced, is(lessThanOrEqualTo(PositionRebalancer.MAX_REBALANCE_ITEMS + 1)));
+            // Most moves shouldn't need to re-space anything, and those that do shouldn't re-space much.
+            assertThat(list.totalRespaced / NUM_MOVES, is(lessThan(100L)));
+        }
+    }
+
+    @Test
+    public void preservesOrderForMovesBeforeNewestItem() {
+        for (long seed : SEEDS) {
+            Random random = new Random(seed);
+            SimulatedList list = new SimulatedList(NUM_ITEMS);
+            // Keep moving items to right before whichever item was moved last.
+            long lastMovedId = NUM_ITEMS / 2;
+            for (int i = 0; i < NUM_MOVES; i++) {
+                int from = random.nextInt(NUM_ITEMS);
+                long id = list.ids.get(from);
+                list.moveNextTo(from, lastMovedId, false);
+                lastMovedId = id;
+            }
+            assertThat(list.numFallbacks, is(0));
+        }
+    }
+
+    /**
+     * Get a counter which counts the positions in a sorted list which are in a range.
+     * @param positions Sorted positions.
+     * @return Counter.
+     */
+    private static PositionRebalancer.PositionCounter counterFor(List<Long> positions) {
+        return (from, to) -> firstIndexAtOrAfter(positions, to + 1) - firstIndexAtOrAfter(positions, from);
+    }
+
+    /**
+     * Binary search for the index of the first position in a sorted list which is at least {@code pos}.
+     * @param positions Sorted positions.
+     * @param pos       Position.
+     * @return Index, which is the size of the list if all positions are less than {@code pos}.
+     */
+    private static int firstIndexAtOrAfter(List<Long> positions, long pos) {
+        int low = 0, high = positions.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positions.get(mid) < pos) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Simulates the items in a list, moving them the same way that {@link ListItemPositionHelper} does, and checking
+     * that their order is preserved after each move.
+     */
+    private static final class SimulatedList {
+        /**
+         * Item IDs, in the order the items should be in.
+         */
+        final List<Long> ids = new ArrayList<>();
+        /**
+         * Item positions, in the same order as {@link #ids}.
+         */
+        final List<Long> positions = new ArrayList<>();
+        /**
+         * Number of moves which couldn't find a window with at most {@link PositionRebalancer#MAX_REBALANCE_ITEMS}
+         * items to re-space.
+         */
+        int numFallbacks = 0;
+        int maxRespaced = 0;
+        long totalRespaced = 0;
+
+        SimulatedList(int numItems) {
+            for (long i = 0; i < numItems; i++) {
+                ids.add(i);
+                positions.add(i * C.LIST_ITEM_GAP);
+            }
+        }
+
+        /**
+         * Move an item to right before or after another item.
+         * @param from     Index of the item to move.
+         * @param targetId ID of the item to move it next to.
+         * @param after    Whether to move it after the target item rather than before it.
+         */
+        void moveNextTo(int from, long targetId, boolean after) {
+            int target = ids.indexOf(targetId);
+            if (target == from) return;
+            if (from < target) target--;
+            move(from, after ? target + 1 : target);
+        }
+
+        /**
+         * Move an item, then check that the list is still in order.
+         * @param from Index of the item to move.
+         * @param to   Index to move the item to, once it has been removed from {@code from}.
+         */
+        void move(int from, int to) {
+            Long id = ids.remove(from);
+            positions.remove(from);
+            List<Long> oldPositions = new ArrayList<>(positions);
+
+            Long before = to > 0 ? positions.get(to - 1) : null;
+            Long after = to < positions.size() ? positions.get(to) : null;
+            PositionRebalancer.Window window = null;
+            long newPos;
+            if (before == null) newPos = after - C.LIST_ITEM_GAP;
+            else if (after == null) newPos = before + C.LIST_ITEM_GAP;
+            else if (after - before >= 2) newPos = (before + after) / 2;
+            else {
+                window = PositionRebalancer.findWindow(before, counterFor(positions));
+                if (window == null) {
+                    numFallbacks++;
+                    window = PositionRebalancer.findWideWindow(before, counterFor(positions));
+                }
+                if (window == null) {
+                    for (int i = 0; i < positions.size(); i++) positions.set(i, i * C.LIST_ITEM_GAP);
+                    newPos = to * C.LIST_ITEM_GAP - C.LIST_ITEM_GAP / 2;
+                } else newPos = respace(window, before, to);
+            }
+            ids.add(to, id);
+            positions.add(to, newPos);
+
+            assertInOrder();
+            if (window != null) assertOnlyWindowChanged(window, oldPositions, to);
+        }
+
+        /**
+         * Re-space the items in a window using {@link PositionRebalancer.Window#respace(long[], long)}, the same as
+         * {@link ListItemPositionHelper} does.
+         * @param window Window to re-space.
+         * @param before Position of the item which the moved item will follow.
+         * @param to     Index the moved item is going to.
+         * @return New position for the moved item.
+         */
+        private long respace(PositionRebalancer.Window window, long before, int to) {
+            int start = firstIndexAtOrAfter(positions, window.from);
+            int end = firstIndexAtOrAfter(positions, window.to + 1);
+            assertThat(end - start, is(window.numItems));
+            assertThat(to, is(both(greaterThan(start)).and(lessThan(end))));
+
+            long[] windowPositions = new long[end - start];
+            for (int i = start; i < end; i++) windowPositions[i - start] = positions.get(i);
+            long[] newPositions = window.respace(windowPositions, before);
+            for (int i = start; i < end; i++) positions.set(i, newPositions[i - start]);
+            maxRespaced = Math.max(maxRespaced, window.numItems + 1);
+            totalRespaced += window.numItems + 1;
+            return newPositions[window.numItems];
+        }
+
+        private void assertInOrder() {
+            for (int i = 1; i < positions.size(); i++)
+                assertThat(positions.get(i), is(greaterThan(positions.get(i - 1))));
+        }
+
+        private void assertOnlyWindowChanged(PositionRebalancer.Window window, List<Long> oldPositions, int to) {
+            for (int i = 0; i < oldPositions.size(); i++) {
+                long oldPos = oldPositions.get(i), newPos = positions.get(i < to ? i : i + 1);
+                if (oldPos < window.from || oldPos > window.to) assertThat(newPos, is(oldPos));
+                else assertThat(newPos, is(both(greaterThanOrEqualTo(window.from)).and(lessThanOrEqualTo(window.to))));
+            }
+        }
+    }
+}
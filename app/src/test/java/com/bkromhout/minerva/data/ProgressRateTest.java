@@ -0,0 +1,52 @@
+package com.bkromhout.minerva.data;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests the {@link ProgressRate} class.
+ */
+public class ProgressRateTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void unknownUntilTwoSamples() {
+        ProgressRate rate = new ProgressRate();
+        rate.update(0, 0);
+        assertThat(rate.getFilesPerSec(), is(0f));
+        assertThat(rate.getEtaMillis(10), is(ProgressRate.UNKNOWN_ETA));
+    }
+
+    @Test
+    public void estimatesSteadyRate() {
+        ProgressRate rate = new ProgressRate();
+        for (int i = 0; i <= 5; i++) rate.update(i * SECOND, i * 20);
+        assertThat((double) rate.getFilesPerSec(), is(closeTo(20, 0.001)));
+        assertThat(rate.getEtaMillis(50), is(2500L));
+        assertThat(rate.getEtaMillis(0), is(0L));
+    }
+
+    @Test
+    public void smoothsChangesInRate() {
+        ProgressRate rate = new ProgressRate();
+        rate.update(0, 0);
+        rate.update(SECOND, 10);
+        rate.update(2 * SECOND, 30);
+        assertThat((double) rate.getFilesPerSec(), is(closeTo(10 + ProgressRate.SMOOTHING * 10, 0.001)));
+    }
+
+    @Test
+    public void resetForgetsSamples() {
+        ProgressRate rate = new ProgressRate();
+        rate.update(0, 0);
+        rate.update(SECOND, 10);
+        rate.reset();
+        rate.update(2 * SECOND, 0);
+        assertThat(rate.getEtaMillis(10), is(ProgressRate.UNKNOWN_ETA));
+    }
+}
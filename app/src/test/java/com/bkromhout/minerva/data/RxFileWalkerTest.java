@@ -0,0 +1,91 @@
+package com.bkromhout.minerva.data;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import rx.Observable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests the {@link RxFileWalker} class.
+ */
+public class RxFileWalkerTest {
+    private static final List<String> EPUB = Collections.singletonList("epub");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void makeTree() throws IOException {
+        for (String path : new String[] {"b.epub", "a.epub", "notes.txt", "z/1.epub", "c/2.epub", "c/d/3.epub",
+                "c/.Trash-1000/4.epub", "c/skip/5.epub", "c/a.epub"}) {
+            File file = new File(folder.getRoot(), path);
+            //noinspection ResultOfMethodCallIgnored
+            file.getParentFile().mkdirs();
+            //noinspection ResultOfMethodCallIgnored
+            file.createNewFile();
+        }
+    }
+
+    /**
+     * Walk the temporary folder and get the emitted files' paths relative to it.
+     */
+    private List<String> walk(RxFileWalker walker) {
+        List<String> relPaths = new ArrayList<>();
+        int rootLen = folder.getRoot().getAbsolutePath().length() + 1;
+        for (File file : Observable.create(walker).toList().toBlocking().single())
+            relPaths.add(file.getAbsolutePath().substring(rootLen).replace(File.separatorChar, '/'));
+        return relPaths;
+    }
+
+    @Test
+    public void emitsFilesInDeterministicOrder() {
+        List<String> expected = Arrays.asList("a.epub", "b.epub", "c/2.epub", "c/a.epub", "c/d/3.epub",
+                "c/skip/5.epub", "z/1.epub");
+        // Emission order shouldn't depend on which directory listings happen to finish first.
+        for (int parallelism : new int[] {1, 4}) {
+            RxFileWalker walker = new RxFileWalker(folder.getRoot(), EPUB, null, parallelism);
+            assertThat(walk(walker), is(expected));
+        }
+    }
+
+    @Test
+    public void skipsExcludedNamesAndPaths() {
+        RxFileWalker walker = new RxFileWalker(folder.getRoot(), EPUB, Arrays.asList(".Trash*", "c/skip"), 4);
+        assertThat(walk(walker), contains("a.epub", "b.epub", "c/2.epub", "c/a.epub", "c/d/3.epub", "z/1.epub"));
+    }
+
+    @Test
+    public void nullExtensionsEmitsEverything() {
+        RxFileWalker walker = new RxFileWalker(folder.getRoot(), null, Collections.singletonList("**/*.epub"), 2);
+        assertThat(walk(walker), contains("a.epub", "b.epub", "notes.txt"));
+    }
+
+    @Test
+    public void stopsWhenUnsubscribed() {
+        List<File> files = Observable.create(new RxFileWalker(folder.getRoot(), EPUB))
+                                     .take(2)
+                                     .toList()
+                                     .toBlocking()
+                                     .single();
+        assertThat(files.size(), is(2));
+    }
+
+    @Test
+    public void matchesPathGlobsFromLibraryDirWhenStartingBelowIt() {
+        RxFileWalker walker = new RxFileWalker(new File(folder.getRoot(), "c"), "/c", EPUB,
+                new ExcludeGlobs(Arrays.asList(".Trash*", "c/skip")), 2);
+        assertThat(walk(walker), contains("c/2.epub", "c/a.epub", "c/d/3.epub"));
+    }
+}
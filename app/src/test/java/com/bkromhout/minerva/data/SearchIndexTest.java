@@ -0,0 +1,102 @@
+package com.bkromhout.minerva.data;
+
+import com.bkromhout.minerva.realm.RBook;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests the {@link SearchIndex} class.
+ */
+public class SearchIndexTest {
+    private SearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new SearchIndex();
+        index.build(Collections.<RBook>emptyList());
+        index.onBookSaved(1, "The Name of the Wind", "Patrick Rothfuss", "Fantasy", "<em>A young man</em> named Kvothe.");
+        index.onBookSaved(2, "The Wise Man's Fear", "Patrick Rothfuss", "Fantasy", "The story of Kvothe continues.");
+        index.onBookSaved(3, "Les Misérables", "Victor Hugo", "Classics", "Jean Valjean and the windmill.");
+    }
+
+    @Test
+    public void tokenizesText() {
+        assertThat(SearchIndex.tokenize("  Misérables, Vol. 2 -- <b>ÉTÉ</b>"),
+                contains("miserables", "vol", "2", "b", "ete", "b"));
+        assertThat(SearchIndex.tokenize(null), is(empty()));
+        assertThat(SearchIndex.tokenize("--"), is(empty()));
+    }
+
+    @Test
+    public void matchesPrefixesOfWords() {
+        assertThat(index.search("roth"), is(new long[] {1, 2}));
+        assertThat(index.search("kvo"), is(new long[] {1, 2}));
+        assertThat(index.search("zzz"), is(new long[0]));
+    }
+
+    @Test
+    public void ignoresCaseAccentsAndMarkup() {
+        assertThat(index.search("MISERABLE"), is(new long[] {3}));
+        assertThat(index.search("young"), is(new long[] {1}));
+        assertThat(index.search("em"), is(new long[0]));
+    }
+
+    @Test
+    public void requiresEveryQueryWord() {
+        assertThat(index.search("patrick wise"), is(new long[] {2}));
+        assertThat(index.search("patrick hugo"), is(new long[0]));
+        assertThat(index.search("  "), is(new long[0]));
+    }
+
+    @Test
+    public void givesUpOnTooManyResults() {
+        assertThat(index.search("patrick", 1), is(nullValue()));
+        assertThat(index.search("patrick", 2), is(new long[] {1, 2}));
+    }
+
+    @Test
+    public void ranksByFieldAndWholeWords() {
+        // Title match beats description match.
+        assertThat(index.search("wind"), is(new long[] {1, 3}));
+        // Whole word match in the description beats prefix match in the description.
+        index.onBookSaved(4, "Other", "Someone", null, "A windmill.");
+        index.onBookSaved(5, "Another", "Someone", null, "The wind.");
+        assertThat(index.search("wind"), is(new long[] {1, 5, 3, 4}));
+    }
+
+    @Test
+    public void updatesAndRemovesBooks() {
+        index.onBookSaved(1, "The Slow Regard of Silent Things", "Patrick Rothfuss", "Fantasy", null);
+        assertThat(index.search("wind"), is(new long[] {3}));
+        assertThat(index.search("silent"), is(new long[] {1}));
+
+        index.onBookDeleted(1);
+        assertThat(index.search("roth"), is(new long[] {2}));
+        index.onBookSaved(6, "Silent Spring", "Rachel Carson", null, null);
+        assertThat(index.search("silent"), is(new long[] {6}));
+    }
+
+    @Test
+    public void ignoresSavesBeforeBuilt() {
+        SearchIndex unbuilt = new SearchIndex();
+        unbuilt.onBookSaved(1, "Title", "Author", null, null);
+        assertThat(unbuilt.isBuilt(), is(false));
+        assertThat(unbuilt.search("title"), is(new long[0]));
+    }
+
+    @Test
+    public void forgetsEverythingWhenCleared() {
+        index.clear();
+        assertThat(index.isBuilt(), is(false));
+        assertThat(index.search("kvothe"), is(new long[0]));
+
+        index.build(Collections.<RBook>emptyList());
+        index.onBookSaved(4, "Kvothe", null, null, null);
+        assertThat(index.search("kvothe"), is(new long[] {4}));
+    }
+}
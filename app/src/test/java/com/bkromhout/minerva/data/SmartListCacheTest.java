@@ -0,0 +1,114 @@
+package com.bkromhout.minerva.data;
+
+import com.bkromhout.minerva.realm.RBook;
+import com.bkromhout.minerva.realm.RBookListItem;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests the {@link SmartListCache} class.
+ */
+public class SmartListCacheTest {
+    private static final String RATING_RUQ = "RBook|rating|GREATER_THAN|3";
+    private static final String TAGS_RUQ = "RBookListItem|book.tags.name|EQUAL_TO|Favorite";
+
+    private SmartListCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new SmartListCache();
+        cache.putEntry(1, entry(RATING_RUQ, RBook.class));
+        cache.putEntry(2, entry(TAGS_RUQ, RBookListItem.class));
+    }
+
+    @Test
+    public void findsDependenciesInRuqStrings() {
+        assertThat(SmartListCache.dependenciesOf(RATING_RUQ, RBook.class), containsInAnyOrder("rating", "RBook"));
+        assertThat(SmartListCache.dependenciesOf(TAGS_RUQ, RBookListItem.class),
+                containsInAnyOrder("book", "tags", "name", "RBookListItem"));
+        // If we can't find any field names, assume the query depends on everything.
+        assertThat(SmartListCache.dependenciesOf("RBook|", RBook.class), is(nullValue()));
+    }
+
+    @Test
+    public void keepsEntriesUnaffectedByChanges() {
+        cache.onChanged(SmartListCache.Change.BOOK_RECENTS);
+        assertThat(cache.getCachedEntry(1), is(notNullValue()));
+        assertThat(cache.getCachedEntry(2), is(notNullValue()));
+    }
+
+    @Test
+    public void dropsEntriesAffectedByChanges() {
+        cache.onChanged(SmartListCache.Change.BOOK_RATINGS);
+        assertThat(cache.getCachedEntry(1), is(nullValue()));
+        assertThat(cache.getCachedEntry(2), is(notNullValue()));
+
+        cache.onChanged(SmartListCache.Change.BOOK_TAGS);
+        assertThat(cache.getCachedEntry(2), is(nullValue()));
+    }
+
+    @Test
+    public void dropsEntriesWhenObjectsOfQueryClassAreAddedOrRemoved() {
+        cache.onChanged(SmartListCache.Change.LIST_ITEMS);
+        assertThat(cache.getCachedEntry(1), is(notNullValue()));
+        assertThat(cache.getCachedEntry(2), is(nullValue()));
+    }
+
+    @Test
+    public void reappliesChangesOnceRealmCatchesUp() {
+        cache.onChanged(SmartListCache.Change.BOOK_RATINGS);
+        // An entry computed from old data before the main thread's Realm caught up.
+        cache.putEntry(1, entry(RATING_RUQ, RBook.class));
+        cache.onRealmChanged();
+        assertThat(cache.getCachedEntry(1), is(nullValue()));
+
+        // Once caught up, changes have been applied and entries are kept.
+        cache.putEntry(1, entry(RATING_RUQ, RBook.class));
+        cache.onRealmChanged();
+        assertThat(cache.getCachedEntry(1), is(notNullValue()));
+    }
+
+    @Test
+    public void changesOnlyNameRealFieldsAndClasses() {
+        // A misspelled name would never match any query's dependencies, so entries would silently go stale.
+        Set<String> classNames = new HashSet<>();
+        for (Class<?> clazz : SmartListCache.MODEL_CLASSES) classNames.add(clazz.getSimpleName());
+        for (SmartListCache.Change change : SmartListCache.Change.values())
+            for (String name : change.names)
+                assertThat(change + " names " + name, SmartListCache.FIELD_NAMES.contains(name) ||
+                        classNames.contains(name), is(true));
+    }
+
+    @Test
+    public void flagsChangesToBookTags() {
+        // These must reach the TagSpanCache, or books would keep showing their old tags.
+        List<SmartListCache.Change> tagChanges = Arrays.asList(SmartListCache.Change.BOOK_TAGS,
+                SmartListCache.Change.TAG_NAMES, SmartListCache.Change.TAG_COLORS);
+        for (SmartListCache.Change change : SmartListCache.Change.values())
+            assertThat(change.toString(), change.changesBookTags, is(tagChanges.contains(change)));
+    }
+
+    @Test
+    public void invalidatesEverything() {
+        cache.invalidateAll();
+        assertThat(cache.getCachedEntry(1), is(nullValue()));
+        assertThat(cache.getCachedEntry(2), is(nullValue()));
+
+        cache.putEntry(2, entry(TAGS_RUQ, RBookListItem.class));
+        cache.onRealmChanged();
+        assertThat(cache.getCachedEntry(2), is(nullValue()));
+    }
+
+    private static SmartListCache.Entry entry(String ruqString, Class<?> queryClass) {
+        Set<String> dependencies = SmartListCache.dependenciesOf(ruqString, queryClass);
+        return new SmartListCache.Entry(ruqString, dependencies, new long[] {1, 2}, new long[] {1, 2});
+    }
+}
@@ -0,0 +1,57 @@
+package com.bkromhout.minerva.data;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Tests the {@link SortKeys} class.
+ */
+public class SortKeysTest {
+    @Test
+    public void foldsCaseAccentsAndPunctuation() {
+        assertThat(SortKeys.fold("  Émile, ou De l'Éducation!  "), is("emile ou de l education"));
+        assertThat(SortKeys.fold(null), is(""));
+        assertThat(SortKeys.fold("--"), is(""));
+    }
+
+    @Test
+    public void padsNumbers() {
+        assertThat(SortKeys.fold("Book 2"), is("book 0000000002"));
+        assertThat(SortKeys.fold("Book 2").compareTo(SortKeys.fold("Book 10")), is(lessThan(0)));
+    }
+
+    @Test
+    public void stripsLeadingArticlesFromTitles() {
+        assertThat(SortKeys.forTitle("The Hobbit"), is("hobbit"));
+        assertThat(SortKeys.forTitle("A Game of Thrones"), is("game of thrones"));
+        assertThat(SortKeys.forTitle("An Instance of the Fingerpost"), is("instance of the fingerpost"));
+        assertThat(SortKeys.forTitle("Theodora"), is("theodora"));
+        assertThat(SortKeys.forTitle("The"), is("the"));
+    }
+
+    @Test
+    public void putsAuthorSurnamesFirst() {
+        assertThat(SortKeys.forAuthor("Patrick Rothfuss"), is("rothfuss patrick"));
+        assertThat(SortKeys.forAuthor("Rothfuss, Patrick"), is("rothfuss patrick"));
+        assertThat(SortKeys.forAuthor("J. R. R. Tolkien"), is("tolkien j r r"));
+        assertThat(SortKeys.forAuthor("Homer"), is("homer"));
+        assertThat(SortKeys.forAuthor(null), is(""));
+    }
+
+    @Test
+    public void handlesSurnameParticlesAndSuffixes() {
+        assertThat(SortKeys.forAuthor("Ursula K. Le Guin"), is("le guin ursula k"));
+        assertThat(SortKeys.forAuthor("Jean de La Fontaine"), is("de la fontaine jean"));
+        assertThat(SortKeys.forAuthor("Martin Luther King Jr."), is("king martin luther jr"));
+        assertThat(SortKeys.forAuthor("Martin Luther King, Jr."), is("king martin luther jr"));
+    }
+
+    @Test
+    public void foldsEachPartOfPaths() {
+        assertThat(SortKeys.forPath("Fantasy/Tolkien/The Hobbit 2.epub"),
+                is("fantasy/tolkien/the hobbit 0000000002 epub"));
+        assertThat(SortKeys.forPath(null), is(""));
+    }
+}
@@ -17,14 +17,14 @@ public class SuperBookTest {
 
     @Test(expected = IllegalArgumentException.class)
     public void emptyBookThrows() {
-        new SuperBook(new Book(), "fake", "empty book".getBytes());
+        new SuperBook(EpublibBookMetadata.of(new Book()), "fake", "empty book".getBytes());
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void emptyTitleBookThrows() {
         Book book = new Book();
         book.getMetadata().addTitle(new DcmesElement(""));
-        new SuperBook(book, "fake", "empty title book".getBytes());
+        new SuperBook(EpublibBookMetadata.of(book), "fake", "empty title book".getBytes());
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -32,7 +32,7 @@ public class SuperBookTest {
         String title = "Book without author";
         Book book = new Book();
         book.getMetadata().addTitle(new DcmesElement(title));
-        new SuperBook(book, "fake", title.getBytes());
+        new SuperBook(EpublibBookMetadata.of(book), "fake", title.getBytes());
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -41,7 +41,7 @@ public class SuperBookTest {
         Book book = new Book();
         book.getMetadata().addTitle(new DcmesElement(title));
         book.getMetadata().addAuthor(new Author(""));
-        new SuperBook(book, "fake", title.getBytes());
+        new SuperBook(EpublibBookMetadata.of(book), "fake", title.getBytes());
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -50,7 +50,7 @@ public class SuperBookTest {
         Book book = new Book();
         book.getMetadata().addTitle(new DcmesElement(title));
         book.getMetadata().addAuthor(new Author("Book", "Author"));
-        new SuperBook(book, null, title.getBytes());
+        new SuperBook(EpublibBookMetadata.of(book), null, title.getBytes());
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -59,6 +59,6 @@ public class SuperBookTest {
         Book book = new Book();
         book.getMetadata().addTitle(new DcmesElement(title));
         book.getMetadata().addAuthor(new Author("Book", "Author"));
-        new SuperBook(book, "", title.getBytes());
+        new SuperBook(EpublibBookMetadata.of(book), "", title.getBytes());
     }
 }
@@ -0,0 +1,47 @@
+package com.bkromhout.minerva.data;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests the {@link XXHash64FileHashAlgorithm} class.
+ */
+public class XXHash64FileHashAlgorithmTest {
+    /**
+     * Hash {@code data}, passing it to the hasher {@code chunkSize} bytes at a time.
+     */
+    private static long hash(byte[] data, int chunkSize) {
+        FileHashAlgorithm.Hasher hasher = new XXHash64FileHashAlgorithm().newHasher();
+        for (int i = 0; i < data.length; i += chunkSize)
+            hasher.update(ByteBuffer.wrap(data, i, Math.min(chunkSize, data.length - i)));
+        return ByteBuffer.wrap(hasher.hash()).getLong();
+    }
+
+    @Test
+    public void matchesReferenceHashes() {
+        assertThat(hash(new byte[0], 1), is(0xEF46DB3751D8E999L));
+        assertThat(hash("a".getBytes(StandardCharsets.US_ASCII), 1), is(0xD24EC4F1A98C6E5BL));
+        assertThat(hash("abc".getBytes(StandardCharsets.US_ASCII), 3), is(0x44BC2CF5AD770999L));
+    }
+
+    @Test
+    public void chunkingDoesNotChangeHash() {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) (i * 31 + 7);
+
+        long expected = hash(data, data.length);
+        for (int chunkSize : new int[] {1, 7, 31, 32, 33, 100}) assertThat(hash(data, chunkSize), is(expected));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotReuseHasher() {
+        FileHashAlgorithm.Hasher hasher = new XXHash64FileHashAlgorithm().newHasher();
+        hasher.hash();
+        hasher.hash();
+    }
+}
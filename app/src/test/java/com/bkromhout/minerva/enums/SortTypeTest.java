@@ -26,11 +26,12 @@ public class SortTypeTest {
     @Parameterized.Parameters(name = "{0}")
     public static Collection<Object[]> params() {
         return Arrays.asList(new Object[][] {
-                {SortType.TITLE, 0, R.id.sort_title, R.string.sort_title, new String[] {"title"}},
-                {SortType.AUTHOR, 1, R.id.sort_author, R.string.sort_author, new String[] {"author"}},
+                {SortType.TITLE, 0, R.id.sort_title, R.string.sort_title, new String[] {"sortTitle"}},
+                {SortType.AUTHOR, 1, R.id.sort_author, R.string.sort_author, new String[] {"sortAuthor", "sortTitle"}},
                 {SortType.TIME_ADDED, 2, R.id.sort_time_added, R.string.sort_time_added, new String[] {"lastImportDate"}},
                 {SortType.RATING, 3, R.id.sort_rating, R.string.sort_rating, new String[] {"rating"}},
-                {SortType.REL_PATH, 4, R.id.sort_rel_path, R.string.sort_rel_path, new String[] {"relPath", "title"}}
+                {SortType.REL_PATH, 4, R.id.sort_rel_path, R.string.sort_rel_path,
+                        new String[] {"sortRelPath", "sortTitle"}}
         });
     }
 
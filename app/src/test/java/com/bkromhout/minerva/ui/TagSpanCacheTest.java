@@ -0,0 +1,28 @@
+package com.bkromhout.minerva.ui;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests that {@link TagSpanCache} entries are only reused until tags change.
+ */
+public class TagSpanCacheTest {
+    @Test
+    public void reusedForSameVersionAndLines() {
+        int version = TagSpanCache.getTagsVersion();
+        TagSpanCache.Entry entry = new TagSpanCache.Entry(version, 2, null);
+        assertThat(entry.matches(version, 2), is(true));
+        assertThat(entry.matches(version, 3), is(false));
+    }
+
+    @Test
+    public void invalidatedByTagChanges() {
+        int version = TagSpanCache.getTagsVersion();
+        TagSpanCache.Entry entry = new TagSpanCache.Entry(version, 2, null);
+        TagSpanCache.onTagsChanged();
+        assertThat(TagSpanCache.getTagsVersion() == version, is(false));
+        assertThat(entry.matches(TagSpanCache.getTagsVersion(), 2), is(false));
+    }
+}
@@ -0,0 +1,29 @@
+package com.bkromhout.minerva.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Tests the {@link BookCover} class.
+ */
+public class BookCoverTest {
+    private static final byte[] HASH = {0x01, (byte) 0xAB, 0x7F, (byte) 0x80};
+
+    @Test
+    public void cacheKeyIncludesHashAndPath() {
+        assertThat(new BookCover("a/b.epub", HASH, true).getCacheKey(), is("thumb:01ab7f80:a/b.epub"));
+        assertThat(new BookCover("a/b.epub", null, false).getCacheKey(), is("full::a/b.epub"));
+    }
+
+    @Test
+    public void reImportedBooksGetNewKeys() {
+        BookCover before = new BookCover("a/b.epub", HASH, true);
+        assertThat(new BookCover("a/b.epub", HASH.clone(), true), is(before));
+        assertThat(new BookCover("a/b.epub", new byte[] {1, 2, 3, 4}, true), is(not(before)));
+        assertThat(new BookCover("a/c.epub", HASH, true), is(not(before)));
+        assertThat(new BookCover("a/b.epub", HASH, false), is(not(before)));
+    }
+}
@@ -0,0 +1,71 @@
+package com.bkromhout.minerva.data;
+
+import com.bkromhout.minerva.bench.SyntheticEpubGenerator;
+import nl.siegmann.epublib.domain.Book;
+import nl.siegmann.epublib.epub.EpubReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading the metadata the importer needs using {@link EpubMetadataReader} against reading the whole book
+ * with epublib, which is what the importer used to do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EpubReadBenchmark {
+    @Param({"10", "100"})
+    public int numChapters;
+
+    @Param({"4096", "65536"})
+    public int chapterBytes;
+
+    @Param({"131072"})
+    public int coverBytes;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("book", ".epub");
+        new SyntheticEpubGenerator(numChapters, chapterBytes, coverBytes).writeBook(file, 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    @Benchmark
+    public Object readMetadata() throws IOException {
+        BookMetadata metadata = EpubMetadataReader.read(file);
+        // The importer always copies the cover, so include that.
+        if (metadata.hasCoverImage()) {
+            try (InputStream in = metadata.openCoverImage()) {
+                drain(in);
+            }
+        }
+        return metadata;
+    }
+
+    @Benchmark
+    public Book readWholeBook() throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return new EpubReader().readEpub(in);
+        }
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        byte[] buf = new byte[8192];
+        long total = 0;
+        int n;
+        while ((n = in.read(buf)) != -1) total += n;
+        return total;
+    }
+}
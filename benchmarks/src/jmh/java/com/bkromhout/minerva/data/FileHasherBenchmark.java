@@ -0,0 +1,59 @@
+package com.bkromhout.minerva.data;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FileHasher} throughput for the hash algorithms the importer uses, alone and combined (which is how
+ * the importer hashes new files).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FileHasherBenchmark {
+    @Param({"65536", "1048576", "16777216"})
+    public int fileSize;
+
+    @Param({"SHA256", "XXHASH64", "BOTH"})
+    public String algorithms;
+
+    private File file;
+    private FileHashAlgorithm[] algos;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("hash", ".bin");
+        byte[] data = new byte[fileSize];
+        new Random(fileSize).nextBytes(data);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+
+        switch (algorithms) {
+            case "SHA256":
+                algos = new FileHashAlgorithm[] {new SHA256FileHashAlgorithm()};
+                break;
+            case "XXHASH64":
+                algos = new FileHashAlgorithm[] {new XXHash64FileHashAlgorithm()};
+                break;
+            default:
+                algos = new FileHashAlgorithm[] {new SHA256FileHashAlgorithm(), new XXHash64FileHashAlgorithm()};
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    @Benchmark
+    public byte[][] hash() throws IOException {
+        return FileHasher.hash(file, algos);
+    }
+}
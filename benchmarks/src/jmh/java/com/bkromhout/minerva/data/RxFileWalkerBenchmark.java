@@ -0,0 +1,66 @@
+package com.bkromhout.minerva.data;
+
+import com.bkromhout.minerva.bench.BenchUtils;
+import com.bkromhout.minerva.bench.SyntheticEpubGenerator;
+import org.openjdk.jmh.annotations.*;
+import rx.Observable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long {@link RxFileWalker} takes to walk a synthetic library tree.
+ * <p>
+ * Note that after the first iteration the OS will have cached the directory entries, so this mostly measures the cost
+ * of listing and stat-ing rather than that of cold storage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RxFileWalkerBenchmark {
+    private static final List<String> EXTENSIONS = Collections.singletonList("epub");
+
+    @Param({"2000"})
+    public int numBooks;
+
+    @Param({"20"})
+    public int booksPerDir;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private File root;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = BenchUtils.createTempDir("walk");
+        // The walker doesn't read the files, so keep them tiny.
+        new SyntheticEpubGenerator(1, 0, 0).writeLibrary(root, numBooks, booksPerDir);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchUtils.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public int walk() {
+        return Observable.create(new RxFileWalker(root, EXTENSIONS, null, parallelism))
+                         .count()
+                         .toBlocking()
+                         .single();
+    }
+
+    @Benchmark
+    public int walkWithExcludes() {
+        return Observable.create(new RxFileWalker(root, EXTENSIONS, Arrays.asList(".Trash*", "author1/**"),
+                parallelism))
+                         .count()
+                         .toBlocking()
+                         .single();
+    }
+}
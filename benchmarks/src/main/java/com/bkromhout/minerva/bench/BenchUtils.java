@@ -0,0 +1,35 @@
+package com.bkromhout.minerva.bench;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * File helpers for benchmark setup and teardown.
+ */
+public final class BenchUtils {
+    private BenchUtils() {
+    }
+
+    /**
+     * Create a new, empty temporary directory.
+     * @param prefix Name prefix.
+     * @return Directory.
+     * @throws IOException If the directory can't be created.
+     */
+    public static File createTempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        if (!dir.delete() || !dir.mkdir()) throw new IOException("Unable to create " + dir);
+        return dir;
+    }
+
+    /**
+     * Delete a file, or a directory and everything in it.
+     * @param file File or directory.
+     */
+    public static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) deleteRecursively(child);
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+}
@@ -0,0 +1,194 @@
+package com.bkromhout.minerva.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes synthetic ePub files (and trees of them) for the benchmarks.
+ * <p>
+ * Each book has a full set of OPF metadata, an NCX which references every chapter, a cover image, and a configurable
+ * number of chapters of a configurable size. Output is deterministic for a given seed, so the same files can be
+ * regenerated on another machine.
+ * <p>
+ * Can also be run directly: {@code SyntheticEpubGenerator <outDir> <numBooks> <booksPerDir> <chapters> <chapterKb>
+ * <coverKb>}.
+ */
+public final class SyntheticEpubGenerator {
+    private static final String CONTAINER_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<container version=\"1.0\" xmlns=\"urn:oasis:names:tc:opendocument:xmlns:container\">\n" +
+            "  <rootfiles>\n" +
+            "    <rootfile full-path=\"OEBPS/content.opf\" media-type=\"application/oebps-package+xml\"/>\n" +
+            "  </rootfiles>\n" +
+            "</container>\n";
+    private static final String WORDS = "lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod " +
+            "tempor incididunt ut labore et dolore magna aliqua ";
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final int numChapters;
+    private final int chapterBytes;
+    private final int coverBytes;
+
+    /**
+     * Create a new {@link SyntheticEpubGenerator}.
+     * @param numChapters  Number of chapters in each book.
+     * @param chapterBytes Approximate size of each chapter, in bytes (before compression).
+     * @param coverBytes   Size of each cover image, in bytes. If 0, books won't have covers.
+     */
+    public SyntheticEpubGenerator(int numChapters, int chapterBytes, int coverBytes) {
+        if (numChapters < 1) throw new IllegalArgumentException("numChapters must be at least 1.");
+        this.numChapters = numChapters;
+        this.chapterBytes = Math.max(0, chapterBytes);
+        this.coverBytes = Math.max(0, coverBytes);
+    }
+
+    /**
+     * Write a single book.
+     * @param file Where to write the book.
+     * @param seed Seed which determines the book's metadata and content.
+     * @throws IOException If writing fails.
+     */
+    public void writeBook(File file, long seed) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.mkdirs() && !parent.isDirectory())
+            throw new IOException("Unable to create " + parent);
+
+        Random random = new Random(seed);
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+            // The mimetype entry must be first, and must be stored rather than compressed.
+            byte[] mimetype = "application/epub+zip".getBytes(StandardCharsets.US_ASCII);
+            ZipEntry mimetypeEntry = new ZipEntry("mimetype");
+            mimetypeEntry.setMethod(ZipEntry.STORED);
+            mimetypeEntry.setSize(mimetype.length);
+            CRC32 crc = new CRC32();
+            crc.update(mimetype);
+            mimetypeEntry.setCrc(crc.getValue());
+            zip.putNextEntry(mimetypeEntry);
+            zip.write(mimetype);
+            zip.closeEntry();
+
+            putEntry(zip, "META-INF/container.xml", CONTAINER_XML.getBytes(StandardCharsets.UTF_8));
+            putEntry(zip, "OEBPS/content.opf", opf(seed).getBytes(StandardCharsets.UTF_8));
+            putEntry(zip, "OEBPS/toc.ncx", ncx(seed).getBytes(StandardCharsets.UTF_8));
+            for (int i = 1; i <= numChapters; i++)
+                putEntry(zip, "OEBPS/Text/chapter" + i + ".xhtml", chapter(i, random).getBytes(StandardCharsets.UTF_8));
+            if (coverBytes > 0) putEntry(zip, "OEBPS/Images/cover.png", cover(random));
+        }
+    }
+
+    /**
+     * Write a tree of books.
+     * @param root        Directory to write the tree in.
+     * @param numBooks    Total number of books to write.
+     * @param booksPerDir Number of books in each directory. Directories are nested two levels deep.
+     * @throws IOException If writing fails.
+     */
+    public void writeLibrary(File root, int numBooks, int booksPerDir) throws IOException {
+        booksPerDir = Math.max(1, booksPerDir);
+        for (int i = 0; i < numBooks; i++) {
+            int dirNum = i / booksPerDir;
+            File dir = new File(root, "author" + (dirNum / 10) + File.separator + "series" + (dirNum % 10));
+            writeBook(new File(dir, "book" + i + ".epub"), i);
+        }
+    }
+
+    private static void putEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private String opf(long seed) {
+        StringBuilder manifest = new StringBuilder();
+        StringBuilder spine = new StringBuilder();
+        for (int i = 1; i <= numChapters; i++) {
+            manifest.append("    <item id=\"chapter").append(i).append("\" href=\"Text/chapter").append(i)
+                    .append(".xhtml\" media-type=\"application/xhtml+xml\"/>\n");
+            spine.append("    <itemref idref=\"chapter").append(i).append("\"/>\n");
+        }
+        if (coverBytes > 0)
+            manifest.append("    <item id=\"cover\" href=\"Images/cover.png\" media-type=\"image/png\"/>\n");
+
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<package xmlns=\"http://www.idpf.org/2007/opf\" unique-identifier=\"BookId\" version=\"2.0\">\n" +
+                "  <metadata xmlns:dc=\"http://purl.org/dc/elements/1.1/\" " +
+                "xmlns:opf=\"http://www.idpf.org/2007/opf\">\n" +
+                "    <dc:title>Synthetic Book " + seed + "</dc:title>\n" +
+                "    <dc:creator opf:role=\"aut\">Author " + (seed % 97) + "</dc:creator>\n" +
+                "    <dc:description>A synthetic book for benchmarking.</dc:description>\n" +
+                "    <dc:subject>Fiction</dc:subject>\n" +
+                "    <dc:subject>Benchmarks</dc:subject>\n" +
+                "    <dc:language>en</dc:language>\n" +
+                "    <dc:publisher>Minerva</dc:publisher>\n" +
+                "    <dc:identifier id=\"BookId\" opf:scheme=\"UUID\">urn:uuid:00000000-0000-0000-0000-" +
+                String.format("%012d", seed) + "</dc:identifier>\n" +
+                "    <dc:date opf:event=\"publication\">2016-01-01</dc:date>\n" +
+                "    <dc:date opf:event=\"modification\">2016-06-01</dc:date>\n" +
+                (coverBytes > 0 ? "    <meta name=\"cover\" content=\"cover\"/>\n" : "") +
+                "  </metadata>\n" +
+                "  <manifest>\n" +
+                "    <item id=\"ncx\" href=\"toc.ncx\" media-type=\"application/x-dtbncx+xml\"/>\n" +
+                manifest +
+                "  </manifest>\n" +
+                "  <spine toc=\"ncx\">\n" +
+                spine +
+                "  </spine>\n" +
+                "</package>\n";
+    }
+
+    private String ncx(long seed) {
+        StringBuilder navPoints = new StringBuilder();
+        for (int i = 1; i <= numChapters; i++) {
+            navPoints.append("    <navPoint id=\"navPoint-").append(i).append("\" playOrder=\"").append(i)
+                     .append("\">\n      <navLabel><text>Chapter ").append(i).append("</text></navLabel>\n")
+                     .append("      <content src=\"Text/chapter").append(i).append(".xhtml\"/>\n    </navPoint>\n");
+        }
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<!DOCTYPE ncx PUBLIC \"-//NISO//DTD ncx 2005-1//EN\" " +
+                "\"http://www.daisy.org/z3986/2005/ncx-2005-1.dtd\">\n" +
+                "<ncx xmlns=\"http://www.daisy.org/z3986/2005/ncx/\" version=\"2005-1\">\n" +
+                "  <head><meta name=\"dtb:uid\" content=\"" + seed + "\"/></head>\n" +
+                "  <docTitle><text>Synthetic Book " + seed + "</text></docTitle>\n" +
+                "  <navMap>\n" +
+                navPoints +
+                "  </navMap>\n" +
+                "</ncx>\n";
+    }
+
+    private String chapter(int num, Random random) {
+        StringBuilder body = new StringBuilder(chapterBytes + 256);
+        body.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>Chapter ").append(num)
+            .append("</title></head><body>\n<h1>Chapter ").append(num).append("</h1>\n<p>");
+        int start = body.length();
+        while (body.length() - start < chapterBytes) {
+            int offset = random.nextInt(WORDS.length() / 2);
+            body.append(WORDS, offset, WORDS.length());
+        }
+        return body.append("</p>\n</body></html>\n").toString();
+    }
+
+    private byte[] cover(Random random) {
+        // Random bytes don't compress, which is realistic for image data.
+        byte[] cover = new byte[coverBytes];
+        random.nextBytes(cover);
+        System.arraycopy(PNG_SIGNATURE, 0, cover, 0, Math.min(PNG_SIGNATURE.length, coverBytes));
+        return cover;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 6) {
+            System.err.println("Usage: SyntheticEpubGenerator <outDir> <numBooks> <booksPerDir> <chapters> " +
+                    "<chapterKb> <coverKb>");
+            System.exit(1);
+        }
+        new SyntheticEpubGenerator(Integer.parseInt(args[3]), Integer.parseInt(args[4]) * 1024,
+                Integer.parseInt(args[5]) * 1024)
+                .writeLibrary(new File(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+    }
+}
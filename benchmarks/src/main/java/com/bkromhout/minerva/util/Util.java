@@ -0,0 +1,17 @@
+package com.bkromhout.minerva.util;
+
+/**
+ * Stands in for the app's {@code Util} class, which depends on Android, so that the app classes compiled into the
+ * benchmarks module can use the few pure-Java helpers they need. Keep these in sync with the real implementations.
+ */
+public class Util {
+    /**
+     * Returns the extension from a file name in lowercase.
+     * @param fileName File name.
+     * @return Extension (in lowercase), or null.
+     */
+    public static String getExtFromFName(String fileName) {
+        if (fileName == null || fileName.lastIndexOf('.') == -1) return null;
+        return fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
+    }
+}